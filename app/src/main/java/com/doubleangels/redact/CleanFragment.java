@@ -18,10 +18,10 @@ import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.doubleangels.redact.jobs.JobStatus;
+import com.doubleangels.redact.jobs.MediaJobService;
 import com.doubleangels.redact.media.MediaAdapter;
 import com.doubleangels.redact.media.MediaItem;
-import com.doubleangels.redact.notifications.LocalNotifications;
-import com.doubleangels.redact.media.MediaProcessor;
 import com.doubleangels.redact.media.MediaSelector;
 import com.doubleangels.redact.permission.PermissionManager;
 import com.doubleangels.redact.ui.MainViewModel;
@@ -42,7 +42,6 @@ public class CleanFragment extends Fragment {
     private PermissionManager permissionManager;
     private MediaSelector mediaSelector;
     private UIStateManager uiStateManager;
-    private MediaProcessor mediaProcessor;
 
     private MaterialButton stripButton;
     private TextView statusText;
@@ -150,33 +149,7 @@ public class CleanFragment extends Fragment {
                     if (items != null && !items.isEmpty()) {
                         SentryManager.setCustomKey("processing_items_count", items.size());
                         viewModel.setProcessingState(MainViewModel.ProcessingState.PROCESSING);
-                        mediaProcessor.processMediaItems(items, new MediaProcessor.ProcessingCallback() {
-                            @Override
-                            public void onProgress(int overallPercent, String message) {
-                                try {
-                                    viewModel.updateProgressPercent(overallPercent, message);
-                                    SentryManager.setCustomKey(
-                                            "processing_progress_percent", overallPercent);
-                                    LocalNotifications.updateCleanProgress(
-                                            requireContext(), overallPercent, message);
-                                } catch (Exception e) {
-                                    SentryManager.recordException(e);
-                                }
-                            }
-
-                            @Override
-                            public void onComplete(int processedCount) {
-                                try {
-                                    SentryManager.log("Processing completed");
-                                    SentryManager.setCustomKey("processed_count", processedCount);
-                                    viewModel.setProcessedItemCount(processedCount);
-                                    viewModel.setProcessingState(MainViewModel.ProcessingState.COMPLETED);
-                                    LocalNotifications.showCleanComplete(requireContext(), processedCount);
-                                } catch (Exception e) {
-                                    SentryManager.recordException(e);
-                                }
-                            }
-                        });
+                        MediaJobService.enqueueClean(requireContext(), items);
                     } else {
                         SentryManager.log("No items selected for processing");
                         uiStateManager.setFirstSelectMediaFilesStatus();
@@ -241,7 +214,6 @@ public class CleanFragment extends Fragment {
             );
 
             mediaSelector = new MediaSelector(requireActivity(), mediaPickerLauncher);
-            mediaProcessor = new MediaProcessor(requireActivity());
         } catch (Exception e) {
             SentryManager.recordException(e);
         }
@@ -292,6 +264,9 @@ public class CleanFragment extends Fragment {
                 }
             });
 
+            // Stripping runs in MediaJobService, so a batch started before this view existed shows up here too
+            MediaJobService.cleanStatus().observe(getViewLifecycleOwner(), this::onCleanStatus);
+
             viewModel.getProgressPercent().observe(getViewLifecycleOwner(), percent -> {
                 try {
                     progressBar.setProgress(percent);
@@ -313,6 +288,36 @@ public class CleanFragment extends Fragment {
         }
     }
 
+    private void onCleanStatus(JobStatus status) {
+        try {
+            switch (status.state) {
+                case RUNNING:
+                    if (viewModel.getProcessingState().getValue() != MainViewModel.ProcessingState.PROCESSING) {
+                        viewModel.setProcessingState(MainViewModel.ProcessingState.PROCESSING);
+                    }
+                    if (!status.message.isEmpty()) {
+                        viewModel.updateProgressPercent(status.percent, status.message);
+                        SentryManager.setCustomKey("processing_progress_percent", status.percent);
+                    }
+                    break;
+
+                case FINISHED:
+                    SentryManager.log("Processing completed");
+                    SentryManager.setCustomKey("processed_count", status.okCount);
+                    viewModel.setProcessedItemCount(status.okCount);
+                    viewModel.setProcessingState(MainViewModel.ProcessingState.COMPLETED);
+                    MediaJobService.acknowledge(false);
+                    break;
+
+                case IDLE:
+                default:
+                    break;
+            }
+        } catch (Exception e) {
+            SentryManager.recordException(e);
+        }
+    }
+
     void handlePermissionResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         try {
             if (permissionManager != null) {
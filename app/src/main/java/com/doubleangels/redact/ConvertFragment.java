@@ -2,8 +2,6 @@ package com.doubleangels.redact;
 
 import android.app.Activity;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.view.LayoutInflater;
@@ -21,9 +19,9 @@ import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.doubleangels.redact.notifications.LocalNotifications;
+import com.doubleangels.redact.jobs.JobStatus;
+import com.doubleangels.redact.jobs.MediaJobService;
 import com.doubleangels.redact.media.ConvertFileAdapter;
-import com.doubleangels.redact.media.FormatConverter;
 import com.doubleangels.redact.media.MediaItem;
 import com.doubleangels.redact.media.MediaSelector;
 import com.doubleangels.redact.permission.PermissionManager;
@@ -35,12 +33,6 @@ import com.doubleangels.redact.sentry.SentryManager;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-import io.sentry.ISpan;
-import io.sentry.ITransaction;
-import io.sentry.SpanStatus;
 
 /**
  * Converts images to JPEG, PNG, WebP, or HEIC and transcodes videos to MP4; saves under
@@ -51,7 +43,6 @@ public class ConvertFragment extends Fragment {
     private PermissionManager permissionManager;
     private MediaSelector mediaSelector;
     private final List<MediaItem> selectedItems = new ArrayList<>();
-    private ExecutorService executor;
 
     private MaterialButton selectButton;
     private MaterialButton convertButton;
@@ -109,7 +100,6 @@ public class ConvertFragment extends Fragment {
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
-        executor = Executors.newSingleThreadExecutor();
         SentryManager.log("ConvertFragment view created");
 
         statusText = view.findViewById(R.id.statusText);
@@ -172,6 +162,8 @@ public class ConvertFragment extends Fragment {
 
         refreshFormatSectionForSelection();
         permissionManager.checkPermissions();
+
+        MediaJobService.convertStatus().observe(getViewLifecycleOwner(), this::onConvertStatus);
     }
 
     /**
@@ -279,145 +271,47 @@ public class ConvertFragment extends Fragment {
             return;
         }
         int formatIndex = getSelectedFormatIndex();
-        Bitmap.CompressFormat format = FormatConverter.formatAtIndex(formatIndex);
         convertButton.setEnabled(false);
         selectButton.setEnabled(false);
         showProgress(true);
         progressBar.setIndeterminate(false);
         progressBar.setMax(100);
         progressBar.setProgress(0);
+        MediaJobService.enqueueConvert(requireContext(), selectedItems, formatIndex);
+    }
 
-        // Capture context now (on UI thread) so lambdas on background thread don't call
-        // requireContext() after the fragment may have been detached.
-        final android.content.Context ctx = requireContext().getApplicationContext();
-
-        final int total = selectedItems.size();
-        executor.execute(() -> {
-            ITransaction transaction = SentryManager.startTransaction("convert_multiple", "task");
-            int ok = 0;
-            int fail = 0;
-            try {
-                for (int i = 0; i < total; i++) {
-                    MediaItem mediaItem = selectedItems.get(i);
-                    Uri uri = mediaItem.uri();
-                    final int index = i + 1;
-                    String name = mediaSelector.getFileName(uri);
-                    ISpan span = transaction.startChild("convert_item", name != null ? name : "unknown");
-                    requireActivity().runOnUiThread(() -> {
-                        if (!isAdded()) {
-                            return;
-                        }
-                        int overallStart = total > 0 ? ((index - 1) * 100) / total : 0;
-                        progressBar.setProgress(overallStart);
-                        String itemLine = getString(R.string.convert_progress_item, index, total);
-                        progressText.setText(itemLine);
-                        LocalNotifications.updateConversionProgress(ctx, overallStart, itemLine);
-                    });
-                    try {
-                    if (mediaItem.isVideo()) {
-                        FormatConverter.convertVideoToMovies(
-                                ctx,
-                                uri,
-                                name,
-                                formatIndex,
-                                p ->
-                                        requireActivity()
-                                                .runOnUiThread(
-                                                        () -> {
-                                                            if (!isAdded()) {
-                                                                return;
-                                                            }
-                                                            int overall =
-                                                                    total > 0
-                                                                            ? ((index - 1) * 100 + p)
-                                                                                    / total
-                                                                            : 0;
-                                                            progressBar.setProgress(overall);
-                                                            String detail =
-                                                                    getString(
-                                                                            R.string
-                                                                                    .convert_progress_detail,
-                                                                            index,
-                                                                            total,
-                                                                            name,
-                                                                            getString(
-                                                                                    R.string
-                                                                                            .convert_transcoding_percent,
-                                                                                    p));
-                                                            progressText.setText(detail);
-                                                            LocalNotifications.updateConversionProgress(
-                                                                    ctx, overall, detail);
-                                                        }));
-                    } else {
-                        requireActivity()
-                                .runOnUiThread(
-                                        () -> {
-                                            if (isAdded()) {
-                                                int overallImage =
-                                                        total > 0
-                                                                ? ((index - 1) * 100) / total
-                                                                : 0;
-                                                String detail =
-                                                        getString(
-                                                                R.string.convert_progress_detail,
-                                                                index,
-                                                                total,
-                                                                name,
-                                                                getString(
-                                                                        R.string
-                                                                                .convert_encoding_image));
-                                                progressText.setText(detail);
-                                                LocalNotifications.updateConversionProgress(
-                                                        ctx, overallImage, detail);
-                                            }
-                                        });
-                        FormatConverter.convertImageToPictures(ctx, uri, format, name);
-                        }
-                        ok++;
-                        span.setStatus(SpanStatus.OK);
-                    } catch (Exception e) {
-                        fail++;
-                        SentryManager.recordException(e);
-                        span.setStatus(SpanStatus.INTERNAL_ERROR);
-                    } finally {
-                        span.finish();
-                    }
-                    final int done = index;
-                    requireActivity().runOnUiThread(() -> {
-                        if (isAdded()) {
-                        int overallDone = total > 0 ? (done * 100) / total : 0;
-                        progressBar.setProgress(overallDone);
-                        LocalNotifications.updateConversionProgress(
-                                ctx,
-                                overallDone,
-                                getString(R.string.convert_progress_item, done, total));
-                    }
-                });
-            }
-            final int okCount = ok;
-            final int failCount = fail;
-            requireActivity().runOnUiThread(() -> {
-                if (!isAdded()) {
-                    return;
+    /** Mirrors {@link MediaJobService}'s conversion progress, including batches resumed after a restart. */
+    private void onConvertStatus(JobStatus status) {
+        switch (status.state) {
+            case RUNNING:
+                convertButton.setEnabled(false);
+                selectButton.setEnabled(false);
+                showProgress(true);
+                progressBar.setProgress(status.percent);
+                if (!status.message.isEmpty()) {
+                    progressText.setText(status.message);
                 }
+                break;
+
+            case FINISHED:
                 showProgress(false);
-                convertButton.setEnabled(true);
+                convertButton.setEnabled(!selectedItems.isEmpty());
                 selectButton.setEnabled(true);
-                SentryManager.log("Conversion complete: ok=" + okCount + ", fail=" + failCount);
-                if (failCount == 0) {
-                    statusText.setText(getString(R.string.convert_done_all, okCount));
-                    Toast.makeText(ctx, R.string.convert_saved_to_gallery, Toast.LENGTH_SHORT).show();
-                } else if (okCount != 0) {
-                    statusText.setText(getString(R.string.convert_done_partial, okCount, failCount));
+                if (status.failCount == 0) {
+                    statusText.setText(getString(R.string.convert_done_all, status.okCount));
+                    Toast.makeText(requireContext(), R.string.convert_saved_to_gallery, Toast.LENGTH_SHORT).show();
+                } else if (status.okCount != 0) {
+                    statusText.setText(getString(R.string.convert_done_partial, status.okCount, status.failCount));
                 } else {
                     statusText.setText(R.string.convert_done_failed);
                 }
-                LocalNotifications.showConversionComplete(ctx, okCount, failCount);
-            });
-            } finally {
-                transaction.finish();
-            }
-        });
+                MediaJobService.acknowledge(true);
+                break;
+
+            case IDLE:
+            default:
+                break;
+        }
     }
 
     private void showProgress(boolean show) {
@@ -436,15 +330,6 @@ public class ConvertFragment extends Fragment {
         }
     }
 
-    @Override
-    public void onDestroyView() {
-        if (executor != null) {
-            executor.shutdown();
-            executor = null;
-        }
-        super.onDestroyView();
-    }
-
     @Override
     public void onDestroy() {
         super.onDestroy();
@@ -23,6 +23,7 @@ import androidx.fragment.app.FragmentTransaction;
 
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.color.DynamicColors;
+import com.doubleangels.redact.jobs.MediaJobService;
 import com.doubleangels.redact.sentry.SentryManager;
 
 /**
@@ -65,6 +66,10 @@ public class MainActivity extends AppCompatActivity {
 
             SentryManager.log("MainActivity created");
 
+            if (savedInstanceState == null) {
+                MediaJobService.resumePending(this);
+            }
+
             if (savedInstanceState == null) {
                 ScanFragment scanFrag = new ScanFragment();
                 ConvertFragment convertFrag = new ConvertFragment();
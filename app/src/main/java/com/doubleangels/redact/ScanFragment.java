@@ -29,6 +29,7 @@ import com.doubleangels.redact.sentry.SentryManager;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -76,6 +77,8 @@ public class ScanFragment extends Fragment {
     private ActivityResultLauncher<Intent> settingsLauncher;
     private PermissionManager permissionManager;
     private Uri currentMediaUri;
+    /** Incremented per scan so late UI posts from a superseded scan are dropped. */
+    private int scanGeneration;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -201,6 +204,12 @@ public class ScanFragment extends Fragment {
         }
     }
 
+    @Override
+    public void onDestroyView() {
+        MetadataDisplayer.cancelExtraction(this);
+        super.onDestroyView();
+    }
+
     private void displayMetadata(Uri mediaUri) {
         try {
             showStatus(getString(R.string.status_analyzing));
@@ -223,12 +232,35 @@ public class ScanFragment extends Fragment {
             progressText.setText(isVideo ? R.string.status_extracting_media : R.string.status_extracting_image);
 
             final ITransaction transaction = SentryManager.startTransaction("extract_metadata", "task");
-            MetadataDisplayer.extractSectionedMetadata(requireContext(), mediaUri, new MetadataDisplayer.SectionedMetadataCallback() {
+            final int generation = ++scanGeneration;
+            // Sections shown so far; only touched on the UI thread
+            final Map<String, String> partialSections = new HashMap<>();
+            // Replaces any scan still running for an earlier selection
+            MetadataDisplayer.extractSectionedMetadata(requireContext(), mediaUri, this, new MetadataDisplayer.SectionedMetadataCallback() {
+                @Override
+                public void onSectionExtracted(String section, String content, boolean isVideo) {
+                    requireActivity().runOnUiThread(() -> {
+                        if (generation != scanGeneration) {
+                            return;
+                        }
+                        try {
+                            // Rows appear as they are parsed; progress stays up until the scan completes
+                            partialSections.put(section, content);
+                            displayCombinedMetadata(partialSections);
+                        } catch (Exception e) {
+                            SentryManager.recordException(e);
+                        }
+                    });
+                }
+
                 @Override
                 public void onMetadataExtracted(Map<String, String> metadataSections, boolean isVideo) {
                     transaction.setStatus(SpanStatus.OK);
                     transaction.finish();
                     requireActivity().runOnUiThread(() -> {
+                        if (generation != scanGeneration) {
+                            return;
+                        }
                         try {
                             showProgress(false);
                             showStatus(getString(R.string.status_extraction_complete));
@@ -260,6 +292,9 @@ public class ScanFragment extends Fragment {
                     transaction.setStatus(SpanStatus.INTERNAL_ERROR);
                     transaction.finish();
                     requireActivity().runOnUiThread(() -> {
+                        if (generation != scanGeneration) {
+                            return;
+                        }
                         showProgress(false);
                         showStatus(getString(R.string.status_extraction_fail));
                         clearMetadataUi();
@@ -269,6 +304,12 @@ public class ScanFragment extends Fragment {
                         SentryManager.log("Metadata extraction failed: " + error);
                     });
                 }
+
+                @Override
+                public void onExtractionCancelled() {
+                    transaction.setStatus(SpanStatus.CANCELLED);
+                    transaction.finish();
+                }
             });
         } catch (Exception e) {
             SentryManager.recordException(e);
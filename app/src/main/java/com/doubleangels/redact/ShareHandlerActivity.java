@@ -1,5 +1,6 @@
 package com.doubleangels.redact;
 
+import android.content.ClipData;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
@@ -14,13 +15,19 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.view.WindowCompat;
 
 import com.doubleangels.redact.R;
+import com.doubleangels.redact.media.MediaItem;
+import com.doubleangels.redact.media.MediaProcessor;
 import com.doubleangels.redact.media.MediaSelector;
 import com.doubleangels.redact.metadata.MetadataStripper;
+import com.doubleangels.redact.metadata.StripRequest;
+import com.doubleangels.redact.metadata.StrippingProvider;
 import java.io.File;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.doubleangels.redact.sentry.SentryManager;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import io.sentry.ITransaction;
 import io.sentry.SpanStatus;
@@ -39,8 +46,8 @@ public class ShareHandlerActivity extends AppCompatActivity {
     private MediaSelector mediaSelector;
     private MetadataStripper metadataStripper;
     
-    // Track the processed file for cleanup after sharing
-    private File processedFile;
+    // Track the processed files for cleanup after sharing
+    private final List<File> processedFiles = new ArrayList<>();
     
     // Track whether sharing has been initiated
     private boolean sharingInitiated = false;
@@ -73,10 +80,6 @@ public class ShareHandlerActivity extends AppCompatActivity {
             // Initialize media processing components
             mediaSelector = new MediaSelector(this, null);
             metadataStripper = new MetadataStripper(this);
-            
-            // Set up progress callback for metadata stripping
-            metadataStripper.setProgressCallback(
-                    (percent, message) -> runOnUiThread(() -> updateProgressMessage(message)));
 
             // Log activity creation for debugging purposes
             SentryManager.log("ShareHandlerActivity created");
@@ -252,7 +255,8 @@ public class ShareHandlerActivity extends AppCompatActivity {
     /**
      * Processes multiple media items received from another application.
      *
-     * Currently, this method only processes the first media item in the list.
+     * A single item takes the same path as {@link Intent#ACTION_SEND}; otherwise every item is
+     * cleaned concurrently and the results are shared together.
      *
      * @param intent The intent containing multiple media URIs
      */
@@ -269,16 +273,12 @@ public class ShareHandlerActivity extends AppCompatActivity {
                 // Log the count of media items
                 SentryManager.setCustomKey("media_count", uris.size());
 
-                // Process only the first item in the list
-                receivedUri = uris.get(0);
-
-                // Determine if it's a video or image by checking MIME type
-                String mimeType = getContentResolver().getType(receivedUri);
-                boolean isVideo = mimeType != null && mimeType.startsWith("video/");
-                SentryManager.setCustomKey("is_video", isVideo);
-
-                // Process the first media item
-                processMediaItem(receivedUri, isVideo);
+                if (uris.size() == 1) {
+                    receivedUri = uris.get(0);
+                    processMediaItem(receivedUri, isVideo(receivedUri));
+                } else {
+                    processMediaItems(uris);
+                }
             } else {
                 // Handle case where URIs are missing
                 SentryManager.log("Received empty media list");
@@ -291,6 +291,98 @@ public class ShareHandlerActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Determines whether a shared URI is a video by its MIME type.
+     *
+     * @param uri The shared URI
+     * @return true if the content resolver reports a video type
+     */
+    private boolean isVideo(Uri uri) {
+        String mimeType = getContentResolver().getType(uri);
+        return mimeType != null && mimeType.startsWith("video/");
+    }
+
+    /**
+     * Strips metadata from several shared items at once and shares the cleaned copies together.
+     *
+     * Items run on {@link MediaProcessor}'s bounded image and video pools, and the dialog shows
+     * its aggregated progress. Items that fail are left out of the share; if all of them fail the
+     * activity finishes with an error.
+     *
+     * @param uris The URIs received from the sharing application
+     */
+    private void processMediaItems(List<Uri> uris) {
+        new Thread(() -> {
+            try {
+                // Names and types come from the content resolver, so resolve them off the UI thread
+                List<MediaItem> items = new ArrayList<>(uris.size());
+                for (Uri uri : uris) {
+                    items.add(new MediaItem(uri, isVideo(uri), mediaSelector.getFileName(uri)));
+                }
+                Uri[] outputs = new Uri[items.size()];
+                new MediaProcessor(this).processMediaItemsForSharing(items, new MediaProcessor.ProcessingCallback() {
+                    @Override
+                    public void onProgress(int overallPercent, String message) {
+                        updateProgressMessage(message);
+                    }
+
+                    @Override
+                    public void onItemFinished(int itemIndex, Uri outputUri) {
+                        // Each index is written by one worker; onComplete is posted after the last
+                        outputs[itemIndex] = outputUri;
+                    }
+
+                    @Override
+                    public void onComplete(int processedCount) {
+                        onMultipleProcessed(items, outputs, processedCount);
+                    }
+                });
+            } catch (Exception e) {
+                SentryManager.recordException(e);
+                runOnUiThread(() -> finishWithError("Failed to process media: " + e.getMessage()));
+            }
+        }).start();
+    }
+
+    /**
+     * Shares the cleaned copies of a multi-item share once every item has finished.
+     *
+     * @param items The items that were processed
+     * @param outputs FileProvider URI of each cleaned copy, or null where the item failed
+     * @param processedCount Number of items cleaned successfully
+     */
+    private void onMultipleProcessed(List<MediaItem> items, Uri[] outputs, int processedCount) {
+        try {
+            dismissProgressDialog();
+            SentryManager.setCustomKey("processed_count", processedCount);
+            ArrayList<Uri> cleaned = new ArrayList<>(processedCount);
+            boolean anyImage = false;
+            boolean anyVideo = false;
+            for (int i = 0; i < outputs.length; i++) {
+                if (outputs[i] == null) {
+                    continue;
+                }
+                cleaned.add(outputs[i]);
+                trackProcessedFile(outputs[i]);
+                if (items.get(i).isVideo()) {
+                    anyVideo = true;
+                } else {
+                    anyImage = true;
+                }
+            }
+            if (cleaned.isEmpty()) {
+                SentryManager.log("Media processing failed for every shared item");
+                finishWithError("Processing failed");
+                return;
+            }
+            SentryManager.log("Media processing completed: " + cleaned.size() + " of " + outputs.length);
+            shareCleanFiles(anyImage && anyVideo ? "*/*" : anyVideo ? "video/*" : "image/*", cleaned);
+        } catch (Exception e) {
+            SentryManager.recordException(e);
+            finishWithError("Error in processing completion: " + e.getMessage());
+        }
+    }
+
     /**
      * Processes a media item by stripping metadata for sharing.
      *
@@ -309,7 +401,9 @@ public class ShareHandlerActivity extends AppCompatActivity {
                 SentryManager.setCustomKey("file_name", fileName);
 
                 // Process using the "ForSharing" method which saves to cache
-                Uri processedUri = metadataStripper.stripMetadataForSharing(uri, fileName, isVideo);
+                StripRequest request = StripRequest.forSharing(uri, fileName, isVideo)
+                        .withProgress((percent, message) -> runOnUiThread(() -> updateProgressMessage(message)));
+                Uri processedUri = metadataStripper.strip(request).outputUri();
                 if (processedUri != null) {
                     transaction.setStatus(SpanStatus.OK);
                 } else {
@@ -324,31 +418,8 @@ public class ShareHandlerActivity extends AppCompatActivity {
 
                         if (processedUri != null) {
                             // Find the processed file for later cleanup
-                            // Try to get the file path from the URI first, then fall back to finding most recent
-                            // Derive the file directly from the URI path segment; the
-                            // FileProvider URI encodes the filename set by stripMetadataForSharing
-                            // so there is no need to scan by timestamp.
-                            try {
-                                String lastSegment = processedUri.getLastPathSegment();
-                                if (lastSegment != null) {
-                                    // FileProvider encodes the path as "processed/<filename>"
-                                    String resolvedFileName = lastSegment.contains("/")
-                                            ? lastSegment.substring(lastSegment.lastIndexOf('/') + 1)
-                                            : lastSegment;
-                                    File cacheDir = new File(getCacheDir(), "processed");
-                                    File candidate = new File(cacheDir, resolvedFileName);
-                                    if (candidate.exists() && candidate.isFile()) {
-                                        processedFile = candidate;
-                                        SentryManager.log("Resolved processed file from URI: " + resolvedFileName);
-                                    } else {
-                                        SentryManager.log("Processed file not found at expected path: " + candidate);
-                                    }
-                                }
-                            } catch (Exception e) {
-                                SentryManager.log("Could not resolve processed file for cleanup: " + e.getMessage());
-                                SentryManager.recordException(e);
-                            }
-                            
+                            trackProcessedFile(processedUri);
+
                             // Share the cleaned file
                             SentryManager.log("Media processing completed successfully");
                             shareCleanFile(isVideo, processedUri);
@@ -375,6 +446,42 @@ public class ShareHandlerActivity extends AppCompatActivity {
         }).start();
     }
 
+    /**
+     * Remembers the cache file behind a processed FileProvider URI so it can be deleted after
+     * sharing.
+     *
+     * The FileProvider URI encodes the filename chosen by the stripper, so the file is derived
+     * from its last path segment rather than by scanning the cache.
+     *
+     * @param processedUri FileProvider URI of a cleaned copy
+     */
+    private void trackProcessedFile(Uri processedUri) {
+        if (StrippingProvider.isStreamed(this, processedUri)) {
+            // Cleaned while the recipient reads it; there is no file to delete
+            return;
+        }
+        try {
+            String lastSegment = processedUri.getLastPathSegment();
+            if (lastSegment != null) {
+                // FileProvider encodes the path as "processed/<filename>"
+                String resolvedFileName = lastSegment.contains("/")
+                        ? lastSegment.substring(lastSegment.lastIndexOf('/') + 1)
+                        : lastSegment;
+                File cacheDir = new File(getCacheDir(), "processed");
+                File candidate = new File(cacheDir, resolvedFileName);
+                if (candidate.exists() && candidate.isFile()) {
+                    processedFiles.add(candidate);
+                    SentryManager.log("Resolved processed file from URI: " + resolvedFileName);
+                } else {
+                    SentryManager.log("Processed file not found at expected path: " + candidate);
+                }
+            }
+        } catch (Exception e) {
+            SentryManager.log("Could not resolve processed file for cleanup: " + e.getMessage());
+            SentryManager.recordException(e);
+        }
+    }
+
     /**
      * Safely dismisses the progress dialog if it is showing.
      *
@@ -412,26 +519,7 @@ public class ShareHandlerActivity extends AppCompatActivity {
                 Intent shareIntent = new Intent(Intent.ACTION_SEND);
                 shareIntent.setType(mimeType);
                 shareIntent.putExtra(Intent.EXTRA_STREAM, cleanedFileUri);
-                shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-
-                // Proactively grant read permission to every app that can handle this intent.
-                // This is required because some apps receive the URI through the chooser's
-                // indirection layer, which doesn't automatically forward FLAG_GRANT_READ_URI_PERMISSION.
-                for (android.content.pm.ResolveInfo resolveInfo :
-                        getPackageManager().queryIntentActivities(shareIntent, 0)) {
-                    String packageName = resolveInfo.activityInfo.packageName;
-                    grantUriPermission(packageName, cleanedFileUri,
-                            Intent.FLAG_GRANT_READ_URI_PERMISSION);
-                }
-
-                Intent chooser = Intent.createChooser(shareIntent, getString(R.string.share_chooser_title));
-                // The chooser itself is a separate process; it also needs the flag so it
-                // can forward the URI to whichever app the user picks.
-                chooser.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-
-                sharingInitiated = true;
-                SentryManager.log("Launching share intent");
-                startActivityForResult(chooser, REQUEST_SHARE);
+                launchShareChooser(shareIntent, Collections.singletonList(cleanedFileUri));
             } else {
                 SentryManager.log("Cleaned file URI is null");
                 finishWithError("Failed to get cleaned file");
@@ -442,6 +530,63 @@ public class ShareHandlerActivity extends AppCompatActivity {
         }
     }
     
+    /**
+     * Creates and launches a single {@link Intent#ACTION_SEND_MULTIPLE} share for the cleaned
+     * copies of a multi-item share.
+     *
+     * @param mimeType MIME type covering every file being shared
+     * @param cleanedFileUris FileProvider URIs of the cleaned files
+     */
+    private void shareCleanFiles(String mimeType, ArrayList<Uri> cleanedFileUris) {
+        try {
+            SentryManager.setCustomKey("cleaned_count", cleanedFileUris.size());
+            Intent shareIntent = new Intent(Intent.ACTION_SEND_MULTIPLE);
+            shareIntent.setType(mimeType);
+            shareIntent.putParcelableArrayListExtra(Intent.EXTRA_STREAM, cleanedFileUris);
+            // FLAG_GRANT_READ_URI_PERMISSION only covers URIs carried in ClipData, not the
+            // EXTRA_STREAM list, so mirror them there.
+            ClipData clipData = ClipData.newRawUri(null, cleanedFileUris.get(0));
+            for (int i = 1; i < cleanedFileUris.size(); i++) {
+                clipData.addItem(new ClipData.Item(cleanedFileUris.get(i)));
+            }
+            shareIntent.setClipData(clipData);
+            launchShareChooser(shareIntent, cleanedFileUris);
+        } catch (Exception e) {
+            SentryManager.recordException(e);
+            finishWithError("Error sharing clean files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Grants read access to the cleaned files and launches the share chooser.
+     *
+     * @param shareIntent The share intent carrying the cleaned files
+     * @param cleanedFileUris FileProvider URIs of the cleaned files
+     */
+    private void launchShareChooser(Intent shareIntent, List<Uri> cleanedFileUris) {
+        shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+        // Proactively grant read permission to every app that can handle this intent.
+        // This is required because some apps receive the URI through the chooser's
+        // indirection layer, which doesn't automatically forward FLAG_GRANT_READ_URI_PERMISSION.
+        for (android.content.pm.ResolveInfo resolveInfo :
+                getPackageManager().queryIntentActivities(shareIntent, 0)) {
+            String packageName = resolveInfo.activityInfo.packageName;
+            for (Uri uri : cleanedFileUris) {
+                grantUriPermission(packageName, uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            }
+        }
+
+        Intent chooser = Intent.createChooser(shareIntent, getString(R.string.share_chooser_title));
+        // The chooser itself is a separate process; it also needs the flag so it
+        // can forward the URI to whichever app the user picks.
+        chooser.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+        sharingInitiated = true;
+        SentryManager.log("Launching share intent");
+        startActivityForResult(chooser, REQUEST_SHARE);
+    }
+
     /**
      * Called when the share chooser returns. This is the correct place to clean up
      * the temporary file — it fires only after the chooser is fully dismissed, so the
@@ -452,18 +597,21 @@ public class ShareHandlerActivity extends AppCompatActivity {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == REQUEST_SHARE) {
             SentryManager.log("Share chooser returned, cleaning up");
-            cleanupProcessedFile();
+            cleanupProcessedFiles();
             finish();
         }
     }
 
 
     /**
-     * Deletes the temporary processed file from disk.
+     * Deletes the temporary processed files from disk.
      * This is called after sharing completes to avoid saving files to disk.
      */
-    private void cleanupProcessedFile() {
-        if (processedFile != null && processedFile.exists()) {
+    private void cleanupProcessedFiles() {
+        for (File processedFile : processedFiles) {
+            if (!processedFile.exists()) {
+                continue;
+            }
             try {
                 if (processedFile.delete()) {
                     SentryManager.log("Deleted temporary processed file after sharing");
@@ -476,6 +624,7 @@ public class ShareHandlerActivity extends AppCompatActivity {
                 SentryManager.log("Error deleting temporary file: " + e.getMessage());
             }
         }
+        processedFiles.clear();
     }
 
     /**
@@ -510,9 +659,9 @@ public class ShareHandlerActivity extends AppCompatActivity {
         // Make sure to dismiss the dialog to prevent window leaks
         dismissProgressDialog();
         
-        // Clean up the temporary processed file if it still exists
+        // Clean up the temporary processed files if they still exist
         // This is a fallback in case onResume() wasn't called for some reason
-        cleanupProcessedFile();
+        cleanupProcessedFiles();
         
         super.onDestroy();
     }
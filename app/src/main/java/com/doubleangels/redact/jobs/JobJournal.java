@@ -0,0 +1,258 @@
+package com.doubleangels.redact.jobs;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.doubleangels.redact.media.MediaItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SQLite record of every queued clean and convert item and how far it got.
+ *
+ * Items are journaled before any work starts and marked as they run and finish, so when the process
+ * is killed part way through a batch, {@link MediaJobService} picks up the items that never
+ * finished instead of starting the batch again. An item that was running when the process died is
+ * run again from its start. A batch is removed once every item in it has finished.
+ */
+final class JobJournal extends SQLiteOpenHelper {
+
+    /** Metadata stripping into {@code Pictures/Redact} and {@code Movies/Redact}. */
+    static final String KIND_CLEAN = "clean";
+    /** Format conversion; items carry the selected format index. */
+    static final String KIND_CONVERT = "convert";
+
+    static final int STATE_PENDING = 0;
+    static final int STATE_RUNNING = 1;
+    static final int STATE_DONE = 2;
+    static final int STATE_FAILED = 3;
+
+    private static final String DATABASE_NAME = "jobs.db";
+    private static final int DATABASE_VERSION = 2;
+
+    private static final String TABLE_ITEMS = "items";
+    private static final String COLUMN_ID = "_id";
+    private static final String COLUMN_BATCH = "batch";
+    private static final String COLUMN_KIND = "kind";
+    private static final String COLUMN_URI = "uri";
+    private static final String COLUMN_NAME = "name";
+    private static final String COLUMN_VIDEO = "video";
+    private static final String COLUMN_FORMAT = "format";
+    private static final String COLUMN_STATE = "state";
+
+    @Nullable
+    private static volatile JobJournal instance;
+
+    @VisibleForTesting
+    JobJournal(@NonNull Context context, @Nullable String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    /** Returns the app's journal. */
+    @NonNull
+    static JobJournal get(@NonNull Context context) {
+        JobJournal journal = instance;
+        if (journal != null) {
+            return journal;
+        }
+        synchronized (JobJournal.class) {
+            if (instance == null) {
+                instance = new JobJournal(context.getApplicationContext(), DATABASE_NAME);
+            }
+            return instance;
+        }
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ITEMS + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_BATCH + " INTEGER NOT NULL, "
+                + COLUMN_KIND + " TEXT NOT NULL, "
+                + COLUMN_URI + " TEXT NOT NULL, "
+                + COLUMN_NAME + " TEXT, "
+                + COLUMN_VIDEO + " INTEGER NOT NULL, "
+                + COLUMN_FORMAT + " INTEGER NOT NULL, "
+                + COLUMN_STATE + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX items_state ON " + TABLE_ITEMS + " (" + COLUMN_STATE + ", " + COLUMN_BATCH + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ITEMS);
+        onCreate(db);
+    }
+
+    /**
+     * Journals {@code items} as one pending batch.
+     *
+     * @param formatIndex Target format for {@link #KIND_CONVERT} batches, ignored otherwise
+     * @return the batch ID
+     */
+    long enqueue(@NonNull String kind, @NonNull List<MediaItem> items, int formatIndex) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            long batch = DatabaseUtils.longForQuery(db,
+                    "SELECT IFNULL(MAX(" + COLUMN_BATCH + "), 0) + 1 FROM " + TABLE_ITEMS, null);
+            for (MediaItem item : items) {
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_BATCH, batch);
+                values.put(COLUMN_KIND, kind);
+                values.put(COLUMN_URI, item.uri().toString());
+                values.put(COLUMN_NAME, item.fileName());
+                values.put(COLUMN_VIDEO, item.isVideo() ? 1 : 0);
+                values.put(COLUMN_FORMAT, formatIndex);
+                values.put(COLUMN_STATE, STATE_PENDING);
+                db.insertOrThrow(TABLE_ITEMS, null, values);
+            }
+            db.setTransactionSuccessful();
+            return batch;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Puts items that were running when the previous process died back in the queue. Items still
+     * running in this process, such as those of a stopped service whose workers have not exited
+     * yet, are left alone.
+     *
+     * @param live ids of items this process is still running
+     * @return number of items requeued
+     */
+    int requeueInterrupted(@NonNull Collection<Long> live) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_STATE, STATE_PENDING);
+        StringBuilder where = new StringBuilder(COLUMN_STATE + " = " + STATE_RUNNING);
+        if (!live.isEmpty()) {
+            where.append(" AND ").append(COLUMN_ID).append(" NOT IN (");
+            boolean first = true;
+            for (long id : live) {
+                if (!first) {
+                    where.append(", ");
+                }
+                where.append(id);
+                first = false;
+            }
+            where.append(')');
+        }
+        return getWritableDatabase().update(TABLE_ITEMS, values, where.toString(), null);
+    }
+
+    /** Whether any journaled item has not finished. */
+    boolean hasUnfinished() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_ITEMS,
+                COLUMN_STATE + " IN (" + STATE_PENDING + ", " + STATE_RUNNING + ")") > 0;
+    }
+
+    /** The oldest batch with pending items, holding only those items, or null if there is none. */
+    @Nullable
+    Batch nextBatch() {
+        SQLiteDatabase db = getReadableDatabase();
+        long batch;
+        String kind;
+        try (Cursor cursor = db.query(TABLE_ITEMS, new String[] {COLUMN_BATCH, COLUMN_KIND},
+                COLUMN_STATE + " = " + STATE_PENDING, null, null, null, COLUMN_ID, "1")) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            batch = cursor.getLong(0);
+            kind = cursor.getString(1);
+        }
+        List<Entry> entries = new ArrayList<>();
+        try (Cursor cursor = db.query(TABLE_ITEMS,
+                new String[] {COLUMN_ID, COLUMN_URI, COLUMN_NAME, COLUMN_VIDEO, COLUMN_FORMAT},
+                COLUMN_BATCH + " = ? AND " + COLUMN_STATE + " = " + STATE_PENDING,
+                new String[] {Long.toString(batch)}, null, null, COLUMN_ID)) {
+            while (cursor.moveToNext()) {
+                entries.add(new Entry(
+                        cursor.getLong(0),
+                        new MediaItem(Uri.parse(cursor.getString(1)), cursor.getInt(3) != 0, cursor.getString(2)),
+                        cursor.getInt(4)));
+            }
+        }
+        return new Batch(batch, kind, entries);
+    }
+
+    void markRunning(long entryId) {
+        setState(entryId, STATE_RUNNING);
+    }
+
+    void markDone(long entryId) {
+        setState(entryId, STATE_DONE);
+    }
+
+    void markFailed(long entryId) {
+        setState(entryId, STATE_FAILED);
+    }
+
+    /** Items of {@code batch} in {@code state}, including those finished by an earlier process. */
+    int count(long batch, int state) {
+        return (int) DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_ITEMS,
+                COLUMN_BATCH + " = ? AND " + COLUMN_STATE + " = ?",
+                new String[] {Long.toString(batch), Integer.toString(state)});
+    }
+
+    /** Forgets a batch once all its items have finished. */
+    void delete(long batch) {
+        getWritableDatabase().delete(TABLE_ITEMS, COLUMN_BATCH + " = ?", new String[] {Long.toString(batch)});
+    }
+
+    private void setState(long entryId, int state) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_STATE, state);
+        getWritableDatabase().update(TABLE_ITEMS, values, COLUMN_ID + " = ?",
+                new String[] {Long.toString(entryId)});
+    }
+
+    /** Pending items of one batch, in the order they were queued. */
+    static final class Batch {
+        final long id;
+        @NonNull
+        final String kind;
+        @NonNull
+        final List<Entry> entries;
+
+        Batch(long id, @NonNull String kind, @NonNull List<Entry> entries) {
+            this.id = id;
+            this.kind = kind;
+            this.entries = Collections.unmodifiableList(entries);
+        }
+
+        @NonNull
+        List<MediaItem> items() {
+            List<MediaItem> items = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                items.add(entry.item);
+            }
+            return items;
+        }
+    }
+
+    /** One journaled item. */
+    static final class Entry {
+        final long id;
+        @NonNull
+        final MediaItem item;
+        final int formatIndex;
+
+        Entry(long id, @NonNull MediaItem item, int formatIndex) {
+            this.id = id;
+            this.item = item;
+            this.formatIndex = formatIndex;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.doubleangels.redact.jobs;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Where the clean or convert work in {@link MediaJobService} stands, for whichever screen shows
+ * it. Screens call {@link MediaJobService#acknowledge} once they have shown a finished result, so
+ * it is not shown again when they are recreated.
+ */
+public final class JobStatus {
+
+    public enum State {
+        /** Nothing queued, or the last result has been shown */
+        IDLE,
+        /** A batch is being worked through */
+        RUNNING,
+        /** A batch has finished and its result not yet shown */
+        FINISHED
+    }
+
+    static final JobStatus IDLE = new JobStatus(State.IDLE, 0, "", 0, 0);
+
+    @NonNull
+    public final State state;
+    /** 0–100 across the batch while running. */
+    public final int percent;
+    /** Status line while running. */
+    @NonNull
+    public final String message;
+    /** Items saved, counting those finished before a restart. */
+    public final int okCount;
+    /** Items that failed, counting those finished before a restart. */
+    public final int failCount;
+
+    private JobStatus(@NonNull State state, int percent, @NonNull String message, int okCount, int failCount) {
+        this.state = state;
+        this.percent = percent;
+        this.message = message;
+        this.okCount = okCount;
+        this.failCount = failCount;
+    }
+
+    @NonNull
+    static JobStatus running(int percent, @NonNull String message) {
+        return new JobStatus(State.RUNNING, percent, message, 0, 0);
+    }
+
+    @NonNull
+    static JobStatus finished(int okCount, int failCount) {
+        return new JobStatus(State.FINISHED, 100, "", okCount, failCount);
+    }
+}
@@ -0,0 +1,379 @@
+package com.doubleangels.redact.jobs;
+
+import android.app.ForegroundServiceStartNotAllowedException;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.doubleangels.redact.R;
+import com.doubleangels.redact.media.FormatConverter;
+import com.doubleangels.redact.media.MediaItem;
+import com.doubleangels.redact.media.MediaProcessor;
+import com.doubleangels.redact.notifications.LocalNotifications;
+import com.doubleangels.redact.sentry.SentryManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.sentry.ISpan;
+import io.sentry.ITransaction;
+import io.sentry.SpanStatus;
+
+/**
+ * Foreground service that works through the {@link JobJournal}.
+ *
+ * Clean and convert batches are journaled and run here rather than on threads owned by a fragment,
+ * so they keep going when the screen goes away. {@link #resumePending} runs at launch, so after
+ * the process is killed the work continues from the first item that had not finished. The service
+ * is not sticky: a restart by the system would come from the background, where it may not go
+ * foreground. Progress goes to the ongoing notification through {@link LocalNotifications} and
+ * to whichever screen observes {@link #cleanStatus()} or {@link #convertStatus()}.
+ */
+public class MediaJobService extends Service {
+
+    private static final String EXTRA_CONVERT = "convert";
+
+    /** Journal writes and the launch-time check, kept off the UI thread. */
+    private static final ExecutorService JOURNAL_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "redact-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final MutableLiveData<JobStatus> CLEAN_STATUS = new MutableLiveData<>(JobStatus.IDLE);
+    private static final MutableLiveData<JobStatus> CONVERT_STATUS = new MutableLiveData<>(JobStatus.IDLE);
+
+    /**
+     * Journal ids of items some instance of this service is still running. A stopped instance's
+     * workers can outlive it, so a restart in the same process must not requeue these.
+     */
+    private static final Set<Long> LIVE_ITEMS = ConcurrentHashMap.newKeySet();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private ExecutorService worker;
+    private JobJournal journal;
+    private MediaProcessor mediaProcessor;
+    private volatile boolean stopping;
+
+    // Main thread only
+    private boolean draining;
+    private boolean startedWhileDraining;
+
+    /** Journals {@code items} for metadata stripping and starts the service. Call on the UI thread. */
+    public static void enqueueClean(@NonNull Context context, @NonNull List<MediaItem> items) {
+        enqueue(context, JobJournal.KIND_CLEAN, items, 0);
+    }
+
+    /** Journals {@code items} for conversion to {@code formatIndex} and starts the service. Call on the UI thread. */
+    public static void enqueueConvert(@NonNull Context context, @NonNull List<MediaItem> items, int formatIndex) {
+        enqueue(context, JobJournal.KIND_CONVERT, items, formatIndex);
+    }
+
+    /** Restarts the service if an earlier process left journaled work unfinished. */
+    public static void resumePending(@NonNull Context context) {
+        Context app = context.getApplicationContext();
+        JOURNAL_EXECUTOR.execute(() -> {
+            try {
+                if (JobJournal.get(app).hasUnfinished()) {
+                    SentryManager.log("Resuming journaled media jobs");
+                    start(app, false);
+                }
+            } catch (RuntimeException e) {
+                SentryManager.recordException(e);
+            }
+        });
+    }
+
+    @NonNull
+    public static LiveData<JobStatus> cleanStatus() {
+        return CLEAN_STATUS;
+    }
+
+    @NonNull
+    public static LiveData<JobStatus> convertStatus() {
+        return CONVERT_STATUS;
+    }
+
+    /** Marks a finished result as shown. Call on the UI thread. */
+    public static void acknowledge(boolean convert) {
+        MutableLiveData<JobStatus> status = convert ? CONVERT_STATUS : CLEAN_STATUS;
+        JobStatus current = status.getValue();
+        if (current != null && current.state == JobStatus.State.FINISHED) {
+            status.setValue(JobStatus.IDLE);
+        }
+    }
+
+    private static void enqueue(
+            @NonNull Context context, @NonNull String kind, @NonNull List<MediaItem> items, int formatIndex) {
+        Context app = context.getApplicationContext();
+        boolean convert = JobJournal.KIND_CONVERT.equals(kind);
+        List<MediaItem> queued = new ArrayList<>(items);
+        (convert ? CONVERT_STATUS : CLEAN_STATUS).setValue(JobStatus.running(0, ""));
+        JOURNAL_EXECUTOR.execute(() -> {
+            try {
+                JobJournal.get(app).enqueue(kind, queued, formatIndex);
+                start(app, convert);
+            } catch (RuntimeException e) {
+                SentryManager.recordException(e);
+                (convert ? CONVERT_STATUS : CLEAN_STATUS).postValue(JobStatus.finished(0, queued.size()));
+            }
+        });
+    }
+
+    private static void start(@NonNull Context app, boolean convert) {
+        Intent intent = new Intent(app, MediaJobService.class).putExtra(EXTRA_CONVERT, convert);
+        try {
+            ContextCompat.startForegroundService(app, intent);
+        } catch (IllegalStateException e) {
+            // Not allowed from the background; the journal is picked up at next launch
+            SentryManager.log("Media job service could not start: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        journal = JobJournal.get(this);
+        mediaProcessor = new MediaProcessor(this, getMainExecutor());
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "redact-jobs");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int onStartCommand(@Nullable Intent intent, int flags, int startId) {
+        try {
+            goForeground(intent != null && intent.getBooleanExtra(EXTRA_CONVERT, false));
+        } catch (ForegroundServiceStartNotAllowedException e) {
+            // Started from the background; the journal is picked up at next launch
+            SentryManager.log("Media job service not allowed in the foreground: " + e.getMessage());
+            if (!draining) {
+                stopSelf(startId);
+            }
+            return START_NOT_STICKY;
+        }
+        if (draining) {
+            startedWhileDraining = true;
+        } else {
+            draining = true;
+            worker.execute(this::drain);
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onTimeout(int startId, int fgsType) {
+        // Android 15 caps foreground media work; what is left stays journaled for the next launch
+        SentryManager.log("Media job service timed out");
+        stopWork();
+        stopSelf();
+    }
+
+    @Override
+    public void onDestroy() {
+        stopWork();
+        super.onDestroy();
+    }
+
+    /** Interrupts the drain and the processor's workers; items they were on stay journaled. */
+    private void stopWork() {
+        stopping = true;
+        mediaProcessor.cancel();
+        worker.shutdownNow();
+    }
+
+    private void goForeground(boolean convert) {
+        int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.VANILLA_ICE_CREAM
+                ? ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PROCESSING
+                : ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC;
+        startForeground(LocalNotifications.jobNotificationId(convert),
+                LocalNotifications.jobNotification(this, convert), type);
+    }
+
+    /** Runs every journaled batch in order, then stops the service. Worker thread. */
+    private void drain() {
+        try {
+            int requeued = journal.requeueInterrupted(LIVE_ITEMS);
+            if (requeued > 0) {
+                SentryManager.log("Requeued " + requeued + " interrupted job items");
+            }
+            JobJournal.Batch batch;
+            while ((batch = journal.nextBatch()) != null) {
+                boolean convert = JobJournal.KIND_CONVERT.equals(batch.kind);
+                goForeground(convert);
+                if (convert) {
+                    runConvert(batch);
+                } else {
+                    runClean(batch);
+                }
+                journal.delete(batch.id);
+            }
+        } catch (InterruptedException e) {
+            // Service destroyed; unfinished items stay journaled
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            SentryManager.recordException(e);
+        }
+        mainHandler.post(this::onDrained);
+    }
+
+    private void onDrained() {
+        if (startedWhileDraining) {
+            startedWhileDraining = false;
+            worker.execute(this::drain);
+            return;
+        }
+        draining = false;
+        stopForeground(STOP_FOREGROUND_DETACH);
+        stopSelf();
+    }
+
+    /** Cleans the batch on the processor's worker pools and waits for it. */
+    private void runClean(@NonNull JobJournal.Batch batch) throws InterruptedException {
+        List<JobJournal.Entry> entries = batch.entries;
+        CountDownLatch complete = new CountDownLatch(1);
+        CLEAN_STATUS.postValue(JobStatus.running(0, ""));
+        mediaProcessor.processMediaItems(batch.items(), new MediaProcessor.ProcessingCallback() {
+            @Override
+            public void onProgress(int overallPercent, String message) {
+                CLEAN_STATUS.setValue(JobStatus.running(overallPercent, message));
+                LocalNotifications.updateCleanProgress(MediaJobService.this, overallPercent, message);
+            }
+
+            @Override
+            public void onComplete(int processedCount) {
+                complete.countDown();
+            }
+
+            @Override
+            public void onItemStarted(int itemIndex) {
+                long id = entries.get(itemIndex).id;
+                LIVE_ITEMS.add(id);
+                journal.markRunning(id);
+            }
+
+            @Override
+            public void onItemFinished(int itemIndex, Uri outputUri) {
+                long id = entries.get(itemIndex).id;
+                try {
+                    if (outputUri != null) {
+                        journal.markDone(id);
+                    } else if (!stopping) {
+                        journal.markFailed(id);
+                    }
+                    // A failure after the service stopped is likely the interrupt; leave it
+                    // running so the next start requeues it
+                } finally {
+                    LIVE_ITEMS.remove(id);
+                }
+            }
+        });
+        complete.await();
+
+        int okCount = journal.count(batch.id, JobJournal.STATE_DONE);
+        int failCount = journal.count(batch.id, JobJournal.STATE_FAILED);
+        SentryManager.setCustomKey("processed_count", okCount);
+        LocalNotifications.showCleanComplete(this, okCount);
+        CLEAN_STATUS.postValue(JobStatus.finished(okCount, failCount));
+    }
+
+    /**
+     * Converts the batch one item at a time.
+     *
+     * @throws InterruptedException if the service was destroyed; the item in flight stays running
+     *                              in the journal and is requeued at the next start
+     */
+    private void runConvert(@NonNull JobJournal.Batch batch) throws InterruptedException {
+        ITransaction transaction = SentryManager.startTransaction("convert_multiple", "task");
+        int total = batch.entries.size();
+        try {
+            for (int i = 0; i < total; i++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("Conversion stopped");
+                }
+                JobJournal.Entry entry = batch.entries.get(i);
+                Uri uri = entry.item.uri();
+                String name = entry.item.fileName();
+                final int index = i + 1;
+                ISpan span = transaction.startChild("convert_item", name != null ? name : "unknown");
+                int overallStart = (i * 100) / total;
+                publishConvertProgress(overallStart, getString(R.string.convert_progress_item, index, total));
+                LIVE_ITEMS.add(entry.id);
+                journal.markRunning(entry.id);
+                try {
+                    if (entry.item.isVideo()) {
+                        FormatConverter.convertVideoToMovies(this, uri, name, entry.formatIndex, p ->
+                                publishConvertProgress(
+                                        ((index - 1) * 100 + p) / total,
+                                        getString(R.string.convert_progress_detail, index, total, name,
+                                                getString(R.string.convert_transcoding_percent, p))));
+                    } else {
+                        publishConvertProgress(overallStart,
+                                getString(R.string.convert_progress_detail, index, total, name,
+                                        getString(R.string.convert_encoding_image)));
+                        FormatConverter.convertImageToPictures(
+                                this, uri, FormatConverter.formatAtIndex(entry.formatIndex), name);
+                    }
+                    journal.markDone(entry.id);
+                    span.setStatus(SpanStatus.OK);
+                } catch (Exception e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        // The converters report interruption as an IOException
+                        span.setStatus(SpanStatus.CANCELLED);
+                        throw new InterruptedException("Conversion stopped");
+                    }
+                    journal.markFailed(entry.id);
+                    SentryManager.recordException(e);
+                    span.setStatus(SpanStatus.INTERNAL_ERROR);
+                } finally {
+                    LIVE_ITEMS.remove(entry.id);
+                    span.finish();
+                }
+                publishConvertProgress((index * 100) / total, getString(R.string.convert_progress_item, index, total));
+            }
+        } finally {
+            transaction.finish();
+        }
+
+        int okCount = journal.count(batch.id, JobJournal.STATE_DONE);
+        int failCount = journal.count(batch.id, JobJournal.STATE_FAILED);
+        SentryManager.log("Conversion complete: ok=" + okCount + ", fail=" + failCount);
+        LocalNotifications.showConversionComplete(this, okCount, failCount);
+        CONVERT_STATUS.postValue(JobStatus.finished(okCount, failCount));
+    }
+
+    private void publishConvertProgress(int percent, @NonNull String message) {
+        CONVERT_STATUS.postValue(JobStatus.running(percent, message));
+        LocalNotifications.updateConversionProgress(this, percent, message);
+    }
+}
@@ -0,0 +1,82 @@
+package com.doubleangels.redact.media;
+
+import android.content.Context;
+import android.media.MediaFormat;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide count of the video encoder sessions the device can run at once.
+ *
+ * Batch cleaning runs several videos side by side and each may split its transcode into concurrent
+ * segments, so neither can size itself alone. Every export takes a permit before it starts an
+ * encoder: a single-pass export waits for one, and a segmented export only adds the extra permits
+ * that are free at the time. Codec allocation therefore never fails part way through because
+ * another video got there first.
+ */
+public final class EncoderBudget {
+
+    @Nullable
+    private static volatile EncoderBudget instance;
+
+    private final int sessions;
+    private final Semaphore permits;
+
+    @VisibleForTesting
+    EncoderBudget(int sessions) {
+        this.sessions = Math.max(1, sessions);
+        this.permits = new Semaphore(this.sessions, true);
+    }
+
+    /** Returns the budget for this device, sized by its hardware H.264 encoder instances. */
+    @NonNull
+    public static EncoderBudget get(@NonNull Context context) {
+        EncoderBudget budget = instance;
+        if (budget != null) {
+            return budget;
+        }
+        synchronized (EncoderBudget.class) {
+            if (instance == null) {
+                instance = new EncoderBudget(EncoderCapabilities.get(context)
+                        .hardwareInstances(MediaFormat.MIMETYPE_VIDEO_AVC));
+            }
+            return instance;
+        }
+    }
+
+    /** Total encoder sessions, whether in use or not. */
+    public int sessions() {
+        return sessions;
+    }
+
+    /** Waits for one encoder session. */
+    void acquire() throws InterruptedException {
+        permits.acquire();
+    }
+
+    /**
+     * Takes up to {@code count} sessions that are free right now, without waiting. Exports already
+     * waiting for a session are served first.
+     *
+     * @return number of sessions taken
+     */
+    int tryAcquireUpTo(int count) throws InterruptedException {
+        int taken = 0;
+        while (taken < count && permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+            taken++;
+        }
+        return taken;
+    }
+
+    /** Returns {@code count} sessions taken with {@link #acquire} or {@link #tryAcquireUpTo}. */
+    void release(int count) {
+        if (count > 0) {
+            permits.release(count);
+        }
+    }
+}
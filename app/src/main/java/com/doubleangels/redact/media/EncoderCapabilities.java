@@ -0,0 +1,317 @@
+package com.doubleangels.redact.media;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.doubleangels.redact.sentry.SentryManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The video encoders this device has, with the limits that decide whether an export can use them.
+ *
+ * Enumerating {@link MediaCodecList} loads every codec's capability tables and takes long enough to
+ * notice, yet its answer only changes with a system update. The table is built once, stored in
+ * preferences under the build fingerprint, and read back from there until the fingerprint changes.
+ */
+public final class EncoderCapabilities {
+
+    private static final String PREFS_NAME = "redact_encoder_capabilities";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_ENCODERS = "encoders";
+
+    /**
+     * Frame sizes, long side by short side, at which each encoder's highest frame rate is stored.
+     * Encoders are limited by block throughput, so the rate they sustain falls as frames grow and
+     * neither the size bounds nor the overall top rate say whether a given pair works.
+     */
+    @VisibleForTesting
+    static final int[][] REFERENCE_SIZES = {
+            {1280, 720}, {1920, 1080}, {2560, 1440}, {3840, 2160}, {7680, 4320}};
+
+    @Nullable
+    private static volatile EncoderCapabilities instance;
+
+    @NonNull
+    private final List<Encoder> encoders;
+
+    @VisibleForTesting
+    EncoderCapabilities(@NonNull List<Encoder> encoders) {
+        this.encoders = Collections.unmodifiableList(new ArrayList<>(encoders));
+    }
+
+    /**
+     * Returns the table for this device, enumerating the codecs only if none is stored for the
+     * current build.
+     */
+    @NonNull
+    public static EncoderCapabilities get(@NonNull Context context) {
+        EncoderCapabilities capabilities = instance;
+        if (capabilities != null) {
+            return capabilities;
+        }
+        synchronized (EncoderCapabilities.class) {
+            if (instance == null) {
+                instance = load(context.getApplicationContext());
+            }
+            return instance;
+        }
+    }
+
+    /** Every video encoder on the device, in {@link MediaCodecList} order. */
+    @NonNull
+    public List<Encoder> encoders() {
+        return encoders;
+    }
+
+    /**
+     * Whether some encoder for {@code mimeType} accepts {@code width} × {@code height} frames at
+     * {@code frameRate}, in either orientation. Unknown dimensions (0) only require an encoder
+     * that reaches the rate at some size.
+     */
+    public boolean canEncode(@NonNull String mimeType, int width, int height, int frameRate) {
+        for (Encoder encoder : encoders) {
+            if (!encoder.mimeType.equalsIgnoreCase(mimeType)) {
+                continue;
+            }
+            if (width <= 0 || height <= 0) {
+                if (encoder.maxFrameRate >= frameRate) {
+                    return true;
+                }
+            } else if (encoder.frameRateFor(width, height) >= frameRate
+                    || encoder.frameRateFor(height, width) >= frameRate) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Concurrent sessions the hardware encoders for {@code mimeType} support, or 1 if the type is
+     * only encoded in software.
+     */
+    public int hardwareInstances(@NonNull String mimeType) {
+        int instances = 1;
+        for (Encoder encoder : encoders) {
+            if (encoder.hardware && encoder.mimeType.equalsIgnoreCase(mimeType)) {
+                instances = Math.max(instances, encoder.maxInstances);
+            }
+        }
+        return instances;
+    }
+
+    @NonNull
+    private static EncoderCapabilities load(@NonNull Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (Build.FINGERPRINT.equals(prefs.getString(KEY_FINGERPRINT, null))) {
+            try {
+                return decode(prefs.getString(KEY_ENCODERS, ""));
+            } catch (IllegalArgumentException e) {
+                SentryManager.log("Stored encoder capabilities unreadable: " + e.getMessage());
+            }
+        }
+        EncoderCapabilities capabilities = enumerate();
+        prefs.edit()
+                .putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+                .putString(KEY_ENCODERS, capabilities.encode())
+                .apply();
+        return capabilities;
+    }
+
+    @NonNull
+    private static EncoderCapabilities enumerate() {
+        List<Encoder> encoders = new ArrayList<>();
+        try {
+            for (MediaCodecInfo codec : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+                if (!codec.isEncoder()) {
+                    continue;
+                }
+                for (String type : codec.getSupportedTypes()) {
+                    if (!type.toLowerCase(Locale.ROOT).startsWith("video/")) {
+                        continue;
+                    }
+                    MediaCodecInfo.CodecCapabilities caps = codec.getCapabilitiesForType(type);
+                    MediaCodecInfo.VideoCapabilities video = caps.getVideoCapabilities();
+                    if (video == null) {
+                        continue;
+                    }
+                    int maxWidth = video.getSupportedWidths().getUpper();
+                    int maxHeight = video.getSupportedHeights().getUpper();
+                    int[] landscapeFrameRates = new int[REFERENCE_SIZES.length];
+                    int[] portraitFrameRates = new int[REFERENCE_SIZES.length];
+                    for (int i = 0; i < REFERENCE_SIZES.length; i++) {
+                        int longSide = REFERENCE_SIZES[i][0];
+                        int shortSide = REFERENCE_SIZES[i][1];
+                        // Clamped to the bounds, the size still covers every frame in this bucket
+                        // that fits at all, so the rate stored never overstates what they get
+                        landscapeFrameRates[i] = frameRateAt(video,
+                                Math.min(longSide, maxWidth), Math.min(shortSide, maxHeight));
+                        portraitFrameRates[i] = frameRateAt(video,
+                                Math.min(shortSide, maxWidth), Math.min(longSide, maxHeight));
+                    }
+                    encoders.add(new Encoder(
+                            type,
+                            codec.isHardwareAccelerated(),
+                            maxWidth,
+                            maxHeight,
+                            video.getSupportedFrameRates().getUpper(),
+                            caps.getMaxSupportedInstances(),
+                            landscapeFrameRates,
+                            portraitFrameRates));
+                }
+            }
+        } catch (RuntimeException e) {
+            SentryManager.log("Could not query video encoders: " + e.getMessage());
+        }
+        return new EncoderCapabilities(encoders);
+    }
+
+    /** Highest whole frame rate {@code video} supports for {@code width} × {@code height}, or 0. */
+    private static int frameRateAt(@NonNull MediaCodecInfo.VideoCapabilities video, int width, int height) {
+        if (!video.isSizeSupported(width, height)) {
+            return 0;
+        }
+        return (int) Math.floor(video.getSupportedFrameRatesFor(width, height).getUpper());
+    }
+
+    /**
+     * One encoder per line: MIME type, hardware flag, max width, max height, max fps, instances,
+     * then the landscape and portrait rates at {@link #REFERENCE_SIZES}, separated by semicolons.
+     */
+    @NonNull
+    @VisibleForTesting
+    String encode() {
+        StringBuilder out = new StringBuilder();
+        for (Encoder encoder : encoders) {
+            out.append(encoder.mimeType).append(',')
+                    .append(encoder.hardware ? 1 : 0).append(',')
+                    .append(encoder.maxWidth).append(',')
+                    .append(encoder.maxHeight).append(',')
+                    .append(encoder.maxFrameRate).append(',')
+                    .append(encoder.maxInstances).append(',')
+                    .append(joinRates(encoder.landscapeFrameRates)).append(',')
+                    .append(joinRates(encoder.portraitFrameRates)).append('\n');
+        }
+        return out.toString();
+    }
+
+    @NonNull
+    private static String joinRates(@NonNull int[] rates) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < rates.length; i++) {
+            if (i > 0) {
+                out.append(';');
+            }
+            out.append(rates[i]);
+        }
+        return out.toString();
+    }
+
+    @NonNull
+    private static int[] parseRates(@NonNull String field) {
+        String[] parts = field.split(";");
+        if (parts.length != REFERENCE_SIZES.length) {
+            throw new IllegalArgumentException("Bad frame rate list: " + field);
+        }
+        int[] rates = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            rates[i] = Integer.parseInt(parts[i]);
+        }
+        return rates;
+    }
+
+    /**
+     * Parses {@link #encode} output.
+     *
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    @NonNull
+    @VisibleForTesting
+    static EncoderCapabilities decode(@NonNull String encoded) {
+        List<Encoder> encoders = new ArrayList<>();
+        for (String line : encoded.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 8) {
+                throw new IllegalArgumentException("Bad encoder line: " + line);
+            }
+            encoders.add(new Encoder(
+                    fields[0],
+                    "1".equals(fields[1]),
+                    Integer.parseInt(fields[2]),
+                    Integer.parseInt(fields[3]),
+                    Integer.parseInt(fields[4]),
+                    Integer.parseInt(fields[5]),
+                    parseRates(fields[6]),
+                    parseRates(fields[7])));
+        }
+        return new EncoderCapabilities(encoders);
+    }
+
+    /** Limits of one encoder for one MIME type. */
+    public static final class Encoder {
+        @NonNull
+        public final String mimeType;
+        public final boolean hardware;
+        public final int maxWidth;
+        public final int maxHeight;
+        public final int maxFrameRate;
+        public final int maxInstances;
+        /** Highest frame rate for landscape frames up to each of {@link #REFERENCE_SIZES}. */
+        @NonNull
+        private final int[] landscapeFrameRates;
+        /** Highest frame rate for portrait frames up to each of {@link #REFERENCE_SIZES}. */
+        @NonNull
+        private final int[] portraitFrameRates;
+
+        @VisibleForTesting
+        Encoder(@NonNull String mimeType, boolean hardware, int maxWidth, int maxHeight,
+                int maxFrameRate, int maxInstances, @NonNull int[] landscapeFrameRates,
+                @NonNull int[] portraitFrameRates) {
+            this.mimeType = mimeType;
+            this.hardware = hardware;
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+            this.maxFrameRate = maxFrameRate;
+            this.maxInstances = maxInstances;
+            this.landscapeFrameRates = landscapeFrameRates.clone();
+            this.portraitFrameRates = portraitFrameRates.clone();
+        }
+
+        boolean fits(int width, int height) {
+            return width <= maxWidth && height <= maxHeight;
+        }
+
+        /**
+         * Highest frame rate for {@code width} × {@code height} frames, read from the smallest
+         * reference size that covers them, or 0 if they do not fit.
+         */
+        int frameRateFor(int width, int height) {
+            if (!fits(width, height)) {
+                return 0;
+            }
+            int[] rates = width >= height ? landscapeFrameRates : portraitFrameRates;
+            int longSide = Math.max(width, height);
+            int shortSide = Math.min(width, height);
+            for (int i = 0; i < REFERENCE_SIZES.length; i++) {
+                if (REFERENCE_SIZES[i][0] >= longSide && REFERENCE_SIZES[i][1] >= shortSide) {
+                    return rates[i];
+                }
+            }
+            // Beyond the largest reference size; its rate is the closest bound stored
+            return rates[rates.length - 1];
+        }
+    }
+}
@@ -304,9 +304,13 @@ public final class FormatConverter {
             int formatIndex,
             @Nullable VideoMedia3Converter.TranscodeProgressListener progressListener)
             throws IOException {
+        MediaProbe probe = MediaProbe.probe(context, sourceUri);
+        if (probe != null && !probe.hasVideo()) {
+            throw new IOException("Source has no video track");
+        }
         try {
             return VideoMedia3Converter.transcodeToGallery(
-                    context, sourceUri, baseDisplayName, formatIndex, progressListener);
+                    context, sourceUri, baseDisplayName, formatIndex, probe, progressListener);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new IOException("Video conversion interrupted", e);
@@ -0,0 +1,355 @@
+package com.doubleangels.redact.media;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.PersistableBundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.doubleangels.redact.sentry.SentryManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Container and track summary of a video, read with a single {@link MediaExtractor} open.
+ *
+ * Format detection, remuxing, transcoding and the metadata screen all need the same handful of
+ * facts about a clip, and each extractor open costs tens to hundreds of milliseconds of native
+ * setup. {@link #probe} keeps recent results keyed by URI, size and modification time, so a clip is
+ * opened once however many of those steps run, and a file that changes under the same URI is probed
+ * again.
+ */
+public final class MediaProbe {
+
+    /** Probes kept in memory; a batch rarely has more clips in flight than this. */
+    private static final int CACHE_SIZE = 32;
+
+    private static final Map<Key, MediaProbe> CACHE = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, MediaProbe> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    @Nullable
+    private final String containerMime;
+    @NonNull
+    private final List<String> trackMimes;
+    @Nullable
+    private final String videoMime;
+    @Nullable
+    private final String audioMime;
+    private final int width;
+    private final int height;
+    private final int videoProfile;
+    private final int rotation;
+    private final long durationUs;
+    private final long sizeBytes;
+    private final long bitrate;
+
+    @VisibleForTesting
+    MediaProbe(
+            @Nullable String containerMime,
+            @NonNull List<String> trackMimes,
+            int width,
+            int height,
+            int videoProfile,
+            int rotation,
+            long durationUs,
+            long sizeBytes,
+            long bitrate) {
+        this.containerMime = containerMime;
+        this.trackMimes = Collections.unmodifiableList(new ArrayList<>(trackMimes));
+        this.videoMime = firstWithPrefix(trackMimes, "video/");
+        this.audioMime = firstWithPrefix(trackMimes, "audio/");
+        this.width = width;
+        this.height = height;
+        this.videoProfile = videoProfile;
+        this.rotation = rotation;
+        this.durationUs = durationUs;
+        this.sizeBytes = sizeBytes;
+        this.bitrate = bitrate;
+    }
+
+    /**
+     * Returns the probe for {@code uri}, opening the source only if there is no cached probe for
+     * its current size and modification time.
+     *
+     * @return the probe, or null if the source cannot be opened or parsed
+     */
+    @Nullable
+    public static MediaProbe probe(@NonNull Context context, @NonNull Uri uri) {
+        Key key = keyFor(context.getContentResolver(), uri);
+        if (key != null) {
+            MediaProbe cached = cached(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        MediaProbe probe = open(context, uri, key != null ? key.size : -1);
+        if (probe != null && key != null) {
+            synchronized (CACHE) {
+                CACHE.put(key, probe);
+            }
+        }
+        return probe;
+    }
+
+    /** Drops every cached probe. */
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    @Nullable
+    @VisibleForTesting
+    static MediaProbe cached(@NonNull Key key) {
+        synchronized (CACHE) {
+            return CACHE.get(key);
+        }
+    }
+
+    @VisibleForTesting
+    static void remember(@NonNull Key key, @NonNull MediaProbe probe) {
+        synchronized (CACHE) {
+            CACHE.put(key, probe);
+        }
+    }
+
+    /** Container MIME type reported by the extractor, e.g. {@code video/mp4}, or null if unknown. */
+    @Nullable
+    public String containerMime() {
+        return containerMime;
+    }
+
+    /** MIME type of every track, in extractor order. */
+    @NonNull
+    public List<String> trackMimes() {
+        return trackMimes;
+    }
+
+    /** Codec MIME type of the first video track, or null if there is none. */
+    @Nullable
+    public String videoMime() {
+        return videoMime;
+    }
+
+    /** Codec MIME type of the first audio track, or null if there is none. */
+    @Nullable
+    public String audioMime() {
+        return audioMime;
+    }
+
+    public boolean hasVideo() {
+        return videoMime != null;
+    }
+
+    public boolean hasAudio() {
+        return audioMime != null;
+    }
+
+    /** Coded width of the first video track, or 0 if unknown. */
+    public int width() {
+        return width;
+    }
+
+    /** Coded height of the first video track, or 0 if unknown. */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Codec profile of the first video track as a {@code MediaCodecInfo.CodecProfileLevel}
+     * constant, or -1 if the container does not declare it.
+     */
+    public int videoProfile() {
+        return videoProfile;
+    }
+
+    /** Display rotation of the first video track in degrees. */
+    public int rotation() {
+        return rotation;
+    }
+
+    /** Longest track duration in microseconds, or -1 if unknown. */
+    public long durationUs() {
+        return durationUs;
+    }
+
+    /** Source size in bytes, or -1 if unknown. */
+    public long sizeBytes() {
+        return sizeBytes;
+    }
+
+    /** Overall bitrate in bits per second, or -1 if unknown. */
+    public long bitrate() {
+        return bitrate;
+    }
+
+    /**
+     * Reads the tracks of {@code uri}. Rotation is read from the track format; the retriever is
+     * only opened for the containers whose extractor does not report it.
+     */
+    @Nullable
+    private static MediaProbe open(@NonNull Context context, @NonNull Uri uri, long sizeBytes) {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(context, uri, null);
+            List<String> mimes = new ArrayList<>();
+            int width = 0;
+            int height = 0;
+            int profile = -1;
+            Integer rotation = null;
+            long durationUs = -1;
+            long trackBitrate = 0;
+            boolean videoSeen = false;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat format = extractor.getTrackFormat(i);
+                String mime = format.getString(MediaFormat.KEY_MIME);
+                if (mime == null) {
+                    continue;
+                }
+                mimes.add(mime);
+                if (format.containsKey(MediaFormat.KEY_DURATION)) {
+                    durationUs = Math.max(durationUs, format.getLong(MediaFormat.KEY_DURATION));
+                }
+                if (trackBitrate >= 0) {
+                    trackBitrate = format.containsKey(MediaFormat.KEY_BIT_RATE)
+                            ? trackBitrate + format.getInteger(MediaFormat.KEY_BIT_RATE)
+                            : -1;
+                }
+                if (mime.startsWith("video/") && !videoSeen) {
+                    videoSeen = true;
+                    width = format.getInteger(MediaFormat.KEY_WIDTH, 0);
+                    height = format.getInteger(MediaFormat.KEY_HEIGHT, 0);
+                    profile = format.getInteger(MediaFormat.KEY_PROFILE, -1);
+                    if (format.containsKey(MediaFormat.KEY_ROTATION)) {
+                        rotation = format.getInteger(MediaFormat.KEY_ROTATION);
+                    }
+                }
+            }
+            if (mimes.isEmpty()) {
+                return null;
+            }
+            if (videoSeen && rotation == null) {
+                rotation = retrieverRotation(context, uri);
+            }
+            long bitrate = bitrate(trackBitrate, sizeBytes, durationUs);
+            return new MediaProbe(containerMime(extractor), mimes, width, height, profile,
+                    rotation != null ? rotation : 0, durationUs, sizeBytes, bitrate);
+        } catch (Exception e) {
+            SentryManager.log("Media probe failed: " + e.getMessage());
+            return null;
+        } finally {
+            try {
+                extractor.release();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    @Nullable
+    private static String containerMime(@NonNull MediaExtractor extractor) {
+        try {
+            PersistableBundle metrics = extractor.getMetrics();
+            return metrics != null ? metrics.getString(MediaExtractor.MetricsConstants.MIME_TYPE) : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Integer retrieverRotation(@NonNull Context context, @NonNull Uri uri) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, uri);
+            String rotation = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION);
+            return rotation != null ? Integer.parseInt(rotation) : null;
+        } catch (Exception e) {
+            return null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    /**
+     * Sum of the per-track bitrates when every track declares one, otherwise the average over the
+     * whole file.
+     */
+    @VisibleForTesting
+    static long bitrate(long trackBitrate, long sizeBytes, long durationUs) {
+        if (trackBitrate > 0) {
+            return trackBitrate;
+        }
+        if (sizeBytes > 0 && durationUs > 0) {
+            return sizeBytes * 8L * 1_000_000L / durationUs;
+        }
+        return -1;
+    }
+
+    /**
+     * Cache key for the current version of {@code uri}, or null if neither its size nor its
+     * modification time can be read, in which case a cached probe could be stale.
+     */
+    @Nullable
+    private static Key keyFor(@NonNull ContentResolver resolver, @NonNull Uri uri) {
+        SourceVersion version = SourceVersion.of(resolver, uri);
+        return version != null ? new Key(uri.toString(), version.size, version.modified) : null;
+    }
+
+    @Nullable
+    private static String firstWithPrefix(@NonNull List<String> mimes, @NonNull String prefix) {
+        for (String mime : mimes) {
+            if (mime.startsWith(prefix)) {
+                return mime;
+            }
+        }
+        return null;
+    }
+
+    /** A URI at a particular size and modification time. */
+    @VisibleForTesting
+    static final class Key {
+        final String uri;
+        final long size;
+        final long modified;
+
+        Key(@NonNull String uri, long size, long modified) {
+            this.uri = uri;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return size == other.size && modified == other.modified && uri.equals(other.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(uri, size, modified);
+        }
+    }
+}
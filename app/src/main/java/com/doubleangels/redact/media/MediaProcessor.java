@@ -1,15 +1,24 @@
 package com.doubleangels.redact.media;
 
 import android.app.Activity;
+import android.content.Context;
 import android.net.Uri;
+import android.os.Process;
 import android.util.Log;
 
 import com.doubleangels.redact.R;
 import com.doubleangels.redact.metadata.MetadataStripper;
+import com.doubleangels.redact.metadata.StripRequest;
 import com.doubleangels.redact.sentry.SentryManager;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import io.sentry.ISpan;
 import io.sentry.ITransaction;
@@ -18,18 +27,31 @@ import io.sentry.SpanStatus;
 /**
  * Handles the processing of media files (images and videos) to strip metadata.
  *
- * This class encapsulates the workflow for processing multiple media items in the background,
- * reporting progress to the UI, and handling any errors that occur during processing.
+ * This class encapsulates the workflow for processing multiple media items in the background on
+ * bounded worker pools, reporting aggregated progress to the UI, and handling any errors that
+ * occur during processing.
  * It uses MetadataStripper to perform the actual metadata removal operations.
  */
 public class MediaProcessor {
     private static final String TAG = "MediaProcessor";
 
-    /** Utility for stripping metadata from images and videos */
-    private final MetadataStripper metadataStripper;
+    /**
+     * Heap reserved per image worker: a {@code MAX_BITMAP_SIZE} (4096²) ARGB decode plus its
+     * re-encode buffer, for items that fall back to the decode path.
+     */
+    private static final long IMAGE_WORKER_HEAP_BYTES = 96L * 1024 * 1024;
+
+    /** Upper bound on concurrent video items regardless of reported codec instances. */
+    private static final int MAX_VIDEO_PARALLELISM = 2;
+
+    /** Context for strings and the stripper */
+    private final Context context;
 
-    /** The activity context used for UI thread operations */
-    private final Activity activity;
+    /** Runs progress and completion callbacks, normally on the UI thread */
+    private final Executor callbackExecutor;
+
+    /** Stateless stripper shared by all workers; each item runs as its own request */
+    private final MetadataStripper metadataStripper;
 
     /** Stores the URI of the most recently processed file */
     private volatile Uri lastProcessedFileUri;
@@ -37,6 +59,10 @@ public class MediaProcessor {
     /** Prevents overlapping batch processing from multiple strip invocations */
     private final AtomicBoolean processing = new AtomicBoolean(false);
 
+    /** Pools of the batch in progress, kept so {@link #cancel} can stop them */
+    private volatile ExecutorService activeImagePool;
+    private volatile ExecutorService activeVideoPool;
+
     /**
      * Callback interface for reporting processing progress and completion.
      * Implementations should handle updating the UI accordingly.
@@ -56,6 +82,23 @@ public class MediaProcessor {
          * @param processedCount The number of items successfully processed
          */
         void onComplete(int processedCount);
+
+        /**
+         * Called on the worker thread just before an item is cleaned.
+         *
+         * @param itemIndex Index of the item in the list passed to {@link #processMediaItems}
+         */
+        default void onItemStarted(int itemIndex) {
+        }
+
+        /**
+         * Called on the worker thread once an item has been cleaned or has failed.
+         *
+         * @param itemIndex Index of the item in the list passed to {@link #processMediaItems}
+         * @param outputUri The saved copy, or null if the item failed
+         */
+        default void onItemFinished(int itemIndex, Uri outputUri) {
+        }
     }
 
     /**
@@ -64,8 +107,19 @@ public class MediaProcessor {
      * @param activity The activity context for UI thread operations
      */
     public MediaProcessor(Activity activity) {
-        this.activity = activity;
-        this.metadataStripper = new MetadataStripper(activity);
+        this(activity, activity::runOnUiThread);
+    }
+
+    /**
+     * Creates a MediaProcessor that is not tied to an activity, such as one owned by a service.
+     *
+     * @param context          Context for strings and media access
+     * @param callbackExecutor Runs progress and completion callbacks
+     */
+    public MediaProcessor(Context context, Executor callbackExecutor) {
+        this.context = context;
+        this.callbackExecutor = callbackExecutor;
+        this.metadataStripper = new MetadataStripper(context);
     }
 
     /**
@@ -78,90 +132,213 @@ public class MediaProcessor {
     }
 
     /**
-     * Processes a list of media items in a background thread, stripping metadata.
+     * Processes a list of media items in the background, stripping metadata.
      *
-     * This method launches a background thread to process each media item, stripping
-     * either image EXIF data or video metadata depending on the item type. Progress
-     * is reported through the callback interface, which will be called on the UI thread.
+     * Images and videos run on separate bounded pools: images in parallel up to the number of
+     * cores (capped by how many full-size decodes fit in the heap), videos up to the number of
+     * hardware codec sessions the device can run at once. Each item runs as its own
+     * {@link StripRequest}, so items never share per-operation state. Progress is aggregated
+     * across all in-flight items and reported through the callback on the UI thread.
      *
      * @param items The list of media items to process
      * @param callback The callback to report progress and completion
      */
     public void processMediaItems(List<MediaItem> items, ProcessingCallback callback) {
+        processItems(items, false, callback);
+    }
+
+    /**
+     * Like {@link #processMediaItems}, but writes each cleaned copy to the share cache instead of
+     * the gallery. {@link ProcessingCallback#onItemFinished} receives the FileProvider URIs.
+     *
+     * @param items The list of media items to process
+     * @param callback The callback to report progress and completion
+     */
+    public void processMediaItemsForSharing(List<MediaItem> items, ProcessingCallback callback) {
+        processItems(items, true, callback);
+    }
+
+    private void processItems(List<MediaItem> items, boolean forSharing, ProcessingCallback callback) {
         if (items == null || items.isEmpty()) {
             return;
         }
         if (!processing.compareAndSet(false, true)) {
             return;
         }
-        new Thread(() -> {
-            ITransaction transaction = SentryManager.startTransaction("clean_multiple", "task");
-            try {
-                int totalItems = items.size();
-                int successCount = 0;
-
-                for (int index = 0; index < totalItems; index++) {
-                    MediaItem item = items.get(index);
-                    ISpan span = transaction.startChild("clean_item", "media_item");
-                    final int itemIndex = index;
-                    String batchLine =
-                            activity.getString(
-                                    R.string.clean_progress_batch,
-                                    index + 1,
-                                    totalItems,
-                                    item.fileName());
-
-                    try {
-                        metadataStripper.setProgressCallback(
-                                (percentOfCurrentItem, message) -> {
-                                    int overall =
-                                            totalItems > 0
-                                                    ? (itemIndex * 100 + percentOfCurrentItem) / totalItems
-                                                    : 0;
-                                    String combined = batchLine + "\n" + message;
-                                    activity.runOnUiThread(
-                                            () -> callback.onProgress(overall, combined));
-                                });
-
-                        activity.runOnUiThread(
-                                () -> callback.onProgress(
-                                        totalItems > 0 ? (itemIndex * 100) / totalItems : 0,
-                                        batchLine));
-
-                        Uri processedUri;
-                        if (item.isVideo()) {
-                            processedUri = metadataStripper.stripVideoMetadata(item.uri(), item.fileName());
-                        } else {
-                            processedUri = metadataStripper.stripExifData(item.uri(), item.fileName());
-                        }
-
-                        metadataStripper.setProgressCallback(null);
-
-                        if (processedUri != null) {
-                            lastProcessedFileUri = processedUri;
-                            successCount++;
-                            span.setStatus(SpanStatus.OK);
-                        } else {
-                            Log.e(TAG, "Failed to process item: " + item.fileName());
-                            SentryManager.log("Failed to process item: " + item.fileName());
-                            span.setStatus(SpanStatus.INTERNAL_ERROR);
-                        }
-                    } catch (Exception e) {
-                        metadataStripper.setProgressCallback(null);
-                        Log.e(TAG, "Error processing item: " + item.fileName(), e);
-                        SentryManager.recordException(e);
-                        span.setStatus(SpanStatus.INTERNAL_ERROR);
-                    } finally {
-                        span.finish();
+        int totalItems = items.size();
+        int imageCount = 0;
+        for (MediaItem item : items) {
+            if (!item.isVideo()) {
+                imageCount++;
+            }
+        }
+        int videoCount = totalItems - imageCount;
+
+        int imageThreads = imageCount > 0 ? Math.min(imageParallelism(), imageCount) : 0;
+        int videoThreads = videoCount > 0 ? Math.min(videoParallelism(), videoCount) : 0;
+
+        ITransaction transaction = SentryManager.startTransaction(
+                forSharing ? "share_cleanup_multiple" : "clean_multiple", "task");
+        SentryManager.setCustomKey("batch_image_parallelism", imageThreads);
+        SentryManager.setCustomKey("batch_video_parallelism", videoThreads);
+        ExecutorService imagePool = imageThreads > 0
+                ? Executors.newFixedThreadPool(imageThreads, workerFactory("redact-image"))
+                : null;
+        ExecutorService videoPool = videoThreads > 0
+                ? Executors.newFixedThreadPool(videoThreads, workerFactory("redact-video"))
+                : null;
+
+        activeImagePool = imagePool;
+        activeVideoPool = videoPool;
+
+        AtomicIntegerArray itemPercents = new AtomicIntegerArray(totalItems);
+        AtomicInteger remaining = new AtomicInteger(totalItems);
+        AtomicInteger successCount = new AtomicInteger();
+
+        for (int index = 0; index < totalItems; index++) {
+            MediaItem item = items.get(index);
+            final int itemIndex = index;
+            Runnable task = () -> {
+                try {
+                    if (processItem(item, itemIndex, totalItems, forSharing, itemPercents, transaction, callback)) {
+                        successCount.incrementAndGet();
+                    }
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        final int finalSuccessCount = successCount.get();
+                        processing.set(false);
+                        transaction.finish();
+                        callbackExecutor.execute(() -> callback.onComplete(finalSuccessCount));
                     }
                 }
+            };
+            (item.isVideo() ? videoPool : imagePool).execute(task);
+        }
+        // Already-submitted items still run; the pools' threads exit once the queues drain.
+        if (imagePool != null) {
+            imagePool.shutdown();
+        }
+        if (videoPool != null) {
+            videoPool.shutdown();
+        }
+    }
 
-                final int finalSuccessCount = successCount;
-                activity.runOnUiThread(() -> callback.onComplete(finalSuccessCount));
-            } finally {
-                processing.set(false);
-                transaction.finish();
+    /**
+     * Stops the batch in progress. Items not yet started are dropped and running items are
+     * interrupted; {@link ProcessingCallback#onComplete} is not called for the batch.
+     */
+    public void cancel() {
+        ExecutorService imagePool = activeImagePool;
+        ExecutorService videoPool = activeVideoPool;
+        if (imagePool != null) {
+            imagePool.shutdownNow();
+        }
+        if (videoPool != null) {
+            videoPool.shutdownNow();
+        }
+        activeImagePool = null;
+        activeVideoPool = null;
+        processing.set(false);
+    }
+
+    /**
+     * Cleans a single item of a batch.
+     *
+     * @return true if a cleaned copy was saved
+     */
+    private boolean processItem(MediaItem item, int itemIndex, int totalItems, boolean forSharing,
+            AtomicIntegerArray itemPercents, ITransaction transaction, ProcessingCallback callback) {
+        ISpan span = transaction.startChild("clean_item", "media_item");
+        String batchLine =
+                context.getString(
+                        R.string.clean_progress_batch,
+                        itemIndex + 1,
+                        totalItems,
+                        item.fileName());
+        Uri processedUri = null;
+        try {
+            callbackExecutor.execute(
+                    () -> callback.onProgress(overallPercent(itemPercents), batchLine));
+            callback.onItemStarted(itemIndex);
+
+            StripRequest request = (forSharing
+                    ? StripRequest.forSharing(item.uri(), item.fileName(), item.isVideo())
+                    : StripRequest.forGallery(item.uri(), item.fileName(), item.isVideo()))
+                    .withProgress((percentOfCurrentItem, message) -> {
+                        itemPercents.set(itemIndex, percentOfCurrentItem);
+                        int overall = overallPercent(itemPercents);
+                        String combined = batchLine + "\n" + message;
+                        callbackExecutor.execute(
+                                () -> callback.onProgress(overall, combined));
+                    });
+            processedUri = metadataStripper.strip(request).outputUri();
+
+            if (processedUri != null) {
+                lastProcessedFileUri = processedUri;
+                span.setStatus(SpanStatus.OK);
+                return true;
             }
-        }).start();
+            Log.e(TAG, "Failed to process item: " + item.fileName());
+            SentryManager.log("Failed to process item: " + item.fileName());
+            span.setStatus(SpanStatus.INTERNAL_ERROR);
+            return false;
+        } catch (Exception e) {
+            Log.e(TAG, "Error processing item: " + item.fileName(), e);
+            SentryManager.recordException(e);
+            span.setStatus(SpanStatus.INTERNAL_ERROR);
+            return false;
+        } finally {
+            // Finished items (including failures) count as complete for the overall percentage
+            itemPercents.set(itemIndex, 100);
+            span.finish();
+            callback.onItemFinished(itemIndex, processedUri);
+        }
+    }
+
+    /** Average completion across all items of the batch, 0–100. */
+    private static int overallPercent(AtomicIntegerArray itemPercents) {
+        long sum = 0;
+        for (int i = 0; i < itemPercents.length(); i++) {
+            sum += itemPercents.get(i);
+        }
+        return (int) (sum / itemPercents.length());
+    }
+
+    /**
+     * Number of images cleaned at once: one per core, but no more than the heap can hold if every
+     * worker falls back to decoding a full-size bitmap.
+     */
+    private static int imageParallelism() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long heapWorkers = Runtime.getRuntime().maxMemory() / IMAGE_WORKER_HEAP_BYTES;
+        return (int) Math.max(1, Math.min(cores, heapWorkers));
+    }
+
+    /**
+     * Number of videos cleaned at once, bounded by how many hardware H.264 encoder sessions the
+     * device supports. Decoders have an instance limit of their own and are not counted here. The
+     * sessions themselves are shared with segmented transcodes through {@link EncoderBudget}.
+     */
+    private int videoParallelism() {
+        int sessions = 1;
+        try {
+            sessions = EncoderBudget.get(context).sessions();
+        } catch (Exception e) {
+            SentryManager.log("Could not query codec instances: " + e.getMessage());
+        }
+        return Math.max(1, Math.min(MAX_VIDEO_PARALLELISM, sessions));
+    }
+
+    /** Background-priority worker threads so batch cleaning never competes with the UI. */
+    private static ThreadFactory workerFactory(String namePrefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, namePrefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,453 @@
+package com.doubleangels.redact.media;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.OptIn;
+import androidx.annotation.VisibleForTesting;
+import androidx.media3.common.C;
+import androidx.media3.common.MediaItem;
+import androidx.media3.common.MimeTypes;
+import androidx.media3.common.util.UnstableApi;
+
+import com.doubleangels.redact.metadata.SecureEraser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transcodes a long video as several keyframe-aligned segments at once, then joins them.
+ *
+ * A single export keeps one hardware encoder busy, while many devices can run two or more instances
+ * of it side by side. The source is cut at the keyframes nearest equal fractions of its length, so
+ * every segment starts on a picture that decodes on its own, each segment is exported concurrently,
+ * and the encoded segments are copied sample by sample into the destination without another
+ * encode. Only H.264 and H.265 re-encodes are segmented, as those are the outputs the platform
+ * muxer can join; anything that cannot be split cleanly is left to a single export.
+ */
+@OptIn(markerClass = UnstableApi.class)
+final class SegmentedTranscode {
+
+    /** Shortest stretch of video worth its own export. */
+    @VisibleForTesting
+    static final long MIN_SEGMENT_US = 60_000_000L;
+
+    /** Upper bound on concurrent exports whatever the encoder reports; each also holds a decoder. */
+    private static final int MAX_SEGMENTS = 4;
+
+    /** Sample buffer size when a segment does not declare its largest sample. */
+    private static final int DEFAULT_SAMPLE_SIZE = 1024 * 1024;
+
+    private SegmentedTranscode() {
+    }
+
+    /**
+     * Number of segments to export the probed source in, or 0 if it should be exported in one
+     * pass: the video is copied rather than encoded, the output cannot be joined, the clip is too
+     * short, or the device runs only one instance of the encoder.
+     */
+    static int segmentCount(
+            @NonNull EncoderCapabilities encoders,
+            @Nullable MediaProbe source,
+            @NonNull TranscodePlan plan,
+            @NonNull String videoMimeType) {
+        if (source == null || !source.hasVideo() || plan.transmuxVideo
+                || !(MimeTypes.VIDEO_H264.equals(videoMimeType) || MimeTypes.VIDEO_H265.equals(videoMimeType))) {
+            return 0;
+        }
+        return segmentCount(source.durationUs(), encoders.hardwareInstances(videoMimeType));
+    }
+
+    @VisibleForTesting
+    static int segmentCount(long durationUs, int encoderInstances) {
+        if (durationUs <= 0) {
+            return 0;
+        }
+        long count = Math.min(Math.min(encoderInstances, MAX_SEGMENTS), durationUs / MIN_SEGMENT_US);
+        return count >= 2 ? (int) count : 0;
+    }
+
+    /**
+     * Exports {@code sourceUri} into {@code destination} as up to {@code count} concurrent segments.
+     * On failure {@code destination} may hold a partial write, and every segment export has been
+     * cancelled.
+     *
+     * @throws IOException if the source cannot be split, a segment fails, or the segments cannot
+     *                     be joined; the caller exports in one pass instead
+     */
+    static void transcode(
+            @NonNull Context app,
+            @NonNull Uri sourceUri,
+            @NonNull ParcelFileDescriptor destination,
+            @NonNull MediaProbe source,
+            int count,
+            @NonNull String videoMimeType,
+            int hdrMode,
+            @NonNull TranscodePlan plan,
+            @Nullable VideoMedia3Converter.TranscodeProgressListener progressListener)
+            throws IOException, InterruptedException {
+        List<Segment> segments = segmentsAt(
+                source.durationUs(), keyframesNear(app, sourceUri, source.durationUs(), count));
+        if (segments.size() < 2) {
+            throw new IOException("No keyframes to split the video at");
+        }
+
+        List<File> segmentFiles = new ArrayList<>();
+        try {
+            exportSegments(app, sourceUri, segments, segmentFiles, videoMimeType, hdrMode, plan,
+                    progressListener != null
+                            ? new SegmentProgress(source.durationUs(), segments, progressListener)
+                            : null);
+            concatenate(segmentFiles, segments, destination);
+        } finally {
+            for (File segmentFile : segmentFiles) {
+                SecureEraser.eraseInBackground(segmentFile);
+            }
+        }
+    }
+
+    /**
+     * Starts one export per segment and waits for all of them, cancelling the rest as soon as one
+     * fails.
+     */
+    private static void exportSegments(
+            @NonNull Context app,
+            @NonNull Uri sourceUri,
+            @NonNull List<Segment> segments,
+            @NonNull List<File> segmentFiles,
+            @NonNull String videoMimeType,
+            int hdrMode,
+            @NonNull TranscodePlan plan,
+            @Nullable SegmentProgress progress)
+            throws IOException, InterruptedException {
+        Semaphore finished = new Semaphore(0);
+        List<TransformerExport> exports = new ArrayList<>();
+        List<ParcelFileDescriptor> outputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < segments.size(); i++) {
+                File segmentFile = File.createTempFile("vid_segment_", ".mp4", app.getCacheDir());
+                segmentFiles.add(segmentFile);
+                ParcelFileDescriptor output = ParcelFileDescriptor.open(segmentFile,
+                        ParcelFileDescriptor.MODE_READ_WRITE
+                                | ParcelFileDescriptor.MODE_CREATE
+                                | ParcelFileDescriptor.MODE_TRUNCATE);
+                outputs.add(output);
+                int index = i;
+                exports.add(VideoMedia3Converter.startExport(
+                        app,
+                        segments.get(i).toMediaItem(sourceUri),
+                        output,
+                        videoMimeType,
+                        hdrMode,
+                        plan,
+                        progress != null ? percent -> progress.update(index, percent) : null,
+                        finished::release));
+            }
+
+            for (int done = 0; done < exports.size(); done++) {
+                if (!finished.tryAcquire(VideoMedia3Converter.AWAIT_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                    throw new IOException("Video conversion timed out");
+                }
+                for (TransformerExport export : exports) {
+                    Throwable failure = export.failure();
+                    if (failure != null) {
+                        throw new IOException("Segment conversion failed: " + failure.getMessage(), failure);
+                    }
+                }
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            for (TransformerExport export : exports) {
+                export.cancel();
+            }
+            throw e;
+        } finally {
+            for (TransformerExport export : exports) {
+                export.release();
+            }
+            for (ParcelFileDescriptor output : outputs) {
+                try {
+                    output.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies every segment's samples, in order, into {@code destination}, moving each segment's
+     * timestamps to where it starts in the source. Segments must share their codec configuration,
+     * which they do when one encoder produced them all with the same settings.
+     */
+    private static void concatenate(
+            @NonNull List<File> segmentFiles,
+            @NonNull List<Segment> segments,
+            @NonNull ParcelFileDescriptor destination) throws IOException {
+        MediaMuxer muxer = null;
+        MediaFormat firstVideoFormat = null;
+        MediaFormat firstAudioFormat = null;
+        int muxerVideoTrack = -1;
+        int muxerAudioTrack = -1;
+        long lastAudioTimeUs = Long.MIN_VALUE;
+        ByteBuffer buffer = null;
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        try {
+            for (int s = 0; s < segmentFiles.size(); s++) {
+                MediaExtractor extractor = new MediaExtractor();
+                try {
+                    extractor.setDataSource(segmentFiles.get(s).getAbsolutePath());
+                    int videoTrack = -1;
+                    int audioTrack = -1;
+                    for (int i = 0; i < extractor.getTrackCount(); i++) {
+                        String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+                        if (mime == null) {
+                            continue;
+                        }
+                        if (mime.startsWith("video/") && videoTrack == -1) {
+                            videoTrack = i;
+                            extractor.selectTrack(i);
+                        } else if (mime.startsWith("audio/") && audioTrack == -1) {
+                            audioTrack = i;
+                            extractor.selectTrack(i);
+                        }
+                    }
+                    if (videoTrack == -1) {
+                        throw new IOException("Segment has no video track");
+                    }
+                    MediaFormat videoFormat = extractor.getTrackFormat(videoTrack);
+                    MediaFormat audioFormat = audioTrack != -1 ? extractor.getTrackFormat(audioTrack) : null;
+
+                    if (muxer == null) {
+                        firstVideoFormat = videoFormat;
+                        firstAudioFormat = audioFormat;
+                        muxer = new MediaMuxer(destination.getFileDescriptor(),
+                                MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+                        if (videoFormat.containsKey(MediaFormat.KEY_ROTATION)) {
+                            muxer.setOrientationHint(videoFormat.getInteger(MediaFormat.KEY_ROTATION));
+                        }
+                        muxerVideoTrack = muxer.addTrack(videoFormat);
+                        if (audioFormat != null) {
+                            muxerAudioTrack = muxer.addTrack(audioFormat);
+                        }
+                        muxer.start();
+                    } else if (!sameStream(firstVideoFormat, videoFormat)
+                            || (firstAudioFormat == null) != (audioFormat == null)
+                            || (audioFormat != null && !sameStream(firstAudioFormat, audioFormat))) {
+                        throw new IOException("Segments were encoded with different configurations");
+                    }
+
+                    int sampleSize = Math.max(maxInputSize(videoFormat), maxInputSize(audioFormat));
+                    if (buffer == null || buffer.capacity() < sampleSize) {
+                        buffer = ByteBuffer.allocateDirect(sampleSize);
+                    }
+
+                    long firstSampleTimeUs = extractor.getSampleTime();
+                    if (firstSampleTimeUs < 0) {
+                        throw new IOException("Segment is empty");
+                    }
+                    long offsetUs = segments.get(s).startUs - firstSampleTimeUs;
+
+                    while (true) {
+                        int track = extractor.getSampleTrackIndex();
+                        if (track == -1) {
+                            break;
+                        }
+                        info.size = extractor.readSampleData(buffer, 0);
+                        if (info.size < 0) {
+                            break;
+                        }
+                        info.offset = 0;
+                        info.presentationTimeUs = extractor.getSampleTime() + offsetUs;
+                        info.flags = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0
+                                ? MediaCodec.BUFFER_FLAG_KEY_FRAME
+                                : 0;
+                        if (track == videoTrack) {
+                            muxer.writeSampleData(muxerVideoTrack, buffer, info);
+                        } else if (info.presentationTimeUs > lastAudioTimeUs) {
+                            // Audio frames do not line up with the cut, so drop any overlap
+                            lastAudioTimeUs = info.presentationTimeUs;
+                            muxer.writeSampleData(muxerAudioTrack, buffer, info);
+                        }
+                        extractor.advance();
+                    }
+                } finally {
+                    extractor.release();
+                }
+            }
+            if (muxer == null) {
+                throw new IOException("No segments to join");
+            }
+            muxer.stop();
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            throw new IOException("Failed to join video segments", e);
+        } finally {
+            if (muxer != null) {
+                try {
+                    muxer.release();
+                } catch (RuntimeException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Keyframes at or before each of the {@code count - 1} even split points of the video, in
+     * order. Seeking to each point reads only the container index, not the samples in between.
+     */
+    @NonNull
+    private static long[] keyframesNear(
+            @NonNull Context context, @NonNull Uri uri, long durationUs, int count) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(context, uri, null);
+            int videoTrack = -1;
+            for (int i = 0; i < extractor.getTrackCount() && videoTrack == -1; i++) {
+                String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("video/")) {
+                    videoTrack = i;
+                }
+            }
+            if (videoTrack == -1) {
+                throw new IOException("Source has no video track");
+            }
+            extractor.selectTrack(videoTrack);
+            long[] keyframes = new long[count - 1];
+            for (int i = 1; i < count; i++) {
+                extractor.seekTo(durationUs * i / count, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+                keyframes[i - 1] = extractor.getSampleTime();
+            }
+            return keyframes;
+        } finally {
+            try {
+                extractor.release();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    /**
+     * Segments starting at each usable keyframe. A keyframe is skipped if it would leave a segment
+     * under half of {@link #MIN_SEGMENT_US}, which is how sparse keyframes collapse back towards a
+     * single segment. The last segment runs to the end of the source.
+     */
+    @NonNull
+    @VisibleForTesting
+    static List<Segment> segmentsAt(long durationUs, @NonNull long[] keyframesUs) {
+        List<Segment> segments = new ArrayList<>();
+        long startUs = 0;
+        for (long keyframeUs : keyframesUs) {
+            if (keyframeUs - startUs < MIN_SEGMENT_US / 2 || durationUs - keyframeUs < MIN_SEGMENT_US / 2) {
+                continue;
+            }
+            segments.add(new Segment(startUs, keyframeUs));
+            startUs = keyframeUs;
+        }
+        segments.add(new Segment(startUs, C.TIME_END_OF_SOURCE));
+        return segments;
+    }
+
+    /** Whether two segments' tracks can share one muxer track. */
+    private static boolean sameStream(@NonNull MediaFormat first, @NonNull MediaFormat other) {
+        return Objects.equals(first.getString(MediaFormat.KEY_MIME), other.getString(MediaFormat.KEY_MIME))
+                && first.getInteger(MediaFormat.KEY_WIDTH, 0) == other.getInteger(MediaFormat.KEY_WIDTH, 0)
+                && first.getInteger(MediaFormat.KEY_HEIGHT, 0) == other.getInteger(MediaFormat.KEY_HEIGHT, 0)
+                && first.getInteger(MediaFormat.KEY_SAMPLE_RATE, 0) == other.getInteger(MediaFormat.KEY_SAMPLE_RATE, 0)
+                && first.getInteger(MediaFormat.KEY_CHANNEL_COUNT, 0) == other.getInteger(MediaFormat.KEY_CHANNEL_COUNT, 0)
+                && Objects.equals(first.getByteBuffer("csd-0"), other.getByteBuffer("csd-0"))
+                && Objects.equals(first.getByteBuffer("csd-1"), other.getByteBuffer("csd-1"));
+    }
+
+    private static int maxInputSize(@Nullable MediaFormat format) {
+        if (format == null || !format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+            return DEFAULT_SAMPLE_SIZE;
+        }
+        return Math.max(format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE), DEFAULT_SAMPLE_SIZE);
+    }
+
+    /** A stretch of the source from one keyframe to the next segment's keyframe. */
+    @VisibleForTesting
+    static final class Segment {
+        final long startUs;
+        /** End of the segment, or {@link C#TIME_END_OF_SOURCE} for the last one. */
+        final long endUs;
+
+        Segment(long startUs, long endUs) {
+            this.startUs = startUs;
+            this.endUs = endUs;
+        }
+
+        /** Length of the segment in a source of {@code durationUs}. */
+        long lengthUs(long durationUs) {
+            return (endUs == C.TIME_END_OF_SOURCE ? durationUs : endUs) - startUs;
+        }
+
+        @NonNull
+        MediaItem toMediaItem(@NonNull Uri sourceUri) {
+            MediaItem.ClippingConfiguration.Builder clipping =
+                    new MediaItem.ClippingConfiguration.Builder()
+                            .setStartPositionUs(startUs)
+                            .setStartsAtKeyFrame(true);
+            if (endUs != C.TIME_END_OF_SOURCE) {
+                clipping.setEndPositionUs(endUs);
+            }
+            return new MediaItem.Builder()
+                    .setUri(sourceUri)
+                    .setClippingConfiguration(clipping.build())
+                    .build();
+        }
+    }
+
+    /**
+     * Combines the percentages reported by each segment's export into one, weighted by segment
+     * length, and passes on only changes.
+     */
+    @VisibleForTesting
+    static final class SegmentProgress {
+        private final long[] lengthsUs;
+        private final int[] percents;
+        private final long totalUs;
+        private final VideoMedia3Converter.TranscodeProgressListener listener;
+        private int lastPercent = -1;
+
+        SegmentProgress(
+                long durationUs,
+                @NonNull List<Segment> segments,
+                @NonNull VideoMedia3Converter.TranscodeProgressListener listener) {
+            this.listener = listener;
+            lengthsUs = new long[segments.size()];
+            percents = new int[segments.size()];
+            long totalUs = 0;
+            for (int i = 0; i < lengthsUs.length; i++) {
+                lengthsUs[i] = Math.max(1, segments.get(i).lengthUs(durationUs));
+                totalUs += lengthsUs[i];
+            }
+            this.totalUs = totalUs;
+        }
+
+        /** Called from each segment's export thread. */
+        synchronized void update(int segment, int percent) {
+            percents[segment] = percent;
+            long weighted = 0;
+            for (int i = 0; i < lengthsUs.length; i++) {
+                weighted += lengthsUs[i] * percents[i];
+            }
+            int overall = (int) (weighted / totalUs);
+            if (overall != lastPercent) {
+                lastPercent = overall;
+                listener.onProgress(overall);
+            }
+        }
+    }
+}
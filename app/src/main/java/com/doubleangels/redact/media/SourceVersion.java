@@ -0,0 +1,94 @@
+package com.doubleangels.redact.media;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.provider.OpenableColumns;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.doubleangels.redact.sentry.SentryManager;
+
+import java.io.File;
+
+/**
+ * Size and modification time of a file or content URI, which caches keyed by URI use to tell
+ * whether the content behind it has changed.
+ *
+ * MediaStore reports the time as {@code date_modified} in seconds and document providers as
+ * {@code last_modified} in milliseconds; each is asked only for the column it has.
+ */
+public final class SourceVersion {
+
+    /** Size in bytes, or -1 if unknown. */
+    public final long size;
+    /** Modification time in milliseconds, or -1 if unknown. */
+    public final long modified;
+
+    private SourceVersion(long size, long modified) {
+        this.size = size;
+        this.modified = modified;
+    }
+
+    /**
+     * Reads the current version of {@code uri}, or returns null if neither its size nor its
+     * modification time can be read.
+     */
+    @Nullable
+    public static SourceVersion of(@NonNull ContentResolver resolver, @NonNull Uri uri) {
+        long size = -1;
+        long modified = -1;
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme())) {
+            String path = uri.getPath();
+            if (path != null) {
+                File file = new File(path);
+                if (file.isFile()) {
+                    size = file.length();
+                    modified = file.lastModified();
+                }
+            }
+        } else if (ContentResolver.SCHEME_CONTENT.equals(uri.getScheme())) {
+            boolean mediaStore = MediaStore.AUTHORITY.equals(uri.getAuthority());
+            String modifiedColumn = mediaStore
+                    ? MediaStore.MediaColumns.DATE_MODIFIED
+                    : DocumentsContract.Document.COLUMN_LAST_MODIFIED;
+            try (Cursor cursor = resolver.query(uri, new String[] {OpenableColumns.SIZE, modifiedColumn},
+                    null, null, null)) {
+                if (cursor != null && cursor.moveToFirst()) {
+                    size = longColumn(cursor, OpenableColumns.SIZE);
+                    modified = longColumn(cursor, modifiedColumn);
+                    if (mediaStore && modified >= 0) {
+                        modified *= 1000L;
+                    }
+                }
+            } catch (RuntimeException e) {
+                // Some providers reject columns they do not have, such as the photo picker's
+                size = querySize(resolver, uri);
+            }
+        }
+        if (size < 0 && modified < 0) {
+            return null;
+        }
+        return new SourceVersion(size, modified);
+    }
+
+    private static long querySize(@NonNull ContentResolver resolver, @NonNull Uri uri) {
+        try (Cursor cursor = resolver.query(uri, new String[] {OpenableColumns.SIZE}, null, null, null)) {
+            return cursor != null && cursor.moveToFirst() ? longColumn(cursor, OpenableColumns.SIZE) : -1;
+        } catch (RuntimeException e) {
+            SentryManager.log("Could not query source version: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static long longColumn(@NonNull Cursor cursor, @NonNull String column) {
+        int index = cursor.getColumnIndex(column);
+        if (index < 0 || cursor.isNull(index)) {
+            return -1;
+        }
+        return cursor.getLong(index);
+    }
+}
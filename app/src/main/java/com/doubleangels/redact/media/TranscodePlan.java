@@ -0,0 +1,74 @@
+package com.doubleangels.redact.media;
+
+import android.media.MediaCodecInfo.CodecProfileLevel;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Decides, per stream, whether an export has to re-encode or can copy the source samples into the
+ * new container as they are.
+ *
+ * Nothing in the export edits the picture or the sound, so a stream that is already in the target
+ * codec comes out the same whether it is re-encoded or copied. Copying runs at remux speed and
+ * skips a generation of lossy compression. Resolution and frame rate never force a re-encode on
+ * their own, because the export keeps both either way.
+ */
+final class TranscodePlan {
+
+    /** Copy the video samples instead of decoding and re-encoding them. */
+    final boolean transmuxVideo;
+    /** Copy the audio samples instead of decoding and re-encoding them. */
+    final boolean transmuxAudio;
+    /** Export video only, because the source has no audio to carry over. */
+    final boolean removeAudio;
+
+    private TranscodePlan(boolean transmuxVideo, boolean transmuxAudio, boolean removeAudio) {
+        this.transmuxVideo = transmuxVideo;
+        this.transmuxAudio = transmuxAudio;
+        this.removeAudio = removeAudio;
+    }
+
+    /**
+     * Plan for exporting the probed source with the given target codecs. Without a probe every
+     * stream is re-encoded, as nothing is known about the source.
+     */
+    @NonNull
+    static TranscodePlan forTarget(
+            @Nullable MediaProbe source, @NonNull String videoMimeType, @NonNull String audioMimeType) {
+        if (source == null) {
+            return new TranscodePlan(false, false, false);
+        }
+        boolean removeAudio = !source.hasAudio();
+        boolean transmuxVideo = videoMimeType.equals(source.videoMime())
+                && isWidelyPlayable(videoMimeType, source.videoProfile());
+        boolean transmuxAudio = !removeAudio && audioMimeType.equals(source.audioMime());
+        return new TranscodePlan(transmuxVideo, transmuxAudio, removeAudio);
+    }
+
+    /** Whether the export copies every stream it keeps, so no codec runs at all. */
+    boolean isPassthrough() {
+        return transmuxVideo && (transmuxAudio || removeAudio);
+    }
+
+    /**
+     * H.264 output is the broad-compatibility choice, so only 8-bit 4:2:0 profiles are copied;
+     * High 10, 4:2:2 and 4:4:4 streams are re-encoded. Other codecs are copied in any profile.
+     */
+    private static boolean isWidelyPlayable(@NonNull String videoMimeType, int profile) {
+        if (!"video/avc".equals(videoMimeType)) {
+            return true;
+        }
+        switch (profile) {
+            case CodecProfileLevel.AVCProfileBaseline:
+            case CodecProfileLevel.AVCProfileConstrainedBaseline:
+            case CodecProfileLevel.AVCProfileMain:
+            case CodecProfileLevel.AVCProfileHigh:
+            case CodecProfileLevel.AVCProfileConstrainedHigh:
+                return true;
+            default:
+                // Includes -1: an undeclared profile could be any of the above
+                return profile == -1;
+        }
+    }
+}
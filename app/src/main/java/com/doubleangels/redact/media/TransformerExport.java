@@ -0,0 +1,155 @@
+package com.doubleangels.redact.media;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.OptIn;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.transformer.Composition;
+import androidx.media3.transformer.ExportException;
+import androidx.media3.transformer.ExportResult;
+import androidx.media3.transformer.ProgressHolder;
+import androidx.media3.transformer.Transformer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link Transformer} export running on a looper thread of its own.
+ *
+ * Transformer is built, started, polled for progress and cancelled on that thread, so the main
+ * looper takes no part in the media pipeline and concurrent exports do not queue behind each other
+ * or behind the UI. Progress is sampled on the export thread and only changes are passed on, so a
+ * listener sees each percentage once however often it is sampled.
+ */
+@OptIn(markerClass = UnstableApi.class)
+final class TransformerExport implements Transformer.Listener {
+
+    /** How often export progress is sampled. */
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    /** How long {@link #cancel} waits for Transformer to stop. */
+    private static final long CANCEL_TIMEOUT_SECONDS = 5;
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final CountDownLatch done = new CountDownLatch(1);
+    @Nullable
+    private final VideoMedia3Converter.TranscodeProgressListener progressListener;
+    @Nullable
+    private final Runnable onFinished;
+    private final Runnable pollProgress = this::pollProgress;
+
+    // Export thread only
+    @Nullable
+    private Transformer transformer;
+    private final ProgressHolder progressHolder = new ProgressHolder();
+    private int lastPercent = -1;
+
+    @Nullable
+    private volatile Throwable failure;
+
+    /**
+     * @param progressListener Receives each new percentage on the export thread; it must hand off
+     *                         to the UI thread itself.
+     * @param onFinished       Run on the export thread once the export completes or fails.
+     */
+    TransformerExport(
+            @Nullable VideoMedia3Converter.TranscodeProgressListener progressListener,
+            @Nullable Runnable onFinished) {
+        this.progressListener = progressListener;
+        this.onFinished = onFinished;
+        thread = new HandlerThread("redact-export", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /** Builds the transformer on the export thread and starts writing to {@code destination}. */
+    void start(
+            @NonNull Transformer.Builder builder,
+            @NonNull Composition composition,
+            @NonNull ParcelFileDescriptor destination) {
+        handler.post(() -> {
+            try {
+                transformer = builder.setLooper(thread.getLooper()).addListener(this).build();
+                transformer.start(composition, destination);
+                if (progressListener != null) {
+                    handler.postDelayed(pollProgress, PROGRESS_INTERVAL_MS);
+                }
+            } catch (RuntimeException e) {
+                finish(e);
+            }
+        });
+    }
+
+    /**
+     * Waits for the export to complete or fail.
+     *
+     * @return false if it is still running after the timeout
+     */
+    boolean await(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /** Why the export failed, or null if it completed. */
+    @Nullable
+    Throwable failure() {
+        return failure;
+    }
+
+    /** Cancels a running export and waits briefly for Transformer to stop writing. */
+    void cancel() throws InterruptedException {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        handler.post(() -> {
+            handler.removeCallbacks(pollProgress);
+            if (transformer != null) {
+                transformer.cancel();
+            }
+            cancelled.countDown();
+        });
+        cancelled.await(CANCEL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** Stops the export thread once the messages already queued on it have run. */
+    void release() {
+        thread.quitSafely();
+    }
+
+    @Override
+    public void onCompleted(@NonNull Composition composition, @NonNull ExportResult exportResult) {
+        finish(null);
+    }
+
+    @Override
+    public void onError(
+            @NonNull Composition composition,
+            @NonNull ExportResult exportResult,
+            @NonNull ExportException exportException) {
+        finish(exportException);
+    }
+
+    private void finish(@Nullable Throwable error) {
+        handler.removeCallbacks(pollProgress);
+        failure = error;
+        done.countDown();
+        if (onFinished != null) {
+            onFinished.run();
+        }
+    }
+
+    private void pollProgress() {
+        if (transformer == null || progressListener == null || done.getCount() == 0) {
+            return;
+        }
+        if (transformer.getProgress(progressHolder) == Transformer.PROGRESS_STATE_AVAILABLE
+                && progressHolder.progress != lastPercent) {
+            lastPercent = progressHolder.progress;
+            progressListener.onProgress(lastPercent);
+        }
+        handler.postDelayed(pollProgress, PROGRESS_INTERVAL_MS);
+    }
+}
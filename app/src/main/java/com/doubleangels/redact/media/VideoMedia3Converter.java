@@ -6,9 +6,11 @@ import android.content.Context;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
-import android.os.Handler;
-import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.provider.MediaStore;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
 
 import androidx.annotation.NonNull;
 import androidx.media3.common.C;
@@ -18,31 +20,25 @@ import androidx.media3.transformer.Composition;
 import androidx.media3.transformer.DefaultMuxer;
 import androidx.media3.transformer.EditedMediaItem;
 import androidx.media3.transformer.EditedMediaItemSequence;
-import androidx.media3.transformer.ExportException;
-import androidx.media3.transformer.ExportResult;
-import androidx.media3.transformer.ProgressHolder;
 import androidx.media3.transformer.Transformer;
 
+import com.doubleangels.redact.sentry.SentryManager;
 import com.google.common.collect.ImmutableSet;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.concurrent.CountDownLatch;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.OptIn;
+import androidx.annotation.VisibleForTesting;
 import androidx.media3.common.util.UnstableApi;
 
 /**
- * Transcodes video with Jetpack Media3 {@link Transformer}, then copies the result into
- * {@code Movies/Redact} as MP4. Format index matches {@link FormatConverter#FORMAT_OPTION_COUNT}:
- * H.264, H.265, VP9, or AV1 (device-dependent).
+ * Transcodes video with Jetpack Media3 {@link Transformer}, writing straight into a pending
+ * {@code Movies/Redact} entry or a given file. Format index matches
+ * {@link FormatConverter#FORMAT_OPTION_COUNT}: H.264, H.265, VP9, or AV1 (device-dependent).
  */
 @OptIn(markerClass = UnstableApi.class)
 public final class VideoMedia3Converter {
@@ -50,13 +46,16 @@ public final class VideoMedia3Converter {
     /** H.264 / AAC MP4 — used for Clean metadata stripping (broad device support, audio preserved). */
     public static final int FORMAT_STRIP_METADATA = 0;
 
-    /** 0–100 while Media3 reports export progress (main thread). */
+    /**
+     * 0–100 while Media3 reports export progress. Called on the export thread, once per change;
+     * implementations post to the UI thread themselves.
+     */
     public interface TranscodeProgressListener {
         void onProgress(int percent);
     }
 
     private static final int TARGET_FPS = 30;
-    private static final long AWAIT_TIMEOUT_MINUTES = 60;
+    static final long AWAIT_TIMEOUT_MINUTES = 60;
 
     private VideoMedia3Converter() {
     }
@@ -80,27 +79,95 @@ public final class VideoMedia3Converter {
             int formatIndex,
             @Nullable TranscodeProgressListener progressListener)
             throws IOException, InterruptedException {
+        transcodeToPath(context, sourceUri, outputPath, formatIndex, null, progressListener);
+    }
 
+    public static void transcodeToPath(
+            @NonNull Context context,
+            @NonNull Uri sourceUri,
+            @NonNull String outputPath,
+            int formatIndex,
+            @Nullable MediaProbe sourceProbe,
+            @Nullable TranscodeProgressListener progressListener)
+            throws IOException, InterruptedException {
         File outFile = new File(outputPath);
+        try (ParcelFileDescriptor destination = ParcelFileDescriptor.open(outFile,
+                ParcelFileDescriptor.MODE_READ_WRITE
+                        | ParcelFileDescriptor.MODE_CREATE
+                        | ParcelFileDescriptor.MODE_TRUNCATE)) {
+            transcodeToFileDescriptor(context, sourceUri, destination, formatIndex, sourceProbe, progressListener);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            deleteQuietly(outFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs {@link Transformer} into {@code destination}, which must be open for reading and writing.
+     * Every encoder attempt starts from an empty file, and a failed export leaves it empty. Long
+     * clips are exported as concurrent segments where the device allows it (see
+     * {@link SegmentedTranscode}), falling back to a single export if that fails. Encoders are
+     * taken from the process-wide {@link EncoderBudget}: an export waits for one, and a segmented
+     * export uses as many segments as there are sessions free.
+     *
+     * @param sourceProbe Probe of the source, or of the file it was remuxed from. Streams already in
+     *                    the target codec are copied rather than re-encoded (see
+     *                    {@link TranscodePlan}). Null re-encodes every track Media3 finds.
+     */
+    public static void transcodeToFileDescriptor(
+            @NonNull Context context,
+            @NonNull Uri sourceUri,
+            @NonNull ParcelFileDescriptor destination,
+            int formatIndex,
+            @Nullable MediaProbe sourceProbe,
+            @Nullable TranscodeProgressListener progressListener)
+            throws IOException, InterruptedException {
         Context app = context.getApplicationContext();
 
+        EncoderBudget budget = EncoderBudget.get(app);
         IOException lastFailure = null;
-        for (int attemptIndex : encoderFallbackOrder(formatIndex)) {
-            deleteQuietly(outFile);
+        int[] attempts = usableFormats(encoderFallbackOrder(formatIndex), EncoderCapabilities.get(app), sourceProbe);
+        for (int attemptIndex : attempts) {
+            resetOutput(destination);
             try {
                 String videoMime = videoMimeTypeForFormatIndex(attemptIndex);
-                transcodeToPathOnce(
-                        app,
-                        sourceUri,
-                        outputPath,
-                        videoMime,
-                        hdrModeForMp4VideoMime(videoMime),
-                        progressListener);
-                return;
+                TranscodePlan plan = TranscodePlan.forTarget(
+                        sourceProbe, videoMime, audioMimeTypeForVideoMime(videoMime));
+                int hdrMode = hdrModeForMp4VideoMime(videoMime);
+                if (plan.transmuxVideo) {
+                    // Copying the video holds no encoder session
+                    transcodeOnce(app, sourceUri, destination, videoMime, hdrMode, plan, progressListener);
+                    return;
+                }
+                int segments = SegmentedTranscode.segmentCount(
+                        EncoderCapabilities.get(app), sourceProbe, plan, videoMime);
+                budget.acquire();
+                int sessions = 1;
+                try {
+                    if (segments > 0) {
+                        sessions += budget.tryAcquireUpTo(segments - 1);
+                        if (sessions >= 2) {
+                            try {
+                                SegmentedTranscode.transcode(app, sourceUri, destination, sourceProbe, sessions,
+                                        videoMime, hdrMode, plan, progressListener);
+                                return;
+                            } catch (IOException e) {
+                                SentryManager.log("Segmented transcode failed, exporting in one pass: "
+                                        + e.getMessage());
+                                resetOutput(destination);
+                            }
+                        }
+                    }
+                    transcodeOnce(app, sourceUri, destination, videoMime, hdrMode, plan, progressListener);
+                    return;
+                } finally {
+                    budget.release(sessions);
+                }
             } catch (IOException e) {
                 lastFailure = e;
             }
         }
+        resetOutput(destination);
         if (lastFailure != null) {
             throw lastFailure;
         }
@@ -108,7 +175,8 @@ public final class VideoMedia3Converter {
     }
 
     /**
-     * Preferred encoder order when the user-selected MIME fails (common for AV1/VP9 at 4K or on OEM limits).
+     * Preferred encoder order when the user-selected MIME fails (common for AV1/VP9 at 4K or on OEM
+     * limits). Formats the device cannot encode are removed first by {@link #usableFormats}.
      */
     private static int[] encoderFallbackOrder(int requestedFormatIndex) {
         switch (requestedFormatIndex) {
@@ -124,6 +192,36 @@ public final class VideoMedia3Converter {
         }
     }
 
+    /**
+     * Drops fallback formats no encoder on the device can take the source in, so no export is started
+     * that is bound to fail part way. A format whose video would be copied needs no encoder and is
+     * kept. If the device reports no encoders at all, or none that fit, the order is left as it is
+     * and the exports decide.
+     */
+    @NonNull
+    @VisibleForTesting
+    static int[] usableFormats(
+            @NonNull int[] order, @NonNull EncoderCapabilities encoders, @Nullable MediaProbe source) {
+        if (encoders.encoders().isEmpty()) {
+            return order;
+        }
+        int width = source != null ? source.width() : 0;
+        int height = source != null ? source.height() : 0;
+        int[] usable = new int[order.length];
+        int count = 0;
+        for (int formatIndex : order) {
+            String videoMime = videoMimeTypeForFormatIndex(formatIndex);
+            TranscodePlan plan = TranscodePlan.forTarget(source, videoMime, audioMimeTypeForVideoMime(videoMime));
+            if (plan.transmuxVideo || encoders.canEncode(videoMime, width, height, TARGET_FPS)) {
+                usable[count++] = formatIndex;
+            }
+        }
+        if (count == 0) {
+            return order;
+        }
+        return Arrays.copyOf(usable, count);
+    }
+
     /**
      * VP8/VP9 outputs cannot carry the same HDR as HEVC; tone-map HDR sources to SDR so the encoder
      * and muxer agree on a supported format.
@@ -142,145 +240,92 @@ public final class VideoMedia3Converter {
         return MimeTypes.AUDIO_AAC;
     }
 
-    private static void transcodeToPathOnce(
+    private static void transcodeOnce(
             @NonNull Context app,
             @NonNull Uri sourceUri,
-            @NonNull String outputPath,
+            @NonNull ParcelFileDescriptor destination,
             @NonNull String videoMimeType,
             int hdrMode,
+            @NonNull TranscodePlan plan,
             @Nullable TranscodeProgressListener progressListener)
             throws IOException, InterruptedException {
+        TransformerExport export = startExport(
+                app, MediaItem.fromUri(sourceUri), destination, videoMimeType, hdrMode, plan,
+                progressListener, null);
+        try {
+            boolean finished;
+            try {
+                finished = export.await(AWAIT_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                export.cancel();
+                throw e;
+            }
+            if (!finished) {
+                export.cancel();
+                throw new IOException("Video conversion timed out");
+            }
+        } finally {
+            export.release();
+        }
 
-        File outFile = new File(outputPath);
+        Throwable failure = export.failure();
+        if (failure != null) {
+            throw new IOException("Video conversion failed: " + failure.getMessage(), failure);
+        }
 
-        MediaItem mediaItem = MediaItem.fromUri(sourceUri);
-        EditedMediaItem editedMediaItem =
-                new EditedMediaItem.Builder(mediaItem)
-                        .setRemoveAudio(false)
-                        .setFrameRate(TARGET_FPS)
-                        .build();
+        if (destination.getStatSize() <= 0) {
+            throw new IOException("Video conversion produced no output");
+        }
+    }
+
+    /**
+     * Starts exporting {@code mediaItem} into {@code destination} on an export thread of its own.
+     * The caller waits for the returned export and releases it.
+     *
+     * @param onFinished Run on the export thread once the export completes or fails
+     */
+    @NonNull
+    static TransformerExport startExport(
+            @NonNull Context app,
+            @NonNull MediaItem mediaItem,
+            @NonNull ParcelFileDescriptor destination,
+            @NonNull String videoMimeType,
+            int hdrMode,
+            @NonNull TranscodePlan plan,
+            @Nullable TranscodeProgressListener progressListener,
+            @Nullable Runnable onFinished) {
+        EditedMediaItem.Builder editedMediaItemBuilder =
+                new EditedMediaItem.Builder(mediaItem).setRemoveAudio(plan.removeAudio);
+        if (!plan.transmuxVideo) {
+            // Copied samples keep their own timing; only a re-encode takes a frame rate
+            editedMediaItemBuilder.setFrameRate(TARGET_FPS);
+        }
+        EditedMediaItem editedMediaItem = editedMediaItemBuilder.build();
 
         EditedMediaItemSequence sequence =
                 new EditedMediaItemSequence.Builder(
-                                ImmutableSet.of(C.TRACK_TYPE_AUDIO, C.TRACK_TYPE_VIDEO))
+                                plan.removeAudio
+                                        ? ImmutableSet.of(C.TRACK_TYPE_VIDEO)
+                                        : ImmutableSet.of(C.TRACK_TYPE_AUDIO, C.TRACK_TYPE_VIDEO))
                         .addItem(editedMediaItem)
                         .build();
 
-        Composition composition = new Composition.Builder(sequence).setHdrMode(hdrMode).build();
-
-        CountDownLatch latch = new CountDownLatch(1);
-        AtomicReference<ExportException> errorRef = new AtomicReference<>();
-        AtomicReference<Throwable> syncFailureRef = new AtomicReference<>();
-        AtomicReference<Transformer> transformerRef = new AtomicReference<>();
-
-        Handler mainHandler = new Handler(Looper.getMainLooper());
-        AtomicBoolean pollingActive = new AtomicBoolean(progressListener != null);
-        final Runnable[] pollRunnable = new Runnable[1];
-        pollRunnable[0] =
-                () -> {
-                    if (!pollingActive.get()) {
-                        return;
-                    }
-                    Transformer t = transformerRef.get();
-                    if (t != null && progressListener != null) {
-                        ProgressHolder holder = new ProgressHolder();
-                        int state = t.getProgress(holder);
-                        if (state == Transformer.PROGRESS_STATE_AVAILABLE) {
-                            progressListener.onProgress(holder.progress);
-                        }
-                    }
-                    mainHandler.postDelayed(pollRunnable[0], 100);
-                };
-
-        mainHandler.post(
-                () -> {
-                    try {
-                        Transformer transformer =
-                                new Transformer.Builder(app)
-                                        .setMuxerFactory(new DefaultMuxer.Factory())
-                                        .setVideoMimeType(videoMimeType)
-                                        .setAudioMimeType(audioMimeTypeForVideoMime(videoMimeType))
-                                        .addListener(
-                                                new Transformer.Listener() {
-                                                    @Override
-                                                    public void onCompleted(
-                                                            Composition composition,
-                                                            ExportResult exportResult) {
-                                                        stopPolling(
-                                                                mainHandler,
-                                                                pollingActive,
-                                                                pollRunnable[0]);
-                                                        latch.countDown();
-                                                    }
-
-                                                    @Override
-                                                    public void onError(
-                                                            Composition composition,
-                                                            ExportResult exportResult,
-                                                            ExportException exception) {
-                                                        stopPolling(
-                                                                mainHandler,
-                                                                pollingActive,
-                                                                pollRunnable[0]);
-                                                        errorRef.set(exception);
-                                                        latch.countDown();
-                                                    }
-                                                })
-                                        .build();
-                        transformerRef.set(transformer);
-                        transformer.start(composition, outputPath);
-                        if (progressListener != null) {
-                            mainHandler.post(pollRunnable[0]);
-                        }
-                    } catch (RuntimeException e) {
-                        stopPolling(mainHandler, pollingActive, pollRunnable[0]);
-                        syncFailureRef.set(e);
-                        latch.countDown();
-                    }
-                });
-
-        boolean finished = latch.await(AWAIT_TIMEOUT_MINUTES, TimeUnit.MINUTES);
-        if (!finished) {
-            CountDownLatch cancelDone = new CountDownLatch(1);
-            mainHandler.post(
-                    () -> {
-                        stopPolling(mainHandler, pollingActive, pollRunnable[0]);
-                        @Nullable Transformer t = transformerRef.get();
-                        if (t != null) {
-                            t.cancel();
-                        }
-                        cancelDone.countDown();
-                    });
-            cancelDone.await(5, TimeUnit.SECONDS);
-            deleteQuietly(outFile);
-            throw new IOException("Video conversion timed out");
-        }
-
-        ExportException exportException = errorRef.get();
-        if (exportException != null) {
-            deleteQuietly(outFile);
-            throw new IOException(
-                    "Video conversion failed: " + exportException.getMessage(), exportException);
-        }
-        Throwable syncFailure = syncFailureRef.get();
-        if (syncFailure != null) {
-            deleteQuietly(outFile);
-            throw new IOException(
-                    "Video conversion failed: " + syncFailure.getMessage(), syncFailure);
-        }
+        Composition composition =
+                new Composition.Builder(sequence)
+                        .setHdrMode(hdrMode)
+                        .setTransmuxVideo(plan.transmuxVideo)
+                        .setTransmuxAudio(plan.transmuxAudio)
+                        .build();
 
-        if (!outFile.exists() || outFile.length() == 0) {
-            deleteQuietly(outFile);
-            throw new IOException("Video conversion produced no output");
-        }
-    }
+        Transformer.Builder transformerBuilder =
+                new Transformer.Builder(app)
+                        .setMuxerFactory(new DefaultMuxer.Factory())
+                        .setVideoMimeType(videoMimeType)
+                        .setAudioMimeType(audioMimeTypeForVideoMime(videoMimeType));
 
-    private static void stopPolling(
-            Handler mainHandler, AtomicBoolean pollingActive, @Nullable Runnable pollRunnable) {
-        pollingActive.set(false);
-        if (pollRunnable != null) {
-            mainHandler.removeCallbacks(pollRunnable);
-        }
+        TransformerExport export = new TransformerExport(progressListener, onFinished);
+        export.start(transformerBuilder, composition, destination);
+        return export;
     }
 
     /**
@@ -302,13 +347,25 @@ public final class VideoMedia3Converter {
             int formatIndex,
             @Nullable TranscodeProgressListener progressListener)
             throws IOException, InterruptedException {
+        transcodeToFile(context, sourceUri, outputFile, formatIndex, null, progressListener);
+    }
+
+    public static void transcodeToFile(
+            @NonNull Context context,
+            @NonNull Uri sourceUri,
+            @NonNull File outputFile,
+            int formatIndex,
+            @Nullable MediaProbe sourceProbe,
+            @Nullable TranscodeProgressListener progressListener)
+            throws IOException, InterruptedException {
         File parent = outputFile.getParentFile();
         if (parent != null && !parent.exists()) {
             if (!parent.mkdirs()) {
                 throw new IOException("Failed to create output directory");
             }
         }
-        transcodeToPath(context, sourceUri, outputFile.getAbsolutePath(), formatIndex, progressListener);
+        transcodeToPath(
+                context, sourceUri, outputFile.getAbsolutePath(), formatIndex, sourceProbe, progressListener);
     }
 
     @NonNull
@@ -328,17 +385,30 @@ public final class VideoMedia3Converter {
             int formatIndex,
             @Nullable TranscodeProgressListener progressListener)
             throws IOException, InterruptedException {
+        return transcodeToGallery(context, sourceUri, baseDisplayName, formatIndex, null, progressListener);
+    }
 
-        Context app = context.getApplicationContext();
-        String ext = extensionForFormatIndex(formatIndex);
-        File outFile =
-                new File(app.getCacheDir(), "vid_transform_" + System.currentTimeMillis() + ext);
-        transcodeToPath(app, sourceUri, outFile.getAbsolutePath(), formatIndex, progressListener);
+    @NonNull
+    public static Uri transcodeToGallery(
+            @NonNull Context context,
+            @NonNull Uri sourceUri,
+            @NonNull String baseDisplayName,
+            int formatIndex,
+            @Nullable MediaProbe sourceProbe,
+            @Nullable TranscodeProgressListener progressListener)
+            throws IOException, InterruptedException {
 
+        Context app = context.getApplicationContext();
+        Uri outUri = createPendingMoviesEntry(app, baseDisplayName, formatIndex);
         try {
-            return copyToMoviesRedact(app, outFile, baseDisplayName, formatIndex);
-        } finally {
-            deleteQuietly(outFile);
+            try (ParcelFileDescriptor destination = openForWriting(app, outUri)) {
+                transcodeToFileDescriptor(app, sourceUri, destination, formatIndex, sourceProbe, progressListener);
+            }
+            publishPendingEntry(app, outUri);
+            return outUri;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            deleteQuietly(app, outUri);
+            throw e;
         }
     }
 
@@ -349,9 +419,16 @@ public final class VideoMedia3Converter {
         }
     }
 
+    private static void deleteQuietly(@NonNull Context context, @NonNull Uri uri) {
+        try {
+            context.getContentResolver().delete(uri, null, null);
+        } catch (RuntimeException ignored) {
+        }
+    }
+
     /** Maps format chip index to output video MIME (MP4). */
     @NonNull
-    @androidx.annotation.VisibleForTesting
+    @VisibleForTesting
     static String videoMimeTypeForFormatIndex(int formatIndex) {
         switch (formatIndex) {
             case 1:
@@ -394,9 +471,17 @@ public final class VideoMedia3Converter {
         }
     }
 
+    /**
+     * Inserts a {@code Movies/Redact} entry that stays hidden from other apps while it is written.
+     * Outputs are written straight into it and made visible with {@link #publishPendingEntry}, so a
+     * video is stored once rather than exported to the cache and copied. MediaStore expires entries
+     * left pending by a crash.
+     *
+     * @return URI of the pending entry
+     */
     @NonNull
-    public static Uri copyToMoviesRedact(Context context, File file, String baseDisplayName, int formatIndex)
-            throws IOException {
+    public static Uri createPendingMoviesEntry(
+            @NonNull Context context, @NonNull String baseDisplayName, int formatIndex) throws IOException {
         ContentResolver resolver = context.getContentResolver();
         String safeName = sanitizeFileName(stripExtension(baseDisplayName));
         String ext = extensionForFormatIndex(formatIndex);
@@ -406,6 +491,7 @@ public final class VideoMedia3Converter {
         ContentValues values = new ContentValues();
         values.put(MediaStore.Video.Media.DISPLAY_NAME, outName);
         values.put(MediaStore.Video.Media.MIME_TYPE, mime);
+        values.put(MediaStore.Video.Media.IS_PENDING, 1);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
             values.put(MediaStore.Video.Media.RELATIVE_PATH, Environment.DIRECTORY_MOVIES + "/Redact");
         }
@@ -415,27 +501,48 @@ public final class VideoMedia3Converter {
         if (outUri == null) {
             throw new IOException("MediaStore insert failed");
         }
+        return outUri;
+    }
 
-        try (InputStream in = new FileInputStream(file);
-                OutputStream out = resolver.openOutputStream(outUri)) {
-            if (out == null) {
-                resolver.delete(outUri, null, null);
-                throw new IOException("Cannot open output stream");
-            }
-            byte[] buffer = new byte[65536];
-            int read;
-            while ((read = in.read(buffer)) > 0) {
-                out.write(buffer, 0, read);
-            }
-            out.flush();
-        } catch (IOException e) {
-            try {
-                resolver.delete(outUri, null, null);
-            } catch (Exception ignored) {
-            }
-            throw e;
+    /** Opens a pending entry for writing; muxers need a descriptor they can seek and read back. */
+    @NonNull
+    public static ParcelFileDescriptor openForWriting(@NonNull Context context, @NonNull Uri uri)
+            throws IOException {
+        ParcelFileDescriptor destination = context.getContentResolver().openFileDescriptor(uri, "rw");
+        if (destination == null) {
+            throw new IOException("Cannot open output file descriptor");
+        }
+        return destination;
+    }
+
+    /** Renames a pending entry whose output came out in another container than it was created for. */
+    public static void renamePendingEntry(@NonNull Context context, @NonNull Uri uri,
+            @NonNull String displayName, @NonNull String mimeType) throws IOException {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Video.Media.DISPLAY_NAME, displayName);
+        values.put(MediaStore.Video.Media.MIME_TYPE, mimeType);
+        if (context.getContentResolver().update(uri, values, null, null) != 1) {
+            throw new IOException("MediaStore rename failed");
+        }
+    }
+
+    /** Makes a finished pending entry visible in the gallery. */
+    public static void publishPendingEntry(@NonNull Context context, @NonNull Uri uri) throws IOException {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Video.Media.IS_PENDING, 0);
+        if (context.getContentResolver().update(uri, values, null, null) != 1) {
+            throw new IOException("MediaStore publish failed");
+        }
+    }
+
+    /** Truncates {@code destination} and rewinds it, discarding a partial write. */
+    public static void resetOutput(@NonNull ParcelFileDescriptor destination) throws IOException {
+        try {
+            Os.ftruncate(destination.getFileDescriptor(), 0);
+            Os.lseek(destination.getFileDescriptor(), 0, OsConstants.SEEK_SET);
+        } catch (ErrnoException e) {
+            throw new IOException("Cannot reset output", e);
         }
-        return outUri;
     }
 
     private static String stripExtension(String name) {
@@ -0,0 +1,551 @@
+package com.doubleangels.redact.metadata;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Removes metadata from a HEIF/HEIC (or AVIF) file at the box level, without decoding any
+ * images.
+ *
+ * <p>The {@code meta} box is parsed and rewritten: {@code Exif} items and {@code mime} items
+ * carrying XMP are removed from {@code iinf}, {@code iloc}, {@code iref} and {@code ipma}. Their
+ * payload bytes are zeroed in place (inside {@code mdat} or {@code idat}) so no offsets inside
+ * the media data change. Because the rewritten {@code meta} box is shorter, {@code iloc} offsets
+ * of the remaining items are shifted to match. Everything outside {@code meta} is referenced by
+ * offset and copied with {@link FileChannel#transferTo}, so coded image data is never touched.
+ */
+public final class HeifBoxStripper {
+
+    /** Upper bound for the in-memory copy of the {@code meta} box. */
+    private static final int MAX_META_SIZE = 16 * 1024 * 1024;
+
+    private static final int BOX_META = IsoBmff.fourCc("meta");
+    private static final int BOX_IINF = IsoBmff.fourCc("iinf");
+    private static final int BOX_INFE = IsoBmff.fourCc("infe");
+    private static final int BOX_ILOC = IsoBmff.fourCc("iloc");
+    private static final int BOX_IREF = IsoBmff.fourCc("iref");
+    private static final int BOX_IPRP = IsoBmff.fourCc("iprp");
+    private static final int BOX_IPMA = IsoBmff.fourCc("ipma");
+    private static final int BOX_IDAT = IsoBmff.fourCc("idat");
+
+    private static final int ITEM_EXIF = IsoBmff.fourCc("Exif");
+    private static final int ITEM_MIME = IsoBmff.fourCc("mime");
+
+    private static final int CONSTRUCTION_FILE_OFFSET = 0;
+    private static final int CONSTRUCTION_IDAT_OFFSET = 1;
+
+    private HeifBoxStripper() {
+    }
+
+    /** Maps an absolute offset in the source file to its offset in the rewritten file. */
+    private interface OffsetMapper {
+        long map(long sourceOffset) throws IOException;
+    }
+
+    /**
+     * Builds the plan for a metadata-free copy of the HEIF file in {@code source}.
+     *
+     * @throws IOException if the file is not a HEIF file or uses a layout this stripper cannot
+     *                     rewrite safely
+     */
+    @NonNull
+    public static SplicePlan plan(@NonNull FileChannel source) throws IOException {
+        long fileSize = source.size();
+        List<IsoBmff.Box> topLevel = IsoBmff.readBoxes(source, 0, fileSize);
+        int metaIndex = -1;
+        for (int i = 0; i < topLevel.size(); i++) {
+            if (topLevel.get(i).type == BOX_META) {
+                metaIndex = i;
+                break;
+            }
+        }
+        if (metaIndex < 0) {
+            throw new IOException("No meta box in HEIF file");
+        }
+        IsoBmff.Box metaBox = topLevel.get(metaIndex);
+        if (metaBox.size > MAX_META_SIZE) {
+            throw new IOException("HEIF meta box too large");
+        }
+        byte[] metaBytes = new byte[(int) metaBox.size];
+        SplicePlan.readFully(source, metaBox.offset, ByteBuffer.wrap(metaBytes));
+
+        Meta meta = Meta.parse(metaBytes, metaBox.headerSize);
+        Set<Long> dropped = meta.metadataItemIds();
+
+        SplicePlan plan = new SplicePlan();
+        if (dropped.isEmpty()) {
+            IsoBmff.Box last = topLevel.get(topLevel.size() - 1);
+            plan.addSourceRange(0, last.end());
+            return plan;
+        }
+
+        // Zero the payloads of dropped items so nothing of them survives in the media data.
+        List<List<long[]>> zeroRanges = new ArrayList<>();
+        for (int i = 0; i < topLevel.size(); i++) {
+            zeroRanges.add(new ArrayList<>());
+        }
+        for (IlocItem item : meta.ilocItems) {
+            if (!dropped.contains(item.id)) {
+                continue;
+            }
+            plan.markRemoved();
+            for (long[] extent : item.extents) {
+                long start = item.baseOffset + extent[1];
+                long length = extent[2];
+                if (length <= 0) {
+                    throw new IOException("Open-ended extent on metadata item");
+                }
+                if (item.constructionMethod == CONSTRUCTION_IDAT_OFFSET) {
+                    meta.zeroIdat(start, length);
+                } else if (item.constructionMethod == CONSTRUCTION_FILE_OFFSET
+                        && item.dataReferenceIndex == 0) {
+                    int boxIndex = indexOfBoxContaining(topLevel, start);
+                    if (boxIndex < 0 || boxIndex == metaIndex
+                            || start + length > topLevel.get(boxIndex).end()) {
+                        throw new IOException("Metadata item data outside media boxes");
+                    }
+                    zeroRanges.get(boxIndex).add(new long[] {start, length});
+                }
+            }
+        }
+
+        // iloc keeps its field widths, so the rewritten meta length does not depend on the
+        // offsets written into it: size it once with placeholder offsets, then lay out the file.
+        int newMetaLength = meta.rebuild(dropped, offset -> offset).length;
+        long[] newStarts = new long[topLevel.size()];
+        long position = 0;
+        for (int i = 0; i < topLevel.size(); i++) {
+            newStarts[i] = position;
+            position += i == metaIndex ? newMetaLength : topLevel.get(i).size;
+        }
+        final int metaBoxIndex = metaIndex;
+        byte[] newMeta = meta.rebuild(dropped, offset -> {
+            int boxIndex = indexOfBoxContaining(topLevel, offset);
+            if (boxIndex < 0 || boxIndex == metaBoxIndex) {
+                throw new IOException("Item data outside media boxes");
+            }
+            return newStarts[boxIndex] + (offset - topLevel.get(boxIndex).offset);
+        });
+
+        for (int i = 0; i < topLevel.size(); i++) {
+            IsoBmff.Box box = topLevel.get(i);
+            if (i == metaIndex) {
+                plan.addLiteral(newMeta);
+                continue;
+            }
+            List<long[]> zeros = zeroRanges.get(i);
+            zeros.sort((a, b) -> Long.compare(a[0], b[0]));
+            long cursor = box.offset;
+            for (long[] range : zeros) {
+                long start = Math.max(range[0], cursor);
+                long end = range[0] + range[1];
+                if (end <= cursor) {
+                    continue;
+                }
+                plan.addSourceRange(cursor, start - cursor);
+                plan.addZeros(end - start);
+                cursor = end;
+            }
+            plan.addSourceRange(cursor, box.end() - cursor);
+        }
+        return plan;
+    }
+
+    private static int indexOfBoxContaining(List<IsoBmff.Box> boxes, long offset) {
+        for (int i = 0; i < boxes.size(); i++) {
+            if (boxes.get(i).contains(offset)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** One {@code iloc} entry. Extents are {@code {index, offset, length}}. */
+    private static final class IlocItem {
+        long id;
+        int constructionMethod;
+        int dataReferenceIndex;
+        long baseOffset;
+        final List<long[]> extents = new ArrayList<>();
+    }
+
+    /** Parsed view of the {@code meta} box with just enough structure to rewrite it. */
+    private static final class Meta {
+        private final byte[] data;
+        private final int headerSize;
+        private final List<IsoBmff.Box> children;
+        private final List<IlocItem> ilocItems = new ArrayList<>();
+        private final Set<Long> metadataItems = new HashSet<>();
+
+        private int ilocVersion;
+        private int ilocOffsetSize;
+        private int ilocLengthSize;
+        private int ilocBaseOffsetSize;
+        private int ilocIndexSize;
+        private long idatPayloadOffset = -1;
+        private long idatPayloadLength;
+
+        private Meta(byte[] data, int headerSize, List<IsoBmff.Box> children) {
+            this.data = data;
+            this.headerSize = headerSize;
+            this.children = children;
+        }
+
+        static Meta parse(byte[] data, int headerSize) throws IOException {
+            // meta is a FullBox: version and flags precede the children.
+            Meta meta = new Meta(data, headerSize, IsoBmff.parseBoxes(data, headerSize + 4, data.length));
+            boolean sawIloc = false;
+            for (IsoBmff.Box child : meta.children) {
+                if (child.type == BOX_IINF) {
+                    meta.parseIinf(child);
+                } else if (child.type == BOX_ILOC) {
+                    meta.parseIloc(child);
+                    sawIloc = true;
+                } else if (child.type == BOX_IDAT) {
+                    meta.idatPayloadOffset = child.payloadOffset();
+                    meta.idatPayloadLength = child.size - child.headerSize;
+                }
+            }
+            if (!sawIloc && !meta.metadataItems.isEmpty()) {
+                throw new IOException("HEIF metadata items without iloc");
+            }
+            return meta;
+        }
+
+        Set<Long> metadataItemIds() {
+            return metadataItems;
+        }
+
+        private void parseIinf(IsoBmff.Box iinf) throws IOException {
+            int pos = (int) iinf.payloadOffset();
+            int version = data[pos] & 0xFF;
+            pos += 4;
+            pos += version == 0 ? 2 : 4;
+            for (IsoBmff.Box infe : IsoBmff.parseBoxes(data, pos, (int) iinf.end())) {
+                if (infe.type == BOX_INFE && isMetadataItem(infe)) {
+                    metadataItems.add(infeItemId(infe));
+                }
+            }
+        }
+
+        private long infeItemId(IsoBmff.Box infe) throws IOException {
+            int pos = (int) infe.payloadOffset();
+            int version = data[pos] & 0xFF;
+            return version == 3 ? IsoBmff.readUInt(data, pos + 4, 4) : IsoBmff.readUInt(data, pos + 4, 2);
+        }
+
+        private boolean isMetadataItem(IsoBmff.Box infe) throws IOException {
+            int pos = (int) infe.payloadOffset();
+            int end = (int) infe.end();
+            int version = data[pos] & 0xFF;
+            pos += 4;
+            if (version < 2) {
+                // item_ID, item_protection_index, item_name, content_type
+                pos += 4;
+                pos = skipString(pos, end);
+                return isXmpContentType(readString(pos, end));
+            }
+            pos += version == 3 ? 4 : 2;
+            pos += 2;
+            int itemType = (int) IsoBmff.readUInt(data, pos, 4);
+            pos += 4;
+            if (itemType == ITEM_EXIF) {
+                return true;
+            }
+            if (itemType == ITEM_MIME) {
+                pos = skipString(pos, end);
+                return isXmpContentType(readString(pos, end));
+            }
+            return false;
+        }
+
+        private static boolean isXmpContentType(@Nullable String contentType) {
+            if (contentType == null) {
+                return false;
+            }
+            String lower = contentType.toLowerCase(Locale.ROOT);
+            return lower.contains("rdf+xml") || lower.contains("xmp");
+        }
+
+        private int skipString(int pos, int end) {
+            while (pos < end && data[pos] != 0) {
+                pos++;
+            }
+            return pos + 1;
+        }
+
+        @Nullable
+        private String readString(int pos, int end) {
+            if (pos >= end) {
+                return null;
+            }
+            int stop = pos;
+            while (stop < end && data[stop] != 0) {
+                stop++;
+            }
+            return new String(data, pos, stop - pos, StandardCharsets.UTF_8);
+        }
+
+        private void parseIloc(IsoBmff.Box iloc) throws IOException {
+            int pos = (int) iloc.payloadOffset();
+            ilocVersion = data[pos] & 0xFF;
+            if (ilocVersion > 2) {
+                throw new IOException("Unsupported iloc version " + ilocVersion);
+            }
+            pos += 4;
+            ilocOffsetSize = (data[pos] >> 4) & 0x0F;
+            ilocLengthSize = data[pos] & 0x0F;
+            ilocBaseOffsetSize = (data[pos + 1] >> 4) & 0x0F;
+            ilocIndexSize = ilocVersion == 0 ? 0 : data[pos + 1] & 0x0F;
+            pos += 2;
+            int idSize = ilocVersion < 2 ? 2 : 4;
+            long itemCount = IsoBmff.readUInt(data, pos, idSize);
+            pos += idSize;
+            for (long i = 0; i < itemCount; i++) {
+                IlocItem item = new IlocItem();
+                item.id = IsoBmff.readUInt(data, pos, idSize);
+                pos += idSize;
+                if (ilocVersion >= 1) {
+                    item.constructionMethod = (int) (IsoBmff.readUInt(data, pos, 2) & 0x0F);
+                    pos += 2;
+                }
+                item.dataReferenceIndex = (int) IsoBmff.readUInt(data, pos, 2);
+                pos += 2;
+                item.baseOffset = IsoBmff.readUInt(data, pos, ilocBaseOffsetSize);
+                pos += ilocBaseOffsetSize;
+                int extentCount = (int) IsoBmff.readUInt(data, pos, 2);
+                pos += 2;
+                for (int e = 0; e < extentCount; e++) {
+                    long index = IsoBmff.readUInt(data, pos, ilocIndexSize);
+                    pos += ilocIndexSize;
+                    long offset = IsoBmff.readUInt(data, pos, ilocOffsetSize);
+                    pos += ilocOffsetSize;
+                    long length = IsoBmff.readUInt(data, pos, ilocLengthSize);
+                    pos += ilocLengthSize;
+                    item.extents.add(new long[] {index, offset, length});
+                }
+                ilocItems.add(item);
+            }
+        }
+
+        void zeroIdat(long start, long length) throws IOException {
+            if (idatPayloadOffset < 0 || start + length > idatPayloadLength) {
+                throw new IOException("Metadata item data outside idat");
+            }
+            int from = (int) (idatPayloadOffset + start);
+            Arrays.fill(data, from, from + (int) length, (byte) 0);
+        }
+
+        /** Serializes the meta box without the {@code dropped} items. */
+        byte[] rebuild(Set<Long> dropped, OffsetMapper mapper) throws IOException {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(data.length);
+            payload.write(data, headerSize, 4);
+            for (IsoBmff.Box child : children) {
+                if (child.type == BOX_IINF) {
+                    write(payload, rebuildIinf(child, dropped));
+                } else if (child.type == BOX_ILOC) {
+                    write(payload, rebuildIloc(dropped, mapper));
+                } else if (child.type == BOX_IREF) {
+                    write(payload, rebuildIref(child, dropped));
+                } else if (child.type == BOX_IPRP) {
+                    write(payload, rebuildIprp(child, dropped));
+                } else {
+                    payload.write(data, (int) child.offset, (int) child.size);
+                }
+            }
+            return IsoBmff.box(BOX_META, payload.toByteArray());
+        }
+
+        private byte[] rebuildIinf(IsoBmff.Box iinf, Set<Long> dropped) throws IOException {
+            int pos = (int) iinf.payloadOffset();
+            int version = data[pos] & 0xFF;
+            int countSize = version == 0 ? 2 : 4;
+            ByteArrayOutputStream entries = new ByteArrayOutputStream();
+            long count = 0;
+            for (IsoBmff.Box infe : IsoBmff.parseBoxes(data, pos + 4 + countSize, (int) iinf.end())) {
+                if (infe.type == BOX_INFE && dropped.contains(infeItemId(infe))) {
+                    continue;
+                }
+                entries.write(data, (int) infe.offset, (int) infe.size);
+                count++;
+            }
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            payload.write(data, pos, 4);
+            IsoBmff.writeUInt(payload, count, countSize);
+            write(payload, entries.toByteArray());
+            return IsoBmff.box(BOX_IINF, payload.toByteArray());
+        }
+
+        private byte[] rebuildIref(IsoBmff.Box iref, Set<Long> dropped) throws IOException {
+            int pos = (int) iref.payloadOffset();
+            int version = data[pos] & 0xFF;
+            int idSize = version == 0 ? 2 : 4;
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            payload.write(data, pos, 4);
+            for (IsoBmff.Box reference : IsoBmff.parseBoxes(data, pos + 4, (int) iref.end())) {
+                int p = (int) reference.payloadOffset();
+                long fromId = IsoBmff.readUInt(data, p, idSize);
+                int referenceCount = (int) IsoBmff.readUInt(data, p + idSize, 2);
+                if (dropped.contains(fromId)) {
+                    continue;
+                }
+                List<Long> kept = new ArrayList<>();
+                for (int i = 0; i < referenceCount; i++) {
+                    long toId = IsoBmff.readUInt(data, p + idSize + 2 + i * idSize, idSize);
+                    if (!dropped.contains(toId)) {
+                        kept.add(toId);
+                    }
+                }
+                if (kept.isEmpty()) {
+                    continue;
+                }
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                IsoBmff.writeUInt(body, fromId, idSize);
+                IsoBmff.writeUInt(body, kept.size(), 2);
+                for (long toId : kept) {
+                    IsoBmff.writeUInt(body, toId, idSize);
+                }
+                write(payload, IsoBmff.box(reference.type, body.toByteArray()));
+            }
+            return IsoBmff.box(BOX_IREF, payload.toByteArray());
+        }
+
+        private byte[] rebuildIprp(IsoBmff.Box iprp, Set<Long> dropped) throws IOException {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            for (IsoBmff.Box child : IsoBmff.parseBoxes(data, (int) iprp.payloadOffset(), (int) iprp.end())) {
+                if (child.type == BOX_IPMA) {
+                    write(payload, rebuildIpma(child, dropped));
+                } else {
+                    payload.write(data, (int) child.offset, (int) child.size);
+                }
+            }
+            return IsoBmff.box(BOX_IPRP, payload.toByteArray());
+        }
+
+        private byte[] rebuildIpma(IsoBmff.Box ipma, Set<Long> dropped) throws IOException {
+            int pos = (int) ipma.payloadOffset();
+            int version = data[pos] & 0xFF;
+            int flags = (int) IsoBmff.readUInt(data, pos + 1, 3);
+            int idSize = version < 1 ? 2 : 4;
+            int associationSize = (flags & 1) != 0 ? 2 : 1;
+            long entryCount = IsoBmff.readUInt(data, pos + 4, 4);
+            int p = pos + 8;
+            ByteArrayOutputStream entries = new ByteArrayOutputStream();
+            long kept = 0;
+            for (long i = 0; i < entryCount; i++) {
+                int entryStart = p;
+                long itemId = IsoBmff.readUInt(data, p, idSize);
+                int associations = (int) IsoBmff.readUInt(data, p + idSize, 1);
+                p += idSize + 1 + associations * associationSize;
+                if (p > ipma.end()) {
+                    throw new IOException("Corrupt ipma box");
+                }
+                if (!dropped.contains(itemId)) {
+                    entries.write(data, entryStart, p - entryStart);
+                    kept++;
+                }
+            }
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            payload.write(data, pos, 4);
+            IsoBmff.writeUInt(payload, kept, 4);
+            write(payload, entries.toByteArray());
+            return IsoBmff.box(BOX_IPMA, payload.toByteArray());
+        }
+
+        private byte[] rebuildIloc(Set<Long> dropped, OffsetMapper mapper) throws IOException {
+            int idSize = ilocVersion < 2 ? 2 : 4;
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            payload.write(ilocVersion);
+            payload.write(0);
+            payload.write(0);
+            payload.write(0);
+            payload.write((ilocOffsetSize << 4) | ilocLengthSize);
+            payload.write((ilocBaseOffsetSize << 4) | ilocIndexSize);
+            long count = 0;
+            for (IlocItem item : ilocItems) {
+                if (!dropped.contains(item.id)) {
+                    count++;
+                }
+            }
+            IsoBmff.writeUInt(payload, count, idSize);
+            for (IlocItem item : ilocItems) {
+                if (dropped.contains(item.id)) {
+                    continue;
+                }
+                long[] offsets = new long[item.extents.size()];
+                long baseOffset = item.baseOffset;
+                for (int e = 0; e < offsets.length; e++) {
+                    offsets[e] = item.extents.get(e)[1];
+                }
+                if (item.constructionMethod == CONSTRUCTION_FILE_OFFSET
+                        && item.dataReferenceIndex == 0
+                        && offsets.length > 0) {
+                    baseOffset = relocate(item, offsets, mapper);
+                }
+
+                IsoBmff.writeUInt(payload, item.id, idSize);
+                if (ilocVersion >= 1) {
+                    IsoBmff.writeUInt(payload, item.constructionMethod, 2);
+                }
+                IsoBmff.writeUInt(payload, item.dataReferenceIndex, 2);
+                IsoBmff.writeUInt(payload, baseOffset, ilocBaseOffsetSize);
+                IsoBmff.writeUInt(payload, offsets.length, 2);
+                for (int e = 0; e < offsets.length; e++) {
+                    long[] extent = item.extents.get(e);
+                    IsoBmff.writeUInt(payload, extent[0], ilocIndexSize);
+                    IsoBmff.writeUInt(payload, offsets[e], ilocOffsetSize);
+                    IsoBmff.writeUInt(payload, extent[2], ilocLengthSize);
+                }
+            }
+            byte[] bytes = payload.toByteArray();
+            return IsoBmff.box(BOX_ILOC, bytes);
+        }
+
+        /**
+         * Moves an item's extents to their new absolute positions, preferring to adjust the base
+         * offset so extent offsets stay as written. Updates {@code offsets} in place and returns
+         * the new base offset.
+         */
+        private long relocate(IlocItem item, long[] offsets, OffsetMapper mapper) throws IOException {
+            long[] shifts = new long[offsets.length];
+            for (int e = 0; e < offsets.length; e++) {
+                long absolute = item.baseOffset + offsets[e];
+                shifts[e] = absolute - mapper.map(absolute);
+            }
+            long baseOffset = item.baseOffset;
+            long common = 0;
+            if (ilocBaseOffsetSize > 0) {
+                common = shifts[0];
+                baseOffset -= common;
+            }
+            for (int e = 0; e < offsets.length; e++) {
+                offsets[e] -= shifts[e] - common;
+                if (!IsoBmff.fits(offsets[e], ilocOffsetSize)
+                        || (ilocOffsetSize == 0 && offsets[e] != 0)) {
+                    throw new IOException("Relocated iloc extent does not fit");
+                }
+            }
+            if (!IsoBmff.fits(baseOffset, ilocBaseOffsetSize)
+                    || (ilocBaseOffsetSize == 0 && baseOffset != 0)) {
+                throw new IOException("Relocated iloc base offset does not fit");
+            }
+            return baseOffset;
+        }
+
+        private static void write(ByteArrayOutputStream out, byte[] bytes) {
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.doubleangels.redact.metadata;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Image container formats recognised from their leading bytes.
+ *
+ * <p>Containers other than {@link #UNKNOWN} can be cleaned losslessly by a format-specific
+ * stripper instead of the decode/re-encode fallback in {@link MetadataStripper}.
+ */
+public enum ImageContainer {
+    JPEG("image/jpeg", ".jpg"),
+    PNG("image/png", ".png"),
+    WEBP("image/webp", ".webp"),
+    HEIF("image/heic", ".heic"),
+    AVIF("image/avif", ".avif"),
+    UNKNOWN(null, null);
+
+    /** Number of leading bytes {@link #sniff(byte[], int)} needs to recognise every format. */
+    public static final int SNIFF_LENGTH = 32;
+
+    @Nullable
+    private final String mimeType;
+    @Nullable
+    private final String extension;
+
+    ImageContainer(@Nullable String mimeType, @Nullable String extension) {
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    /** MIME type of the cleaned output, or null for {@link #UNKNOWN}. */
+    @Nullable
+    public String mimeType() {
+        return mimeType;
+    }
+
+    /** File extension (with dot) of the cleaned output, or null for {@link #UNKNOWN}. */
+    @Nullable
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * Identifies the container from the first bytes of a file.
+     *
+     * @param header leading bytes of the file
+     * @param length number of valid bytes in {@code header}
+     */
+    @NonNull
+    public static ImageContainer sniff(@NonNull byte[] header, int length) {
+        if (length >= 3
+                && (header[0] & 0xFF) == 0xFF
+                && (header[1] & 0xFF) == 0xD8
+                && (header[2] & 0xFF) == 0xFF) {
+            return JPEG;
+        }
+        if (length >= 8
+                && (header[0] & 0xFF) == 0x89
+                && header[1] == 'P'
+                && header[2] == 'N'
+                && header[3] == 'G'
+                && header[4] == '\r'
+                && header[5] == '\n'
+                && header[6] == 0x1A
+                && header[7] == '\n') {
+            return PNG;
+        }
+        if (length >= 12
+                && header[0] == 'R'
+                && header[1] == 'I'
+                && header[2] == 'F'
+                && header[3] == 'F'
+                && header[8] == 'W'
+                && header[9] == 'E'
+                && header[10] == 'B'
+                && header[11] == 'P') {
+            return WEBP;
+        }
+        if (length >= 12
+                && header[4] == 'f'
+                && header[5] == 't'
+                && header[6] == 'y'
+                && header[7] == 'p') {
+            return sniffFtyp(header, length);
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Classifies an ISO base media file by its {@code ftyp} brands. Generic image brands
+     * ({@code mif1}, {@code msf1}) are resolved through the compatible brands when possible.
+     */
+    @NonNull
+    private static ImageContainer sniffFtyp(@NonNull byte[] header, int length) {
+        long boxSize = ((header[0] & 0xFFL) << 24) | ((header[1] & 0xFF) << 16)
+                | ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+        int end = (int) Math.min(length, Math.max(12, boxSize));
+        ImageContainer generic = UNKNOWN;
+        // Major brand at 8, minor version at 12, compatible brands from 16.
+        for (int offset = 8; offset + 4 <= end; offset = offset == 8 ? 16 : offset + 4) {
+            String brand = new String(header, offset, 4, StandardCharsets.ISO_8859_1);
+            switch (brand) {
+                case "avif":
+                case "avis":
+                    return AVIF;
+                case "heic":
+                case "heix":
+                case "hevc":
+                case "hevx":
+                case "heim":
+                case "heis":
+                    return HEIF;
+                case "mif1":
+                case "msf1":
+                    generic = HEIF;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return generic;
+    }
+}
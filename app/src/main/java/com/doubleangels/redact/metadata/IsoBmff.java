@@ -0,0 +1,167 @@
+package com.doubleangels.redact.metadata;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Low-level helpers shared by the ISO base media file format strippers (HEIF and MP4): box
+ * header parsing over a channel or an in-memory buffer, and big-endian integer encoding.
+ */
+final class IsoBmff {
+
+    private IsoBmff() {
+    }
+
+    /** A box located either in a file (absolute offsets) or in a byte array (array offsets). */
+    static final class Box {
+        final int type;
+        final long offset;
+        final long size;
+        final int headerSize;
+
+        Box(int type, long offset, long size, int headerSize) {
+            this.type = type;
+            this.offset = offset;
+            this.size = size;
+            this.headerSize = headerSize;
+        }
+
+        long payloadOffset() {
+            return offset + headerSize;
+        }
+
+        long end() {
+            return offset + size;
+        }
+
+        boolean contains(long position) {
+            return position >= offset && position < end();
+        }
+    }
+
+    static int fourCc(@NonNull String name) {
+        return (name.charAt(0) << 24) | (name.charAt(1) << 16) | (name.charAt(2) << 8) | name.charAt(3);
+    }
+
+    /**
+     * Reads the headers of consecutive boxes in {@code [start, end)} of a file. Trailing bytes
+     * too short to hold a box header are ignored.
+     *
+     * @throws IOException if a box header is malformed or a box runs past {@code end}
+     */
+    @NonNull
+    static List<Box> readBoxes(@NonNull FileChannel source, long start, long end) throws IOException {
+        List<Box> boxes = new ArrayList<>();
+        byte[] header = new byte[16];
+        long offset = start;
+        while (end - offset >= 8) {
+            int available = (int) Math.min(header.length, end - offset);
+            ByteBuffer buffer = ByteBuffer.wrap(header, 0, available);
+            SplicePlan.readFully(source, offset, buffer);
+            boxes.add(parseHeader(header, 0, available, offset, end));
+            offset = boxes.get(boxes.size() - 1).end();
+        }
+        return boxes;
+    }
+
+    /**
+     * Parses the headers of consecutive boxes in {@code [start, end)} of {@code data}.
+     *
+     * @throws IOException if a box header is malformed or a box runs past {@code end}
+     */
+    @NonNull
+    static List<Box> parseBoxes(@NonNull byte[] data, int start, int end) throws IOException {
+        List<Box> boxes = new ArrayList<>();
+        int offset = start;
+        while (end - offset >= 8) {
+            Box box = parseHeader(data, offset, Math.min(16, end - offset), offset, end);
+            boxes.add(box);
+            offset = (int) box.end();
+        }
+        return boxes;
+    }
+
+    private static Box parseHeader(byte[] data, int index, int available, long offset, long end)
+            throws IOException {
+        long size = readUInt(data, index, 4);
+        int type = (int) readUInt(data, index + 4, 4);
+        int headerSize = 8;
+        if (size == 1) {
+            if (available < 16) {
+                throw new IOException("Truncated box header");
+            }
+            size = readUInt(data, index + 8, 8);
+            headerSize = 16;
+        } else if (size == 0) {
+            size = end - offset;
+        }
+        if (size < headerSize || size > end - offset) {
+            throw new IOException("Corrupt '" + name(type) + "' box size");
+        }
+        return new Box(type, offset, size, headerSize);
+    }
+
+    /** Reads an unsigned big-endian integer of {@code size} bytes (0, 1, 2, 4 or 8). */
+    static long readUInt(@NonNull byte[] data, int offset, int size) throws IOException {
+        if (offset < 0 || offset + size > data.length) {
+            throw new IOException("Box field out of bounds");
+        }
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /** Writes {@code value} as a big-endian integer of {@code size} bytes. */
+    static void writeUInt(@NonNull ByteArrayOutputStream out, long value, int size) {
+        for (int i = size - 1; i >= 0; i--) {
+            out.write((int) (value >>> (8 * i)) & 0xFF);
+        }
+    }
+
+    /** Writes {@code value} as a big-endian integer of {@code size} bytes at {@code offset}. */
+    static void putUInt(@NonNull byte[] data, int offset, long value, int size) {
+        for (int i = size - 1; i >= 0; i--) {
+            data[offset + size - 1 - i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    /** Whether {@code value} is representable as an unsigned integer of {@code size} bytes. */
+    static boolean fits(long value, int size) {
+        if (value < 0) {
+            return false;
+        }
+        return size >= 8 || value < (1L << (8 * size));
+    }
+
+    /** Wraps {@code payload} in a box with a compact 32-bit header. */
+    @NonNull
+    static byte[] box(int type, @NonNull byte[] payload) throws IOException {
+        long size = 8L + payload.length;
+        if (size > 0xFFFFFFFFL) {
+            throw new IOException("Box too large");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) size);
+        writeUInt(out, size, 4);
+        writeUInt(out, type, 4);
+        out.write(payload, 0, payload.length);
+        return out.toByteArray();
+    }
+
+    @NonNull
+    static String name(int type) {
+        return new String(new char[] {
+                (char) ((type >>> 24) & 0xFF),
+                (char) ((type >>> 16) & 0xFF),
+                (char) ((type >>> 8) & 0xFF),
+                (char) (type & 0xFF)
+        });
+    }
+}
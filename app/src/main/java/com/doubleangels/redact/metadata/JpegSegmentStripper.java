@@ -0,0 +1,356 @@
+package com.doubleangels.redact.metadata;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Removes metadata from a JPEG stream at the marker level, without decoding any pixels.
+ *
+ * <p>The segments between SOI and the first SOS are filtered: quantization and Huffman tables,
+ * frame and scan headers, restart intervals, the JFIF header, ICC profile (APP2) and Adobe color
+ * transform (APP14) are kept; APP1 EXIF/XMP, APP13 IPTC, COM and all other APPn maker blocks are
+ * dropped. Entropy-coded scan data is copied byte for byte, so the output is bit-identical image
+ * data at the original resolution. Anything appended after EOI (motion-photo videos, MPF
+ * secondary images, OEM trailers) is discarded.
+ *
+ * <p>When an orientation is supplied, a minimal APP1 carrying only the EXIF Orientation tag is
+ * written so viewers still rotate the image correctly. It goes right after the JFIF APP0 when the
+ * image has one, since JFIF requires APP0 to follow SOI immediately, and right after SOI otherwise.
+ *
+ * <p>Memory use is a single fixed-size buffer regardless of image size.
+ */
+public final class JpegSegmentStripper {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final int M_SOI = 0xD8;
+    private static final int M_EOI = 0xD9;
+    private static final int M_SOS = 0xDA;
+    private static final int M_RST0 = 0xD0;
+    private static final int M_RST7 = 0xD7;
+    private static final int M_TEM = 0x01;
+    private static final int M_APP0 = 0xE0;
+    private static final int M_APP2 = 0xE2;
+    private static final int M_APP14 = 0xEE;
+    private static final int M_APP15 = 0xEF;
+    private static final int M_COM = 0xFE;
+
+    private static final byte[] JFIF_ID = "JFIF\0".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ICC_ID = "ICC_PROFILE\0".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ADOBE_ID = "Adobe".getBytes(StandardCharsets.US_ASCII);
+
+    /** EXIF Orientation tag (0x0112), written as the only entry of the synthesized IFD0. */
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TIFF_TYPE_SHORT = 3;
+
+    private JpegSegmentStripper() {
+    }
+
+    /**
+     * Copies {@code in} to {@code out} with all metadata segments removed.
+     *
+     * <p>Neither stream is closed; {@code out} is flushed before returning.
+     *
+     * @param orientation EXIF orientation (2–8) to re-emit, or any other value to write none
+     * @return number of segments dropped
+     * @throws IOException if the input is not a JPEG or is truncated before the first scan
+     */
+    public static int strip(@NonNull InputStream in, @NonNull OutputStream out, int orientation)
+            throws IOException {
+        SegmentReader reader = new SegmentReader(in);
+        OutputStream o = new BufferedOutputStream(out, BUFFER_SIZE);
+        byte[] header = new byte[4];
+
+        if (reader.readUnsignedByte() != 0xFF || reader.readUnsignedByte() != M_SOI) {
+            throw new IOException("Not a JPEG stream");
+        }
+        writeMarker(o, header, M_SOI);
+        boolean orientationPending = orientation > 1 && orientation <= 8;
+
+        int removed = 0;
+        int marker = reader.nextMarker();
+        while (marker != M_EOI) {
+            if (isStandalone(marker)) {
+                if (orientationPending) {
+                    o.write(orientationSegment(orientation));
+                    orientationPending = false;
+                }
+                writeMarker(o, header, marker);
+                marker = reader.nextMarker();
+                continue;
+            }
+
+            int length = reader.readUnsignedShort();
+            if (length < 2) {
+                throw new IOException("Corrupt JPEG segment length");
+            }
+            int payloadLength = length - 2;
+            if (shouldKeep(marker, reader, payloadLength)) {
+                // A kept APP0 is the JFIF header, which the orientation segment has to follow
+                if (orientationPending && marker != M_APP0) {
+                    o.write(orientationSegment(orientation));
+                    orientationPending = false;
+                }
+                header[0] = (byte) 0xFF;
+                header[1] = (byte) marker;
+                header[2] = (byte) (length >> 8);
+                header[3] = (byte) length;
+                o.write(header, 0, 4);
+                reader.copy(o, payloadLength);
+                if (orientationPending) {
+                    o.write(orientationSegment(orientation));
+                    orientationPending = false;
+                }
+            } else {
+                reader.skip(payloadLength);
+                removed++;
+            }
+
+            marker = marker == M_SOS ? reader.copyEntropyCodedData(o) : reader.nextMarker();
+        }
+        if (orientationPending) {
+            o.write(orientationSegment(orientation));
+        }
+        writeMarker(o, header, M_EOI);
+        o.flush();
+        return removed;
+    }
+
+    /**
+     * Builds an APP1 segment whose EXIF block contains nothing but IFD0 with one Orientation
+     * entry.
+     */
+    @NonNull
+    static byte[] orientationSegment(int orientation) {
+        byte[] segment = new byte[36];
+        int i = 0;
+        segment[i++] = (byte) 0xFF;
+        segment[i++] = (byte) 0xE1;
+        segment[i++] = 0;
+        segment[i++] = 34; // length: itself + "Exif\0\0" + 26-byte TIFF block
+        segment[i++] = 'E';
+        segment[i++] = 'x';
+        segment[i++] = 'i';
+        segment[i++] = 'f';
+        segment[i++] = 0;
+        segment[i++] = 0;
+        // TIFF header: big-endian, magic 42, IFD0 at offset 8
+        segment[i++] = 'M';
+        segment[i++] = 'M';
+        segment[i++] = 0;
+        segment[i++] = 42;
+        segment[i++] = 0;
+        segment[i++] = 0;
+        segment[i++] = 0;
+        segment[i++] = 8;
+        // IFD0: one entry
+        segment[i++] = 0;
+        segment[i++] = 1;
+        segment[i++] = (byte) (TAG_ORIENTATION >> 8);
+        segment[i++] = (byte) TAG_ORIENTATION;
+        segment[i++] = 0;
+        segment[i++] = TIFF_TYPE_SHORT;
+        segment[i++] = 0;
+        segment[i++] = 0;
+        segment[i++] = 0;
+        segment[i++] = 1;
+        segment[i++] = 0;
+        segment[i++] = (byte) orientation;
+        segment[i++] = 0;
+        segment[i++] = 0;
+        // No next IFD
+        segment[i++] = 0;
+        segment[i++] = 0;
+        segment[i++] = 0;
+        segment[i] = 0;
+        return segment;
+    }
+
+    private static void writeMarker(OutputStream out, byte[] scratch, int marker) throws IOException {
+        scratch[0] = (byte) 0xFF;
+        scratch[1] = (byte) marker;
+        out.write(scratch, 0, 2);
+    }
+
+    private static boolean isStandalone(int marker) {
+        return marker == M_TEM || (marker >= M_RST0 && marker <= M_RST7);
+    }
+
+    /**
+     * Decides whether a marker segment survives. Only application segments that a decoder needs
+     * to render the image faithfully are kept; every other APPn and COM is metadata.
+     */
+    private static boolean shouldKeep(int marker, SegmentReader reader, int payloadLength)
+            throws IOException {
+        if (marker == M_COM) {
+            return false;
+        }
+        if (marker < M_APP0 || marker > M_APP15) {
+            return true;
+        }
+        switch (marker) {
+            case M_APP0:
+                return reader.payloadStartsWith(JFIF_ID, payloadLength);
+            case M_APP2:
+                return reader.payloadStartsWith(ICC_ID, payloadLength);
+            case M_APP14:
+                return reader.payloadStartsWith(ADOBE_ID, payloadLength);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Buffered reader over the source stream that can peek at segment identifiers and scan
+     * entropy-coded data in bulk.
+     */
+    private static final class SegmentReader {
+        private final InputStream in;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int pos;
+        private int limit;
+
+        SegmentReader(InputStream in) {
+            this.in = in;
+        }
+
+        /** Makes at least {@code n} unread bytes available; returns false at end of stream. */
+        private boolean ensure(int n) throws IOException {
+            if (limit - pos >= n) {
+                return true;
+            }
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            }
+            while (limit < n) {
+                int read = in.read(buf, limit, buf.length - limit);
+                if (read < 0) {
+                    return false;
+                }
+                limit += read;
+            }
+            return true;
+        }
+
+        int readUnsignedByte() throws IOException {
+            if (!ensure(1)) {
+                throw new EOFException("Unexpected end of JPEG stream");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        int readUnsignedShort() throws IOException {
+            if (!ensure(2)) {
+                throw new EOFException("Unexpected end of JPEG stream");
+            }
+            int value = ((buf[pos] & 0xFF) << 8) | (buf[pos + 1] & 0xFF);
+            pos += 2;
+            return value;
+        }
+
+        /** Reads the next marker code, skipping any 0xFF fill bytes. */
+        int nextMarker() throws IOException {
+            if (readUnsignedByte() != 0xFF) {
+                throw new IOException("Expected JPEG marker");
+            }
+            int marker;
+            do {
+                marker = readUnsignedByte();
+            } while (marker == 0xFF);
+            return marker;
+        }
+
+        boolean payloadStartsWith(byte[] prefix, int payloadLength) throws IOException {
+            if (payloadLength < prefix.length || !ensure(prefix.length)) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (buf[pos + i] != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void copy(OutputStream out, int count) throws IOException {
+            while (count > 0) {
+                if (!ensure(1)) {
+                    throw new EOFException("Unexpected end of JPEG stream");
+                }
+                int chunk = Math.min(count, limit - pos);
+                out.write(buf, pos, chunk);
+                pos += chunk;
+                count -= chunk;
+            }
+        }
+
+        void skip(int count) throws IOException {
+            while (count > 0) {
+                if (!ensure(1)) {
+                    throw new EOFException("Unexpected end of JPEG stream");
+                }
+                int chunk = Math.min(count, limit - pos);
+                pos += chunk;
+                count -= chunk;
+            }
+        }
+
+        /**
+         * Copies entropy-coded data up to the next real marker (anything other than a stuffed
+         * 0xFF00 or a restart marker) and returns that marker. A stream that ends mid-scan is
+         * treated as if EOI followed, so truncated camera files still produce a valid JPEG.
+         */
+        int copyEntropyCodedData(OutputStream out) throws IOException {
+            while (true) {
+                if (!ensure(1)) {
+                    return M_EOI;
+                }
+                int i = pos;
+                while (i < limit) {
+                    if (buf[i] != (byte) 0xFF) {
+                        i++;
+                        continue;
+                    }
+                    if (i + 1 >= limit) {
+                        break;
+                    }
+                    int next = buf[i + 1] & 0xFF;
+                    if (next == 0x00 || (next >= M_RST0 && next <= M_RST7)) {
+                        i += 2;
+                        continue;
+                    }
+                    break;
+                }
+                if (i > pos) {
+                    out.write(buf, pos, i - pos);
+                    pos = i;
+                    continue;
+                }
+
+                // buf[pos] is 0xFF and the byte after it decides what it is.
+                if (!ensure(2)) {
+                    pos = limit;
+                    return M_EOI;
+                }
+                int next = buf[pos + 1] & 0xFF;
+                if (next == 0xFF) {
+                    pos++;
+                    continue;
+                }
+                if (next == 0x00 || (next >= M_RST0 && next <= M_RST7)) {
+                    continue;
+                }
+                pos += 2;
+                return next;
+            }
+        }
+    }
+}
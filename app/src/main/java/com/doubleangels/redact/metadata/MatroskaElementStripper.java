@@ -0,0 +1,447 @@
+package com.doubleangels.redact.metadata;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes metadata from a WebM or Matroska file at the EBML element level, without demuxing or
+ * re-encoding any frames.
+ *
+ * <p>{@code Tags}, {@code Attachments} and {@code Void} elements are dropped from the segment, and
+ * {@code Title}, {@code DateUTC}, {@code MuxingApp} and {@code WritingApp} are dropped from
+ * {@code Info}. {@code SeekHead} entries, {@code CueClusterPosition} values and cluster
+ * {@code Position} elements are rewritten for the shortened segment; {@code CRC-32} elements of
+ * rewritten masters are dropped because they no longer match. Cluster data is referenced by offset
+ * and copied with {@link FileChannel#transferTo}.
+ */
+public final class MatroskaElementStripper {
+
+    /** Upper bound for the in-memory copy of a rewritten level-1 element (mostly {@code Cues}). */
+    private static final int MAX_ELEMENT_SIZE = 32 * 1024 * 1024;
+
+    private static final int ID_EBML = 0x1A45DFA3;
+    private static final int ID_DOC_TYPE = 0x4282;
+    private static final int ID_SEGMENT = 0x18538067;
+    private static final int ID_SEEK_HEAD = 0x114D9B74;
+    private static final int ID_SEEK = 0x4DBB;
+    private static final int ID_SEEK_POSITION = 0x53AC;
+    private static final int ID_INFO = 0x1549A966;
+    private static final int ID_TITLE = 0x7BA9;
+    private static final int ID_DATE_UTC = 0x4461;
+    private static final int ID_MUXING_APP = 0x4D80;
+    private static final int ID_WRITING_APP = 0x5741;
+    private static final int ID_TRACKS = 0x1654AE6B;
+    private static final int ID_CLUSTER = 0x1F43B675;
+    private static final int ID_POSITION = 0xA7;
+    private static final int ID_SIMPLE_BLOCK = 0xA3;
+    private static final int ID_BLOCK_GROUP = 0xA0;
+    private static final int ID_CUES = 0x1C53BB6B;
+    private static final int ID_CUE_POINT = 0xBB;
+    private static final int ID_CUE_TRACK_POSITIONS = 0xB7;
+    private static final int ID_CUE_CLUSTER_POSITION = 0xF1;
+    private static final int ID_CHAPTERS = 0x1043A770;
+    private static final int ID_ATTACHMENTS = 0x1941A469;
+    private static final int ID_TAGS = 0x1254C367;
+    private static final int ID_VOID = 0xEC;
+    private static final int ID_CRC32 = 0xBF;
+
+    private MatroskaElementStripper() {
+    }
+
+    /** Maps a segment-relative position in the source to its position in the rewritten file. */
+    private interface PositionMapper {
+        /** Returns the new position, or -1 if the element at {@code position} was dropped. */
+        long map(long position);
+    }
+
+    /** An element header located either in a file or in a byte array. */
+    private static final class Element {
+        final int id;
+        final long offset;
+        final int idLength;
+        final int headerSize;
+        /** Payload size, or -1 if the element has unknown size. */
+        final long dataSize;
+        /** End of the element; for unknown sizes this is filled in by the caller. */
+        long end;
+
+        Element(int id, long offset, int idLength, int headerSize, long dataSize) {
+            this.id = id;
+            this.offset = offset;
+            this.idLength = idLength;
+            this.headerSize = headerSize;
+            this.dataSize = dataSize;
+            this.end = dataSize < 0 ? -1 : offset + headerSize + dataSize;
+        }
+
+        long dataOffset() {
+            return offset + headerSize;
+        }
+    }
+
+    /**
+     * Reads the {@code DocType} of an EBML file, for example {@code "webm"} or {@code "matroska"}.
+     *
+     * @throws IOException if the file does not start with an EBML header
+     */
+    @NonNull
+    public static String docType(@NonNull FileChannel source) throws IOException {
+        Element header = readHeader(source, 0, source.size());
+        if (header.id != ID_EBML || header.end > source.size() || header.dataSize > 4096) {
+            throw new IOException("Not an EBML file");
+        }
+        byte[] data = read(source, header.offset, (int) (header.end - header.offset));
+        for (Element child : parseChildren(data, header.headerSize, data.length)) {
+            if (child.id == ID_DOC_TYPE) {
+                String value = new String(data, (int) child.dataOffset(), (int) child.dataSize,
+                        StandardCharsets.US_ASCII);
+                return value.trim().replace("\0", "");
+            }
+        }
+        return "matroska";
+    }
+
+    /**
+     * Builds the plan for a metadata-free copy of the WebM/Matroska file in {@code source}.
+     *
+     * @throws IOException if the file is not a Matroska file or uses a layout this stripper cannot
+     *                     rewrite safely
+     */
+    @NonNull
+    public static SplicePlan plan(@NonNull FileChannel source) throws IOException {
+        long fileSize = source.size();
+        Element ebml = readHeader(source, 0, fileSize);
+        if (ebml.id != ID_EBML || ebml.end > fileSize) {
+            throw new IOException("Not an EBML file");
+        }
+        Element segment = readHeader(source, ebml.end, fileSize);
+        if (segment.id != ID_SEGMENT) {
+            throw new IOException("No Matroska segment");
+        }
+        long segmentStart = segment.dataOffset();
+        long segmentEnd = segment.dataSize < 0 ? fileSize : segment.end;
+        if (segmentEnd > fileSize) {
+            throw new IOException("Matroska segment runs past end of file");
+        }
+
+        List<Element> children = new ArrayList<>();
+        long offset = segmentStart;
+        while (segmentEnd - offset >= 2) {
+            Element child = readHeader(source, offset, segmentEnd);
+            if (child.dataSize < 0) {
+                if (child.id != ID_CLUSTER) {
+                    throw new IOException("Unknown-size element in segment");
+                }
+                child.end = findClusterEnd(source, child, segmentEnd);
+            } else if (child.end > segmentEnd) {
+                throw new IOException("Matroska element runs past end of segment");
+            }
+            children.add(child);
+            offset = child.end;
+        }
+
+        SplicePlan plan = new SplicePlan();
+        Map<Integer, byte[]> loaded = new HashMap<>();
+        for (int i = 0; i < children.size(); i++) {
+            Element child = children.get(i);
+            if (isDropped(child)) {
+                plan.markRemoved();
+            } else if (isRewritten(child)) {
+                if (child.end - child.offset > MAX_ELEMENT_SIZE) {
+                    throw new IOException("Matroska element too large");
+                }
+                loaded.put(i, read(source, child.offset, (int) (child.end - child.offset)));
+            }
+        }
+
+        // Rewritten elements keep the widths of every position they contain, so their length does
+        // not depend on the positions written into them: size them with the old positions first,
+        // then lay out the segment and write the real ones.
+        Map<Long, Long> newPositions = new HashMap<>();
+        for (Element child : children) {
+            if (!isDropped(child)) {
+                newPositions.put(child.offset - segmentStart, child.offset - segmentStart);
+            }
+        }
+        PositionMapper mapper = p -> {
+            Long mapped = newPositions.get(p);
+            return mapped != null ? mapped : -1;
+        };
+        byte[][] rewritten = new byte[children.size()][];
+        for (Map.Entry<Integer, byte[]> entry : loaded.entrySet()) {
+            rewritten[entry.getKey()] = rewrite(entry.getValue(), mapper, plan);
+        }
+        long position = 0;
+        for (int i = 0; i < children.size(); i++) {
+            Element child = children.get(i);
+            if (!isDropped(child)) {
+                newPositions.put(child.offset - segmentStart, position);
+                position += rewritten[i] != null ? rewritten[i].length : child.end - child.offset;
+            }
+        }
+        for (Map.Entry<Integer, byte[]> entry : loaded.entrySet()) {
+            rewritten[entry.getKey()] = rewrite(entry.getValue(), mapper, null);
+        }
+
+        plan.addSourceRange(0, ebml.end);
+        if (segment.dataSize < 0) {
+            plan.addSourceRange(segment.offset, segment.headerSize);
+        } else {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            header.write(read(source, segment.offset, segment.idLength), 0, segment.idLength);
+            writeSize(header, position, segment.headerSize - segment.idLength);
+            plan.addLiteral(header.toByteArray());
+        }
+        for (int i = 0; i < children.size(); i++) {
+            Element child = children.get(i);
+            if (isDropped(child)) {
+                continue;
+            }
+            if (rewritten[i] != null) {
+                plan.addLiteral(rewritten[i]);
+            } else if (child.id == ID_CLUSTER) {
+                copyCluster(source, child, segmentStart, mapper, plan);
+            } else {
+                plan.addSourceRange(child.offset, child.end - child.offset);
+            }
+        }
+        return plan;
+    }
+
+    private static boolean isDropped(Element element) {
+        return element.id == ID_TAGS || element.id == ID_ATTACHMENTS || element.id == ID_VOID;
+    }
+
+    private static boolean isRewritten(Element element) {
+        return element.id == ID_INFO || element.id == ID_SEEK_HEAD || element.id == ID_CUES;
+    }
+
+    /**
+     * Rewrites the Info, SeekHead or Cues element held in {@code data}. Dropped children are
+     * counted on {@code plan} when it is non-null.
+     */
+    private static byte[] rewrite(byte[] data, PositionMapper mapper, SplicePlan plan) throws IOException {
+        Element element = parseHeader(data, 0, data.length);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(data.length);
+        for (Element child : parseChildren(data, element.headerSize, data.length)) {
+            if (child.id == ID_CRC32 || child.id == ID_VOID) {
+                continue;
+            }
+            if (element.id == ID_INFO) {
+                if (child.id == ID_TITLE || child.id == ID_DATE_UTC
+                        || child.id == ID_MUXING_APP || child.id == ID_WRITING_APP) {
+                    if (plan != null) {
+                        plan.markRemoved();
+                    }
+                    continue;
+                }
+            } else if (element.id == ID_SEEK_HEAD && child.id == ID_SEEK) {
+                byte[] seek = rewriteSeek(data, child, mapper);
+                if (seek != null) {
+                    payload.write(seek, 0, seek.length);
+                }
+                continue;
+            } else if (element.id == ID_CUES && child.id == ID_CUE_POINT) {
+                byte[] cuePoint = copyOf(data, child);
+                patchCuePoint(cuePoint, mapper);
+                payload.write(cuePoint, 0, cuePoint.length);
+                continue;
+            }
+            payload.write(data, (int) child.offset, (int) (child.end - child.offset));
+        }
+        return element(data, element, payload.toByteArray());
+    }
+
+    /** Returns the Seek entry with its position remapped, or null if its target was dropped. */
+    private static byte[] rewriteSeek(byte[] data, Element seek, PositionMapper mapper) throws IOException {
+        byte[] copy = copyOf(data, seek);
+        for (Element child : parseChildren(copy, seek.headerSize, copy.length)) {
+            if (child.id == ID_SEEK_POSITION) {
+                long mapped = mapper.map(readUInt(copy, (int) child.dataOffset(), (int) child.dataSize));
+                if (mapped < 0) {
+                    return null;
+                }
+                putUInt(copy, (int) child.dataOffset(), mapped, (int) child.dataSize);
+            }
+        }
+        return copy;
+    }
+
+    private static void patchCuePoint(byte[] cuePoint, PositionMapper mapper) throws IOException {
+        Element point = parseHeader(cuePoint, 0, cuePoint.length);
+        for (Element positions : parseChildren(cuePoint, point.headerSize, cuePoint.length)) {
+            if (positions.id != ID_CUE_TRACK_POSITIONS) {
+                continue;
+            }
+            for (Element child : parseChildren(cuePoint, (int) positions.dataOffset(), (int) positions.end)) {
+                if (child.id == ID_CUE_CLUSTER_POSITION) {
+                    long mapped = mapper.map(readUInt(cuePoint, (int) child.dataOffset(), (int) child.dataSize));
+                    if (mapped < 0) {
+                        throw new IOException("Cue points at a dropped element");
+                    }
+                    putUInt(cuePoint, (int) child.dataOffset(), mapped, (int) child.dataSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a cluster to the plan, patching its optional {@code Position} element. Only the
+     * children before the first block are inspected; block data is copied by range.
+     */
+    private static void copyCluster(FileChannel source, Element cluster, long segmentStart,
+            PositionMapper mapper, SplicePlan plan) throws IOException {
+        long offset = cluster.dataOffset();
+        while (cluster.end - offset >= 2) {
+            Element child = readHeader(source, offset, cluster.end);
+            if (child.id == ID_SIMPLE_BLOCK || child.id == ID_BLOCK_GROUP || child.dataSize < 0) {
+                break;
+            }
+            if (child.id == ID_POSITION && child.dataSize > 0 && child.dataSize <= 8) {
+                byte[] value = read(source, child.dataOffset(), (int) child.dataSize);
+                long mapped = mapper.map(cluster.offset - segmentStart);
+                putUInt(value, 0, mapped, value.length);
+                plan.addSourceRange(cluster.offset, child.dataOffset() - cluster.offset);
+                plan.addLiteral(value);
+                plan.addSourceRange(child.end, cluster.end - child.end);
+                return;
+            }
+            offset = child.end;
+        }
+        plan.addSourceRange(cluster.offset, cluster.end - cluster.offset);
+    }
+
+    /** Finds the end of an unknown-size cluster: the next level-1 element or the segment end. */
+    private static long findClusterEnd(FileChannel source, Element cluster, long segmentEnd) throws IOException {
+        long offset = cluster.dataOffset();
+        while (segmentEnd - offset >= 2) {
+            Element child = readHeader(source, offset, segmentEnd);
+            if (isLevel1(child.id)) {
+                return offset;
+            }
+            if (child.dataSize < 0 || child.end > segmentEnd) {
+                throw new IOException("Corrupt unknown-size cluster");
+            }
+            offset = child.end;
+        }
+        return segmentEnd;
+    }
+
+    private static boolean isLevel1(int id) {
+        return id == ID_CLUSTER || id == ID_CUES || id == ID_TAGS || id == ID_ATTACHMENTS
+                || id == ID_CHAPTERS || id == ID_SEEK_HEAD || id == ID_INFO || id == ID_TRACKS
+                || id == ID_EBML;
+    }
+
+    /** Rebuilds a master element around {@code payload}, keeping its ID and size width. */
+    private static byte[] element(byte[] data, Element element, byte[] payload) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + element.headerSize);
+        out.write(data, (int) element.offset, element.idLength);
+        writeSize(out, payload.length, element.headerSize - element.idLength);
+        out.write(payload, 0, payload.length);
+        return out.toByteArray();
+    }
+
+    /** Writes an EBML size with {@code width} bytes, or the minimal width if it does not fit. */
+    private static void writeSize(ByteArrayOutputStream out, long size, int width) throws IOException {
+        // All-ones is reserved for unknown size, so a width of n holds at most 2^(7n) - 2.
+        while (width < 8 && size > (1L << (7 * width)) - 2) {
+            width++;
+        }
+        if (size > (1L << (7 * width)) - 2) {
+            throw new IOException("EBML size too large");
+        }
+        long value = size | (1L << (7 * width));
+        for (int i = width - 1; i >= 0; i--) {
+            out.write((int) (value >>> (8 * i)) & 0xFF);
+        }
+    }
+
+    private static Element readHeader(FileChannel source, long offset, long limit) throws IOException {
+        int available = (int) Math.min(12, limit - offset);
+        if (available < 2) {
+            throw new IOException("Truncated EBML element");
+        }
+        byte[] header = read(source, offset, available);
+        Element element = parseHeader(header, 0, available);
+        return new Element(element.id, offset, element.idLength, element.headerSize, element.dataSize);
+    }
+
+    private static List<Element> parseChildren(byte[] data, int start, int end) throws IOException {
+        List<Element> children = new ArrayList<>();
+        int offset = start;
+        while (end - offset >= 2) {
+            Element child = parseHeader(data, offset, end);
+            if (child.dataSize < 0 || child.end > end) {
+                throw new IOException("Corrupt EBML element");
+            }
+            children.add(child);
+            offset = (int) child.end;
+        }
+        return children;
+    }
+
+    private static Element parseHeader(byte[] data, int offset, int end) throws IOException {
+        int idLength = vintLength(data, offset, end, 4);
+        int id = (int) readUInt(data, offset, idLength);
+        int sizeLength = vintLength(data, offset + idLength, end, 8);
+        long size = readUInt(data, offset + idLength, sizeLength) & ((1L << (7 * sizeLength)) - 1);
+        if (size == (1L << (7 * sizeLength)) - 1) {
+            size = -1;
+        }
+        return new Element(id, offset, idLength, idLength + sizeLength, size);
+    }
+
+    private static int vintLength(byte[] data, int offset, int end, int maxLength) throws IOException {
+        if (offset >= end) {
+            throw new IOException("Truncated EBML element");
+        }
+        int first = data[offset] & 0xFF;
+        int length = Integer.numberOfLeadingZeros(first) - 23;
+        if (first == 0 || length > maxLength || offset + length > end) {
+            throw new IOException("Invalid EBML variable-length integer");
+        }
+        return length;
+    }
+
+    private static long readUInt(byte[] data, int offset, int size) throws IOException {
+        if (size > 8 || offset + size > data.length) {
+            throw new IOException("EBML value out of bounds");
+        }
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void putUInt(byte[] data, int offset, long value, int size) throws IOException {
+        if (size < 8 && (value >>> (8 * size)) != 0) {
+            throw new IOException("Rewritten position does not fit");
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            data[offset + size - 1 - i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static byte[] copyOf(byte[] data, Element element) {
+        byte[] copy = new byte[(int) (element.end - element.offset)];
+        System.arraycopy(data, (int) element.offset, copy, 0, copy.length);
+        return copy;
+    }
+
+    private static byte[] read(FileChannel source, long offset, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        SplicePlan.readFully(source, offset, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+}
@@ -9,6 +9,7 @@ import android.location.Address;
 import android.location.Geocoder;
 import android.media.MediaMetadataRetriever;
 import android.net.Uri;
+import android.os.Process;
 import android.provider.OpenableColumns;
 import android.util.Log;
 
@@ -17,6 +18,7 @@ import androidx.core.content.ContextCompat;
 import androidx.exifinterface.media.ExifInterface;
 
 import com.doubleangels.redact.R;
+import com.doubleangels.redact.media.MediaProbe;
 import com.doubleangels.redact.sentry.SentryManager;
 
 import java.io.IOException;
@@ -28,8 +30,12 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * MetadataDisplayer is a utility class that extracts and formats metadata from media files (images and videos).
@@ -37,7 +43,11 @@ import java.util.concurrent.Executors;
  * and formatting the output for display to users.
  *
  * The class uses ExifInterface for image metadata and MediaMetadataRetriever for video metadata,
- * and performs operations asynchronously to avoid blocking the UI thread.
+ * and performs operations asynchronously to avoid blocking the UI thread. Every extraction runs on
+ * one small process-wide pool, and starting a scan for a caller cancels that caller's previous
+ * scan (see {@link MetadataScan}), so tapping quickly through files neither adds threads nor
+ * leaves stale scans running. Sectioned results are kept by {@link MetadataScanCache}, so a file
+ * that has not changed since it was last scanned is not parsed again.
  */
 public class MetadataDisplayer {
     private static final String TAG = "MetadataDisplayer";
@@ -55,6 +65,30 @@ public class MetadataDisplayer {
     private static final char METADATA_RECORD_SEP = '\u001e';
     private static final char METADATA_UNIT_SEP = '\u001f';
 
+    /** Extractions that may run at once; more are queued. */
+    private static final int EXTRACTION_THREADS = 2;
+
+    private static final AtomicInteger EXTRACTION_THREAD_COUNT = new AtomicInteger();
+
+    /** Shared by every scan; idle threads exit after a while. */
+    private static final ThreadPoolExecutor EXTRACTOR = new ThreadPoolExecutor(
+            EXTRACTION_THREADS, EXTRACTION_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "redact-metadata-" + EXTRACTION_THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    static {
+        EXTRACTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /** Latest scan per caller; an entry goes away with its caller. */
+    private static final Map<Object, MetadataScan> LATEST_SCANS = new WeakHashMap<>();
+
     /**
      * Callback interface for receiving consolidated metadata extraction results.
      */
@@ -73,6 +107,13 @@ public class MetadataDisplayer {
          * @param error Error message describing the failure
          */
         void onExtractionFailed(String error);
+
+        /**
+         * Called instead of the other methods when the scan was cancelled or superseded by a
+         * newer scan for the same caller.
+         */
+        default void onExtractionCancelled() {
+        }
     }
 
     /**
@@ -87,12 +128,31 @@ public class MetadataDisplayer {
          */
         void onMetadataExtracted(Map<String, String> metadataSections, boolean isVideo);
 
+        /**
+         * Called on the extraction thread as soon as a section is ready, before the rest of the
+         * file has been parsed. A later call for the same section replaces the earlier content;
+         * {@link #onMetadataExtracted} still delivers the complete set at the end.
+         *
+         * @param section Section key such as {@link #SECTION_BASIC_INFO}
+         * @param content Section content in the same format as the final result
+         * @param isVideo Whether the processed file is a video
+         */
+        default void onSectionExtracted(String section, String content, boolean isVideo) {
+        }
+
         /**
          * Called when metadata extraction fails.
          *
          * @param error Error message describing the failure
          */
         void onExtractionFailed(String error);
+
+        /**
+         * Called instead of the other methods when the scan was cancelled or superseded by a
+         * newer scan for the same caller.
+         */
+        default void onExtractionCancelled() {
+        }
     }
 
     /**
@@ -102,15 +162,31 @@ public class MetadataDisplayer {
      * @param context Application context
      * @param mediaUri URI of the media file to analyze
      * @param callback Callback to receive the extraction result
+     * @return the scan, which can be cancelled
+     */
+    public static MetadataScan extractMetadata(Context context, Uri mediaUri, MetadataCallback callback) {
+        return extractMetadata(context, mediaUri, callback, callback);
+    }
+
+    /**
+     * Extracts metadata from a media file and returns it as a single formatted string, cancelling
+     * any scan still running for {@code caller}.
+     *
+     * @param context Application context
+     * @param mediaUri URI of the media file to analyze
+     * @param caller Identifies the requester; only its latest scan reports a result
+     * @param callback Callback to receive the extraction result
+     * @return the scan, which can be cancelled
      */
-    public static void extractMetadata(Context context, Uri mediaUri, MetadataCallback callback) {
+    public static MetadataScan extractMetadata(Context context, Uri mediaUri, Object caller,
+            MetadataCallback callback) {
         SentryManager.log("Starting metadata extraction");
         SentryManager.setCustomKey("operation_type", "extract_metadata");
 
-        // Create a single thread executor to perform the extraction in the background
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        executor.execute(() -> {
+        MetadataScan scan = startScan(caller);
+        submit(scan, () -> {
             try {
+                scan.throwIfCancelled();
                 SentryManager.log("Processing media URI: " + mediaUri);
                 ContentResolver contentResolver = context.getContentResolver();
                 String mimeType = contentResolver.getType(mediaUri);
@@ -123,30 +199,43 @@ public class MetadataDisplayer {
 
                 // Extract basic file information (name, size, type)
                 extractBasicFileInfo(context, mediaUri, metadata);
+                scan.throwIfCancelled();
 
                 // Extract either video or image specific metadata
                 if (isVideo) {
                     SentryManager.log("Extracting video metadata");
-                    extractVideoMetadata(context, mediaUri, metadata);
+                    extractVideoMetadata(context, mediaUri, metadata, scan);
                 } else {
                     SentryManager.log("Extracting image metadata");
-                    extractImageMetadata(context, mediaUri, metadata);
+                    extractImageMetadata(context, mediaUri, metadata, scan);
                 }
 
                 // Return the result via callback
-                SentryManager.log("Metadata extraction completed successfully");
-                callback.onMetadataExtracted(metadata.toString(), isVideo);
+                if (finishScan(caller, scan)) {
+                    SentryManager.log("Metadata extraction completed successfully");
+                    callback.onMetadataExtracted(metadata.toString(), isVideo);
+                } else {
+                    callback.onExtractionCancelled();
+                }
+            } catch (CancellationException e) {
+                SentryManager.log("Metadata extraction superseded");
+                finishScan(caller, scan);
+                callback.onExtractionCancelled();
             } catch (Exception e) {
+                if (!finishScan(caller, scan)) {
+                    // Cancelling closed the stream under the extractor
+                    callback.onExtractionCancelled();
+                    return;
+                }
                 // Log the exception and notify callback of failure
                 Log.e(TAG, "Error extracting metadata", e);
                 SentryManager.recordException(e);
                 SentryManager.setCustomKey("extraction_failed", true);
                 SentryManager.setCustomKey("error_type", e.getClass().getName());
                 callback.onExtractionFailed(context.getString(R.string.metadata_error_extraction, e.getMessage()));
-            } finally {
-                executor.shutdown();
             }
         });
+        return scan;
     }
 
     /**
@@ -156,16 +245,34 @@ public class MetadataDisplayer {
      * @param context Application context
      * @param mediaUri URI of the media file to analyze
      * @param callback Callback to receive the sectioned extraction result
+     * @return the scan, which can be cancelled
      */
-    public static void extractSectionedMetadata(Context context, Uri mediaUri, SectionedMetadataCallback callback) {
+    public static MetadataScan extractSectionedMetadata(Context context, Uri mediaUri,
+            SectionedMetadataCallback callback) {
+        return extractSectionedMetadata(context, mediaUri, callback, callback);
+    }
+
+    /**
+     * Extracts metadata from a media file and organizes it into logical sections, cancelling any
+     * scan still running for {@code caller}.
+     *
+     * @param context Application context
+     * @param mediaUri URI of the media file to analyze
+     * @param caller Identifies the requester; only its latest scan reports a result
+     * @param callback Callback to receive the sectioned extraction result
+     * @return the scan, which can be cancelled
+     */
+    public static MetadataScan extractSectionedMetadata(Context context, Uri mediaUri, Object caller,
+            SectionedMetadataCallback callback) {
         SentryManager.log("Starting sectioned metadata extraction");
         SentryManager.setCustomKey("operation_type", "extract_sectioned_metadata");
 
-        // Create a single thread executor to perform the extraction in the background
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        executor.execute(() -> {
+        MetadataScan scan = startScan(caller);
+        submit(scan, () -> {
             try {
+                scan.throwIfCancelled();
                 SentryManager.log("Processing media URI: " + mediaUri);
+
                 ContentResolver contentResolver = context.getContentResolver();
                 String mimeType = contentResolver.getType(mediaUri);
                 // Determine if the file is a video based on MIME type
@@ -173,23 +280,43 @@ public class MetadataDisplayer {
                 SentryManager.setCustomKey("is_video", isVideo);
                 SentryManager.setCustomKey("mime_type", mimeType != null ? mimeType : "unknown");
 
-                // Map to store different sections of metadata
-                Map<String, String> sections = new HashMap<>();
-
                 // Extract all metadata into a single combined list
                 Map<String, String> allMetadata = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-                
-                // Extract and add basic file information
-                extractBasicFileInfoToMap(context, mediaUri, allMetadata);
+
+                // Name, type and size cost one cursor query, so show them before anything is parsed
+                extractBasicFileInfoToMap(context, mediaUri, mimeType, allMetadata);
+                if (!scan.isCancelled()) {
+                    callback.onSectionExtracted(SECTION_BASIC_INFO, joinMetadataRecords(allMetadata), isVideo);
+                }
+                scan.throwIfCancelled();
+
+                // Unchanged files are shown from the scan cache without parsing them again
+                MetadataScanCache cache = MetadataScanCache.get(context);
+                MetadataScanCache.Key cacheKey = MetadataScanCache.keyFor(context, mediaUri);
+                MetadataScanCache.Result cached = cacheKey != null ? cache.get(cacheKey) : null;
+                SentryManager.setCustomKey("metadata_cache_hit", cached != null);
+                if (cached != null) {
+                    SentryManager.log("Sectioned metadata served from cache");
+                    if (finishScan(caller, scan)) {
+                        callback.onMetadataExtracted(cached.sections, cached.isVideo);
+                    } else {
+                        callback.onExtractionCancelled();
+                    }
+                    return;
+                }
+
+                // Map to store different sections of metadata
+                Map<String, String> sections = new HashMap<>();
 
                 // Extract either video or image specific metadata
                 if (isVideo) {
                     SentryManager.log("Extracting video metadata");
-                    extractVideoMetadataToMap(context, mediaUri, allMetadata);
+                    extractVideoMetadataToMap(context, mediaUri, allMetadata, scan);
                 } else {
                     SentryManager.log("Extracting image metadata");
-                    extractImageMetadataToMap(context, mediaUri, allMetadata);
+                    extractImageMetadataToMap(context, mediaUri, allMetadata, scan);
                 }
+                scan.throwIfCancelled();
 
                 List<String> locationKeys = new ArrayList<>();
                 for (String key : allMetadata.keySet()) {
@@ -199,56 +326,130 @@ public class MetadataDisplayer {
                 }
                 Collections.sort(locationKeys, String.CASE_INSENSITIVE_ORDER);
                 if (!locationKeys.isEmpty()) {
-                    StringBuilder locationSection = new StringBuilder();
+                    Map<String, String> locationMetadata = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
                     for (String key : locationKeys) {
-                        locationSection.append(key).append(METADATA_UNIT_SEP).append(allMetadata.get(key))
-                                .append(METADATA_RECORD_SEP);
-                        allMetadata.remove(key);
+                        locationMetadata.put(key, allMetadata.remove(key));
                     }
-                    String locationContent = trimTrailingWhitespace(locationSection.toString());
+                    String locationContent = joinMetadataRecords(locationMetadata);
                     if (!locationContent.isEmpty()) {
                         sections.put(SECTION_LOCATION, locationContent);
                     }
                 }
 
-                // Combine all metadata into a single string (record/unit separators allow multiline XMP/RDF values)
-                StringBuilder combinedMetadata = new StringBuilder();
-                for (Map.Entry<String, String> entry : allMetadata.entrySet()) {
-                    combinedMetadata.append(entry.getKey()).append(METADATA_UNIT_SEP).append(entry.getValue())
-                            .append(METADATA_RECORD_SEP);
-                }
-                
-                String metadataContent = trimTrailingWhitespace(combinedMetadata.toString());
-
-                sections.put(SECTION_BASIC_INFO, metadataContent);
+                sections.put(SECTION_BASIC_INFO, joinMetadataRecords(allMetadata));
 
                 // Log the number of sections extracted
                 SentryManager.setCustomKey("sections_count", sections.size());
                 SentryManager.log("Sectioned metadata extraction completed successfully");
 
+                if (cacheKey != null) {
+                    cache.put(cacheKey, new MetadataScanCache.Result(sections, isVideo));
+                }
+
                 // Return the result via callback
-                callback.onMetadataExtracted(sections, isVideo);
+                if (finishScan(caller, scan)) {
+                    callback.onMetadataExtracted(sections, isVideo);
+                } else {
+                    callback.onExtractionCancelled();
+                }
+            } catch (CancellationException e) {
+                SentryManager.log("Sectioned metadata extraction superseded");
+                finishScan(caller, scan);
+                callback.onExtractionCancelled();
             } catch (Exception e) {
+                if (!finishScan(caller, scan)) {
+                    // Cancelling closed the stream under the extractor
+                    callback.onExtractionCancelled();
+                    return;
+                }
                 // Log the exception and notify callback of failure
                 Log.e(TAG, "Error extracting sectioned metadata", e);
                 SentryManager.recordException(e);
                 SentryManager.setCustomKey("extraction_failed", true);
                 SentryManager.setCustomKey("error_type", e.getClass().getName());
                 callback.onExtractionFailed(context.getString(R.string.metadata_error_extraction, e.getMessage()));
+            }
+        });
+        return scan;
+    }
+
+    /**
+     * Cancels the scan still running for {@code caller}, if any. Its callback reports
+     * {@code onExtractionCancelled} instead of a result.
+     */
+    public static void cancelExtraction(Object caller) {
+        MetadataScan scan;
+        synchronized (LATEST_SCANS) {
+            scan = LATEST_SCANS.remove(caller);
+        }
+        if (scan != null) {
+            scan.cancel();
+        }
+    }
+
+    /** Makes a new scan the latest for {@code caller} and cancels the one it replaces. */
+    private static MetadataScan startScan(Object caller) {
+        MetadataScan scan = new MetadataScan();
+        MetadataScan previous;
+        synchronized (LATEST_SCANS) {
+            previous = LATEST_SCANS.put(caller, scan);
+        }
+        if (previous != null) {
+            SentryManager.log("Cancelling superseded metadata scan");
+            previous.cancel();
+        }
+        return scan;
+    }
+
+    /** Runs {@code task} on the shared pool; a scan cancelled while queued stops at its first check. */
+    private static void submit(MetadataScan scan, Runnable task) {
+        EXTRACTOR.execute(() -> {
+            scan.bind(Thread.currentThread());
+            try {
+                task.run();
             } finally {
-                executor.shutdown();
+                scan.unbind();
             }
         });
     }
 
+    /**
+     * Retires {@code scan} as the latest for {@code caller}.
+     *
+     * @return whether the scan is still wanted and may report its result
+     */
+    private static boolean finishScan(Object caller, MetadataScan scan) {
+        synchronized (LATEST_SCANS) {
+            if (LATEST_SCANS.get(caller) == scan) {
+                LATEST_SCANS.remove(caller);
+            }
+        }
+        return !scan.isCancelled();
+    }
+
+    /**
+     * Serializes metadata rows into section content. Record and unit separators allow
+     * multiline XMP/RDF values.
+     */
+    private static String joinMetadataRecords(Map<String, String> metadata) {
+        StringBuilder records = new StringBuilder();
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            records.append(entry.getKey()).append(METADATA_UNIT_SEP).append(entry.getValue())
+                    .append(METADATA_RECORD_SEP);
+        }
+        return trimTrailingWhitespace(records.toString());
+    }
+
     /**
      * Extracts basic file information such as name, size, and MIME type and adds to map.
      *
      * @param context Application context
      * @param mediaUri URI of the media file
+     * @param mimeType MIME type already resolved for the file, or null if unknown
      * @param metadataMap Map to add the extracted information to
      */
-    private static void extractBasicFileInfoToMap(Context context, Uri mediaUri, Map<String, String> metadataMap) {
+    private static void extractBasicFileInfoToMap(Context context, Uri mediaUri, String mimeType,
+            Map<String, String> metadataMap) {
         SentryManager.log("Extracting basic file info");
 
         try {
@@ -258,7 +459,8 @@ public class MetadataDisplayer {
             long fileSize = -1;
 
             // Query the content resolver for file name and size
-            try (Cursor cursor = contentResolver.query(mediaUri, null, null, null, null)) {
+            String[] projection = {OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE};
+            try (Cursor cursor = contentResolver.query(mediaUri, projection, null, null, null)) {
                 if (cursor != null && cursor.moveToFirst()) {
                     int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
                     int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
@@ -289,8 +491,6 @@ public class MetadataDisplayer {
                 formattedSize = context.getString(R.string.metadata_unknown);
             }
 
-            String mimeType = contentResolver.getType(mediaUri);
-
             // Add basic file information to map using raw metadata keys
             metadataMap.put("DISPLAY_NAME", fileName != null ? fileName : context.getString(R.string.metadata_unknown));
             metadataMap.put("MIME_TYPE", mimeType != null ? mimeType : context.getString(R.string.metadata_unknown));
@@ -377,8 +577,10 @@ public class MetadataDisplayer {
      * @param context Application context
      * @param imageUri URI of the image file
      * @param metadata StringBuilder to append the extracted information to
+     * @param scan The scan this belongs to; its stream is closed if the scan is cancelled
      */
-    private static void extractImageMetadata(Context context, Uri imageUri, StringBuilder metadata) {
+    private static void extractImageMetadata(Context context, Uri imageUri, StringBuilder metadata,
+            MetadataScan scan) {
         SentryManager.log("Extracting image metadata");
 
         try (InputStream inputStream = context.getContentResolver().openInputStream(imageUri)) {
@@ -390,7 +592,10 @@ public class MetadataDisplayer {
 
             // Create ExifInterface from the input stream
             ExifInterface exifInterface;
+            scan.track(inputStream);
             exifInterface = new ExifInterface(inputStream);
+            scan.track(null);
+            scan.throwIfCancelled();
             SentryManager.log("ExifInterface created successfully");
 
             // Extract and append image properties
@@ -470,6 +675,7 @@ public class MetadataDisplayer {
                     SentryManager.log("Location data found in image");
 
                     // Try to get human-readable address from coordinates using Geocoder
+                    scan.throwIfCancelled();
                     try {
                         if (Geocoder.isPresent()) {
                             Geocoder geocoder = new Geocoder(context, Locale.getDefault());
@@ -538,6 +744,8 @@ public class MetadataDisplayer {
             SentryManager.log("Image metadata extraction completed");
 
         } catch (IOException e) {
+            // A cancelled scan fails here when its stream is closed; that is not an error
+            scan.throwIfCancelled();
             // Append error message if extraction fails
             metadata.append(context.getString(R.string.metadata_error_image_metadata, e.getMessage()));
             Log.e(TAG, "Error extracting image metadata", e);
@@ -551,8 +759,10 @@ public class MetadataDisplayer {
      * @param context Application context
      * @param imageUri URI of the image file
      * @param metadataMap Map to add all metadata to (will be sorted alphabetically)
+     * @param scan The scan this belongs to; its stream is closed if the scan is cancelled
      */
-    private static void extractImageMetadataToMap(Context context, Uri imageUri, Map<String, String> metadataMap) {
+    private static void extractImageMetadataToMap(Context context, Uri imageUri, Map<String, String> metadataMap,
+            MetadataScan scan) {
         SentryManager.log("Extracting image metadata to single map");
 
         try (InputStream inputStream = context.getContentResolver().openInputStream(imageUri)) {
@@ -563,65 +773,58 @@ public class MetadataDisplayer {
 
             // Create ExifInterface from the input stream
             ExifInterface exifInterface;
+            scan.track(inputStream);
             exifInterface = new ExifInterface(inputStream);
+            scan.track(null);
+            scan.throwIfCancelled();
 
-            // Extract ALL available EXIF tags using reflection to get all TAG constants
+            // Read every catalogued EXIF tag
             // Store GPS latitude and longitude for conversion to decimal
             String gpsLatitude = null;
             String gpsLatitudeRef = null;
             String gpsLongitude = null;
             String gpsLongitudeRef = null;
-            
-            // Get all TAG constants from ExifInterface using reflection
-            java.lang.reflect.Field[] fields = ExifInterface.class.getDeclaredFields();
-            for (java.lang.reflect.Field field : fields) {
-                if (field.getType() == String.class && field.getName().startsWith("TAG_")) {
-                    try {
-                        String tagName = (String) field.get(null);
-                        if (tagName != null) {
-                            String value = exifInterface.getAttribute(tagName);
-                            if (value != null && !value.isEmpty()) {
-                                // Trim trailing whitespace from the value itself (e.g., XMP data may have trailing newlines)
-                                String trimmedValue = value;
-                                while (!trimmedValue.isEmpty() && Character.isWhitespace(trimmedValue.charAt(trimmedValue.length() - 1))) {
-                                    trimmedValue = trimmedValue.substring(0, trimmedValue.length() - 1);
-                                }
 
-                                if (XmlLikeMetadataFormatter.looksLikeRdfOrXmp(trimmedValue)) {
-                                    trimmedValue = XmlLikeMetadataFormatter.formatForDisplay(trimmedValue);
-                                }
+            String[] tags = MetadataTagCatalog.EXIF_TAGS;
+            for (int i = 0; i < tags.length; i++) {
+                String tagName = tags[i];
+                String value = exifInterface.getAttribute(tagName);
+                if (value == null || value.isEmpty()) {
+                    continue;
+                }
+                // Trim trailing whitespace from the value itself (e.g., XMP data may have trailing newlines)
+                String trimmedValue = value;
+                while (!trimmedValue.isEmpty() && Character.isWhitespace(trimmedValue.charAt(trimmedValue.length() - 1))) {
+                    trimmedValue = trimmedValue.substring(0, trimmedValue.length() - 1);
+                }
 
-                                // Store GPS coordinates for later conversion
-                                switch (tagName) {
-                                    case ExifInterface.TAG_GPS_LATITUDE -> {
-                                        gpsLatitude = trimmedValue;
-                                        continue; // Don't add raw value yet
-                                    }
-                                    case ExifInterface.TAG_GPS_LATITUDE_REF -> {
-                                        gpsLatitudeRef = trimmedValue;
-                                        continue; // Don't add raw value yet
-                                    }
-                                    case ExifInterface.TAG_GPS_LONGITUDE -> {
-                                        gpsLongitude = trimmedValue;
-                                        continue; // Don't add raw value yet
-                                    }
-                                    case ExifInterface.TAG_GPS_LONGITUDE_REF -> {
-                                        gpsLongitudeRef = trimmedValue;
-                                        continue; // Don't add raw value yet
-                                    }
-                                }
-                                
-                                // Add to single map (convert tag names to uppercase with underscores)
-                                String upperTagName = convertToSnakeCase(tagName).toUpperCase(java.util.Locale.ROOT);
-                                metadataMap.put(upperTagName, trimmedValue);
-                            }
-                        }
-                    } catch (IllegalAccessException | IllegalArgumentException e) {
-                        // Skip fields we can't access
+                if (XmlLikeMetadataFormatter.looksLikeRdfOrXmp(trimmedValue)) {
+                    trimmedValue = XmlLikeMetadataFormatter.formatForDisplay(trimmedValue);
+                }
+
+                // Store GPS coordinates for later conversion
+                switch (tagName) {
+                    case ExifInterface.TAG_GPS_LATITUDE -> {
+                        gpsLatitude = trimmedValue;
+                        continue; // Don't add raw value yet
+                    }
+                    case ExifInterface.TAG_GPS_LATITUDE_REF -> {
+                        gpsLatitudeRef = trimmedValue;
+                        continue; // Don't add raw value yet
+                    }
+                    case ExifInterface.TAG_GPS_LONGITUDE -> {
+                        gpsLongitude = trimmedValue;
+                        continue; // Don't add raw value yet
+                    }
+                    case ExifInterface.TAG_GPS_LONGITUDE_REF -> {
+                        gpsLongitudeRef = trimmedValue;
+                        continue; // Don't add raw value yet
                     }
                 }
+
+                metadataMap.put(MetadataTagCatalog.EXIF_DISPLAY_NAMES[i], trimmedValue);
             }
-            
+
             // Convert GPS latitude and longitude from rational format to decimal degrees
             if (gpsLatitude != null && !gpsLatitude.isEmpty()) {
                 try {
@@ -655,9 +858,9 @@ public class MetadataDisplayer {
             int width = exifInterface.getAttributeInt(ExifInterface.TAG_IMAGE_WIDTH, 0);
             int height = exifInterface.getAttributeInt(ExifInterface.TAG_IMAGE_LENGTH, 0);
             if (width > 0 && height > 0) {
-                String widthTagName = convertToSnakeCase(ExifInterface.TAG_IMAGE_WIDTH).toUpperCase(java.util.Locale.ROOT);
-                String heightTagName = convertToSnakeCase(ExifInterface.TAG_IMAGE_LENGTH).toUpperCase(java.util.Locale.ROOT);
-                // Only add if not already in the map (from reflection loop)
+                String widthTagName = MetadataTagCatalog.exifDisplayName(ExifInterface.TAG_IMAGE_WIDTH);
+                String heightTagName = MetadataTagCatalog.exifDisplayName(ExifInterface.TAG_IMAGE_LENGTH);
+                // Only add if not already in the map (from the tag loop)
                 if (!metadataMap.containsKey(widthTagName)) {
                     metadataMap.put(widthTagName, String.valueOf(width));
                 }
@@ -690,6 +893,8 @@ public class MetadataDisplayer {
             SentryManager.log("Image metadata extraction completed");
 
         } catch (IOException e) {
+            // A cancelled scan fails here when its stream is closed; that is not an error
+            scan.throwIfCancelled();
             Log.e(TAG, "Error extracting image metadata", e);
             SentryManager.recordException(e);
         }
@@ -742,14 +947,16 @@ public class MetadataDisplayer {
     }
 
     /**
-     * Extracts detailed metadata from a video file using MediaMetadataRetriever.
-     * Includes video properties, duration, resolution, location data if available, and technical details.
+     * Extracts detailed metadata from a video file using {@link MediaProbe} for stream properties and
+     * MediaMetadataRetriever for tags. Includes video properties, duration, resolution, location data if available, and technical details.
      *
      * @param context Application context
      * @param videoUri URI of the video file
      * @param metadata StringBuilder to append the extracted information to
+     * @param scan The scan this belongs to; extraction stops between steps once it is cancelled
      */
-    private static void extractVideoMetadata(Context context, Uri videoUri, StringBuilder metadata) {
+    private static void extractVideoMetadata(Context context, Uri videoUri, StringBuilder metadata,
+            MetadataScan scan) {
         SentryManager.log("Extracting video metadata");
 
         MediaMetadataRetriever retriever = new MediaMetadataRetriever();
@@ -762,54 +969,46 @@ public class MetadataDisplayer {
             // Extract and append video properties
             metadata.append("\n").append(context.getString(R.string.metadata_video_properties_header)).append("\n");
 
+            // Stream properties come from the shared probe; the retriever is only needed for tags
+            scan.throwIfCancelled();
+            MediaProbe probe = MediaProbe.probe(context, videoUri);
+
             // Format duration in hours:minutes:seconds
-            String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
-            if (duration != null) {
-                try {
-                    long durationMs = Long.parseLong(duration);
-                    long seconds = (durationMs / 1000) % 60;
-                    long minutes = (durationMs / (1000 * 60)) % 60;
-                    long hours = (durationMs / (1000 * 60 * 60));
-
-                    String formattedDuration;
-                    if (hours > 0) {
-                        formattedDuration = String.format(Locale.getDefault(), "%d:%02d:%02d", hours, minutes, seconds);
-                        metadata.append(context.getString(R.string.metadata_duration_with_hours, formattedDuration)).append("\n");
-                    } else {
-                        formattedDuration = String.format(Locale.getDefault(), "%d:%02d", minutes, seconds);
-                        metadata.append(context.getString(R.string.metadata_duration_without_hours, formattedDuration)).append("\n");
-                    }
-                    SentryManager.setCustomKey("video_duration_ms", durationMs);
-                } catch (NumberFormatException e) {
-                    SentryManager.log("Invalid duration format: " + duration);
-                    SentryManager.recordException(e);
+            if (probe != null && probe.durationUs() >= 0) {
+                long durationMs = probe.durationUs() / 1000;
+                long seconds = (durationMs / 1000) % 60;
+                long minutes = (durationMs / (1000 * 60)) % 60;
+                long hours = (durationMs / (1000 * 60 * 60));
+
+                String formattedDuration;
+                if (hours > 0) {
+                    formattedDuration = String.format(Locale.getDefault(), "%d:%02d:%02d", hours, minutes, seconds);
+                    metadata.append(context.getString(R.string.metadata_duration_with_hours, formattedDuration)).append("\n");
+                } else {
+                    formattedDuration = String.format(Locale.getDefault(), "%d:%02d", minutes, seconds);
+                    metadata.append(context.getString(R.string.metadata_duration_without_hours, formattedDuration)).append("\n");
                 }
+                SentryManager.setCustomKey("video_duration_ms", durationMs);
             }
 
-            String width = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH);
-            String height = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT);
-            if (width != null && height != null) {
+            if (probe != null && probe.width() > 0 && probe.height() > 0) {
+                String width = String.valueOf(probe.width());
+                String height = String.valueOf(probe.height());
                 metadata.append(context.getString(R.string.metadata_resolution, width, height)).append("\n");
                 SentryManager.setCustomKey("video_width", width);
                 SentryManager.setCustomKey("video_height", height);
             }
 
-            String rotation = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION);
-            if (rotation != null) {
+            if (probe != null && probe.hasVideo()) {
+                String rotation = String.valueOf(probe.rotation());
                 metadata.append(context.getString(R.string.metadata_rotation, rotation)).append("\n");
                 SentryManager.setCustomKey("video_rotation", rotation);
             }
 
-            String bitrate = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE);
-            if (bitrate != null) {
-                try {
-                    long bitrateValue = Long.parseLong(bitrate);
-                    metadata.append(context.getString(R.string.metadata_bitrate, bitrateValue / 1000)).append("\n");
-                    SentryManager.setCustomKey("video_bitrate_kbps", bitrateValue / 1000);
-                } catch (NumberFormatException e) {
-                    SentryManager.log("Invalid bitrate format: " + bitrate);
-                    SentryManager.recordException(e);
-                }
+            if (probe != null && probe.bitrate() > 0) {
+                long bitrateValue = probe.bitrate();
+                metadata.append(context.getString(R.string.metadata_bitrate, bitrateValue / 1000)).append("\n");
+                SentryManager.setCustomKey("video_bitrate_kbps", bitrateValue / 1000);
             }
 
             String date = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DATE);
@@ -838,6 +1037,7 @@ public class MetadataDisplayer {
                         SentryManager.setCustomKey("has_location_data", true);
                         SentryManager.log("Location data found in video");
 
+                        scan.throwIfCancelled();
                         try {
                             if (Geocoder.isPresent()) {
                                 Geocoder geocoder = new Geocoder(context, Locale.getDefault());
@@ -892,6 +1092,7 @@ public class MetadataDisplayer {
             SentryManager.log("Video metadata extraction completed");
 
         } catch (Exception e) {
+            scan.throwIfCancelled();
             // Append error message if extraction fails
             metadata.append(context.getString(R.string.metadata_error_video_metadata, e.getMessage()));
             Log.e(TAG, "Error extracting video metadata", e);
@@ -914,8 +1115,10 @@ public class MetadataDisplayer {
      * @param context Application context
      * @param videoUri URI of the video file
      * @param metadataMap Map to add all metadata to (will be sorted alphabetically)
+     * @param scan The scan this belongs to; extraction stops between steps once it is cancelled
      */
-    private static void extractVideoMetadataToMap(Context context, Uri videoUri, Map<String, String> metadataMap) {
+    private static void extractVideoMetadataToMap(Context context, Uri videoUri, Map<String, String> metadataMap,
+            MetadataScan scan) {
         SentryManager.log("Extracting video metadata to single map");
 
         MediaMetadataRetriever retriever = new MediaMetadataRetriever();
@@ -924,69 +1127,78 @@ public class MetadataDisplayer {
             // Set the data source to the video URI
             retriever.setDataSource(context, videoUri);
 
-            // Extract ALL available video metadata keys using reflection
-            java.util.Set<String> processedVideoKeys = new java.util.HashSet<>();
-            
             // Store LOCATION field for special processing (to split into GPSLATITUDE and GPSLONGITUDE)
             String locationValue = null;
-            
-            // Get all METADATA_KEY constants from MediaMetadataRetriever using reflection
-            java.lang.reflect.Field[] retrieverFields = MediaMetadataRetriever.class.getDeclaredFields();
-            for (java.lang.reflect.Field field : retrieverFields) {
-                if (field.getType() == int.class && field.getName().startsWith("METADATA_KEY_")) {
-                    try {
-                        int keyCode = field.getInt(null);
-                        String keyName = field.getName();
-                        String value = retriever.extractMetadata(keyCode);
-                        if (value != null && !value.isEmpty()) {
-                            processedVideoKeys.add(keyName);
-                            
-                            // Trim trailing whitespace from the value itself
-                            String trimmedValue = value;
-                            while (!trimmedValue.isEmpty() && Character.isWhitespace(trimmedValue.charAt(trimmedValue.length() - 1))) {
-                                trimmedValue = trimmedValue.substring(0, trimmedValue.length() - 1);
-                            }
 
-                            // Special handling for LOCATION field - don't add it directly, parse it instead
-                            if (keyName.equals("METADATA_KEY_LOCATION")) {
-                                locationValue = trimmedValue;
-                                continue; // Skip adding this field directly
-                            }
+            // Read every catalogued retriever key
+            int[] keys = MetadataTagCatalog.RETRIEVER_KEYS;
+            for (int i = 0; i < keys.length; i++) {
+                scan.throwIfCancelled();
+                int keyCode = keys[i];
+                String value = retriever.extractMetadata(keyCode);
+                if (value == null || value.isEmpty()) {
+                    continue;
+                }
 
-                            if (XmlLikeMetadataFormatter.looksLikeRdfOrXmp(trimmedValue)) {
-                                trimmedValue = XmlLikeMetadataFormatter.formatForDisplay(trimmedValue);
-                            }
+                // Trim trailing whitespace from the value itself
+                String trimmedValue = value;
+                while (!trimmedValue.isEmpty() && Character.isWhitespace(trimmedValue.charAt(trimmedValue.length() - 1))) {
+                    trimmedValue = trimmedValue.substring(0, trimmedValue.length() - 1);
+                }
 
-                            // Remove METADATA_KEY_ prefix and convert to uppercase with underscores, then add to single map
-                            String displayKeyName = keyName.toUpperCase(java.util.Locale.ROOT);
-                            if (displayKeyName.startsWith("METADATA_KEY_")) {
-                                displayKeyName = displayKeyName.substring("METADATA_KEY_".length());
-                            }
-                            // Convert to snake_case if needed (e.g., "VIDEOWIDTH" -> "VIDEO_WIDTH")
-                            displayKeyName = convertToSnakeCase(displayKeyName).toUpperCase(java.util.Locale.ROOT);
-                            metadataMap.put(displayKeyName, trimmedValue);
-                            
-                            // Log important keys for analytics
-                            switch (keyName) {
-                                case "METADATA_KEY_DURATION" -> {
-                                    try {
-                                        SentryManager.setCustomKey("video_duration_ms", Long.parseLong(value));
-                                    } catch (NumberFormatException e) {
-                                        SentryManager.log("Invalid duration format for analytics: " + value);
-                                        SentryManager.recordException(e);
-                                    }
-                                }
-                                case "METADATA_KEY_VIDEO_WIDTH" ->
-                                        SentryManager.setCustomKey("video_width", value);
-                                case "METADATA_KEY_VIDEO_HEIGHT" ->
-                                        SentryManager.setCustomKey("video_height", value);
-                                case "METADATA_KEY_VIDEO_ROTATION" ->
-                                        SentryManager.setCustomKey("video_rotation", value);
-                            }
+                // Special handling for LOCATION field - don't add it directly, parse it instead
+                if (keyCode == MediaMetadataRetriever.METADATA_KEY_LOCATION) {
+                    locationValue = trimmedValue;
+                    continue; // Skip adding this field directly
+                }
+
+                if (XmlLikeMetadataFormatter.looksLikeRdfOrXmp(trimmedValue)) {
+                    trimmedValue = XmlLikeMetadataFormatter.formatForDisplay(trimmedValue);
+                }
+                metadataMap.put(MetadataTagCatalog.RETRIEVER_DISPLAY_NAMES[i], trimmedValue);
+
+                // Log important keys for analytics
+                switch (keyCode) {
+                    case MediaMetadataRetriever.METADATA_KEY_DURATION -> {
+                        try {
+                            SentryManager.setCustomKey("video_duration_ms", Long.parseLong(value));
+                        } catch (NumberFormatException e) {
+                            SentryManager.log("Invalid duration format for analytics: " + value);
+                            SentryManager.recordException(e);
                         }
-                    } catch (IllegalAccessException | IllegalArgumentException e) {
-                        // Skip fields we can't access
                     }
+                    case MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH ->
+                            SentryManager.setCustomKey("video_width", value);
+                    case MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT ->
+                            SentryManager.setCustomKey("video_height", value);
+                    case MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION ->
+                            SentryManager.setCustomKey("video_rotation", value);
+                    case MediaMetadataRetriever.METADATA_KEY_CAPTURE_FRAMERATE ->
+                            SentryManager.setCustomKey("video_frame_rate", value);
+                    case MediaMetadataRetriever.METADATA_KEY_BITRATE -> {
+                        try {
+                            SentryManager.setCustomKey("video_bitrate_kbps", Long.parseLong(value) / 1000);
+                        } catch (NumberFormatException e) {
+                            SentryManager.log("Invalid bitrate format for analytics: " + value);
+                            SentryManager.recordException(e);
+                        }
+                    }
+                    case MediaMetadataRetriever.METADATA_KEY_SAMPLERATE ->
+                            SentryManager.setCustomKey("audio_sample_rate", value);
+                    default -> {
+                    }
+                }
+            }
+
+            // The retriever has no codec keys; the probe has them and stays cached for a later clean
+            scan.throwIfCancelled();
+            MediaProbe probe = MediaProbe.probe(context, videoUri);
+            if (probe != null) {
+                if (probe.videoMime() != null) {
+                    metadataMap.put("VIDEO_CODEC", probe.videoMime());
+                }
+                if (probe.audioMime() != null) {
+                    metadataMap.put("AUDIO_CODEC", probe.audioMime());
                 }
             }
             
@@ -1060,40 +1272,10 @@ public class MetadataDisplayer {
                 }
             }
 
-            // Technical details are already extracted via reflection above
-            // Only add analytics for keys that weren't already processed
-            if (!processedVideoKeys.contains("METADATA_KEY_CAPTURE_FRAMERATE")) {
-                String frameRate = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_CAPTURE_FRAMERATE);
-                if (frameRate != null && !metadataMap.containsKey("CAPTURE_FRAMERATE")) {
-                    metadataMap.put("CAPTURE_FRAMERATE", frameRate);
-                    SentryManager.setCustomKey("video_frame_rate", frameRate);
-                }
-            }
-            
-            if (!processedVideoKeys.contains("METADATA_KEY_BITRATE")) {
-                String bitrate = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE);
-                if (bitrate != null && !metadataMap.containsKey("BITRATE")) {
-                    metadataMap.put("BITRATE", bitrate);
-                    try {
-                        SentryManager.setCustomKey("video_bitrate_kbps", Long.parseLong(bitrate) / 1000);
-                    } catch (NumberFormatException e) {
-                        SentryManager.log("Invalid bitrate format for analytics: " + bitrate);
-                        SentryManager.recordException(e);
-                    }
-                }
-            }
-            
-            if (!processedVideoKeys.contains("METADATA_KEY_SAMPLERATE")) {
-                String audioSampleRate = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_SAMPLERATE);
-                if (audioSampleRate != null && !metadataMap.containsKey("SAMPLE_RATE")) {
-                    metadataMap.put("SAMPLE_RATE", audioSampleRate);
-                    SentryManager.setCustomKey("audio_sample_rate", audioSampleRate);
-                }
-            }
-
             SentryManager.log("Video metadata extraction completed");
 
         } catch (Exception e) {
+            scan.throwIfCancelled();
             Log.e(TAG, "Error extracting video metadata", e);
             SentryManager.recordException(e);
         } finally {
@@ -1182,39 +1364,4 @@ public class MetadataDisplayer {
             default -> context.getString(R.string.metadata_orientation_unknown, orientation);
         };
     }
-
-    /**
-     * Converts a camelCase or PascalCase string to snake_case.
-     * Example: "ImageWidth" -> "Image_Width", "GPSLatitude" -> "GPS_Latitude"
-     * Handles consecutive uppercase letters (like "GPS") correctly.
-     *
-     * @param input The input string in camelCase or PascalCase
-     * @return The string in snake_case format
-     */
-    private static String convertToSnakeCase(String input) {
-        if (input == null || input.isEmpty()) {
-            return input;
-        }
-        
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < input.length(); i++) {
-            char c = input.charAt(i);
-            // Insert underscore before uppercase letters (except the first character)
-            if (Character.isUpperCase(c) && i > 0) {
-                char prevChar = input.charAt(i - 1);
-                // Insert underscore if:
-                // 1. Previous char is lowercase, OR
-                // 2. Previous char is uppercase AND next char is lowercase (end of acronym)
-                if (Character.isLowerCase(prevChar) || 
-                    (Character.isUpperCase(prevChar) && i < input.length() - 1 && Character.isLowerCase(input.charAt(i + 1)))) {
-                    // Check if previous character is not already an underscore
-                    if (result.length() > 0 && result.charAt(result.length() - 1) != '_') {
-                        result.append('_');
-                    }
-                }
-            }
-            result.append(c);
-        }
-        return result.toString();
-    }
 }
@@ -0,0 +1,102 @@
+package com.doubleangels.redact.metadata;
+
+import androidx.annotation.Nullable;
+
+import com.doubleangels.redact.sentry.SentryManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * One metadata extraction started by {@link MetadataDisplayer}.
+ *
+ * A scan is cancelled when a newer scan is started for the same caller, or explicitly through
+ * {@link #cancel()}. Cancelling interrupts the scan's thread and closes the stream the extractor is
+ * reading, and the extractors check for cancellation between steps, so a superseded scan of a
+ * large file gives up its thread instead of running to the end. A scan cancelled while still
+ * queued stops as soon as it starts. A cancelled scan reports
+ * {@code onExtractionCancelled} instead of a result.
+ */
+public final class MetadataScan {
+
+    private volatile boolean cancelled;
+
+    // Guarded by this
+    @Nullable
+    private Thread worker;
+    @Nullable
+    private Closeable resource;
+
+    MetadataScan() {
+    }
+
+    /** Stops the scan; its callback reports {@code onExtractionCancelled}. Safe to call from any thread, more than once. */
+    public void cancel() {
+        Closeable toClose;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            if (worker != null) {
+                worker.interrupt();
+            }
+            toClose = resource;
+            resource = null;
+        }
+        closeQuietly(toClose);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Records the thread running the scan, so that cancelling can interrupt it. */
+    synchronized void bind(Thread thread) {
+        worker = thread;
+    }
+
+    /**
+     * Forgets the thread running the scan and clears any interrupt cancelling left on it, so the
+     * pool thread starts its next scan clean.
+     */
+    void unbind() {
+        synchronized (this) {
+            worker = null;
+        }
+        Thread.interrupted();
+    }
+
+    /**
+     * Registers the stream the extractor is reading, to be closed if the scan is cancelled, or
+     * clears it with null. A stream registered after cancellation is closed straight away.
+     */
+    void track(@Nullable Closeable stream) {
+        synchronized (this) {
+            if (!cancelled) {
+                resource = stream;
+                return;
+            }
+        }
+        closeQuietly(stream);
+    }
+
+    /** Throws {@link CancellationException} if the scan has been cancelled. */
+    void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Metadata scan superseded");
+        }
+    }
+
+    private static void closeQuietly(@Nullable Closeable stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (IOException e) {
+            SentryManager.log("Could not close cancelled scan stream: " + e.getMessage());
+        }
+    }
+}
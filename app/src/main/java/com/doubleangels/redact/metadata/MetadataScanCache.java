@@ -0,0 +1,486 @@
+package com.doubleangels.redact.metadata;
+
+import android.Manifest;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.core.content.ContextCompat;
+
+import com.doubleangels.redact.media.SourceVersion;
+import com.doubleangels.redact.sentry.SentryManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Sectioned scan results kept in memory and in the app's private cache directory, so reopening a
+ * file on the Scan tab shows its metadata without parsing it again.
+ *
+ * A result is keyed by the file's URI, size, modification time and a checksum of its first and last
+ * bytes, so an edit that keeps the size and timestamp still misses. Each URI has one slot on disk
+ * that a newer version of the file replaces, and the oldest slots are dropped past
+ * {@link #MAX_DISK_ENTRIES}. Results also depend on the location permission and the display
+ * language, which are part of the key.
+ *
+ * Results hold the file's location and identifying tags, so slots are encrypted with AES-GCM under
+ * a key that lives in the Android Keystore and never leaves it; a slot copied off the device, or
+ * left behind by a crash, cannot be read. Replaced, trimmed and unreadable slots are moved aside
+ * and erased with {@link SecureEraser}. If the Keystore is unavailable, results are kept in memory
+ * only.
+ */
+final class MetadataScanCache {
+
+    /** Results kept in memory. */
+    private static final int MEMORY_SIZE = 32;
+    /** Slots kept on disk. */
+    private static final int MAX_DISK_ENTRIES = 200;
+    /** Bytes read from each end of the file for the content checksum. */
+    private static final int FINGERPRINT_BYTES = 16 * 1024;
+
+    private static final String DIRECTORY = "metadata_scans";
+    private static final int FORMAT_VERSION = 2;
+    /** Suffix of slots moved aside to be erased; never read as a slot. */
+    private static final String DISCARD_SUFFIX = ".discard";
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "redact_scan_cache";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int TAG_BITS = 128;
+
+    @Nullable
+    private static volatile MetadataScanCache instance;
+
+    private final Map<Key, Result> memory = new LinkedHashMap<>(MEMORY_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+            return size() > MEMORY_SIZE;
+        }
+    };
+
+    private final File directory;
+    private final int maxDiskEntries;
+    /** Key slots are encrypted under, or null to keep results in memory only. */
+    @Nullable
+    private final SecretKey key;
+    /** Serializes slot writes, moves and trims. */
+    private final Object diskLock = new Object();
+
+    @VisibleForTesting
+    MetadataScanCache(@NonNull File directory, int maxDiskEntries, @Nullable SecretKey key) {
+        this.directory = directory;
+        this.maxDiskEntries = maxDiskEntries;
+        this.key = key;
+    }
+
+    /** Returns the app's cache. */
+    @NonNull
+    static MetadataScanCache get(@NonNull Context context) {
+        MetadataScanCache cache = instance;
+        if (cache != null) {
+            return cache;
+        }
+        synchronized (MetadataScanCache.class) {
+            if (instance == null) {
+                File directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY);
+                SecretKey key = keystoreKey();
+                if (key == null) {
+                    // Slots written under a key that is gone can never be read again
+                    new MetadataScanCache(directory, MAX_DISK_ENTRIES, null).clear();
+                }
+                instance = new MetadataScanCache(directory, MAX_DISK_ENTRIES, key);
+            }
+            return instance;
+        }
+    }
+
+    /** The Keystore key slots are encrypted under, created on first use, or null if unavailable. */
+    @Nullable
+    private static SecretKey keystoreKey() {
+        try {
+            KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+            keyStore.load(null);
+            java.security.Key existing = keyStore.getKey(KEY_ALIAS, null);
+            if (existing instanceof SecretKey) {
+                return (SecretKey) existing;
+            }
+            KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+            generator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS,
+                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                    .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                    .setKeySize(256)
+                    .build());
+            return generator.generateKey();
+        } catch (GeneralSecurityException | IOException | RuntimeException e) {
+            SentryManager.log("Scan cache key unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Key for the current content of {@code uri}, or null if neither its size nor its modification
+     * time can be read, in which case a cached result could be stale.
+     */
+    @Nullable
+    static Key keyFor(@NonNull Context context, @NonNull Uri uri) {
+        ContentResolver resolver = context.getContentResolver();
+        SourceVersion version = SourceVersion.of(resolver, uri);
+        if (version == null) {
+            return null;
+        }
+        long fingerprint;
+        try (ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "r")) {
+            if (pfd == null) {
+                return null;
+            }
+            fingerprint = fingerprint(new FileInputStream(pfd.getFileDescriptor()).getChannel());
+        } catch (IOException | RuntimeException e) {
+            SentryManager.log("Scan cache could not read source: " + e.getMessage());
+            return null;
+        }
+        boolean location = ContextCompat.checkSelfPermission(context,
+                Manifest.permission.ACCESS_MEDIA_LOCATION) == PackageManager.PERMISSION_GRANTED;
+        String variant = (location ? "location:" : "nolocation:") + Locale.getDefault().toLanguageTag();
+        return new Key(uri.toString(), variant, version.size, version.modified, fingerprint);
+    }
+
+    /** CRC-32 of the first and last {@link #FINGERPRINT_BYTES} of {@code source}. */
+    @VisibleForTesting
+    static long fingerprint(@NonNull FileChannel source) throws IOException {
+        long size = source.size();
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, FINGERPRINT_BYTES));
+        SplicePlan.readFully(source, 0, buffer);
+        crc.update(buffer.array(), 0, buffer.position());
+        if (size > FINGERPRINT_BYTES) {
+            buffer.clear();
+            buffer.limit((int) Math.min(size - FINGERPRINT_BYTES, FINGERPRINT_BYTES));
+            SplicePlan.readFully(source, size - buffer.limit(), buffer);
+            crc.update(buffer.array(), 0, buffer.position());
+        }
+        return crc.getValue();
+    }
+
+    /** The cached result for {@code key}, from memory or disk, or null if there is none. */
+    @Nullable
+    Result get(@NonNull Key key) {
+        synchronized (memory) {
+            Result result = memory.get(key);
+            if (result != null || this.key == null) {
+                return result;
+            }
+        }
+        Result result;
+        synchronized (diskLock) {
+            File file = slotFile(key);
+            if (!file.isFile()) {
+                return null;
+            }
+            try {
+                result = read(decrypt(Files.readAllBytes(file.toPath())), key);
+            } catch (IOException | GeneralSecurityException e) {
+                SentryManager.log("Scan cache entry unreadable: " + e.getMessage());
+                discard(file);
+                return null;
+            }
+            if (result == null) {
+                // The slot holds an older version of the file
+                discard(file);
+                return null;
+            }
+            file.setLastModified(System.currentTimeMillis());
+        }
+        synchronized (memory) {
+            memory.put(key, result);
+        }
+        return result;
+    }
+
+    /** Stores {@code result} for {@code key}, replacing any older version of the same file. */
+    void put(@NonNull Key key, @NonNull Result result) {
+        synchronized (memory) {
+            memory.put(key, result);
+        }
+        if (this.key == null) {
+            return;
+        }
+        byte[] encrypted;
+        try {
+            encrypted = encrypt(write(key, result));
+        } catch (IOException | GeneralSecurityException e) {
+            SentryManager.log("Scan cache entry not encrypted: " + e.getMessage());
+            return;
+        }
+        synchronized (diskLock) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                SentryManager.log("Scan cache directory unavailable");
+                return;
+            }
+            File file = slotFile(key);
+            File temp = new File(directory, file.getName() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(encrypted);
+            } catch (IOException e) {
+                SentryManager.log("Scan cache entry not written: " + e.getMessage());
+                discard(temp);
+                return;
+            }
+            if (file.exists()) {
+                discard(file);
+            }
+            if (!temp.renameTo(file)) {
+                discard(temp);
+                return;
+            }
+            trim();
+        }
+    }
+
+    /** Drops every cached result and erases every slot. */
+    void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+        synchronized (diskLock) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (file.getName().endsWith(DISCARD_SUFFIX)) {
+                        SecureEraser.eraseInBackground(file);
+                    } else {
+                        discard(file);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Erases the least recently used slots beyond the limit. Holding {@link #diskLock}. */
+    private void trim() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> slots = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().indexOf('.') < 0) {
+                slots.add(file);
+            }
+        }
+        if (slots.size() <= maxDiskEntries) {
+            return;
+        }
+        slots.sort(Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < slots.size() - maxDiskEntries; i++) {
+            discard(slots.get(i));
+        }
+    }
+
+    /**
+     * Moves {@code file} to a name no slot uses and queues it for {@link SecureEraser}, so a slot
+     * written to the same path in the meantime is not erased with it. Holding {@link #diskLock}.
+     */
+    private void discard(@NonNull File file) {
+        File target = file;
+        try {
+            File aside = File.createTempFile(file.getName(), DISCARD_SUFFIX, directory);
+            if (file.renameTo(aside)) {
+                target = aside;
+            } else {
+                aside.delete();
+            }
+        } catch (IOException e) {
+            SentryManager.log("Scan cache entry not moved aside: " + e.getMessage());
+        }
+        SecureEraser.eraseInBackground(target);
+    }
+
+    @NonNull
+    private File slotFile(@NonNull Key key) {
+        return new File(directory, sha256(key.uri + '\n' + key.variant));
+    }
+
+    /** Encrypts {@code plain} as the IV length, the IV, then the ciphertext with its tag. */
+    @NonNull
+    private byte[] encrypt(@NonNull byte[] plain) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        // Keystore keys only take IVs they generate themselves
+        cipher.init(Cipher.ENCRYPT_MODE, Objects.requireNonNull(key));
+        byte[] iv = cipher.getIV();
+        byte[] sealed = cipher.doFinal(plain);
+        byte[] out = new byte[1 + iv.length + sealed.length];
+        out[0] = (byte) iv.length;
+        System.arraycopy(iv, 0, out, 1, iv.length);
+        System.arraycopy(sealed, 0, out, 1 + iv.length, sealed.length);
+        return out;
+    }
+
+    @NonNull
+    private byte[] decrypt(@NonNull byte[] slot) throws GeneralSecurityException {
+        int ivLength = slot.length > 0 ? slot[0] & 0xFF : 0;
+        if (ivLength == 0 || slot.length < 1 + ivLength) {
+            throw new GeneralSecurityException("Truncated slot");
+        }
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, Objects.requireNonNull(key),
+                new GCMParameterSpec(TAG_BITS, slot, 1, ivLength));
+        return cipher.doFinal(slot, 1 + ivLength, slot.length - 1 - ivLength);
+    }
+
+    @NonNull
+    private static byte[] write(@NonNull Key key, @NonNull Result result) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FORMAT_VERSION);
+        writeString(out, key.uri);
+        writeString(out, key.variant);
+        out.writeLong(key.size);
+        out.writeLong(key.modified);
+        out.writeLong(key.fingerprint);
+        out.writeBoolean(result.isVideo);
+        out.writeInt(result.sections.size());
+        for (Map.Entry<String, String> entry : result.sections.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /** Reads a decrypted slot, or returns null if it was written for a different key. */
+    @Nullable
+    private static Result read(@NonNull byte[] slot, @NonNull Key key) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(slot));
+        if (in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        Key stored = new Key(readString(in), readString(in), in.readLong(), in.readLong(), in.readLong());
+        if (!stored.equals(key)) {
+            return null;
+        }
+        boolean isVideo = in.readBoolean();
+        int count = in.readInt();
+        Map<String, String> sections = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            sections.put(readString(in), readString(in));
+        }
+        return new Result(sections, isVideo);
+    }
+
+    /** Length-prefixed UTF-8; unlike writeUTF it allows XMP packets over 64 KiB. */
+    private static void writeString(@NonNull DataOutputStream out, @NonNull String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @NonNull
+    private static String readString(@NonNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 16 * 1024 * 1024) {
+            throw new IOException("Bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @NonNull
+    private static String sha256(@NonNull String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** A URI at a particular version and display variant. */
+    static final class Key {
+        final String uri;
+        /** Location permission and language the result was produced under. */
+        final String variant;
+        final long size;
+        final long modified;
+        final long fingerprint;
+
+        Key(@NonNull String uri, @NonNull String variant, long size, long modified, long fingerprint) {
+            this.uri = uri;
+            this.variant = variant;
+            this.size = size;
+            this.modified = modified;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return size == other.size && modified == other.modified && fingerprint == other.fingerprint
+                    && uri.equals(other.uri) && variant.equals(other.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(uri, variant, size, modified, fingerprint);
+        }
+    }
+
+    /** A sectioned scan result. */
+    static final class Result {
+        @NonNull
+        final Map<String, String> sections;
+        final boolean isVideo;
+
+        Result(@NonNull Map<String, String> sections, boolean isVideo) {
+            this.sections = Collections.unmodifiableMap(new HashMap<>(sections));
+            this.isVideo = isVideo;
+        }
+    }
+}
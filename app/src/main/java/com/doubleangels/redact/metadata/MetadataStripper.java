@@ -7,6 +7,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Environment;
+import android.os.ParcelFileDescriptor;
 import android.provider.MediaStore;
 import android.provider.OpenableColumns;
 import android.database.Cursor;
@@ -19,24 +20,27 @@ import androidx.annotation.Nullable;
 import androidx.core.content.FileProvider;
 import androidx.exifinterface.media.ExifInterface;
 
-import com.doubleangels.redact.R;
+import com.doubleangels.redact.media.MediaProbe;
 import com.doubleangels.redact.media.VideoMedia3Converter;
 import com.doubleangels.redact.sentry.SentryManager;
 
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -55,7 +59,9 @@ import java.util.concurrent.ConcurrentHashMap;
  * - Stripping metadata and saving to MediaStore (permanent storage)
  * - Stripping metadata and saving to app cache (temporary, for sharing)
  *
- * For images, the process involves:
+ * For images whose container has a segment-level stripper (see {@link ImageContainer}),
+ * metadata blocks are removed from the byte stream without decoding pixels and the format
+ * is preserved. Otherwise, the process involves:
  * - Reading the original image and any essential EXIF data to preserve
  * - Decoding the image into a bitmap (with memory optimization for large
  * images)
@@ -63,8 +69,10 @@ import java.util.concurrent.ConcurrentHashMap;
  * - Restoring only essential non-identifying EXIF tags (like orientation)
  *
  * For videos, the process involves:
- * - Re-encoding with Media3 {@code Transformer} (H.264/AAC MP4) to strip metadata, or a direct copy if
- *   transcoding fails
+ * - Rewriting MP4/MOV and WebM/Matroska files at the container level (see {@link Mp4BoxStripper}
+ *   and {@link MatroskaElementStripper}), keeping every track
+ * - Re-encoding with Media3 {@code Transformer} (H.264/AAC MP4) to strip metadata when the
+ *   container cannot be rewritten or the target format differs
  *
  * @see ExifInterface
  * @see MediaStore
@@ -79,16 +87,6 @@ public class MetadataStripper {
      */
     private static final int DEFAULT_BUFFER_SIZE = 65536; // 64KB
 
-    /**
-     * Buffer size for secure file deletion operations.
-     */
-    private static final int SECURE_DELETE_BUFFER_SIZE = 65536;
-
-    /**
-     * Number of passes for secure file deletion (overwriting with random data).
-     */
-    private static final int SECURE_DELETE_PASSES = 3;
-
     /**
      * Maximum dimension (width or height) for bitmap processing.
      * Images larger than this will be downsampled during processing to avoid
@@ -132,27 +130,6 @@ public class MetadataStripper {
      */
     private final ContentResolver contentResolver;
 
-    /**
-     * Optional callback for progress updates.
-     * If set, this will be called during processing to report progress.
-     */
-    private ProgressCallback progressCallback;
-
-    /**
-     * Stores the most recently processed file's URI.
-     * This allows clients to easily access the result of the most recent operation.
-     */
-    private Uri lastProcessedFileUri;
-
-    /**
-     * Map to store essential EXIF values that should be preserved during
-     * processing.
-     * These values (like orientation) are important for proper display but don't
-     * contain
-     * identifying information.
-     */
-    private final Map<String, String> preservedExifValues = new HashMap<>();
-
     /**
      * Cache for file sizes to avoid redundant I/O operations.
      * Key: URI string, Value: File size in bytes
@@ -160,7 +137,7 @@ public class MetadataStripper {
     private final Map<String, Long> fileSizeCache = new ConcurrentHashMap<>();
 
     /**
-     * Secure random number generator for secure file deletion.
+     * Secure random number generator for output file names.
      */
     private final SecureRandom secureRandom = new SecureRandom();
 
@@ -179,121 +156,102 @@ public class MetadataStripper {
     }
 
     /**
-     * Sets a callback to receive progress updates during processing.
+     * Runs one stripping job.
      *
-     * This allows the client to display progress information to the user
-     * during potentially lengthy operations.
+     * All per-job state lives in a session created for this call, so a single stripper can be
+     * shared by any number of threads running jobs concurrently.
      *
-     * @param callback The progress callback implementation, or null to remove the
-     *                 callback
+     * @param request Job description, must not be null
+     * @return the cleaned copy's URI, or the error that stopped the job
      */
-    public void setProgressCallback(@Nullable ProgressCallback callback) {
-        this.progressCallback = callback;
+    @NonNull
+    public StripResult strip(@NonNull StripRequest request) {
+        StripSession session = new StripSession(context, request);
+        Uri outputUri;
+        if (request.destination() == StripRequest.Destination.SHARE) {
+            SentryManager.log("Starting metadata stripping for sharing.");
+            SentryManager.setCustomKey("is_video", request.isVideo());
+            outputUri = request.isVideo()
+                    ? stripVideoMetadataForSharing(session, request.sourceUri(), request.originalFilename())
+                    : stripExifDataForSharing(session, request.sourceUri(), request.originalFilename());
+        } else {
+            outputUri = request.isVideo()
+                    ? stripVideoMetadata(session, request.sourceUri(), request.originalFilename())
+                    : stripExifData(session, request.sourceUri(), request.originalFilename());
+        }
+        return outputUri != null ? StripResult.success(outputUri) : StripResult.failure(session.error());
     }
 
     /**
-     * Updates the progress callback with current status.
-     *
-     * This is an internal helper method that safely calls the progress callback
-     * if one has been set.
+     * Process video to remove metadata and save to MediaStore, without progress reporting.
      *
-     * @param current Current step in the process (0-based)
-     * @param total   Total number of steps
-     * @param message Human-readable progress message
-     */
-    /**
-     * @param currentStep 1-based step index within the current file
-     * @param totalSteps  total steps for this file
+     * @param sourceUri        URI of the source video, must not be null
+     * @param originalFilename Original filename of the video, must not be null
+     * @return URI of the processed video, or null if processing failed
+     * @see #strip(StripRequest)
      */
-    private void updateProgress(int currentStep, int totalSteps, String message) {
-        if (progressCallback != null && totalSteps > 0) {
-            int percent = Math.min(100, Math.max(0, (currentStep * 100) / totalSteps));
-            progressCallback.onProgress(percent, message);
-        }
+    @Nullable
+    public Uri stripVideoMetadata(@NonNull Uri sourceUri, @NonNull String originalFilename) {
+        return strip(StripRequest.forGallery(sourceUri, originalFilename, true)).outputUri();
     }
 
-    /** Maps Media3 transcoding 0–100% into the middle of the current item’s progress (after “Transcoding…”). */
-    private void reportTranscodeProgress(int transcoderPercent0To100) {
-        if (progressCallback != null) {
-            int p = Math.min(100, Math.max(0, transcoderPercent0To100));
-            int itemPercent = 50 + p / 2;
-            progressCallback.onProgress(
-                    itemPercent,
-                    context.getString(R.string.progress_transcoding_percent, p));
-        }
+    /**
+     * Strips metadata from an image and saves it to MediaStore, without progress reporting.
+     *
+     * @param sourceUri        URI of the source image, must not be null
+     * @param originalFilename Original filename of the image, must not be null
+     * @return URI of the processed image, or null if processing failed
+     * @see #strip(StripRequest)
+     */
+    @Nullable
+    public Uri stripExifData(@NonNull Uri sourceUri, @NonNull String originalFilename) {
+        return strip(StripRequest.forGallery(sourceUri, originalFilename, false)).outputUri();
     }
 
     /**
      * Process video to remove metadata and save to MediaStore (external storage).
      *
-     * <p>Re-encodes with Media3 {@code Transformer} (H.264/AAC MP4) so container and stream metadata are
-     * stripped; audio is preserved when the device can transcode the source. If transcoding fails, falls
-     * back to a direct copy (metadata may remain).
+     * <p>MP4/MOV and WebM/Matroska sources whose container already matches the target are rewritten
+     * at the container level and keep every track. Otherwise re-encodes with Media3
+     * {@code Transformer} (H.264/AAC MP4) so container and stream metadata are stripped; audio is
+     * preserved when the device can transcode the source.
      *
+     * @param session          Job state and progress sink
      * @param sourceUri        URI of the source video, must not be null
      * @param originalFilename Original filename of the video, must not be null
      * @return URI of the processed video, or null if processing failed
-     * @throws IllegalArgumentException if sourceUri or originalFilename is null
      */
     @Nullable
-    public Uri stripVideoMetadata(@NonNull Uri sourceUri, @NonNull String originalFilename) {
+    private Uri stripVideoMetadata(@NonNull StripSession session, @NonNull Uri sourceUri,
+            @NonNull String originalFilename) {
         // Log operation start for analytics and debugging
         SentryManager.log("Starting video metadata stripping for MediaStore.");
         SentryManager.setCustomKey("operation_type", "video_to_mediastore");
         Uri newUri = null;
 
         try {
-            // Check if file is too large to process (using cached size)
+            // The size cap is applied by writeCleanVideo, and only to remuxing and transcoding
             long fileSize = getFileSizeFromUriCached(sourceUri);
             SentryManager.setCustomKey("file_size_mb", fileSize / (1024 * 1024));
-            if (fileSize > MAX_FILE_SIZE_MB * 1024 * 1024) {
-                throw new IOException("File too large to process: " + fileSize / (1024 * 1024) + "MB");
-            }
 
-            updateProgress(1, 4, "Reading video...");
-            
-            int formatIndex = detectVideoFormatIndex(sourceUri, originalFilename);
+            session.updateProgress(1, 4, "Reading video...");
             
-            updateProgress(2, 4, "Transmuxing...");
-            File tempCleanFile = fastStripVideoMetadata(sourceUri);
-            Uri cleanSourceUri = tempCleanFile != null ? Uri.fromFile(tempCleanFile) : sourceUri;
-            
-            boolean needsTranscode = true;
-            if (tempCleanFile != null) {
-                if (formatIndex == 0 || formatIndex == 1) {
-                    if (tempCleanFile.getName().endsWith(".mp4")) needsTranscode = false;
-                } else if (formatIndex == 2) {
-                    if (tempCleanFile.getName().endsWith(".webm")) needsTranscode = false;
-                }
+            MediaProbe probe = MediaProbe.probe(context, sourceUri);
+            int formatIndex = detectVideoFormatIndex(probe, originalFilename);
+
+            String baseName = generateShortRandomName();
+            newUri = VideoMedia3Converter.createPendingMoviesEntry(context, baseName, formatIndex);
+            String writtenExtension;
+            try (ParcelFileDescriptor destination = VideoMedia3Converter.openForWriting(context, newUri)) {
+                writtenExtension = writeCleanVideo(session, sourceUri, probe, formatIndex, destination, fileSize);
             }
-
-            try {
-                if (!needsTranscode && tempCleanFile != null) {
-                    updateProgress(3, 4, "Saving clean copy...");
-                    newUri = VideoMedia3Converter.copyToMoviesRedact(context, tempCleanFile, generateShortRandomName(), formatIndex);
-                } else {
-                    updateProgress(3, 4, "Transcoding to target format...");
-                    newUri = VideoMedia3Converter.transcodeToGallery(
-                            context.getApplicationContext(),
-                            cleanSourceUri,
-                            generateShortRandomName(),
-                            formatIndex,
-                            this::reportTranscodeProgress);
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new IOException("Video processing interrupted", e);
-            } catch (Exception e) {
-                SentryManager.log("Video processing failed: " + e.getMessage());
-                throw new IOException("Failed to clean video safely", e);
-            } finally {
-                if (tempCleanFile != null && tempCleanFile.exists()) {
-                    secureDeleteFile(tempCleanFile);
-                }
+            if (!writtenExtension.equals(VideoMedia3Converter.extensionForFormatIndex(formatIndex))) {
+                VideoMedia3Converter.renamePendingEntry(context, newUri, baseName + writtenExtension,
+                        videoMimeTypeForExtension(writtenExtension));
             }
 
-            updateProgress(4, 4, "Saving cleaned video...");
-            lastProcessedFileUri = newUri;
+            session.updateProgress(4, 4, "Saving cleaned video...");
+            VideoMedia3Converter.publishPendingEntry(context, newUri);
             SentryManager.log("Video processed successfully.");
             SentryManager.setCustomKey("success", true);
 
@@ -301,6 +259,7 @@ public class MetadataStripper {
             // Log error and clean up any partial files
             Log.e(TAG, "Error processing video", e);
             SentryManager.recordException(e);
+            session.fail(e);
             SentryManager.setCustomKey("success", false);
             SentryManager.setCustomKey("error_type", e.getClass().getName());
 
@@ -310,6 +269,7 @@ public class MetadataStripper {
                 } catch (Exception cleanupEx) {
                     SentryManager.log("Failed to clean up partial file: " + cleanupEx.getMessage());
                 }
+                newUri = null;
             }
         }
 
@@ -320,25 +280,26 @@ public class MetadataStripper {
      * Strips EXIF metadata from an image and saves it to MediaStore.
      *
      * This method:
-     * 1. Reads the original image and extracts essential EXIF data to preserve
-     * 2. Decodes the image into a bitmap with memory optimization
-     * 3. Re-encodes the bitmap without metadata
-     * 4. Restores only essential non-identifying EXIF data
-     * 5. Saves the processed image to MediaStore
+     * 1. Reads the essential EXIF data to preserve from the source
+     * 2. Decodes the image into a bitmap straight from the source's file descriptor
+     * 3. Re-encodes the bitmap without metadata, with only the orientation re-inserted
+     * 4. Verifies the encoded output as it streams to MediaStore
      *
+     * No temporary copies are written unless the source cannot seek.
+     *
+     * @param session          Job state and progress sink
      * @param sourceUri        URI of the source image, must not be null
      * @param originalFilename Original filename of the image, must not be null
      * @return URI of the processed image, or null if processing failed
-     * @throws IllegalArgumentException if sourceUri or originalFilename is null
      */
     @Nullable
-    public Uri stripExifData(@NonNull Uri sourceUri, @NonNull String originalFilename) {
+    private Uri stripExifData(@NonNull StripSession session, @NonNull Uri sourceUri,
+            @NonNull String originalFilename) {
         // Log operation start for analytics and debugging
         SentryManager.log("Starting image EXIF stripping for MediaStore.");
         SentryManager.setCustomKey("operation_type", "image_to_mediastore");
         Uri newUri = null;
         Bitmap originalBitmap = null;
-        File tempFile = null;
 
         try {
             // Check if file is too large to process (using cached size)
@@ -348,62 +309,29 @@ public class MetadataStripper {
                 throw new IOException("File too large to process: " + fileSize / (1024 * 1024) + "MB");
             }
 
+            // Containers with a segment-level stripper are cleaned without decoding pixels
+            ImageContainer container = sniffImageContainer(sourceUri);
+            if (container != ImageContainer.UNKNOWN) {
+                Uri losslessUri = stripImageLosslesslyToMediaStore(session, sourceUri, container);
+                if (losslessUri != null) {
+                    SentryManager.log("Image processed losslessly.");
+                    SentryManager.setCustomKey("success", true);
+                    return losslessUri;
+                }
+            }
+
             // Determine file extension from original filename or use default
             String extension = getFileExtension(originalFilename, ".jpg");
 
             // Generate unique filename for the processed file
             String newFilename = generateShortRandomName() + extension;
-            updateProgress(1, 5, "Reading image...");
-
-            // Create temporary file to hold the image during processing
-            tempFile = new File(context.getExternalCacheDir(), "temp_" + System.currentTimeMillis() + ".jpg");
-
-            // Copy source image to temporary file
-            try (InputStream in = contentResolver.openInputStream(sourceUri);
-                    FileOutputStream out = new FileOutputStream(tempFile)) {
-
-                if (in == null) {
-                    throw new IOException("Failed to open input stream");
-                }
-
-                byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-                int read;
-                while ((read = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, read);
-                }
-            }
 
             // Extract essential EXIF data to preserve (like orientation)
-            updateProgress(2, 5, "Reading essential metadata...");
-            readEssentialExifData(tempFile);
-
-            // Remove thumbnails from original
-            try {
-                ExifInterface tempExif = new ExifInterface(tempFile.getAbsolutePath());
-                removeThumbnails(tempExif);
-            } catch (Exception e) {
-                SentryManager.log("Could not remove thumbnails from temp file: " + e.getMessage() + ".");
-            }
-
-            // Check image dimensions without loading the full bitmap
-            BitmapFactory.Options optionsJustBounds = new BitmapFactory.Options();
-            optionsJustBounds.inJustDecodeBounds = true;
-            BitmapFactory.decodeFile(tempFile.getAbsolutePath(), optionsJustBounds);
-
-            // Calculate appropriate sample size for memory-efficient loading
-            int sampleSize = calculateInSampleSize(optionsJustBounds);
-            SentryManager.setCustomKey("bitmap_sample_size", sampleSize);
-            SentryManager.setCustomKey("original_width", optionsJustBounds.outWidth);
-            SentryManager.setCustomKey("original_height", optionsJustBounds.outHeight);
+            session.updateProgress(1, 4, "Reading essential metadata...");
+            readEssentialExifData(session, sourceUri);
 
-            // Load bitmap with calculated sample size
-            BitmapFactory.Options optionsLoad = new BitmapFactory.Options();
-            optionsLoad.inSampleSize = sampleSize;
-
-            originalBitmap = BitmapFactory.decodeFile(tempFile.getAbsolutePath(), optionsLoad);
-            if (originalBitmap == null) {
-                throw new IOException("Failed to decode bitmap");
-            }
+            session.updateProgress(2, 4, "Reading image...");
+            originalBitmap = decodeSampledBitmap(sourceUri, context.getExternalCacheDir());
 
             // Prepare MediaStore entry for the new image
             ContentValues values = new ContentValues();
@@ -420,56 +348,29 @@ public class MetadataStripper {
             }
 
             // Save bitmap without metadata
-            updateProgress(3, 5, "Saving image without metadata...");
+            session.updateProgress(3, 4, "Saving image without metadata...");
 
+            OutputTee tee;
             try (OutputStream os = contentResolver.openOutputStream(newUri)) {
                 if (os == null) {
                     throw new IOException("Failed to open output stream for new image");
                 }
 
-                // Compress bitmap directly to output stream (memory optimization - no
-                // ByteArrayOutputStream)
-                if (!originalBitmap.compress(Bitmap.CompressFormat.JPEG, 95, os)) {
+                // Compress straight through the tee; only the orientation goes back in
+                tee = OutputTee.withJpegOrientation(os, preservedOrientation(session));
+                if (!originalBitmap.compress(Bitmap.CompressFormat.JPEG, 95, tee)) {
                     throw new IOException("Failed to compress bitmap");
                 }
-                os.flush();
+                tee.flush();
             }
 
             // Clean up bitmap to free memory
             originalBitmap.recycle();
             originalBitmap = null;
-            System.gc();
 
-            // Restore only essential EXIF data (like orientation)
-            updateProgress(4, 5, "Restoring essential metadata...");
-            restoreEssentialExifData(newUri);
+            session.updateProgress(4, 4, "Verifying metadata removal...");
+            verifyOutput(tee);
 
-            // Verify metadata removal (for MediaStore files, we need to read from URI)
-            updateProgress(5, 5, "Verifying metadata removal...");
-            try {
-                File tempVerifyFile = new File(context.getCacheDir(), "verify_" + System.currentTimeMillis() + ".jpg");
-                try (InputStream is = contentResolver.openInputStream(newUri);
-                        FileOutputStream fos = new FileOutputStream(tempVerifyFile)) {
-                    byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-                    int bytesRead;
-                    while (true) {
-                        assert is != null;
-                        if (!((bytesRead = is.read(buffer)) > 0))
-                            break;
-                        fos.write(buffer, 0, bytesRead);
-                    }
-                }
-                boolean metadataRemoved = verifyMetadataRemoval(tempVerifyFile);
-                SentryManager.setCustomKey("metadata_verification_passed", metadataRemoved);
-                if (!metadataRemoved) {
-                    SentryManager.log("Warning: Metadata verification found remaining metadata.");
-                }
-                secureDeleteFile(tempVerifyFile);
-            } catch (Exception e) {
-                SentryManager.log("Could not verify metadata: " + e.getMessage() + ".");
-            }
-
-            lastProcessedFileUri = newUri;
             SentryManager.log("Image processed successfully.");
             SentryManager.setCustomKey("success", true);
 
@@ -477,6 +378,7 @@ public class MetadataStripper {
             // Log error and clean up any partial files
             Log.e(TAG, "Error processing image", e);
             SentryManager.recordException(e);
+            session.fail(e);
             SentryManager.setCustomKey("success", false);
             SentryManager.setCustomKey("error_type", e.getClass().getName());
 
@@ -486,22 +388,13 @@ public class MetadataStripper {
                 } catch (Exception cleanupEx) {
                     SentryManager.log("Failed to clean up partial file: " + cleanupEx.getMessage());
                 }
+                newUri = null;
             }
         } finally {
             // Clean up resources
             if (originalBitmap != null && !originalBitmap.isRecycled()) {
                 originalBitmap.recycle();
             }
-
-            if (tempFile != null && tempFile.exists()) {
-                // Use secure deletion for temp files
-                if (!secureDeleteFile(tempFile)) {
-                    SentryManager.log("Failed to securely delete temp file: " + tempFile.getAbsolutePath());
-                    tempFile.deleteOnExit();
-                }
-            }
-
-            preservedExifValues.clear();
         }
 
         return newUri;
@@ -515,22 +408,22 @@ public class MetadataStripper {
      * MediaStore,
      * making it suitable for temporary files intended for sharing.
      *
+     * @param session          Job state and progress sink
      * @param sourceUri        URI of the source image, must not be null
      * @param originalFilename Original filename of the image, must not be null
      * @return URI of the processed image (FileProvider URI), or null if processing
      *         failed
-     * @throws IllegalArgumentException if sourceUri or originalFilename is null
      */
     @Nullable
-    public Uri stripExifDataForSharing(@NonNull Uri sourceUri, @NonNull String originalFilename) {
+    private Uri stripExifDataForSharing(@NonNull StripSession session, @NonNull Uri sourceUri,
+            @NonNull String originalFilename) {
         // Log operation start for analytics and debugging
         SentryManager.log("Starting image EXIF stripping for sharing.");
         SentryManager.setCustomKey("original_filename", originalFilename);
         SentryManager.setCustomKey("operation_type", "image_for_sharing");
 
         Bitmap originalBitmap = null;
-        File tempFile = null;
-        File outputFile;
+        File outputFile = null;
 
         try {
             // Check if file is too large to process (using cached size)
@@ -540,54 +433,38 @@ public class MetadataStripper {
                 throw new IOException("File too large to process: " + fileSize / (1024 * 1024) + "MB");
             }
 
-            // Determine file extension from original filename or use default
-            String extension = getFileExtension(originalFilename, ".jpg");
-
-            updateProgress(1, 4, "Reading image...");
-
-            // Create temporary file to hold the image during processing
-            tempFile = new File(context.getCacheDir(), "temp_" + System.currentTimeMillis() + extension);
-
-            // Copy source image to temporary file
-            try (InputStream in = contentResolver.openInputStream(sourceUri);
-                    FileOutputStream out = new FileOutputStream(tempFile)) {
-
-                if (in == null) {
-                    throw new IOException("Failed to open input stream");
-                }
-
-                byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-                int read;
-                while ((read = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, read);
+            // Containers with a segment-level stripper are cleaned without decoding pixels: as the
+            // recipient reads them if the source stays readable, into the cache otherwise
+            ImageContainer container = sniffImageContainer(sourceUri);
+            if (container != ImageContainer.UNKNOWN) {
+                if (StrippingProvider.canServe(context, sourceUri, false)) {
+                    Uri streamUri = streamImageForSharing(session, sourceUri, container);
+                    if (streamUri != null) {
+                        SentryManager.log("Image registered for streamed sharing.");
+                        SentryManager.setCustomKey("success", true);
+                        return streamUri;
+                    }
+                } else {
+                    Uri losslessUri = stripImageLosslesslyForSharing(session, sourceUri, container);
+                    if (losslessUri != null) {
+                        SentryManager.log("Image processed losslessly for sharing.");
+                        SentryManager.setCustomKey("success", true);
+                        return losslessUri;
+                    }
                 }
             }
 
-            // Extract essential EXIF data to preserve (like orientation)
-            updateProgress(2, 4, "Reading essential metadata...");
-            readEssentialExifData(tempFile);
-
-            // Check image dimensions without loading the full bitmap
-            BitmapFactory.Options optionsJustBounds = new BitmapFactory.Options();
-            optionsJustBounds.inJustDecodeBounds = true;
-            BitmapFactory.decodeFile(tempFile.getAbsolutePath(), optionsJustBounds);
-
-            // Calculate appropriate sample size for memory-efficient loading
-            int sampleSize = calculateInSampleSize(optionsJustBounds);
-            SentryManager.setCustomKey("bitmap_sample_size", sampleSize);
-            SentryManager.setCustomKey("original_width", optionsJustBounds.outWidth);
-            SentryManager.setCustomKey("original_height", optionsJustBounds.outHeight);
+            // Determine file extension from original filename or use default
+            String extension = getFileExtension(originalFilename, ".jpg");
 
-            // Load bitmap with calculated sample size
-            BitmapFactory.Options optionsLoad = new BitmapFactory.Options();
-            optionsLoad.inSampleSize = sampleSize;
-            originalBitmap = BitmapFactory.decodeFile(tempFile.getAbsolutePath(), optionsLoad);
+            // Extract essential EXIF data to preserve (like orientation)
+            session.updateProgress(1, 4, "Reading essential metadata...");
+            readEssentialExifData(session, sourceUri);
 
-            if (originalBitmap == null) {
-                throw new IOException("Failed to decode bitmap");
-            }
+            session.updateProgress(2, 4, "Reading image...");
+            originalBitmap = decodeSampledBitmap(sourceUri, context.getCacheDir());
 
-            updateProgress(3, 5, "Removing metadata...");
+            session.updateProgress(3, 4, "Removing metadata...");
 
             // Create directory for processed files if it doesn't exist
             File outputDir = new File(context.getCacheDir(), "processed");
@@ -602,15 +479,14 @@ public class MetadataStripper {
             String newFilename = generateShortRandomName() + extension;
             outputFile = new File(outputDir, newFilename);
 
-            // Save bitmap to output file (direct streaming, no intermediate
-            // ByteArrayOutputStream)
-            // Use progressive JPEG for better perceived performance
+            // Compress straight through the tee; only the orientation goes back in
+            OutputTee tee;
             try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                // Compress directly to file output stream (memory optimization)
-                if (!originalBitmap.compress(Bitmap.CompressFormat.JPEG, 95, fos)) {
+                tee = OutputTee.withJpegOrientation(fos, preservedOrientation(session));
+                if (!originalBitmap.compress(Bitmap.CompressFormat.JPEG, 95, tee)) {
                     throw new IOException("Failed to compress bitmap");
                 }
-                fos.flush();
+                tee.flush();
                 fos.getFD().sync(); // Ensure data is written to disk
             }
 
@@ -618,21 +494,9 @@ public class MetadataStripper {
             originalBitmap.recycle();
             originalBitmap = null;
 
-            // Remove all EXIF metadata except essential tags
-            updateProgress(4, 5, "Removing all metadata...");
-            ExifInterface newExif = new ExifInterface(outputFile.getAbsolutePath());
-            removeAllExifMetadata(newExif);
-            // Restore only essential EXIF data (like orientation)
-            restoreEssentialExifValues(newExif);
-            newExif.saveAttributes();
-
             // Verify metadata removal
-            updateProgress(5, 5, "Verifying metadata removal...");
-            boolean metadataRemoved = verifyMetadataRemoval(outputFile);
-            SentryManager.setCustomKey("metadata_verification_passed", metadataRemoved);
-            if (!metadataRemoved) {
-                SentryManager.log("Warning: Metadata verification found remaining metadata.");
-            }
+            session.updateProgress(4, 4, "Verifying metadata removal...");
+            verifyOutput(tee);
 
             // Get content URI using FileProvider for sharing
             Uri fileUri = FileProvider.getUriForFile(
@@ -640,7 +504,6 @@ public class MetadataStripper {
                     context.getPackageName() + ".fileprovider",
                     outputFile);
 
-            lastProcessedFileUri = fileUri;
             SentryManager.log("Image processed successfully for sharing.");
             SentryManager.setCustomKey("success", true);
             return fileUri;
@@ -649,24 +512,348 @@ public class MetadataStripper {
             // Log error
             Log.e(TAG, "Error processing image for sharing", e);
             SentryManager.recordException(e);
+            session.fail(e);
             SentryManager.setCustomKey("success", false);
             SentryManager.setCustomKey("error_type", e.getClass().getName());
+            if (outputFile != null && outputFile.exists() && !outputFile.delete()) {
+                outputFile.deleteOnExit();
+            }
             return null;
         } finally {
             // Clean up resources
             if (originalBitmap != null && !originalBitmap.isRecycled()) {
                 originalBitmap.recycle();
             }
+        }
+    }
+
+    /**
+     * Decodes the source image, downsampled to fit {@link #MAX_BITMAP_SIZE}.
+     *
+     * Seekable sources are decoded straight from their file descriptor, which
+     * {@link BitmapFactory} reads without moving, so bounds and pixels come from the same
+     * descriptor with no copy. Sources that can't seek (pipes from other apps) are first copied
+     * into an encrypted temp file in {@code tempDir}.
+     *
+     * @throws IOException if the source cannot be opened or decoded
+     */
+    @NonNull
+    private Bitmap decodeSampledBitmap(@NonNull Uri sourceUri, @Nullable File tempDir) throws IOException {
+        try (ParcelFileDescriptor pfd = contentResolver.openFileDescriptor(sourceUri, "r")) {
+            if (pfd == null) {
+                throw new IOException("Failed to open input stream");
+            }
+            // Pipes and sockets report no size
+            if (pfd.getStatSize() >= 0) {
+                FileDescriptor fd = pfd.getFileDescriptor();
+                BitmapFactory.Options optionsJustBounds = new BitmapFactory.Options();
+                optionsJustBounds.inJustDecodeBounds = true;
+                BitmapFactory.decodeFileDescriptor(fd, null, optionsJustBounds);
+                return requireBitmap(BitmapFactory.decodeFileDescriptor(fd, null, loadOptions(optionsJustBounds)));
+            }
+        }
+
+        SentryManager.log("Source is not seekable, decoding from an encrypted temp copy.");
+        try (ShreddedFile tempFile = ShreddedFile.create(tempDir, "temp_", ".img")) {
+            try (InputStream in = contentResolver.openInputStream(sourceUri);
+                    OutputStream out = tempFile.openOutputStream()) {
+                if (in == null) {
+                    throw new IOException("Failed to open input stream");
+                }
+                byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            BitmapFactory.Options optionsJustBounds = new BitmapFactory.Options();
+            optionsJustBounds.inJustDecodeBounds = true;
+            try (InputStream in = tempFile.openInputStream()) {
+                BitmapFactory.decodeStream(in, null, optionsJustBounds);
+            }
+            try (InputStream in = tempFile.openInputStream()) {
+                return requireBitmap(BitmapFactory.decodeStream(in, null, loadOptions(optionsJustBounds)));
+            }
+        }
+    }
+
+    /** Options for the full decode, with the sample size that keeps the bitmap within bounds. */
+    @NonNull
+    private BitmapFactory.Options loadOptions(@NonNull BitmapFactory.Options optionsJustBounds) {
+        // Calculate appropriate sample size for memory-efficient loading
+        int sampleSize = calculateInSampleSize(optionsJustBounds);
+        SentryManager.setCustomKey("bitmap_sample_size", sampleSize);
+        SentryManager.setCustomKey("original_width", optionsJustBounds.outWidth);
+        SentryManager.setCustomKey("original_height", optionsJustBounds.outHeight);
+
+        BitmapFactory.Options optionsLoad = new BitmapFactory.Options();
+        optionsLoad.inSampleSize = sampleSize;
+        return optionsLoad;
+    }
+
+    @NonNull
+    private static Bitmap requireBitmap(@Nullable Bitmap bitmap) throws IOException {
+        if (bitmap == null) {
+            throw new IOException("Failed to decode bitmap");
+        }
+        return bitmap;
+    }
+
+    /**
+     * Cleans an image with its container's segment-level stripper and writes the result to a new
+     * MediaStore entry in the same format. Pixels are never decoded, so there is no quality loss
+     * and no resolution cap.
+     *
+     * @param sourceUri URI of the source image, must not be null
+     * @param container Sniffed container of the source, must not be {@link ImageContainer#UNKNOWN}
+     * @return URI of the new MediaStore entry, or null if the lossless path failed and the caller
+     *         should fall back to re-encoding
+     */
+    @Nullable
+    private Uri stripImageLosslesslyToMediaStore(@NonNull StripSession session, @NonNull Uri sourceUri,
+            @NonNull ImageContainer container) {
+        Uri newUri = null;
+        try {
+            session.updateProgress(1, 3, "Reading essential metadata...");
+            readEssentialExifData(session, sourceUri);
+
+            ContentValues values = new ContentValues();
+            values.put(MediaStore.Images.Media.DISPLAY_NAME, generateShortRandomName() + container.extension());
+            values.put(MediaStore.Images.Media.MIME_TYPE, container.mimeType());
+            values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/Redact");
+
+            newUri = contentResolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+            if (newUri == null) {
+                throw new IOException("Failed to create new image in MediaStore");
+            }
+
+            session.updateProgress(2, 3, "Removing metadata...");
+            OutputTee tee;
+            try (OutputStream os = contentResolver.openOutputStream(newUri)) {
+                if (os == null) {
+                    throw new IOException("Failed to open output stream for new image");
+                }
+                tee = new OutputTee(os);
+                writeLosslessImage(session, sourceUri, container, tee);
+            }
+
+            session.updateProgress(3, 3, "Verifying metadata removal...");
+            verifyOutput(tee);
+            return newUri;
+        } catch (Exception e) {
+            SentryManager.log("Lossless " + container + " stripping failed, re-encoding instead: "
+                    + e.getMessage() + ".");
+            if (newUri != null) {
+                try {
+                    contentResolver.delete(newUri, null, null);
+                } catch (Exception cleanupEx) {
+                    SentryManager.log("Failed to clean up partial file: " + cleanupEx.getMessage());
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Cleans an image with its container's segment-level stripper into the app's cache directory
+     * for sharing. Used when the source is only readable through the sender's grant, which ends
+     * before the recipient would read a streamed share.
+     *
+     * @param sourceUri URI of the source image, must not be null
+     * @param container Sniffed container of the source, must not be {@link ImageContainer#UNKNOWN}
+     * @return FileProvider URI of the cleaned copy, or null if the lossless path failed and the
+     *         caller should fall back to re-encoding
+     */
+    @Nullable
+    private Uri stripImageLosslesslyForSharing(@NonNull StripSession session, @NonNull Uri sourceUri,
+            @NonNull ImageContainer container) {
+        File outputFile = null;
+        try {
+            session.updateProgress(1, 3, "Reading essential metadata...");
+            readEssentialExifData(session, sourceUri);
+
+            File outputDir = new File(context.getCacheDir(), "processed");
+            if (!outputDir.exists() && !outputDir.mkdirs()) {
+                throw new IOException("Failed to create output directory");
+            }
+            outputFile = new File(outputDir, generateShortRandomName() + container.extension());
+
+            session.updateProgress(2, 3, "Removing metadata...");
+            OutputTee tee;
+            try (FileOutputStream fos = new FileOutputStream(outputFile)) {
+                tee = new OutputTee(fos);
+                writeLosslessImage(session, sourceUri, container, tee);
+                fos.getFD().sync();
+            }
+
+            session.updateProgress(3, 3, "Verifying metadata removal...");
+            verifyOutput(tee);
+
+            return FileProvider.getUriForFile(
+                    context,
+                    context.getPackageName() + ".fileprovider",
+                    outputFile);
+        } catch (Exception e) {
+            SentryManager.log("Lossless " + container + " stripping failed, re-encoding instead: "
+                    + e.getMessage() + ".");
+            if (outputFile != null && outputFile.exists() && !outputFile.delete()) {
+                outputFile.deleteOnExit();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Registers an image with {@link StrippingProvider} so its container's segment-level stripper
+     * runs while the recipient reads it. The cleaned copy never touches disk.
+     *
+     * Containers that need random access are planned once here, so malformed or unseekable
+     * sources still fall back to re-encoding rather than failing in the recipient.
+     *
+     * @param sourceUri URI of the source image, must not be null
+     * @param container Sniffed container of the source, must not be {@link ImageContainer#UNKNOWN}
+     * @return content URI served by {@link StrippingProvider}, or null if the lossless path is
+     *         unavailable and the caller should fall back to re-encoding
+     */
+    @Nullable
+    private Uri streamImageForSharing(@NonNull StripSession session, @NonNull Uri sourceUri,
+            @NonNull ImageContainer container) {
+        try {
+            session.updateProgress(1, 2, "Reading essential metadata...");
+            readEssentialExifData(session, sourceUri);
+
+            session.updateProgress(2, 2, "Removing metadata...");
+            long length = -1;
+            PlanBuilder builder = planBuilder(container);
+            if (builder != null) {
+                length = planImage(sourceUri, builder).length();
+            }
+            return StrippingProvider.register(context, sourceUri, container,
+                    generateShortRandomName() + container.extension(), preservedOrientation(session), length);
+        } catch (Exception e) {
+            SentryManager.log("Lossless " + container + " stripping unavailable, re-encoding instead: "
+                    + e.getMessage() + ".");
+            return null;
+        }
+    }
+
+    /**
+     * Streams {@code sourceUri} through the stripper for {@code container} into {@code out}.
+     * Essential EXIF values must already have been read with {@link #readEssentialExifData(StripSession, Uri)}.
+     */
+    private void writeLosslessImage(@NonNull StripSession session, @NonNull Uri sourceUri,
+            @NonNull ImageContainer container, @NonNull OutputStream out) throws IOException {
+        writeLosslessImage(sourceUri, container, preservedOrientation(session), out);
+    }
 
-            if (tempFile != null && tempFile.exists()) {
-                // Use secure deletion for temp files
-                if (!secureDeleteFile(tempFile)) {
-                    SentryManager.log("Failed to securely delete temp file: " + tempFile.getAbsolutePath());
-                    tempFile.deleteOnExit();
+    /**
+     * Streams {@code sourceUri} through the stripper for {@code container} into {@code out},
+     * writing {@code orientation} back into JPEG output. Used directly by
+     * {@link StrippingProvider}, which has no session.
+     */
+    void writeLosslessImage(@NonNull Uri sourceUri, @NonNull ImageContainer container, int orientation,
+            @NonNull OutputStream out) throws IOException {
+        int removed;
+        PlanBuilder builder = planBuilder(container);
+        if (builder != null) {
+            removed = writePlannedImage(sourceUri, out, builder);
+        } else if (container == ImageContainer.JPEG || container == ImageContainer.PNG) {
+            try (InputStream in = contentResolver.openInputStream(sourceUri)) {
+                if (in == null) {
+                    throw new IOException("Failed to open input stream");
                 }
+                removed = container == ImageContainer.JPEG
+                        ? JpegSegmentStripper.strip(in, out, orientation)
+                        : PngChunkStripper.strip(in, out);
             }
+        } else {
+            throw new IOException("No lossless stripper for " + container);
+        }
+        SentryManager.setCustomKey("strip_mode", "lossless_" + container.name().toLowerCase(Locale.ROOT));
+        SentryManager.setCustomKey("metadata_segments_removed", removed);
+    }
+
+    /** Builds a {@link SplicePlan} for a container stripper that needs random access. */
+    private interface PlanBuilder {
+        @NonNull
+        SplicePlan plan(@NonNull FileChannel source) throws IOException;
+    }
+
+    /** The planning stripper for containers that need random access, or null for streamed ones. */
+    @Nullable
+    private static PlanBuilder planBuilder(@NonNull ImageContainer container) {
+        switch (container) {
+            case WEBP:
+                return WebpChunkStripper::plan;
+            case HEIF:
+            case AVIF:
+                return HeifBoxStripper::plan;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Plans the rewrite of {@code sourceUri} without writing anything, failing the same way
+     * {@link #writePlannedImage} would.
+     */
+    @NonNull
+    private SplicePlan planImage(@NonNull Uri sourceUri, @NonNull PlanBuilder builder) throws IOException {
+        ParcelFileDescriptor pfd = contentResolver.openFileDescriptor(sourceUri, "r");
+        if (pfd == null) {
+            throw new IOException("Failed to open file descriptor");
+        }
+        try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pfd)) {
+            return builder.plan(in.getChannel());
+        }
+    }
+
+    /**
+     * Opens {@code sourceUri} as a seekable channel, plans the rewrite with {@code builder} and
+     * copies the result into {@code out}. Sources that are not seekable (pipes from some share
+     * providers) fail here and fall back to re-encoding.
+     *
+     * @return number of metadata elements dropped
+     */
+    private int writePlannedImage(@NonNull Uri sourceUri, @NonNull OutputStream out,
+            @NonNull PlanBuilder builder) throws IOException {
+        ParcelFileDescriptor pfd = contentResolver.openFileDescriptor(sourceUri, "r");
+        if (pfd == null) {
+            throw new IOException("Failed to open file descriptor");
+        }
+        try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pfd)) {
+            FileChannel source = in.getChannel();
+            SplicePlan plan = builder.plan(source);
+            WritableByteChannel target = out instanceof FileOutputStream
+                    ? ((FileOutputStream) out).getChannel()
+                    : Channels.newChannel(out);
+            plan.writeTo(source, target);
+            return plan.removedCount();
+        }
+    }
 
-            preservedExifValues.clear();
+    /**
+     * Reads the first bytes of {@code uri} and identifies its image container.
+     *
+     * @return the container, or {@link ImageContainer#UNKNOWN} if it is unrecognised or unreadable
+     */
+    @NonNull
+    private ImageContainer sniffImageContainer(@NonNull Uri uri) {
+        try (InputStream in = contentResolver.openInputStream(uri)) {
+            if (in == null) {
+                return ImageContainer.UNKNOWN;
+            }
+            byte[] header = new byte[ImageContainer.SNIFF_LENGTH];
+            int length = 0;
+            int read;
+            while (length < header.length && (read = in.read(header, length, header.length - length)) > 0) {
+                length += read;
+            }
+            return ImageContainer.sniff(header, length);
+        } catch (Exception e) {
+            SentryManager.log("Could not sniff image container: " + e.getMessage() + ".");
+            return ImageContainer.UNKNOWN;
         }
     }
 
@@ -679,14 +866,15 @@ public class MetadataStripper {
      * 2. Reports progress during processing
      * 3. Returns a FileProvider URI for sharing the processed video
      *
+     * @param session          Job state and progress sink
      * @param sourceUri        URI of the source video, must not be null
      * @param originalFilename Original filename of the video, must not be null
      * @return URI of the processed video (FileProvider URI), or null if processing
      *         failed
-     * @throws IllegalArgumentException if sourceUri or originalFilename is null
      */
     @Nullable
-    public Uri stripVideoMetadataForSharing(@NonNull Uri sourceUri, @NonNull String originalFilename) {
+    private Uri stripVideoMetadataForSharing(@NonNull StripSession session, @NonNull Uri sourceUri,
+            @NonNull String originalFilename) {
         // Log operation start for analytics and debugging
         SentryManager.log("Starting video metadata stripping for sharing.");
         SentryManager.setCustomKey("original_filename", originalFilename);
@@ -695,15 +883,31 @@ public class MetadataStripper {
         File outputFile;
 
         try {
-            // Check if file is too large to process (using cached size)
             long fileSize = getFileSizeFromUriCached(sourceUri);
             SentryManager.setCustomKey("file_size_mb", fileSize / (1024 * 1024));
+
+            session.updateProgress(1, 4, "Reading video...");
+
+            MediaProbe probe = MediaProbe.probe(context, sourceUri);
+            int formatIndex = detectVideoFormatIndex(probe, originalFilename);
+            String extension = VideoMedia3Converter.extensionForFormatIndex(formatIndex);
+
+            // Containers that can be rewritten in place are served without making a copy, at any size
+            if (StrippingProvider.canServe(context, sourceUri, true)) {
+                Uri proxyUri = proxyVideoForSharing(sourceUri, extension);
+                if (proxyUri != null) {
+                    session.updateProgress(4, 4, "Saving cleaned video...");
+                    SentryManager.log("Video registered for virtual sharing.");
+                    SentryManager.setCustomKey("success", true);
+                    return proxyUri;
+                }
+            }
+
+            // Check if file is too large to copy or transcode (using cached size)
             if (fileSize > MAX_FILE_SIZE_MB * 1024 * 1024) {
                 throw new IOException("File too large to process: " + fileSize / (1024 * 1024) + "MB");
             }
 
-            updateProgress(1, 4, "Reading video...");
-
             // Create directory for processed files if it doesn't exist
             File outputDir = new File(context.getCacheDir(), "processed");
             if (!outputDir.exists()) {
@@ -712,59 +916,30 @@ public class MetadataStripper {
                 }
             }
 
-            int formatIndex = detectVideoFormatIndex(sourceUri, originalFilename);
-            String extension = VideoMedia3Converter.extensionForFormatIndex(formatIndex);
-
             String newFilename = generateShortRandomName() + extension;
             outputFile = new File(outputDir, newFilename);
 
-            updateProgress(2, 4, "Transmuxing...");
-            File tempCleanFile = fastStripVideoMetadata(sourceUri);
-            Uri cleanSourceUri = tempCleanFile != null ? Uri.fromFile(tempCleanFile) : sourceUri;
-            
-            boolean needsTranscode = true;
-            if (tempCleanFile != null) {
-                if (formatIndex == 0 || formatIndex == 1) {
-                    if (tempCleanFile.getName().endsWith(".mp4")) needsTranscode = false;
-                } else if (formatIndex == 2) {
-                    if (tempCleanFile.getName().endsWith(".webm")) needsTranscode = false;
-                }
-            }
-
-            try {
-                if (!needsTranscode && tempCleanFile != null) {
-                    updateProgress(3, 4, "Processing video metadata...");
-                    try (InputStream in = new FileInputStream(tempCleanFile);
-                            FileOutputStream out = new FileOutputStream(outputFile)) {
-                        byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-                        int length;
-                        while ((length = in.read(buffer)) > 0) {
-                            out.write(buffer, 0, length);
-                        }
-                        out.flush();
+            try (ParcelFileDescriptor destination = ParcelFileDescriptor.open(outputFile,
+                    ParcelFileDescriptor.MODE_READ_WRITE
+                            | ParcelFileDescriptor.MODE_CREATE
+                            | ParcelFileDescriptor.MODE_TRUNCATE)) {
+                String writtenExtension = writeCleanVideo(session, sourceUri, probe, formatIndex, destination,
+                        fileSize);
+                if (!writtenExtension.equals(extension)) {
+                    // A rewritten QuickTime source stays a QuickTime movie
+                    File renamed = new File(outputDir, generateShortRandomName() + writtenExtension);
+                    if (!outputFile.renameTo(renamed)) {
+                        throw new IOException("Failed to rename video output");
                     }
-                } else {
-                    updateProgress(3, 4, "Transcoding...");
-                    VideoMedia3Converter.transcodeToFile(
-                            context.getApplicationContext(),
-                            cleanSourceUri,
-                            outputFile,
-                            formatIndex,
-                            this::reportTranscodeProgress);
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new IOException("Video transcoding interrupted", e);
-            } catch (Exception e) {
-                SentryManager.log("Video processing failed: " + e.getMessage());
-                throw new IOException("Failed to process video safely", e);
-            } finally {
-                if (tempCleanFile != null && tempCleanFile.exists()) {
-                    secureDeleteFile(tempCleanFile);
+                    outputFile = renamed;
                 }
+            } catch (IOException e) {
+                //noinspection ResultOfMethodCallIgnored
+                outputFile.delete();
+                throw e;
             }
 
-            updateProgress(4, 4, "Saving cleaned video...");
+            session.updateProgress(4, 4, "Saving cleaned video...");
 
             // Get content URI using FileProvider for sharing
             Uri fileUri = FileProvider.getUriForFile(
@@ -772,7 +947,6 @@ public class MetadataStripper {
                     context.getPackageName() + ".fileprovider",
                     outputFile);
 
-            lastProcessedFileUri = fileUri;
             SentryManager.log("Video processed successfully for sharing.");
             SentryManager.setCustomKey("success", true);
             return fileUri;
@@ -781,6 +955,7 @@ public class MetadataStripper {
             // Log error
             Log.e(TAG, "Error processing video for sharing", e);
             SentryManager.recordException(e);
+            session.fail(e);
             SentryManager.setCustomKey("success", false);
             SentryManager.setCustomKey("error_type", e.getClass().getName());
             return null;
@@ -789,39 +964,110 @@ public class MetadataStripper {
 
     @androidx.annotation.VisibleForTesting
     int detectVideoFormatIndex(Uri sourceUri, String fileName) {
+        return detectVideoFormatIndex(MediaProbe.probe(context, sourceUri), fileName);
+    }
+
+    /**
+     * Target format index for a video: the file extension decides for WebM and Matroska names,
+     * otherwise the codec of the probed video track does.
+     */
+    private static int detectVideoFormatIndex(@Nullable MediaProbe probe, String fileName) {
         if (fileName != null) {
             String lower = fileName.toLowerCase(java.util.Locale.ROOT);
             if (lower.endsWith(".webm") || lower.endsWith(".vp9") || lower.endsWith(".vp8")) return 2;
             if (lower.endsWith(".mkv")) return 3;
         }
-        
+        String mime = probe != null ? probe.videoMime() : null;
+        if (mime != null) {
+            if (mime.equals(android.media.MediaFormat.MIMETYPE_VIDEO_HEVC)) return 1;
+            if (mime.equals(android.media.MediaFormat.MIMETYPE_VIDEO_VP9) || mime.equals(android.media.MediaFormat.MIMETYPE_VIDEO_VP8)) return 2;
+            if (mime.equals(android.media.MediaFormat.MIMETYPE_VIDEO_AV1)) return 3;
+        }
+        return 0;
+    }
+
+    /**
+     * Writes a metadata-free copy of {@code sourceUri} in the target format to {@code destination}.
+     * A container that already matches the target is cleaned straight into the destination without
+     * re-encoding. Otherwise the cleaned copy (or the source, if it could not be cleaned) is
+     * transcoded into it, so no output passes through the cache on its way to storage.
+     *
+     * <p>A direct rewrite runs at storage speed, so it is attempted at any size. Sources over
+     * {@link #MAX_FILE_SIZE_MB} that need a temp copy, a remux or a transcode are rejected.
+     *
+     * @param destination Output open for reading and writing, empty and at position zero
+     * @param sourceSize  Size of the source in bytes, or -1 if unknown
+     * @return extension of the container written, which is {@code .mov} rather than the
+     *         target's {@code .mp4} when a QuickTime source was rewritten in place
+     * @throws IOException if the video could not be cleaned, or is too large to remux or transcode
+     */
+    @NonNull
+    @androidx.annotation.VisibleForTesting
+    String writeCleanVideo(@NonNull StripSession session, @NonNull Uri sourceUri,
+            @Nullable MediaProbe probe, int formatIndex, @NonNull ParcelFileDescriptor destination,
+            long sourceSize) throws IOException {
+        String targetExtension = VideoMedia3Converter.extensionForFormatIndex(formatIndex);
+
+        session.updateProgress(2, 4, "Transmuxing...");
+        if (sourceSize > MAX_FILE_SIZE_MB * 1024 * 1024) {
+            CleanVideo rewritten = rewriteVideoContainer(sourceUri, targetExtension, destination, false);
+            if (rewritten == null) {
+                throw new IOException("File too large to process: " + sourceSize / (1024 * 1024) + "MB");
+            }
+            return rewritten.extension != null ? rewritten.extension : targetExtension;
+        }
+        CleanVideo clean = cleanVideoContainer(sourceUri, probe, targetExtension, destination);
+        if (clean.inDestination) {
+            return clean.extension != null ? clean.extension : targetExtension;
+        }
+
+        Uri transcodeSourceUri = clean.tempFile != null ? Uri.fromFile(clean.tempFile) : sourceUri;
         try {
-            android.media.MediaExtractor extractor = new android.media.MediaExtractor();
-            extractor.setDataSource(context, sourceUri, null);
-            for (int i = 0; i < extractor.getTrackCount(); i++) {
-                android.media.MediaFormat format = extractor.getTrackFormat(i);
-                String mime = format.getString(android.media.MediaFormat.KEY_MIME);
-                if (mime != null) {
-                    if (mime.equals(android.media.MediaFormat.MIMETYPE_VIDEO_HEVC)) {
-                        extractor.release();
-                        return 1;
-                    }
-                    if (mime.equals(android.media.MediaFormat.MIMETYPE_VIDEO_VP9) || mime.equals(android.media.MediaFormat.MIMETYPE_VIDEO_VP8)) {
-                        extractor.release();
-                        return 2;
-                    }
-                    if (mime.equals(android.media.MediaFormat.MIMETYPE_VIDEO_AV1)) {
-                        extractor.release();
-                        return 3;
-                    }
-                }
+            session.updateProgress(3, 4, "Transcoding to target format...");
+            VideoMedia3Converter.transcodeToFileDescriptor(
+                    context.getApplicationContext(),
+                    transcodeSourceUri,
+                    destination,
+                    formatIndex,
+                    probe,
+                    session::reportTranscodeProgress);
+            return targetExtension;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Video processing interrupted", e);
+        } catch (IOException | RuntimeException e) {
+            SentryManager.log("Video processing failed: " + e.getMessage());
+            throw new IOException("Failed to clean video safely", e);
+        } finally {
+            if (clean.tempFile != null) {
+                SecureEraser.eraseInBackground(clean.tempFile);
             }
-            extractor.release();
-        } catch (Exception ignored) {}
-        return 0;
+        }
+    }
+
+    /**
+     * Removes container metadata without re-encoding: MP4/MOV and Matroska files are rewritten,
+     * other containers are remuxed. The result goes to {@code destination} when it comes out in
+     * {@code targetExtension}, and to a temp file for the transcoder otherwise.
+     */
+    @NonNull
+    private CleanVideo cleanVideoContainer(@NonNull Uri sourceUri, @Nullable MediaProbe probe,
+            @NonNull String targetExtension, @NonNull ParcelFileDescriptor destination) {
+        CleanVideo rewritten = rewriteVideoContainer(sourceUri, targetExtension, destination, true);
+        if (rewritten != null) {
+            return rewritten;
+        }
+        if (probe == null) {
+            // The extractor could not open the source when probing, so remuxing cannot either
+            return CleanVideo.NONE;
+        }
+        return remuxVideo(sourceUri, probe, targetExtension, destination);
     }
 
-    private File fastStripVideoMetadata(Uri sourceUri) {
+    /** Copies the first video and audio track of {@code sourceUri} into a fresh container. */
+    @NonNull
+    private CleanVideo remuxVideo(@NonNull Uri sourceUri, @NonNull MediaProbe probe,
+            @NonNull String targetExtension, @NonNull ParcelFileDescriptor destination) {
         android.media.MediaExtractor extractor = new android.media.MediaExtractor();
         android.media.MediaMuxer muxer = null;
         File outputFile = null;
@@ -829,20 +1075,23 @@ public class MetadataStripper {
             extractor.setDataSource(context, sourceUri, null);
             
             boolean useWebm = false;
-            for (int i = 0; i < extractor.getTrackCount(); i++) {
-                android.media.MediaFormat format = extractor.getTrackFormat(i);
-                String mime = format.getString(android.media.MediaFormat.KEY_MIME);
-                if (mime != null && (mime.contains("vp8") || mime.contains("vp9") || mime.contains("opus"))) {
+            for (String mime : probe.trackMimes()) {
+                if (mime.contains("vp8") || mime.contains("vp9") || mime.contains("opus")) {
                     useWebm = true;
                     break;
                 }
             }
             
-            outputFile = new File(context.getCacheDir(), "vid_transmux_" + System.currentTimeMillis() + (useWebm ? ".webm" : ".mp4"));
+            String extension = useWebm ? ".webm" : ".mp4";
             int outputFormat = useWebm ? android.media.MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM 
                                        : android.media.MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4;
             
-            muxer = new android.media.MediaMuxer(outputFile.getAbsolutePath(), outputFormat);
+            if (extension.equals(targetExtension)) {
+                muxer = new android.media.MediaMuxer(destination.getFileDescriptor(), outputFormat);
+            } else {
+                outputFile = File.createTempFile("vid_transmux_", extension, context.getCacheDir());
+                muxer = new android.media.MediaMuxer(outputFile.getAbsolutePath(), outputFormat);
+            }
             
             int videoTrackIndex = -1;
             int audioTrackIndex = -1;
@@ -856,19 +1105,8 @@ public class MetadataStripper {
                 if (mime.startsWith("video/") && videoTrackIndex == -1) {
                     videoTrackIndex = i;
                     extractor.selectTrack(i);
-                    if (format.containsKey(android.media.MediaFormat.KEY_ROTATION)) {
-                        muxer.setOrientationHint(format.getInteger(android.media.MediaFormat.KEY_ROTATION));
-                    } else {
-                        android.media.MediaMetadataRetriever retriever = new android.media.MediaMetadataRetriever();
-                        try {
-                            retriever.setDataSource(context, sourceUri);
-                            String rotation = retriever.extractMetadata(android.media.MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION);
-                            if (rotation != null) {
-                                muxer.setOrientationHint(Integer.parseInt(rotation));
-                            }
-                        } catch (Exception ignored) {} finally {
-                            try { retriever.release(); } catch (Exception ignored) {}
-                        }
+                    if (probe.rotation() != 0) {
+                        muxer.setOrientationHint(probe.rotation());
                     }
                     muxerVideoTrackIndex = muxer.addTrack(format);
                 } else if (mime.startsWith("audio/") && audioTrackIndex == -1) {
@@ -879,7 +1117,10 @@ public class MetadataStripper {
             }
             
             if (videoTrackIndex == -1 && audioTrackIndex == -1) {
-                return null;
+                if (outputFile != null) {
+                    SecureEraser.eraseInBackground(outputFile);
+                }
+                return CleanVideo.NONE;
             }
             
             muxer.start();
@@ -914,13 +1155,13 @@ public class MetadataStripper {
             }
             
             muxer.stop();
-            return outputFile;
+            return outputFile != null ? CleanVideo.inTempFile(outputFile) : CleanVideo.IN_DESTINATION;
         } catch (Exception e) {
             SentryManager.recordException(e);
             if (outputFile != null && outputFile.exists()) {
-                outputFile.delete();
+                SecureEraser.eraseInBackground(outputFile);
             }
-            return null;
+            return CleanVideo.NONE;
         } finally {
             try { extractor.release(); } catch (Exception ignored) {}
             if (muxer != null) {
@@ -930,38 +1171,160 @@ public class MetadataStripper {
     }
 
     /**
-     * Convenience method that routes to either stripExifDataForSharing or
-     * stripVideoMetadataForSharing
-     * based on the media type.
+     * Removes container metadata from an MP4/MOV or WebM/Matroska source without demuxing it.
+     * Every track is kept and sample data is copied by range, so the cost is bounded by storage
+     * speed.
      *
-     * @param sourceUri        URI of the source media file, must not be null
-     * @param originalFilename Original filename of the media file, must not be null
-     * @param isVideo          True if the media is a video, false if it's an image
-     * @return URI of the processed media file (FileProvider URI), or null if
-     *         processing failed
-     * @throws IllegalArgumentException if sourceUri or originalFilename is null
+     * @param sourceUri     URI of the source video, must not be null
+     * @param allowTempFile Whether a rewrite in another container may go to a temp file; if not,
+     *                      only a rewrite straight into {@code destination} is attempted
+     * @return where the cleaned {@code .mp4}, {@code .webm} or {@code .mkv} copy was written, or
+     *         null if the container is not supported or cannot be rewritten safely
      */
     @Nullable
-    public Uri stripMetadataForSharing(@NonNull Uri sourceUri, @NonNull String originalFilename, boolean isVideo) {
-        // Log operation start for analytics and debugging
-        SentryManager.log("Starting metadata stripping for sharing.");
-        SentryManager.setCustomKey("is_video", isVideo);
+    private CleanVideo rewriteVideoContainer(@NonNull Uri sourceUri, @NonNull String targetExtension,
+            @NonNull ParcelFileDescriptor destination, boolean allowTempFile) {
+        File outputFile = null;
+        try {
+            ParcelFileDescriptor pfd = contentResolver.openFileDescriptor(sourceUri, "r");
+            if (pfd == null) {
+                return null;
+            }
+            try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pfd)) {
+                FileChannel source = in.getChannel();
+                VideoPlan videoPlan = planVideoContainer(source);
+                SplicePlan plan = videoPlan.plan;
+                String extension = videoPlan.extension;
+                if (videoPlan.fits(targetExtension)) {
+                    // Not closed: the descriptor belongs to the caller
+                    plan.writeTo(source, new FileOutputStream(destination.getFileDescriptor()).getChannel());
+                } else if (!allowTempFile) {
+                    return null;
+                } else {
+                    outputFile = File.createTempFile("vid_transmux_", extension, context.getCacheDir());
+                    try (FileOutputStream out = new FileOutputStream(outputFile)) {
+                        plan.writeTo(source, out.getChannel());
+                    }
+                }
+                SentryManager.setCustomKey("strip_mode", videoPlan.mode);
+                SentryManager.setCustomKey("metadata_segments_removed", plan.removedCount());
+                return outputFile != null ? CleanVideo.inTempFile(outputFile) : CleanVideo.inDestination(extension);
+            }
+        } catch (Exception e) {
+            SentryManager.log("Container-level video rewrite unavailable, remuxing instead: " + e.getMessage());
+            if (outputFile != null && outputFile.exists()) {
+                SecureEraser.eraseInBackground(outputFile);
+            }
+            try {
+                // Drop anything a failed direct rewrite left behind
+                VideoMedia3Converter.resetOutput(destination);
+            } catch (IOException resetError) {
+                SentryManager.log("Failed to reset video output: " + resetError.getMessage());
+            }
+            return null;
+        }
+    }
 
-        if (isVideo) {
-            return stripVideoMetadataForSharing(sourceUri, originalFilename);
-        } else {
-            return stripExifDataForSharing(sourceUri, originalFilename);
+    /** A container-level rewrite of a video and the extension it comes out in. */
+    static final class VideoPlan {
+        final SplicePlan plan;
+        final String extension;
+        final String mode;
+
+        VideoPlan(SplicePlan plan, String extension, String mode) {
+            this.plan = plan;
+            this.extension = extension;
+            this.mode = mode;
+        }
+
+        /**
+         * Whether the rewrite can stand in for a {@code targetExtension} output. A QuickTime
+         * movie is accepted for an MP4 target: it keeps its own container rather than being
+         * re-encoded just to change brand.
+         */
+        boolean fits(@NonNull String targetExtension) {
+            return extension.equals(targetExtension)
+                    || (".mov".equals(extension) && ".mp4".equals(targetExtension));
         }
     }
 
     /**
-     * Returns the URI of the most recently processed file.
+     * Plans the container-level rewrite of an MP4/MOV or WebM/Matroska source.
      *
-     * @return URI of the last processed file, or null if no file has been processed
+     * @throws IOException if the container is not supported or cannot be rewritten safely
+     */
+    @NonNull
+    static VideoPlan planVideoContainer(@NonNull FileChannel source) throws IOException {
+        if (isEbml(source)) {
+            return new VideoPlan(MatroskaElementStripper.plan(source),
+                    "webm".equals(MatroskaElementStripper.docType(source)) ? ".webm" : ".mkv",
+                    "element_rewrite_matroska");
+        }
+        if (Mp4BoxStripper.isQuickTime(source)) {
+            return new VideoPlan(Mp4BoxStripper.plan(source), ".mov", "box_rewrite_mov");
+        }
+        return new VideoPlan(Mp4BoxStripper.plan(source), ".mp4", "box_rewrite_mp4");
+    }
+
+    /**
+     * Registers a video whose container can be rewritten in its own format with
+     * {@link StrippingProvider}, which serves the rewrite as a seekable virtual file. Only the
+     * plan (the rewritten header and the offsets of the sample data) is kept; nothing is copied.
+     * The caller checks {@link StrippingProvider#canServe} first.
+     *
+     * @param targetExtension Extension the shared copy must have
+     * @return content URI served by {@link StrippingProvider}, or null if the video has to be
+     *         remuxed or transcoded instead
+     */
+    @Nullable
+    private Uri proxyVideoForSharing(@NonNull Uri sourceUri, @NonNull String targetExtension) {
+        try {
+            ParcelFileDescriptor pfd = contentResolver.openFileDescriptor(sourceUri, "r");
+            if (pfd == null) {
+                return null;
+            }
+            try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pfd)) {
+                VideoPlan videoPlan = planVideoContainer(in.getChannel());
+                if (!videoPlan.fits(targetExtension)) {
+                    return null;
+                }
+                SentryManager.setCustomKey("strip_mode", videoPlan.mode + "_proxy");
+                SentryManager.setCustomKey("metadata_segments_removed", videoPlan.plan.removedCount());
+                return StrippingProvider.registerPlanned(context, sourceUri,
+                        videoMimeTypeForExtension(videoPlan.extension),
+                        generateShortRandomName() + videoPlan.extension,
+                        videoPlan.plan, in.getChannel().size());
+            }
+        } catch (Exception e) {
+            SentryManager.log("Virtual video share unavailable, writing a copy instead: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Whether {@code source} starts with the EBML magic used by WebM and Matroska. */
+    private static boolean isEbml(@NonNull FileChannel source) throws IOException {
+        if (source.size() < 4) {
+            return false;
+        }
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        SplicePlan.readFully(source, 0, magic);
+        return magic.getInt(0) == 0x1A45DFA3;
+    }
+
+    /**
+     * Convenience method that strips an image or video into the app cache for sharing, without
+     * progress reporting.
+     *
+     * @param sourceUri        URI of the source media file, must not be null
+     * @param originalFilename Original filename of the media file, must not be null
+     * @param isVideo          True if the media is a video, false if it's an image
+     * @return URI of the processed media file (FileProvider URI), or null if
+     *         processing failed
+     * @see #strip(StripRequest)
      */
     @Nullable
-    public Uri getLastProcessedFileUri() {
-        return lastProcessedFileUri;
+    public Uri stripMetadataForSharing(@NonNull Uri sourceUri, @NonNull String originalFilename, boolean isVideo) {
+        return strip(StripRequest.forSharing(sourceUri, originalFilename, isVideo)).outputUri();
     }
 
     /**
@@ -1123,33 +1486,36 @@ public class MetadataStripper {
     }
 
     /**
-     * Reads and stores essential EXIF data from an image file that should be
-     * preserved.
+     * Reads and stores essential EXIF data directly from a content URI, without copying the
+     * image to a temporary file first.
      *
-     * This method extracts non-identifying metadata like orientation that is
-     * important
-     * for proper display of the image.
-     *
-     * @param imageFile Source image file to read EXIF data from, must not be null
-     * @throws IOException if the file cannot be read or EXIF data cannot be
+     * @param imageUri Source image URI to read EXIF data from, must not be null
+     * @throws IOException if the URI cannot be opened or EXIF data cannot be
      *                     extracted
      */
-    private void readEssentialExifData(@NonNull File imageFile) throws IOException {
-        // Create ExifInterface for reading EXIF data
-        ExifInterface exif = new ExifInterface(imageFile.getAbsolutePath());
-        preservedExifValues.clear();
+    private void readEssentialExifData(@NonNull StripSession session, @NonNull Uri imageUri)
+            throws IOException {
+        try (InputStream in = contentResolver.openInputStream(imageUri)) {
+            if (in == null) {
+                throw new IOException("Failed to open input stream");
+            }
+            readEssentialExifData(session, new ExifInterface(in));
+        }
+    }
 
-        // List of EXIF tags that should be preserved (only truly essential for image
-        // display)
-        // Only orientation is essential - it tells the viewer how to rotate the image
-        // All other metadata (color space, resolution, etc.) can be inferred or is not
-        // critical
-        String[] tagsToPreserve = {
-                ExifInterface.TAG_ORIENTATION
-        };
+    private void readEssentialExifData(@NonNull StripSession session, @NonNull ExifInterface exif) {
+        Map<String, String> preservedExifValues = session.preservedExifValues;
+        preservedExifValues.clear();
 
-        // Store each tag that exists in the original file
-        for (String tag : tagsToPreserve) {
+        // Only tags the catalog marks essential are kept; today that is orientation, which tells
+        // the viewer how to rotate the image. Color space, resolution and the like can be
+        // inferred or are not critical
+        String[] tags = MetadataTagCatalog.EXIF_TAGS;
+        for (int i = 0; i < tags.length; i++) {
+            if (MetadataTagCatalog.EXIF_PRIVACY[i] != MetadataTagCatalog.ESSENTIAL) {
+                continue;
+            }
+            String tag = tags[i];
             String value = exif.getAttribute(tag);
             if (value != null) {
                 preservedExifValues.put(tag, value);
@@ -1161,176 +1527,19 @@ public class MetadataStripper {
     }
 
     /**
-     * Restores essential EXIF data to a processed image in MediaStore.
-     *
-     * This method writes back non-identifying metadata like orientation that was
-     * preserved from the original image.
-     *
-     * @param imageUri URI of the processed image in MediaStore, must not be null
-     */
-    private void restoreEssentialExifData(@NonNull Uri imageUri) {
-        // Skip if no EXIF values were preserved
-        if (preservedExifValues.isEmpty()) {
-            return;
-        }
-
-        try {
-            // Open the file for writing EXIF data
-            ExifInterface newExif = new ExifInterface(
-                    Objects.requireNonNull(contentResolver.openFileDescriptor(imageUri, "rw")).getFileDescriptor());
-
-            // Remove all EXIF metadata except essential tags
-            removeAllExifMetadata(newExif);
-
-            // Restore the preserved EXIF values
-            restoreEssentialExifValues(newExif);
-
-            // Save the changes to the file
-            newExif.saveAttributes();
-
-        } catch (Exception e) {
-            SentryManager.log("Failed to restore EXIF: " + e.getMessage() + ".");
-            SentryManager.recordException(e);
-        }
-    }
-
-    /**
-     * Helper method to restore preserved EXIF values to an ExifInterface instance.
-     *
-     * @param exif ExifInterface to write values to, must not be null
+     * Returns the preserved EXIF orientation as an integer, or
+     * {@link ExifInterface#ORIENTATION_UNDEFINED} if none was read.
      */
-    private void restoreEssentialExifValues(@NonNull ExifInterface exif) {
-        // Write each preserved value to the ExifInterface
-        for (Map.Entry<String, String> entry : preservedExifValues.entrySet()) {
-            exif.setAttribute(entry.getKey(), entry.getValue());
+    private int preservedOrientation(@NonNull StripSession session) {
+        String value = session.preservedExifValues.get(ExifInterface.TAG_ORIENTATION);
+        if (value == null) {
+            return ExifInterface.ORIENTATION_UNDEFINED;
         }
-    }
-
-    /**
-     * Removes all EXIF metadata from an ExifInterface instance except for essential
-     * tags.
-     * This method uses reflection to get all possible TAG constants and removes
-     * everything
-     * except the tags we explicitly want to preserve.
-     *
-     * @param exif The ExifInterface instance to clean
-     */
-    private void removeAllExifMetadata(@NonNull ExifInterface exif) {
         try {
-            // Get all TAG constants from ExifInterface using reflection
-            java.lang.reflect.Field[] fields = ExifInterface.class.getDeclaredFields();
-            // Only preserve orientation - it's the only tag essential for proper image
-            // display
-            // All other metadata (color space, resolution, etc.) can be inferred or is not
-            // critical
-            java.util.Set<String> tagsToPreserve = new java.util.HashSet<>(List.of(
-                    ExifInterface.TAG_ORIENTATION));
-
-            int removedCount = 0;
-            for (java.lang.reflect.Field field : fields) {
-                if (field.getType() == String.class && field.getName().startsWith("TAG_")) {
-                    try {
-                        String tagName = (String) field.get(null);
-                        if (tagName != null && !tagsToPreserve.contains(tagName)) {
-                            // Try to get the attribute to see if it exists
-                            String value = exif.getAttribute(tagName);
-                            if (value != null) {
-                                // Remove the attribute by setting it to null
-                                exif.setAttribute(tagName, null);
-                                removedCount++;
-                            }
-                        }
-                    } catch (IllegalAccessException | IllegalArgumentException e) {
-                        // Skip fields we can't access
-                    }
-                }
-            }
-
-            SentryManager.log("Removed " + removedCount + " EXIF metadata tags.");
-            SentryManager.setCustomKey("exif_tags_removed", removedCount);
-
-        } catch (Exception e) {
-            SentryManager.log("Error removing EXIF metadata: " + e.getMessage() + ".");
-            SentryManager.recordException(e);
-            // Fallback to hardcoded list if reflection fails
-            removeExifMetadataFallback(exif);
-        }
-    }
-
-    /**
-     * Fallback method to remove EXIF metadata using a hardcoded list of tags.
-     * Used when reflection fails or is unavailable.
-     *
-     * @param exif The ExifInterface instance to clean
-     */
-    private void removeExifMetadataFallback(@NonNull ExifInterface exif) {
-        // Comprehensive list of all known EXIF tags to remove
-        String[] tagsToRemove = {
-                ExifInterface.TAG_DATETIME, ExifInterface.TAG_DATETIME_DIGITIZED, ExifInterface.TAG_DATETIME_ORIGINAL,
-                ExifInterface.TAG_IMAGE_DESCRIPTION, ExifInterface.TAG_IMAGE_UNIQUE_ID,
-                ExifInterface.TAG_GPS_ALTITUDE, ExifInterface.TAG_GPS_ALTITUDE_REF,
-                ExifInterface.TAG_GPS_AREA_INFORMATION,
-                ExifInterface.TAG_GPS_DATESTAMP, ExifInterface.TAG_GPS_DEST_BEARING,
-                ExifInterface.TAG_GPS_DEST_BEARING_REF,
-                ExifInterface.TAG_GPS_DEST_DISTANCE, ExifInterface.TAG_GPS_DEST_DISTANCE_REF,
-                ExifInterface.TAG_GPS_DEST_LATITUDE, ExifInterface.TAG_GPS_DEST_LATITUDE_REF,
-                ExifInterface.TAG_GPS_DEST_LONGITUDE, ExifInterface.TAG_GPS_DEST_LONGITUDE_REF,
-                ExifInterface.TAG_GPS_DIFFERENTIAL, ExifInterface.TAG_GPS_DOP,
-                ExifInterface.TAG_GPS_IMG_DIRECTION, ExifInterface.TAG_GPS_IMG_DIRECTION_REF,
-                ExifInterface.TAG_GPS_LATITUDE, ExifInterface.TAG_GPS_LATITUDE_REF,
-                ExifInterface.TAG_GPS_LONGITUDE, ExifInterface.TAG_GPS_LONGITUDE_REF,
-                ExifInterface.TAG_GPS_MAP_DATUM, ExifInterface.TAG_GPS_MEASURE_MODE,
-                ExifInterface.TAG_GPS_PROCESSING_METHOD, ExifInterface.TAG_GPS_SATELLITES,
-                ExifInterface.TAG_GPS_SPEED, ExifInterface.TAG_GPS_SPEED_REF,
-                ExifInterface.TAG_GPS_STATUS, ExifInterface.TAG_GPS_TIMESTAMP,
-                ExifInterface.TAG_GPS_TRACK, ExifInterface.TAG_GPS_TRACK_REF,
-                ExifInterface.TAG_GPS_VERSION_ID,
-                ExifInterface.TAG_MAKE, ExifInterface.TAG_MODEL, ExifInterface.TAG_SOFTWARE,
-                ExifInterface.TAG_CAMERA_OWNER_NAME, ExifInterface.TAG_BODY_SERIAL_NUMBER,
-                ExifInterface.TAG_LENS_MAKE, ExifInterface.TAG_LENS_MODEL,
-                ExifInterface.TAG_LENS_SERIAL_NUMBER, ExifInterface.TAG_LENS_SPECIFICATION,
-                ExifInterface.TAG_APERTURE_VALUE, ExifInterface.TAG_BRIGHTNESS_VALUE,
-                ExifInterface.TAG_CFA_PATTERN, ExifInterface.TAG_COMPONENTS_CONFIGURATION,
-                ExifInterface.TAG_COMPRESSED_BITS_PER_PIXEL, ExifInterface.TAG_COMPRESSION,
-                ExifInterface.TAG_CONTRAST, ExifInterface.TAG_CUSTOM_RENDERED,
-                ExifInterface.TAG_DIGITAL_ZOOM_RATIO, ExifInterface.TAG_EXPOSURE_BIAS_VALUE,
-                ExifInterface.TAG_EXPOSURE_INDEX, ExifInterface.TAG_EXPOSURE_MODE,
-                ExifInterface.TAG_EXPOSURE_PROGRAM, ExifInterface.TAG_EXPOSURE_TIME,
-                ExifInterface.TAG_F_NUMBER, ExifInterface.TAG_FLASH, ExifInterface.TAG_FLASH_ENERGY,
-                ExifInterface.TAG_FOCAL_LENGTH, ExifInterface.TAG_FOCAL_LENGTH_IN_35MM_FILM,
-                ExifInterface.TAG_FOCAL_PLANE_RESOLUTION_UNIT, ExifInterface.TAG_FOCAL_PLANE_X_RESOLUTION,
-                ExifInterface.TAG_FOCAL_PLANE_Y_RESOLUTION, ExifInterface.TAG_GAIN_CONTROL,
-                ExifInterface.TAG_ISO_SPEED, ExifInterface.TAG_ISO_SPEED_LATITUDE_YYY,
-                ExifInterface.TAG_ISO_SPEED_LATITUDE_ZZZ, ExifInterface.TAG_LIGHT_SOURCE,
-                ExifInterface.TAG_MAX_APERTURE_VALUE, ExifInterface.TAG_METERING_MODE,
-                ExifInterface.TAG_PHOTOGRAPHIC_SENSITIVITY, ExifInterface.TAG_PLANAR_CONFIGURATION,
-                ExifInterface.TAG_RECOMMENDED_EXPOSURE_INDEX, ExifInterface.TAG_ROWS_PER_STRIP,
-                ExifInterface.TAG_SAMPLES_PER_PIXEL, ExifInterface.TAG_SATURATION,
-                ExifInterface.TAG_SCENE_CAPTURE_TYPE, ExifInterface.TAG_SCENE_TYPE,
-                ExifInterface.TAG_SENSING_METHOD, ExifInterface.TAG_SENSITIVITY_TYPE,
-                ExifInterface.TAG_SHARPNESS, ExifInterface.TAG_SHUTTER_SPEED_VALUE,
-                ExifInterface.TAG_SPECTRAL_SENSITIVITY, ExifInterface.TAG_STANDARD_OUTPUT_SENSITIVITY,
-                ExifInterface.TAG_SUBJECT_AREA, ExifInterface.TAG_SUBJECT_DISTANCE,
-                ExifInterface.TAG_SUBJECT_DISTANCE_RANGE, ExifInterface.TAG_SUBJECT_LOCATION,
-                ExifInterface.TAG_SUBSEC_TIME, ExifInterface.TAG_SUBSEC_TIME_DIGITIZED,
-                ExifInterface.TAG_SUBSEC_TIME_ORIGINAL, ExifInterface.TAG_WHITE_BALANCE,
-                ExifInterface.TAG_WHITE_POINT, ExifInterface.TAG_ARTIST, ExifInterface.TAG_COPYRIGHT,
-                ExifInterface.TAG_DEVICE_SETTING_DESCRIPTION, ExifInterface.TAG_MAKER_NOTE,
-                ExifInterface.TAG_OECF, ExifInterface.TAG_USER_COMMENT,
-                ExifInterface.TAG_THUMBNAIL_IMAGE_LENGTH, ExifInterface.TAG_THUMBNAIL_IMAGE_WIDTH,
-                ExifInterface.TAG_INTEROPERABILITY_INDEX, ExifInterface.TAG_FILE_SOURCE,
-                ExifInterface.TAG_OFFSET_TIME, ExifInterface.TAG_OFFSET_TIME_DIGITIZED,
-                ExifInterface.TAG_OFFSET_TIME_ORIGINAL
-        };
-
-        int removedCount = 0;
-        for (String tag : tagsToRemove) {
-            if (exif.getAttribute(tag) != null) {
-                exif.setAttribute(tag, null);
-                removedCount++;
-            }
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return ExifInterface.ORIENTATION_UNDEFINED;
         }
-        SentryManager.log("Removed " + removedCount + " EXIF metadata tags (fallback method).");
     }
 
     /**
@@ -1449,107 +1658,74 @@ public class MetadataStripper {
     }
 
     /**
-     * Securely deletes a file by overwriting it with random data multiple times
-     * before deletion.
-     * This makes file recovery significantly more difficult.
+     * Verifies metadata removal on the header captured while the cleaned image was written, so
+     * the output never has to be read back or copied. Failures are logged and never fail the
+     * operation.
      *
-     * @param file The file to securely delete
-     * @return true if the file was successfully deleted, false otherwise
+     * @param tee Tee the cleaned image was written through
      */
-    private boolean secureDeleteFile(@NonNull File file) {
-        if (!file.exists() || !file.isFile()) {
-            return false;
-        }
-
+    void verifyOutput(@NonNull OutputTee tee) {
+        byte[] head = tee.head();
+        boolean metadataRemoved;
         try {
-            long fileSize = file.length();
-            if (fileSize == 0) {
-                return file.delete();
-            }
-
-            // Overwrite file with random data multiple times
-            byte[] randomData = new byte[SECURE_DELETE_BUFFER_SIZE];
-            for (int pass = 0; pass < SECURE_DELETE_PASSES; pass++) {
-                try (RandomAccessFile raf = new RandomAccessFile(file, "rws")) {
-                    long position = 0;
-                    while (position < fileSize) {
-                        secureRandom.nextBytes(randomData);
-                        int bytesToWrite = (int) Math.min(randomData.length, fileSize - position);
-                        raf.write(randomData, 0, bytesToWrite);
-                        position += bytesToWrite;
-                    }
-                    raf.getFD().sync(); // Force write to disk
-                }
-            }
-
-            // Finally delete the file
-            return file.delete();
+            metadataRemoved = verifyMetadataRemoval(
+                    new ExifInterface(new ByteArrayInputStream(head)), new ByteArrayInputStream(head));
         } catch (Exception e) {
-            SentryManager.log("Error during secure file deletion: " + e.getMessage() + ".");
-            // Fallback to regular deletion
-            return file.delete();
+            SentryManager.log("Error verifying metadata removal: " + e.getMessage() + ".");
+            // If verification fails, assume it's okay to avoid blocking the process
+            metadataRemoved = true;
+        }
+        SentryManager.setCustomKey("metadata_verification_passed", metadataRemoved);
+        if (!metadataRemoved) {
+            SentryManager.log("Warning: Metadata verification found remaining metadata.");
         }
     }
 
     /**
-     * Verifies that metadata has been properly removed from an image file.
-     * Checks for remaining EXIF, XMP, and IPTC metadata.
+     * Checks an opened image for identifying EXIF tags and an XMP packet.
      *
-     * @param imageFile The image file to verify
-     * @return true if no identifying metadata was found, false if metadata remains
+     * @param exif EXIF view of the image
+     * @param head Stream positioned at the start of the image, used for the XMP check
      */
-    private boolean verifyMetadataRemoval(@NonNull File imageFile) {
-        try {
-            ExifInterface exif = new ExifInterface(imageFile.getAbsolutePath());
-
-            // Check for any remaining identifying EXIF tags
-            String[] identifyingTags = {
-                    ExifInterface.TAG_DATETIME,
-                    ExifInterface.TAG_DATETIME_ORIGINAL,
-                    ExifInterface.TAG_GPS_LATITUDE,
-                    ExifInterface.TAG_GPS_LONGITUDE,
-                    ExifInterface.TAG_MAKE,
-                    ExifInterface.TAG_MODEL,
-                    ExifInterface.TAG_SOFTWARE,
-                    ExifInterface.TAG_ARTIST,
-                    ExifInterface.TAG_COPYRIGHT,
-                    ExifInterface.TAG_IMAGE_DESCRIPTION,
-                    ExifInterface.TAG_USER_COMMENT,
-                    ExifInterface.TAG_MAKER_NOTE
-            };
-
-            for (String tag : identifyingTags) {
-                String value = exif.getAttribute(tag);
-                if (value != null && !value.isEmpty()) {
-                    SentryManager.log("Warning: Found remaining metadata tag: " + tag + " = " + value + ".");
-                    return false;
-                }
+    private boolean verifyMetadataRemoval(@NonNull ExifInterface exif, @NonNull InputStream head) {
+        // Check for any remaining identifying or location EXIF tags
+        String[] tags = MetadataTagCatalog.EXIF_TAGS;
+        for (int i = 0; i < tags.length; i++) {
+            if (!MetadataTagCatalog.isPrivate(MetadataTagCatalog.EXIF_PRIVACY[i])) {
+                continue;
             }
-
-            // Check for XMP metadata (basic check - look for XMP header in file)
-            if (containsXMPMetadata(imageFile)) {
-                SentryManager.log("Warning: Found XMP metadata in file.");
+            String tag = tags[i];
+            String value = exif.getAttribute(tag);
+            if (value != null && !value.isEmpty()) {
+                SentryManager.log("Warning: Found remaining metadata tag: " + tag + " = " + value + ".");
                 return false;
             }
+        }
 
-            return true;
-        } catch (Exception e) {
-            SentryManager.log("Error verifying metadata removal: " + e.getMessage() + ".");
-            // If verification fails, assume it's okay to avoid blocking the process
-            return true;
+        // Check for XMP metadata (basic check - look for XMP header in file)
+        if (containsXMPMetadata(head)) {
+            SentryManager.log("Warning: Found XMP metadata in file.");
+            return false;
         }
+
+        return true;
     }
 
     /**
-     * Checks if a file contains XMP metadata by looking for XMP header.
+     * Checks if an image contains XMP metadata by looking for XMP header.
      *
-     * @param file The file to check
+     * @param in Stream positioned at the start of the image
      * @return true if XMP metadata is found, false otherwise
      */
-    private boolean containsXMPMetadata(@NonNull File file) {
-        try (FileInputStream fis = new FileInputStream(file)) {
+    private boolean containsXMPMetadata(@NonNull InputStream in) {
+        try {
             byte[] buffer = new byte[8192];
-            int bytesRead = fis.read(buffer);
+            // Decrypting streams return short reads, so fill the buffer before searching it
+            int bytesRead = 0;
+            int read;
+            while (bytesRead < buffer.length && (read = in.read(buffer, bytesRead, buffer.length - bytesRead)) != -1) {
+                bytesRead += read;
+            }
             if (bytesRead > 0) {
                 String content = new String(buffer, 0, bytesRead, StandardCharsets.ISO_8859_1);
                 // Look for XMP header markers
@@ -1563,29 +1739,6 @@ public class MetadataStripper {
         return false;
     }
 
-    /**
-     * Removes embedded thumbnails from an image file by clearing thumbnail-related
-     * EXIF tags.
-     *
-     * @param exif The ExifInterface instance for the image
-     */
-    private void removeThumbnails(@NonNull ExifInterface exif) {
-        try {
-            // Remove thumbnail-related tags
-            exif.setAttribute(ExifInterface.TAG_THUMBNAIL_IMAGE_LENGTH, null);
-            exif.setAttribute(ExifInterface.TAG_THUMBNAIL_IMAGE_WIDTH, null);
-
-            // Try to remove thumbnail data if available
-            byte[] thumbnail = exif.getThumbnailBytes();
-            if (thumbnail != null && thumbnail.length > 0) {
-                // Thumbnail removal is handled by re-encoding without it
-                SentryManager.log("Found embedded thumbnail, will be removed during re-encoding.");
-            }
-        } catch (Exception e) {
-            SentryManager.log("Error removing thumbnails: " + e.getMessage() + ".");
-        }
-    }
-
     /**
      * Removes XMP and IPTC metadata from a JPEG file by parsing and rewriting
      * without metadata segments.
@@ -1645,4 +1798,35 @@ public class MetadataStripper {
     public void clearFileSizeCache() {
         fileSizeCache.clear();
     }
+
+    /** Where {@link #cleanVideoContainer} put the cleaned copy, if it made one. */
+    private static final class CleanVideo {
+        /** Nothing was written; the source has to be transcoded. */
+        static final CleanVideo NONE = new CleanVideo(false, null, null);
+        /** The cleaned copy is already in the destination in the target format. */
+        static final CleanVideo IN_DESTINATION = new CleanVideo(true, null, null);
+
+        final boolean inDestination;
+        /** Cleaned copy in another container, to be transcoded and then erased. */
+        @Nullable
+        final File tempFile;
+        /** Container of the copy in the destination when it differs from the target's name. */
+        @Nullable
+        final String extension;
+
+        private CleanVideo(boolean inDestination, @Nullable File tempFile, @Nullable String extension) {
+            this.inDestination = inDestination;
+            this.tempFile = tempFile;
+            this.extension = extension;
+        }
+
+        static CleanVideo inTempFile(@NonNull File tempFile) {
+            return new CleanVideo(false, tempFile, null);
+        }
+
+        /** The cleaned copy is in the destination, in the {@code extension} container. */
+        static CleanVideo inDestination(@NonNull String extension) {
+            return new CleanVideo(true, null, extension);
+        }
+    }
 }
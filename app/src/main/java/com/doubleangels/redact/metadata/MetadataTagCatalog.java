@@ -0,0 +1,304 @@
+package com.doubleangels.redact.metadata;
+
+import android.media.MediaMetadataRetriever;
+
+import androidx.annotation.NonNull;
+import androidx.exifinterface.media.ExifInterface;
+
+import java.util.Locale;
+
+/**
+ * Every EXIF tag and {@link MediaMetadataRetriever} key the app reads, with its display name and
+ * privacy class, held in parallel arrays.
+ *
+ * The tags are listed at compile time rather than found by reflecting over the two classes on every
+ * scan: that was slow across a batch, and R8 may strip or rename the fields it enumerates in a
+ * release build. The scan screen, the essential-tag read in {@link MetadataStripper} and its
+ * verifier all read the same catalog, so they agree on what counts as identifying.
+ */
+final class MetadataTagCatalog {
+
+    /** Needed to display the image correctly; kept when stripping. */
+    static final byte ESSENTIAL = 0;
+    /** Describes the encoding or capture settings but not the person, device or time. */
+    static final byte TECHNICAL = 1;
+    /** Identifies the device, owner or time of capture. */
+    static final byte IDENTIFYING = 2;
+    /** Where the media was captured. Shown in the location section. */
+    static final byte LOCATION = 3;
+
+    /** ExifInterface tag names. */
+    static final String[] EXIF_TAGS;
+    /** Display name of each of {@link #EXIF_TAGS}, e.g. {@code GPS_LATITUDE}. */
+    static final String[] EXIF_DISPLAY_NAMES;
+    /** Privacy class of each of {@link #EXIF_TAGS}. */
+    static final byte[] EXIF_PRIVACY;
+
+    /** MediaMetadataRetriever keys. */
+    static final int[] RETRIEVER_KEYS;
+    /** Display name of each of {@link #RETRIEVER_KEYS}, e.g. {@code VIDEO_WIDTH}. */
+    static final String[] RETRIEVER_DISPLAY_NAMES;
+    /** Privacy class of each of {@link #RETRIEVER_KEYS}. */
+    static final byte[] RETRIEVER_PRIVACY;
+
+    static {
+        @SuppressWarnings("deprecation")
+        Object[] exif = {
+                // TIFF image structure
+                ExifInterface.TAG_ORIENTATION, ESSENTIAL,
+                ExifInterface.TAG_IMAGE_WIDTH, TECHNICAL,
+                ExifInterface.TAG_IMAGE_LENGTH, TECHNICAL,
+                ExifInterface.TAG_BITS_PER_SAMPLE, TECHNICAL,
+                ExifInterface.TAG_COMPRESSION, TECHNICAL,
+                ExifInterface.TAG_PHOTOMETRIC_INTERPRETATION, TECHNICAL,
+                ExifInterface.TAG_SAMPLES_PER_PIXEL, TECHNICAL,
+                ExifInterface.TAG_PLANAR_CONFIGURATION, TECHNICAL,
+                ExifInterface.TAG_Y_CB_CR_SUB_SAMPLING, TECHNICAL,
+                ExifInterface.TAG_Y_CB_CR_POSITIONING, TECHNICAL,
+                ExifInterface.TAG_X_RESOLUTION, TECHNICAL,
+                ExifInterface.TAG_Y_RESOLUTION, TECHNICAL,
+                ExifInterface.TAG_RESOLUTION_UNIT, TECHNICAL,
+                ExifInterface.TAG_STRIP_OFFSETS, TECHNICAL,
+                ExifInterface.TAG_ROWS_PER_STRIP, TECHNICAL,
+                ExifInterface.TAG_STRIP_BYTE_COUNTS, TECHNICAL,
+                ExifInterface.TAG_JPEG_INTERCHANGE_FORMAT, TECHNICAL,
+                ExifInterface.TAG_JPEG_INTERCHANGE_FORMAT_LENGTH, TECHNICAL,
+                ExifInterface.TAG_TRANSFER_FUNCTION, TECHNICAL,
+                ExifInterface.TAG_WHITE_POINT, TECHNICAL,
+                ExifInterface.TAG_PRIMARY_CHROMATICITIES, TECHNICAL,
+                ExifInterface.TAG_Y_CB_CR_COEFFICIENTS, TECHNICAL,
+                ExifInterface.TAG_REFERENCE_BLACK_WHITE, TECHNICAL,
+                ExifInterface.TAG_NEW_SUBFILE_TYPE, TECHNICAL,
+                ExifInterface.TAG_SUBFILE_TYPE, TECHNICAL,
+                ExifInterface.TAG_THUMBNAIL_IMAGE_LENGTH, TECHNICAL,
+                ExifInterface.TAG_THUMBNAIL_IMAGE_WIDTH, TECHNICAL,
+                // TIFF descriptive
+                ExifInterface.TAG_DATETIME, IDENTIFYING,
+                ExifInterface.TAG_IMAGE_DESCRIPTION, IDENTIFYING,
+                ExifInterface.TAG_MAKE, IDENTIFYING,
+                ExifInterface.TAG_MODEL, IDENTIFYING,
+                ExifInterface.TAG_SOFTWARE, IDENTIFYING,
+                ExifInterface.TAG_ARTIST, IDENTIFYING,
+                ExifInterface.TAG_COPYRIGHT, IDENTIFYING,
+                ExifInterface.TAG_XMP, IDENTIFYING,
+                // EXIF versions and color
+                ExifInterface.TAG_EXIF_VERSION, TECHNICAL,
+                ExifInterface.TAG_FLASHPIX_VERSION, TECHNICAL,
+                ExifInterface.TAG_COLOR_SPACE, TECHNICAL,
+                ExifInterface.TAG_GAMMA, TECHNICAL,
+                ExifInterface.TAG_PIXEL_X_DIMENSION, TECHNICAL,
+                ExifInterface.TAG_PIXEL_Y_DIMENSION, TECHNICAL,
+                ExifInterface.TAG_COMPONENTS_CONFIGURATION, TECHNICAL,
+                ExifInterface.TAG_COMPRESSED_BITS_PER_PIXEL, TECHNICAL,
+                // EXIF user information and dates
+                ExifInterface.TAG_MAKER_NOTE, IDENTIFYING,
+                ExifInterface.TAG_USER_COMMENT, IDENTIFYING,
+                ExifInterface.TAG_RELATED_SOUND_FILE, IDENTIFYING,
+                ExifInterface.TAG_DATETIME_ORIGINAL, IDENTIFYING,
+                ExifInterface.TAG_DATETIME_DIGITIZED, IDENTIFYING,
+                ExifInterface.TAG_OFFSET_TIME, IDENTIFYING,
+                ExifInterface.TAG_OFFSET_TIME_ORIGINAL, IDENTIFYING,
+                ExifInterface.TAG_OFFSET_TIME_DIGITIZED, IDENTIFYING,
+                ExifInterface.TAG_SUBSEC_TIME, IDENTIFYING,
+                ExifInterface.TAG_SUBSEC_TIME_ORIGINAL, IDENTIFYING,
+                ExifInterface.TAG_SUBSEC_TIME_DIGITIZED, IDENTIFYING,
+                // EXIF capture conditions
+                ExifInterface.TAG_EXPOSURE_TIME, TECHNICAL,
+                ExifInterface.TAG_F_NUMBER, TECHNICAL,
+                ExifInterface.TAG_EXPOSURE_PROGRAM, TECHNICAL,
+                ExifInterface.TAG_SPECTRAL_SENSITIVITY, TECHNICAL,
+                ExifInterface.TAG_PHOTOGRAPHIC_SENSITIVITY, TECHNICAL,
+                ExifInterface.TAG_ISO_SPEED_RATINGS, TECHNICAL,
+                ExifInterface.TAG_OECF, TECHNICAL,
+                ExifInterface.TAG_SENSITIVITY_TYPE, TECHNICAL,
+                ExifInterface.TAG_STANDARD_OUTPUT_SENSITIVITY, TECHNICAL,
+                ExifInterface.TAG_RECOMMENDED_EXPOSURE_INDEX, TECHNICAL,
+                ExifInterface.TAG_ISO_SPEED, TECHNICAL,
+                ExifInterface.TAG_ISO_SPEED_LATITUDE_YYY, TECHNICAL,
+                ExifInterface.TAG_ISO_SPEED_LATITUDE_ZZZ, TECHNICAL,
+                ExifInterface.TAG_SHUTTER_SPEED_VALUE, TECHNICAL,
+                ExifInterface.TAG_APERTURE_VALUE, TECHNICAL,
+                ExifInterface.TAG_BRIGHTNESS_VALUE, TECHNICAL,
+                ExifInterface.TAG_EXPOSURE_BIAS_VALUE, TECHNICAL,
+                ExifInterface.TAG_MAX_APERTURE_VALUE, TECHNICAL,
+                ExifInterface.TAG_SUBJECT_DISTANCE, TECHNICAL,
+                ExifInterface.TAG_METERING_MODE, TECHNICAL,
+                ExifInterface.TAG_LIGHT_SOURCE, TECHNICAL,
+                ExifInterface.TAG_FLASH, TECHNICAL,
+                ExifInterface.TAG_SUBJECT_AREA, TECHNICAL,
+                ExifInterface.TAG_FOCAL_LENGTH, TECHNICAL,
+                ExifInterface.TAG_FLASH_ENERGY, TECHNICAL,
+                ExifInterface.TAG_SPATIAL_FREQUENCY_RESPONSE, TECHNICAL,
+                ExifInterface.TAG_FOCAL_PLANE_X_RESOLUTION, TECHNICAL,
+                ExifInterface.TAG_FOCAL_PLANE_Y_RESOLUTION, TECHNICAL,
+                ExifInterface.TAG_FOCAL_PLANE_RESOLUTION_UNIT, TECHNICAL,
+                ExifInterface.TAG_SUBJECT_LOCATION, TECHNICAL,
+                ExifInterface.TAG_EXPOSURE_INDEX, TECHNICAL,
+                ExifInterface.TAG_SENSING_METHOD, TECHNICAL,
+                ExifInterface.TAG_FILE_SOURCE, TECHNICAL,
+                ExifInterface.TAG_SCENE_TYPE, TECHNICAL,
+                ExifInterface.TAG_CFA_PATTERN, TECHNICAL,
+                ExifInterface.TAG_CUSTOM_RENDERED, TECHNICAL,
+                ExifInterface.TAG_EXPOSURE_MODE, TECHNICAL,
+                ExifInterface.TAG_WHITE_BALANCE, TECHNICAL,
+                ExifInterface.TAG_DIGITAL_ZOOM_RATIO, TECHNICAL,
+                ExifInterface.TAG_FOCAL_LENGTH_IN_35MM_FILM, TECHNICAL,
+                ExifInterface.TAG_SCENE_CAPTURE_TYPE, TECHNICAL,
+                ExifInterface.TAG_GAIN_CONTROL, TECHNICAL,
+                ExifInterface.TAG_CONTRAST, TECHNICAL,
+                ExifInterface.TAG_SATURATION, TECHNICAL,
+                ExifInterface.TAG_SHARPNESS, TECHNICAL,
+                ExifInterface.TAG_DEVICE_SETTING_DESCRIPTION, TECHNICAL,
+                ExifInterface.TAG_SUBJECT_DISTANCE_RANGE, TECHNICAL,
+                ExifInterface.TAG_LENS_SPECIFICATION, TECHNICAL,
+                // EXIF identifiers
+                ExifInterface.TAG_IMAGE_UNIQUE_ID, IDENTIFYING,
+                ExifInterface.TAG_CAMERA_OWNER_NAME, IDENTIFYING,
+                ExifInterface.TAG_BODY_SERIAL_NUMBER, IDENTIFYING,
+                ExifInterface.TAG_LENS_MAKE, IDENTIFYING,
+                ExifInterface.TAG_LENS_MODEL, IDENTIFYING,
+                ExifInterface.TAG_LENS_SERIAL_NUMBER, IDENTIFYING,
+                // GPS
+                ExifInterface.TAG_GPS_VERSION_ID, LOCATION,
+                ExifInterface.TAG_GPS_LATITUDE_REF, LOCATION,
+                ExifInterface.TAG_GPS_LATITUDE, LOCATION,
+                ExifInterface.TAG_GPS_LONGITUDE_REF, LOCATION,
+                ExifInterface.TAG_GPS_LONGITUDE, LOCATION,
+                ExifInterface.TAG_GPS_ALTITUDE_REF, LOCATION,
+                ExifInterface.TAG_GPS_ALTITUDE, LOCATION,
+                ExifInterface.TAG_GPS_TIMESTAMP, LOCATION,
+                ExifInterface.TAG_GPS_SATELLITES, LOCATION,
+                ExifInterface.TAG_GPS_STATUS, LOCATION,
+                ExifInterface.TAG_GPS_MEASURE_MODE, LOCATION,
+                ExifInterface.TAG_GPS_DOP, LOCATION,
+                ExifInterface.TAG_GPS_SPEED_REF, LOCATION,
+                ExifInterface.TAG_GPS_SPEED, LOCATION,
+                ExifInterface.TAG_GPS_TRACK_REF, LOCATION,
+                ExifInterface.TAG_GPS_TRACK, LOCATION,
+                ExifInterface.TAG_GPS_IMG_DIRECTION_REF, LOCATION,
+                ExifInterface.TAG_GPS_IMG_DIRECTION, LOCATION,
+                ExifInterface.TAG_GPS_MAP_DATUM, LOCATION,
+                ExifInterface.TAG_GPS_DEST_LATITUDE_REF, LOCATION,
+                ExifInterface.TAG_GPS_DEST_LATITUDE, LOCATION,
+                ExifInterface.TAG_GPS_DEST_LONGITUDE_REF, LOCATION,
+                ExifInterface.TAG_GPS_DEST_LONGITUDE, LOCATION,
+                ExifInterface.TAG_GPS_DEST_BEARING_REF, LOCATION,
+                ExifInterface.TAG_GPS_DEST_BEARING, LOCATION,
+                ExifInterface.TAG_GPS_DEST_DISTANCE_REF, LOCATION,
+                ExifInterface.TAG_GPS_DEST_DISTANCE, LOCATION,
+                ExifInterface.TAG_GPS_PROCESSING_METHOD, LOCATION,
+                ExifInterface.TAG_GPS_AREA_INFORMATION, LOCATION,
+                ExifInterface.TAG_GPS_DATESTAMP, LOCATION,
+                ExifInterface.TAG_GPS_DIFFERENTIAL, LOCATION,
+                ExifInterface.TAG_GPS_H_POSITIONING_ERROR, LOCATION,
+                // Interoperability and raw formats
+                ExifInterface.TAG_INTEROPERABILITY_INDEX, TECHNICAL,
+                ExifInterface.TAG_DNG_VERSION, TECHNICAL,
+                ExifInterface.TAG_DEFAULT_CROP_SIZE, TECHNICAL,
+                ExifInterface.TAG_ORF_THUMBNAIL_IMAGE, TECHNICAL,
+                ExifInterface.TAG_ORF_PREVIEW_IMAGE_START, TECHNICAL,
+                ExifInterface.TAG_ORF_PREVIEW_IMAGE_LENGTH, TECHNICAL,
+                ExifInterface.TAG_ORF_ASPECT_FRAME, TECHNICAL,
+                ExifInterface.TAG_RW2_SENSOR_BOTTOM_BORDER, TECHNICAL,
+                ExifInterface.TAG_RW2_SENSOR_LEFT_BORDER, TECHNICAL,
+                ExifInterface.TAG_RW2_SENSOR_RIGHT_BORDER, TECHNICAL,
+                ExifInterface.TAG_RW2_SENSOR_TOP_BORDER, TECHNICAL,
+                ExifInterface.TAG_RW2_ISO, TECHNICAL,
+                ExifInterface.TAG_RW2_JPG_FROM_RAW, TECHNICAL,
+        };
+        int exifCount = exif.length / 2;
+        EXIF_TAGS = new String[exifCount];
+        EXIF_DISPLAY_NAMES = new String[exifCount];
+        EXIF_PRIVACY = new byte[exifCount];
+        for (int i = 0; i < exifCount; i++) {
+            EXIF_TAGS[i] = (String) exif[i * 2];
+            EXIF_DISPLAY_NAMES[i] = exifDisplayName(EXIF_TAGS[i]);
+            EXIF_PRIVACY[i] = (byte) exif[i * 2 + 1];
+        }
+
+        Object[] retriever = {
+                MediaMetadataRetriever.METADATA_KEY_CD_TRACK_NUMBER, "CD_TRACK_NUMBER", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_ALBUM, "ALBUM", IDENTIFYING,
+                MediaMetadataRetriever.METADATA_KEY_ARTIST, "ARTIST", IDENTIFYING,
+                MediaMetadataRetriever.METADATA_KEY_AUTHOR, "AUTHOR", IDENTIFYING,
+                MediaMetadataRetriever.METADATA_KEY_COMPOSER, "COMPOSER", IDENTIFYING,
+                MediaMetadataRetriever.METADATA_KEY_DATE, "DATE", IDENTIFYING,
+                MediaMetadataRetriever.METADATA_KEY_GENRE, "GENRE", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_TITLE, "TITLE", IDENTIFYING,
+                MediaMetadataRetriever.METADATA_KEY_YEAR, "YEAR", IDENTIFYING,
+                MediaMetadataRetriever.METADATA_KEY_DURATION, "DURATION", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_NUM_TRACKS, "NUM_TRACKS", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_WRITER, "WRITER", IDENTIFYING,
+                MediaMetadataRetriever.METADATA_KEY_MIMETYPE, "MIMETYPE", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_ALBUMARTIST, "ALBUMARTIST", IDENTIFYING,
+                MediaMetadataRetriever.METADATA_KEY_DISC_NUMBER, "DISC_NUMBER", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_COMPILATION, "COMPILATION", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_HAS_AUDIO, "HAS_AUDIO", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_HAS_VIDEO, "HAS_VIDEO", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH, "VIDEO_WIDTH", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT, "VIDEO_HEIGHT", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_BITRATE, "BITRATE", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_TIMED_TEXT_LANGUAGES, "TIMED_TEXT_LANGUAGES", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_IS_DRM, "IS_DRM", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_LOCATION, "LOCATION", LOCATION,
+                MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION, "VIDEO_ROTATION", ESSENTIAL,
+                MediaMetadataRetriever.METADATA_KEY_CAPTURE_FRAMERATE, "CAPTURE_FRAMERATE", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_HAS_IMAGE, "HAS_IMAGE", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_IMAGE_COUNT, "IMAGE_COUNT", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_IMAGE_PRIMARY, "IMAGE_PRIMARY", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_IMAGE_WIDTH, "IMAGE_WIDTH", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_IMAGE_HEIGHT, "IMAGE_HEIGHT", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_IMAGE_ROTATION, "IMAGE_ROTATION", ESSENTIAL,
+                MediaMetadataRetriever.METADATA_KEY_VIDEO_FRAME_COUNT, "VIDEO_FRAME_COUNT", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_EXIF_OFFSET, "EXIF_OFFSET", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_EXIF_LENGTH, "EXIF_LENGTH", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_COLOR_STANDARD, "COLOR_STANDARD", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_COLOR_TRANSFER, "COLOR_TRANSFER", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_COLOR_RANGE, "COLOR_RANGE", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_SAMPLERATE, "SAMPLERATE", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_BITS_PER_SAMPLE, "BITS_PER_SAMPLE", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_XMP_OFFSET, "XMP_OFFSET", TECHNICAL,
+                MediaMetadataRetriever.METADATA_KEY_XMP_LENGTH, "XMP_LENGTH", TECHNICAL,
+        };
+        int retrieverCount = retriever.length / 3;
+        RETRIEVER_KEYS = new int[retrieverCount];
+        RETRIEVER_DISPLAY_NAMES = new String[retrieverCount];
+        RETRIEVER_PRIVACY = new byte[retrieverCount];
+        for (int i = 0; i < retrieverCount; i++) {
+            RETRIEVER_KEYS[i] = (int) retriever[i * 3];
+            RETRIEVER_DISPLAY_NAMES[i] = (String) retriever[i * 3 + 1];
+            RETRIEVER_PRIVACY[i] = (byte) retriever[i * 3 + 2];
+        }
+    }
+
+    private MetadataTagCatalog() {
+    }
+
+    /** Whether the privacy class marks metadata a cleaned file must not keep. */
+    static boolean isPrivate(byte privacy) {
+        return privacy == IDENTIFYING || privacy == LOCATION;
+    }
+
+    /**
+     * Upper snake case of an EXIF tag name, e.g. {@code GPSLatitude} to {@code GPS_LATITUDE}: an
+     * underscore goes before a capital that follows a lower-case letter or that ends an acronym.
+     */
+    @NonNull
+    static String exifDisplayName(@NonNull String tag) {
+        StringBuilder result = new StringBuilder(tag.length() + 8);
+        for (int i = 0; i < tag.length(); i++) {
+            char c = tag.charAt(i);
+            if (Character.isUpperCase(c) && i > 0) {
+                char previous = tag.charAt(i - 1);
+                boolean endsAcronym = Character.isUpperCase(previous) && i < tag.length() - 1
+                        && Character.isLowerCase(tag.charAt(i + 1));
+                if ((Character.isLowerCase(previous) || endsAcronym)
+                        && result.charAt(result.length() - 1) != '_') {
+                    result.append('_');
+                }
+            }
+            result.append(c);
+        }
+        return result.toString().toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,378 @@
+package com.doubleangels.redact.metadata;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Removes metadata from an MP4 or QuickTime (MOV) file at the box level, without demuxing or
+ * re-encoding any samples.
+ *
+ * <p>The {@code moov} box is rewritten: {@code udta} (and with it {@code ©xyz}, {@code loci} and
+ * other user data), {@code meta}, {@code uuid} (XMP), padding and vendor boxes are removed from
+ * {@code moov} and every {@code trak}, creation and modification times in {@code mvhd},
+ * {@code tkhd} and {@code mdhd} are zeroed, and timed-metadata tracks (GPS and camera motion
+ * streams) are dropped with their samples zeroed in {@code mdat}. All audio, video and subtitle
+ * tracks are kept. {@code stco}/{@code co64} chunk offsets are shifted for the shortened file and
+ * {@code mdat} is copied with {@link FileChannel#transferTo}.
+ */
+public final class Mp4BoxStripper {
+
+    /** Upper bound for the in-memory copy of the {@code moov} box (sample tables included). */
+    private static final int MAX_MOOV_SIZE = 64 * 1024 * 1024;
+
+    private static final int BOX_FTYP = IsoBmff.fourCc("ftyp");
+    private static final int BOX_MOOV = IsoBmff.fourCc("moov");
+    private static final int BOX_MDAT = IsoBmff.fourCc("mdat");
+    private static final int BOX_MOOF = IsoBmff.fourCc("moof");
+    private static final int BOX_MVHD = IsoBmff.fourCc("mvhd");
+    private static final int BOX_TRAK = IsoBmff.fourCc("trak");
+    private static final int BOX_TKHD = IsoBmff.fourCc("tkhd");
+    private static final int BOX_MDIA = IsoBmff.fourCc("mdia");
+    private static final int BOX_MDHD = IsoBmff.fourCc("mdhd");
+    private static final int BOX_HDLR = IsoBmff.fourCc("hdlr");
+    private static final int BOX_MINF = IsoBmff.fourCc("minf");
+    private static final int BOX_STBL = IsoBmff.fourCc("stbl");
+    private static final int BOX_STSD = IsoBmff.fourCc("stsd");
+    private static final int BOX_STSC = IsoBmff.fourCc("stsc");
+    private static final int BOX_STSZ = IsoBmff.fourCc("stsz");
+    private static final int BOX_STCO = IsoBmff.fourCc("stco");
+    private static final int BOX_CO64 = IsoBmff.fourCc("co64");
+
+    /** Major brand of QuickTime movies. */
+    private static final int BRAND_QT = IsoBmff.fourCc("qt  ");
+
+    /** Boxes that only carry metadata or padding and are dropped wherever they appear. */
+    private static final Set<Integer> METADATA_BOXES = fourCcs("udta", "meta", "uuid", "free", "skip");
+
+    /** Children of {@code moov} that are kept; anything else is treated as a vendor box. */
+    private static final Set<Integer> MOOV_CHILDREN = fourCcs("mvhd", "trak", "mvex", "iods", "ctab");
+
+    /** Children of {@code trak} that are kept; anything else is treated as a vendor box. */
+    private static final Set<Integer> TRAK_CHILDREN = fourCcs(
+            "tkhd", "tref", "trgr", "edts", "mdia", "tapt", "load", "clip", "matt", "kmat", "imap", "txas");
+
+    /** Handler types of timed-metadata tracks. */
+    private static final Set<Integer> METADATA_HANDLERS = fourCcs("meta", "mdta");
+
+    /** Sample entries of timed-metadata streams carried under other handlers. */
+    private static final Set<Integer> METADATA_SAMPLE_ENTRIES = fourCcs("camm", "gpmd", "mebx");
+
+    private Mp4BoxStripper() {
+    }
+
+    /** Maps an absolute offset in the source file to its offset in the rewritten file. */
+    private interface OffsetMapper {
+        long map(long sourceOffset) throws IOException;
+    }
+
+    /**
+     * Whether {@code source} is a QuickTime movie rather than an MP4 file: its {@code ftyp} names
+     * the {@code qt  } major brand, or it has no {@code ftyp} at all, as older movies do. The
+     * rewrite keeps {@code ftyp}, so the cleaned copy is a QuickTime movie as well.
+     */
+    public static boolean isQuickTime(@NonNull FileChannel source) throws IOException {
+        for (IsoBmff.Box box : IsoBmff.readBoxes(source, 0, source.size())) {
+            if (box.type == BOX_FTYP) {
+                if (box.size - box.headerSize < 4) {
+                    return false;
+                }
+                ByteBuffer brand = ByteBuffer.allocate(4);
+                SplicePlan.readFully(source, box.payloadOffset(), brand);
+                return brand.getInt(0) == BRAND_QT;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the plan for a metadata-free copy of the MP4/MOV file in {@code source}.
+     *
+     * @throws IOException if the file is not an MP4/MOV file or uses a layout this stripper cannot
+     *                     rewrite safely (fragmented files, oversized sample tables)
+     */
+    @NonNull
+    public static SplicePlan plan(@NonNull FileChannel source) throws IOException {
+        List<IsoBmff.Box> topLevel = IsoBmff.readBoxes(source, 0, source.size());
+        IsoBmff.Box moovBox = null;
+        List<IsoBmff.Box> kept = new ArrayList<>();
+        SplicePlan plan = new SplicePlan();
+        for (IsoBmff.Box box : topLevel) {
+            if (box.type == BOX_MOOF) {
+                throw new IOException("Fragmented MP4 is not supported");
+            }
+            if (box.type == BOX_MOOV) {
+                if (moovBox != null) {
+                    throw new IOException("Multiple moov boxes");
+                }
+                moovBox = box;
+                kept.add(box);
+            } else if (box.type == BOX_FTYP || box.type == BOX_MDAT) {
+                kept.add(box);
+            } else {
+                plan.markRemoved();
+            }
+        }
+        if (moovBox == null) {
+            throw new IOException("No moov box in MP4 file");
+        }
+        if (moovBox.size > MAX_MOOV_SIZE) {
+            throw new IOException("MP4 moov box too large");
+        }
+        byte[] moov = new byte[(int) moovBox.size];
+        SplicePlan.readFully(source, moovBox.offset, ByteBuffer.wrap(moov));
+
+        Rewriter rewriter = new Rewriter(moov, plan);
+        // stco/co64 keep their entry widths, so the new moov length does not depend on the
+        // offsets written into it: size it once with placeholder offsets, then lay out the file.
+        int newMoovLength = rewriter.rewriteMoov(moovBox.headerSize, offset -> offset).length;
+        long[] newStarts = new long[kept.size()];
+        long position = 0;
+        for (int i = 0; i < kept.size(); i++) {
+            newStarts[i] = position;
+            position += kept.get(i) == moovBox ? newMoovLength : kept.get(i).size;
+        }
+        rewriter.dryRun = false;
+        byte[] newMoov = rewriter.rewriteMoov(moovBox.headerSize, offset -> {
+            for (int i = 0; i < kept.size(); i++) {
+                IsoBmff.Box box = kept.get(i);
+                if (box.type == BOX_MDAT && box.contains(offset)) {
+                    return newStarts[i] + (offset - box.offset);
+                }
+            }
+            throw new IOException("Chunk offset outside mdat");
+        });
+
+        for (IsoBmff.Box box : kept) {
+            if (box == moovBox) {
+                plan.addLiteral(newMoov);
+                continue;
+            }
+            List<long[]> zeros = new ArrayList<>();
+            for (long[] range : rewriter.zeroRanges) {
+                if (range[0] >= box.offset && range[0] < box.end()) {
+                    if (range[0] + range[1] > box.end()) {
+                        throw new IOException("Metadata samples run past mdat");
+                    }
+                    zeros.add(range);
+                }
+            }
+            zeros.sort((a, b) -> Long.compare(a[0], b[0]));
+            long cursor = box.offset;
+            for (long[] range : zeros) {
+                long start = Math.max(range[0], cursor);
+                long end = range[0] + range[1];
+                if (end <= cursor) {
+                    continue;
+                }
+                plan.addSourceRange(cursor, start - cursor);
+                plan.addZeros(end - start);
+                cursor = end;
+            }
+            plan.addSourceRange(cursor, box.end() - cursor);
+        }
+        return plan;
+    }
+
+    private static Set<Integer> fourCcs(String... names) {
+        Set<Integer> set = new HashSet<>();
+        for (String name : names) {
+            set.add(IsoBmff.fourCc(name));
+        }
+        return set;
+    }
+
+    /** Rewrites the in-memory {@code moov} box. */
+    private static final class Rewriter {
+        private final byte[] data;
+        private final SplicePlan plan;
+        /** Sample ranges of dropped tracks, {@code {offset, length}}; filled on the first pass. */
+        final List<long[]> zeroRanges = new ArrayList<>();
+        /** True while sizing the output; statistics and zero ranges are only recorded then. */
+        boolean dryRun = true;
+
+        Rewriter(byte[] data, SplicePlan plan) {
+            this.data = data;
+            this.plan = plan;
+        }
+
+        byte[] rewriteMoov(int headerSize, OffsetMapper mapper) throws IOException {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(data.length);
+            for (IsoBmff.Box child : IsoBmff.parseBoxes(data, headerSize, data.length)) {
+                if (!MOOV_CHILDREN.contains(child.type)) {
+                    dropped();
+                } else if (child.type == BOX_MVHD) {
+                    write(payload, zeroTimes(child));
+                } else if (child.type == BOX_TRAK) {
+                    if (isMetadataTrack(child)) {
+                        dropped();
+                        if (dryRun) {
+                            collectSampleRanges(child);
+                        }
+                    } else {
+                        write(payload, rewriteContainer(child, mapper));
+                    }
+                } else {
+                    copy(payload, child);
+                }
+            }
+            return IsoBmff.box(BOX_MOOV, payload.toByteArray());
+        }
+
+        /** Rewrites trak, mdia, minf and stbl, descending to the boxes that need changes. */
+        private byte[] rewriteContainer(IsoBmff.Box container, OffsetMapper mapper) throws IOException {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream((int) container.size);
+            int start = (int) container.payloadOffset();
+            for (IsoBmff.Box child : IsoBmff.parseBoxes(data, start, (int) container.end())) {
+                if (METADATA_BOXES.contains(child.type)
+                        || (container.type == BOX_TRAK && !TRAK_CHILDREN.contains(child.type))) {
+                    dropped();
+                } else if (child.type == BOX_TKHD || child.type == BOX_MDHD) {
+                    write(payload, zeroTimes(child));
+                } else if (child.type == BOX_MDIA || child.type == BOX_MINF || child.type == BOX_STBL) {
+                    write(payload, rewriteContainer(child, mapper));
+                } else if (child.type == BOX_STCO || child.type == BOX_CO64) {
+                    write(payload, rewriteChunkOffsets(child, mapper));
+                } else {
+                    copy(payload, child);
+                }
+            }
+            return IsoBmff.box(container.type, payload.toByteArray());
+        }
+
+        /** Copies a full box with its creation and modification times cleared. */
+        private byte[] zeroTimes(IsoBmff.Box box) throws IOException {
+            byte[] copy = new byte[(int) (box.size - box.headerSize)];
+            System.arraycopy(data, (int) box.payloadOffset(), copy, 0, copy.length);
+            int version = copy.length > 0 ? copy[0] & 0xFF : 0;
+            int timeSize = version == 1 ? 8 : 4;
+            if (copy.length < 4 + 2 * timeSize) {
+                throw new IOException("Truncated '" + IsoBmff.name(box.type) + "' box");
+            }
+            IsoBmff.putUInt(copy, 4, 0, timeSize);
+            IsoBmff.putUInt(copy, 4 + timeSize, 0, timeSize);
+            return IsoBmff.box(box.type, copy);
+        }
+
+        private byte[] rewriteChunkOffsets(IsoBmff.Box box, OffsetMapper mapper) throws IOException {
+            int pos = (int) box.payloadOffset();
+            int entrySize = box.type == BOX_CO64 ? 8 : 4;
+            long count = IsoBmff.readUInt(data, pos + 4, 4);
+            if (pos + 8 + count * entrySize > box.end()) {
+                throw new IOException("Corrupt chunk offset table");
+            }
+            byte[] payload = new byte[(int) (box.size - box.headerSize)];
+            System.arraycopy(data, pos, payload, 0, payload.length);
+            for (int i = 0; i < count; i++) {
+                int entry = 8 + i * entrySize;
+                long offset = mapper.map(IsoBmff.readUInt(payload, entry, entrySize));
+                if (!IsoBmff.fits(offset, entrySize)) {
+                    throw new IOException("Relocated chunk offset does not fit");
+                }
+                IsoBmff.putUInt(payload, entry, offset, entrySize);
+            }
+            return IsoBmff.box(box.type, payload);
+        }
+
+        private boolean isMetadataTrack(IsoBmff.Box trak) throws IOException {
+            IsoBmff.Box mdia = child(trak, BOX_MDIA);
+            IsoBmff.Box hdlr = mdia != null ? child(mdia, BOX_HDLR) : null;
+            if (hdlr != null && hdlr.size - hdlr.headerSize >= 12) {
+                int handler = (int) IsoBmff.readUInt(data, (int) hdlr.payloadOffset() + 8, 4);
+                if (METADATA_HANDLERS.contains(handler)) {
+                    return true;
+                }
+            }
+            IsoBmff.Box stbl = sampleTable(trak);
+            IsoBmff.Box stsd = stbl != null ? child(stbl, BOX_STSD) : null;
+            if (stsd != null) {
+                for (IsoBmff.Box entry : IsoBmff.parseBoxes(data, (int) stsd.payloadOffset() + 8, (int) stsd.end())) {
+                    if (METADATA_SAMPLE_ENTRIES.contains(entry.type)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /** Records the byte ranges of every chunk of a dropped track so they can be zeroed. */
+        private void collectSampleRanges(IsoBmff.Box trak) throws IOException {
+            IsoBmff.Box stbl = sampleTable(trak);
+            IsoBmff.Box stsc = stbl != null ? child(stbl, BOX_STSC) : null;
+            IsoBmff.Box stsz = stbl != null ? child(stbl, BOX_STSZ) : null;
+            IsoBmff.Box chunkOffsets = stbl != null ? child(stbl, BOX_STCO) : null;
+            int entrySize = 4;
+            if (chunkOffsets == null && stbl != null) {
+                chunkOffsets = child(stbl, BOX_CO64);
+                entrySize = 8;
+            }
+            if (stsc == null || stsz == null || chunkOffsets == null) {
+                throw new IOException("Metadata track without sample tables");
+            }
+
+            int stszPos = (int) stsz.payloadOffset();
+            long uniformSize = IsoBmff.readUInt(data, stszPos + 4, 4);
+            long sampleCount = IsoBmff.readUInt(data, stszPos + 8, 4);
+            int stscPos = (int) stsc.payloadOffset();
+            long stscCount = IsoBmff.readUInt(data, stscPos + 4, 4);
+            int coPos = (int) chunkOffsets.payloadOffset();
+            long chunkCount = IsoBmff.readUInt(data, coPos + 4, 4);
+
+            long sample = 0;
+            int run = 0;
+            for (long chunk = 1; chunk <= chunkCount && sample < sampleCount; chunk++) {
+                while (run + 1 < stscCount
+                        && IsoBmff.readUInt(data, stscPos + 8 + (run + 1) * 12, 4) <= chunk) {
+                    run++;
+                }
+                long samplesPerChunk = IsoBmff.readUInt(data, stscPos + 8 + run * 12 + 4, 4);
+                long chunkBytes = 0;
+                for (long s = 0; s < samplesPerChunk && sample < sampleCount; s++, sample++) {
+                    chunkBytes += uniformSize != 0
+                            ? uniformSize
+                            : IsoBmff.readUInt(data, (int) (stszPos + 12 + sample * 4), 4);
+                }
+                long offset = IsoBmff.readUInt(data, (int) (coPos + 8 + (chunk - 1) * entrySize), entrySize);
+                if (chunkBytes > 0) {
+                    zeroRanges.add(new long[] {offset, chunkBytes});
+                }
+            }
+        }
+
+        private IsoBmff.Box sampleTable(IsoBmff.Box trak) throws IOException {
+            IsoBmff.Box mdia = child(trak, BOX_MDIA);
+            IsoBmff.Box minf = mdia != null ? child(mdia, BOX_MINF) : null;
+            return minf != null ? child(minf, BOX_STBL) : null;
+        }
+
+        private IsoBmff.Box child(IsoBmff.Box parent, int type) throws IOException {
+            for (IsoBmff.Box box : IsoBmff.parseBoxes(data, (int) parent.payloadOffset(), (int) parent.end())) {
+                if (box.type == type) {
+                    return box;
+                }
+            }
+            return null;
+        }
+
+        private void dropped() {
+            if (dryRun) {
+                plan.markRemoved();
+            }
+        }
+
+        private void copy(ByteArrayOutputStream out, IsoBmff.Box box) {
+            out.write(data, (int) box.offset, (int) box.size);
+        }
+
+        private static void write(ByteArrayOutputStream out, byte[] bytes) {
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.doubleangels.redact.metadata;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Passes a cleaned image through to its destination while keeping a copy of its first bytes, so
+ * the output can be checked for metadata without reading it back from storage.
+ *
+ * Image metadata lives in the header (JPEG segments before the first scan, PNG/WebP chunks and
+ * HEIF boxes before the image data), so a bounded head is enough for the check.
+ *
+ * {@link #withJpegOrientation} also inserts an EXIF segment carrying only the orientation right
+ * after the SOI marker, for encoder output that has no EXIF of its own.
+ */
+final class OutputTee extends FilterOutputStream {
+
+    /** Bytes of output kept for verification. */
+    static final int HEAD_LIMIT = 256 * 1024;
+
+    private final ByteArrayOutputStream head = new ByteArrayOutputStream();
+    @Nullable
+    private byte[] afterSoi;
+    private int soiBytesSeen;
+
+    OutputTee(@NonNull OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Tee for a JPEG produced by an encoder.
+     *
+     * @param orientation EXIF orientation (2–8) to insert, or any other value to insert none
+     */
+    @NonNull
+    static OutputTee withJpegOrientation(@NonNull OutputStream out, int orientation) {
+        OutputTee tee = new OutputTee(out);
+        if (orientation > 1 && orientation <= 8) {
+            tee.afterSoi = JpegSegmentStripper.orientationSegment(orientation);
+        }
+        return tee;
+    }
+
+    /** The first {@link #HEAD_LIMIT} bytes written to the destination. */
+    @NonNull
+    byte[] head() {
+        return head.toByteArray();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) throws IOException {
+        if (afterSoi != null && len > 0) {
+            int soiLength = Math.min(len, 2 - soiBytesSeen);
+            for (int i = 0; i < soiLength; i++) {
+                int expected = soiBytesSeen == 0 ? 0xFF : 0xD8;
+                if ((b[off + i] & 0xFF) != expected) {
+                    throw new IOException("Encoder output is not a JPEG");
+                }
+                soiBytesSeen++;
+            }
+            emit(b, off, soiLength);
+            off += soiLength;
+            len -= soiLength;
+            if (soiBytesSeen == 2) {
+                byte[] segment = afterSoi;
+                afterSoi = null;
+                emit(segment, 0, segment.length);
+            }
+        }
+        if (len > 0) {
+            emit(b, off, len);
+        }
+    }
+
+    private void emit(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        int keep = Math.min(len, HEAD_LIMIT - head.size());
+        if (keep > 0) {
+            head.write(b, off, keep);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.doubleangels.redact.metadata;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Removes metadata from a PNG stream at the chunk level, without decoding any pixels.
+ *
+ * <p>Critical chunks ({@code IHDR}, {@code PLTE}, {@code IDAT}, {@code IEND}) are always kept,
+ * along with the ancillary chunks that change how the image renders: color management
+ * ({@code iCCP}, {@code gAMA}, {@code sRGB}, {@code cHRM}, {@code cICP}, {@code mDCV},
+ * {@code cLLI}, {@code sBIT}), transparency ({@code tRNS}) and APNG animation ({@code acTL},
+ * {@code fcTL}, {@code fdAT}). Everything else is dropped, including {@code tEXt},
+ * {@code zTXt}, {@code iTXt}, {@code eXIf}, {@code tIME}, {@code pHYs} and private chunks.
+ *
+ * <p>Kept chunks are copied verbatim after their CRC is validated, so a corrupt file is
+ * rejected rather than silently passed through. Data after {@code IEND} is discarded.
+ */
+public final class PngChunkStripper {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final byte[] SIGNATURE = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+    };
+
+    private static final int IEND = chunkType("IEND");
+
+    /** Ancillary chunks that affect rendering and are therefore kept. */
+    private static final int[] KEPT_ANCILLARY = {
+            chunkType("tRNS"),
+            chunkType("gAMA"),
+            chunkType("cHRM"),
+            chunkType("sRGB"),
+            chunkType("iCCP"),
+            chunkType("cICP"),
+            chunkType("mDCV"),
+            chunkType("cLLI"),
+            chunkType("sBIT"),
+            chunkType("acTL"),
+            chunkType("fcTL"),
+            chunkType("fdAT"),
+    };
+
+    private PngChunkStripper() {
+    }
+
+    /**
+     * Copies {@code in} to {@code out} with all metadata chunks removed.
+     *
+     * <p>Neither stream is closed; {@code out} is flushed before returning.
+     *
+     * @return number of chunks dropped
+     * @throws IOException if the input is not a PNG, is truncated before {@code IEND}, or a kept
+     *                     chunk fails its CRC check
+     */
+    public static int strip(@NonNull InputStream in, @NonNull OutputStream out) throws IOException {
+        OutputStream o = new BufferedOutputStream(out, BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        readFully(in, buffer, SIGNATURE.length);
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (buffer[i] != SIGNATURE[i]) {
+                throw new IOException("Not a PNG stream");
+            }
+        }
+        o.write(SIGNATURE);
+
+        CRC32 crc = new CRC32();
+        int removed = 0;
+        while (true) {
+            readFully(in, buffer, 8);
+            long length = readUInt32(buffer, 0);
+            int type = (int) readUInt32(buffer, 4);
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt PNG chunk length");
+            }
+
+            if (!shouldKeep(type)) {
+                skipFully(in, length + 4, buffer);
+                removed++;
+                continue;
+            }
+
+            o.write(buffer, 0, 8);
+            crc.reset();
+            crc.update(buffer, 4, 4);
+            long remaining = length;
+            while (remaining > 0) {
+                int chunk = (int) Math.min(remaining, buffer.length);
+                readFully(in, buffer, chunk);
+                crc.update(buffer, 0, chunk);
+                o.write(buffer, 0, chunk);
+                remaining -= chunk;
+            }
+            readFully(in, buffer, 4);
+            if (readUInt32(buffer, 0) != crc.getValue()) {
+                throw new IOException("PNG chunk " + chunkName(type) + " failed CRC check");
+            }
+            o.write(buffer, 0, 4);
+
+            if (type == IEND) {
+                o.flush();
+                return removed;
+            }
+        }
+    }
+
+    private static boolean shouldKeep(int type) {
+        // Bit 5 of the first byte clear means the chunk is critical.
+        if ((type & 0x20000000) == 0) {
+            return true;
+        }
+        for (int kept : KEPT_ANCILLARY) {
+            if (kept == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int chunkType(String name) {
+        return (name.charAt(0) << 24) | (name.charAt(1) << 16) | (name.charAt(2) << 8) | name.charAt(3);
+    }
+
+    private static String chunkName(int type) {
+        return new String(new char[] {
+                (char) ((type >>> 24) & 0xFF),
+                (char) ((type >>> 16) & 0xFF),
+                (char) ((type >>> 8) & 0xFF),
+                (char) (type & 0xFF)
+        });
+    }
+
+    private static long readUInt32(byte[] b, int offset) {
+        return ((long) (b[offset] & 0xFF) << 24)
+                | ((b[offset + 1] & 0xFF) << 16)
+                | ((b[offset + 2] & 0xFF) << 8)
+                | (b[offset + 3] & 0xFF);
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(buffer, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of PNG stream");
+            }
+            offset += read;
+        }
+    }
+
+    private static void skipFully(InputStream in, long count, byte[] buffer) throws IOException {
+        while (count > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(count, buffer.length));
+            if (read < 0) {
+                throw new EOFException("Unexpected end of PNG stream");
+            }
+            count -= read;
+        }
+    }
+}
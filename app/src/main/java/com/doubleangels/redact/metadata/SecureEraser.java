@@ -0,0 +1,126 @@
+package com.doubleangels.redact.metadata;
+
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import com.doubleangels.redact.sentry.SentryManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Overwrites files with random data before deleting them, for intermediates that have to exist as
+ * plain files (see {@link ShreddedFile} for the ones that don't).
+ *
+ * Each pass writes an AES-CTR keystream under a fresh random key. The keystream is generated
+ * straight into a direct buffer and written through a {@link FileChannel} in large chunks, with a
+ * single {@code force()} at the end of the pass instead of a synchronous write per chunk. Erases
+ * queued with {@link #eraseInBackground} run one at a time on a lowest-priority thread, so they
+ * never hold up the result the user is waiting for.
+ */
+public final class SecureEraser {
+
+    /** Number of overwrite passes. */
+    private static final int PASSES = 3;
+
+    /** Bytes generated and written per channel write. */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final ExecutorService QUEUE = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+            runnable.run();
+        }, "redact-erase");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SecureEraser() {
+    }
+
+    /**
+     * Queues {@code file} to be overwritten and deleted on the background erase thread. Failures
+     * are logged.
+     */
+    public static void eraseInBackground(@NonNull File file) {
+        QUEUE.execute(() -> {
+            if (!erase(file)) {
+                SentryManager.log("Failed to securely delete temp file: " + file.getName() + ".");
+            }
+        });
+    }
+
+    /**
+     * Overwrites and deletes {@code file} on the calling thread. If the overwrite fails the file is
+     * still deleted.
+     *
+     * @return true if the file was deleted
+     */
+    static boolean erase(@NonNull File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try {
+            overwrite(file);
+        } catch (IOException e) {
+            SentryManager.log("Error during secure file deletion: " + e.getMessage() + ".");
+        }
+        return file.delete();
+    }
+
+    /** Runs every overwrite pass over the whole of {@code file}, keeping its length. */
+    static void overwrite(@NonNull File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size == 0) {
+                return;
+            }
+            int chunk = (int) Math.min(CHUNK_SIZE, size);
+            ByteBuffer zeros = ByteBuffer.allocateDirect(chunk);
+            ByteBuffer keystream = ByteBuffer.allocateDirect(chunk);
+            for (int pass = 0; pass < PASSES; pass++) {
+                Cipher cipher = keystreamCipher();
+                long position = 0;
+                while (position < size) {
+                    int length = (int) Math.min(chunk, size - position);
+                    zeros.clear().limit(length);
+                    keystream.clear();
+                    // Encrypting zeros yields the raw keystream
+                    cipher.update(zeros, keystream);
+                    keystream.flip();
+                    while (keystream.hasRemaining()) {
+                        position += channel.write(keystream, position);
+                    }
+                }
+                channel.force(false);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Keystream cipher unavailable", e);
+        }
+    }
+
+    private static Cipher keystreamCipher() throws GeneralSecurityException {
+        byte[] key = new byte[32];
+        byte[] iv = new byte[16];
+        RANDOM.nextBytes(key);
+        RANDOM.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        return cipher;
+    }
+}
@@ -0,0 +1,130 @@
+package com.doubleangels.redact.metadata;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A cache file whose contents are encrypted with a random key that only ever exists in memory.
+ *
+ * Intermediate copies of the user's media go through this instead of plain files. Shredding the
+ * file drops the key and unlinks it: whatever is left on flash, or in a file orphaned by a crash,
+ * is ciphertext for a key that no longer exists, so no overwrite passes are needed.
+ *
+ * AES-CTR keeps both directions streaming; an authenticated mode would buffer the whole file on
+ * decryption, and tampering is not a concern for a file only this process can read.
+ */
+final class ShreddedFile implements Closeable {
+
+    private static final String TRANSFORMATION = "AES/CTR/NoPadding";
+    private static final int KEY_BYTES = 32;
+    private static final int IV_BYTES = 16;
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final File file;
+    private final byte[] iv;
+    @Nullable
+    private volatile SecretKeySpec key;
+
+    private ShreddedFile(@NonNull File file, @NonNull SecretKeySpec key, @NonNull byte[] iv) {
+        this.file = file;
+        this.key = key;
+        this.iv = iv;
+    }
+
+    /**
+     * Creates an empty file with a unique name in {@code directory} and a fresh key for it.
+     *
+     * @param directory Directory for the file, usually the app cache
+     * @param prefix    File name prefix, e.g. {@code "temp_"}
+     * @param suffix    File name suffix, e.g. {@code ".jpg"}
+     * @throws IOException if the file cannot be created
+     */
+    @NonNull
+    static ShreddedFile create(@Nullable File directory, @NonNull String prefix, @NonNull String suffix)
+            throws IOException {
+        byte[] keyBytes = new byte[KEY_BYTES];
+        byte[] iv = new byte[IV_BYTES];
+        RANDOM.nextBytes(keyBytes);
+        RANDOM.nextBytes(iv);
+        SecretKeySpec key = new SecretKeySpec(keyBytes, "AES");
+        Arrays.fill(keyBytes, (byte) 0);
+        return new ShreddedFile(File.createTempFile(prefix, suffix, directory), key, iv);
+    }
+
+    /** Opens a stream that encrypts everything written to it into the file, replacing its contents. */
+    @NonNull
+    OutputStream openOutputStream() throws IOException {
+        Cipher cipher = cipher(Cipher.ENCRYPT_MODE);
+        return new BufferedOutputStream(new CipherOutputStream(new FileOutputStream(file), cipher), BUFFER_SIZE);
+    }
+
+    /** Opens a stream that decrypts the file from the start. Each call starts a new read. */
+    @NonNull
+    InputStream openInputStream() throws IOException {
+        Cipher cipher = cipher(Cipher.DECRYPT_MODE);
+        return new CipherInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE), cipher);
+    }
+
+    /** Size of the file in bytes; CTR keeps it equal to the plaintext size. */
+    long length() {
+        return file.length();
+    }
+
+    /**
+     * Drops the key and deletes the file. The contents are unreadable from this point on even if
+     * the delete fails.
+     *
+     * @return true if the file no longer exists
+     */
+    boolean shred() {
+        key = null;
+        return file.delete() || !file.exists();
+    }
+
+    @Override
+    public void close() {
+        shred();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return file.getName();
+    }
+
+    @NonNull
+    private Cipher cipher(int mode) throws IOException {
+        SecretKeySpec currentKey = key;
+        if (currentKey == null) {
+            throw new IOException("Temp file has been shredded");
+        }
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(mode, currentKey, new IvParameterSpec(iv));
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Temp file cipher unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.doubleangels.redact.metadata;
+
+import androidx.annotation.NonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A rewritten file described as an ordered list of pieces: literal bytes produced by a container
+ * stripper, byte ranges copied unchanged from the source, and zero-filled runs.
+ *
+ * <p>Container strippers that need random access to their input (WebP, HEIF, MP4, Matroska) build
+ * a plan from the small structural parts of the file and reference the bulk payload by offset, so
+ * large media data is never held in memory and is copied with {@link FileChannel#transferTo}.
+ *
+ * <p>A finished plan can also be read at any offset with {@link #read}, which serves the rewritten
+ * file without ever writing it out.
+ */
+public final class SplicePlan {
+
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    private static final int KIND_LITERAL = 0;
+    private static final int KIND_SOURCE = 1;
+    private static final int KIND_ZEROS = 2;
+
+    private static final class Piece {
+        final int kind;
+        final byte[] literal;
+        final long sourceOffset;
+        long length;
+
+        Piece(int kind, byte[] literal, long sourceOffset, long length) {
+            this.kind = kind;
+            this.literal = literal;
+            this.sourceOffset = sourceOffset;
+            this.length = length;
+        }
+    }
+
+    private final List<Piece> pieces = new ArrayList<>();
+    private long length;
+    private int removedCount;
+
+    /** Output offset of each piece, built on the first {@link #read}. */
+    private volatile long[] pieceStarts;
+
+    /** Appends bytes that are written as-is. */
+    void addLiteral(@NonNull byte[] bytes) {
+        if (bytes.length == 0) {
+            return;
+        }
+        pieces.add(new Piece(KIND_LITERAL, bytes, 0, bytes.length));
+        length += bytes.length;
+        pieceStarts = null;
+    }
+
+    /** Appends {@code count} bytes copied from the source starting at {@code offset}. */
+    void addSourceRange(long offset, long count) {
+        if (count <= 0) {
+            return;
+        }
+        if (!pieces.isEmpty()) {
+            Piece last = pieces.get(pieces.size() - 1);
+            if (last.kind == KIND_SOURCE && last.sourceOffset + last.length == offset) {
+                last.length += count;
+                length += count;
+                pieceStarts = null;
+                return;
+            }
+        }
+        pieces.add(new Piece(KIND_SOURCE, null, offset, count));
+        length += count;
+        pieceStarts = null;
+    }
+
+    /** Appends {@code count} zero bytes. */
+    void addZeros(long count) {
+        if (count <= 0) {
+            return;
+        }
+        pieces.add(new Piece(KIND_ZEROS, null, 0, count));
+        length += count;
+        pieceStarts = null;
+    }
+
+    /** Records that the producer dropped one metadata element (for diagnostics). */
+    void markRemoved() {
+        removedCount++;
+    }
+
+    /** Total length of the rewritten file in bytes. */
+    public long length() {
+        return length;
+    }
+
+    /** Number of metadata elements (chunks, boxes, items…) the producer dropped. */
+    public int removedCount() {
+        return removedCount;
+    }
+
+    /**
+     * Writes the rewritten file to {@code target}, reading referenced ranges from {@code source}.
+     * When {@code target} is a {@link FileChannel} the kernel can copy source ranges directly.
+     */
+    public void writeTo(@NonNull FileChannel source, @NonNull WritableByteChannel target) throws IOException {
+        ByteBuffer zeros = null;
+        for (Piece piece : pieces) {
+            switch (piece.kind) {
+                case KIND_LITERAL:
+                    writeFully(target, ByteBuffer.wrap(piece.literal));
+                    break;
+                case KIND_SOURCE:
+                    transferFully(source, piece.sourceOffset, piece.length, target);
+                    break;
+                default:
+                    if (zeros == null) {
+                        zeros = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+                    }
+                    long remaining = piece.length;
+                    while (remaining > 0) {
+                        zeros.clear();
+                        zeros.limit((int) Math.min(remaining, zeros.capacity()));
+                        remaining -= zeros.remaining();
+                        writeFully(target, zeros);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Reads the rewritten file from {@code position} into {@code target}, as if it had been written
+     * out, reading referenced ranges from {@code source} with positional reads.
+     *
+     * @return number of bytes read, which is less than {@code target.remaining()} only at the end
+     *         of the file
+     */
+    public int read(@NonNull FileChannel source, long position, @NonNull ByteBuffer target) throws IOException {
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position: " + position);
+        }
+        long[] starts = pieceStarts();
+        int index = Arrays.binarySearch(starts, position);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        int start = target.position();
+        while (target.hasRemaining() && position < length) {
+            Piece piece = pieces.get(index);
+            long within = position - starts[index];
+            int count = (int) Math.min(target.remaining(), piece.length - within);
+            switch (piece.kind) {
+                case KIND_LITERAL:
+                    target.put(piece.literal, (int) within, count);
+                    break;
+                case KIND_SOURCE:
+                    ByteBuffer range = target.duplicate();
+                    range.limit(range.position() + count);
+                    readFully(source, piece.sourceOffset + within, range);
+                    target.position(range.position());
+                    break;
+                default:
+                    for (int i = 0; i < count; i++) {
+                        target.put((byte) 0);
+                    }
+                    break;
+            }
+            position += count;
+            index++;
+        }
+        return target.position() - start;
+    }
+
+    @NonNull
+    private long[] pieceStarts() {
+        long[] starts = pieceStarts;
+        if (starts == null) {
+            starts = new long[pieces.size()];
+            long offset = 0;
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = offset;
+                offset += pieces.get(i).length;
+            }
+            pieceStarts = starts;
+        }
+        return starts;
+    }
+
+    private static void transferFully(FileChannel source, long offset, long count, WritableByteChannel target)
+            throws IOException {
+        ByteBuffer fallback = null;
+        while (count > 0) {
+            long transferred = source.transferTo(offset, count, target);
+            if (transferred <= 0) {
+                // Some channel pairs refuse zero-copy transfer; copy through a buffer instead.
+                if (fallback == null) {
+                    fallback = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+                }
+                fallback.clear();
+                fallback.limit((int) Math.min(count, fallback.capacity()));
+                int read = source.read(fallback, offset);
+                if (read < 0) {
+                    throw new EOFException("Source ended before the end of a referenced range");
+                }
+                fallback.flip();
+                writeFully(target, fallback);
+                transferred = read;
+            }
+            offset += transferred;
+            count -= transferred;
+        }
+    }
+
+    private static void writeFully(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    /** Reads exactly {@code buffer.remaining()} bytes from {@code source} at {@code offset}. */
+    static void readFully(@NonNull FileChannel source, long offset, @NonNull ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = source.read(buffer, offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file");
+            }
+            offset += read;
+        }
+    }
+}
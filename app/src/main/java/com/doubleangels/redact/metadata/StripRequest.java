@@ -0,0 +1,97 @@
+package com.doubleangels.redact.metadata;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Immutable description of one metadata-stripping job for {@link MetadataStripper#strip}.
+ *
+ * A request names the source, whether it is a video, where the cleaned copy should go and an
+ * optional progress sink. Requests carry no mutable state, so the same stripper can serve any
+ * number of them concurrently.
+ */
+public final class StripRequest {
+
+    /** Where the cleaned copy is written. */
+    public enum Destination {
+        /** A new entry in the shared Pictures/Movies "Redact" collections. */
+        GALLERY,
+        /** A file in the app cache, returned as a FileProvider URI for sharing. */
+        SHARE
+    }
+
+    private final Uri sourceUri;
+    private final String originalFilename;
+    private final boolean video;
+    private final Destination destination;
+    @Nullable
+    private final MetadataStripper.ProgressCallback progressCallback;
+
+    private StripRequest(@NonNull Uri sourceUri, @NonNull String originalFilename, boolean video,
+            @NonNull Destination destination, @Nullable MetadataStripper.ProgressCallback progressCallback) {
+        this.sourceUri = sourceUri;
+        this.originalFilename = originalFilename;
+        this.video = video;
+        this.destination = destination;
+        this.progressCallback = progressCallback;
+    }
+
+    /**
+     * Creates a request that saves the cleaned copy to the gallery.
+     *
+     * @param sourceUri        URI of the source media, must not be null
+     * @param originalFilename Original filename, used for format detection, must not be null
+     * @param video            True if the media is a video
+     */
+    @NonNull
+    public static StripRequest forGallery(@NonNull Uri sourceUri, @NonNull String originalFilename, boolean video) {
+        return new StripRequest(sourceUri, originalFilename, video, Destination.GALLERY, null);
+    }
+
+    /**
+     * Creates a request that writes the cleaned copy to the app cache for sharing.
+     *
+     * @param sourceUri        URI of the source media, must not be null
+     * @param originalFilename Original filename, used for format detection, must not be null
+     * @param video            True if the media is a video
+     */
+    @NonNull
+    public static StripRequest forSharing(@NonNull Uri sourceUri, @NonNull String originalFilename, boolean video) {
+        return new StripRequest(sourceUri, originalFilename, video, Destination.SHARE, null);
+    }
+
+    /**
+     * Returns a copy of this request that reports progress to {@code callback}. The callback is
+     * invoked on the thread running the job.
+     */
+    @NonNull
+    public StripRequest withProgress(@Nullable MetadataStripper.ProgressCallback callback) {
+        return new StripRequest(sourceUri, originalFilename, video, destination, callback);
+    }
+
+    @NonNull
+    public Uri sourceUri() {
+        return sourceUri;
+    }
+
+    @NonNull
+    public String originalFilename() {
+        return originalFilename;
+    }
+
+    public boolean isVideo() {
+        return video;
+    }
+
+    @NonNull
+    public Destination destination() {
+        return destination;
+    }
+
+    @Nullable
+    public MetadataStripper.ProgressCallback progressCallback() {
+        return progressCallback;
+    }
+}
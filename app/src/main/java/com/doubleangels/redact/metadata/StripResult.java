@@ -0,0 +1,52 @@
+package com.doubleangels.redact.metadata;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Outcome of a {@link StripRequest}: the cleaned copy's URI on success, or the error that stopped
+ * the job.
+ */
+public final class StripResult {
+
+    @Nullable
+    private final Uri outputUri;
+    @Nullable
+    private final Throwable error;
+
+    private StripResult(@Nullable Uri outputUri, @Nullable Throwable error) {
+        this.outputUri = outputUri;
+        this.error = error;
+    }
+
+    @NonNull
+    static StripResult success(@NonNull Uri outputUri) {
+        return new StripResult(outputUri, null);
+    }
+
+    @NonNull
+    static StripResult failure(@Nullable Throwable error) {
+        return new StripResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return outputUri != null;
+    }
+
+    /**
+     * URI of the cleaned copy: a MediaStore URI for {@link StripRequest.Destination#GALLERY}, a
+     * FileProvider URI for {@link StripRequest.Destination#SHARE}, or null on failure.
+     */
+    @Nullable
+    public Uri outputUri() {
+        return outputUri;
+    }
+
+    /** The error that stopped the job, or null if it succeeded or failed without one. */
+    @Nullable
+    public Throwable error() {
+        return error;
+    }
+}
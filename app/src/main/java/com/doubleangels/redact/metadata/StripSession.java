@@ -0,0 +1,81 @@
+package com.doubleangels.redact.metadata;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.doubleangels.redact.R;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-job state for one {@link StripRequest}: the EXIF values to carry over, the progress sink and
+ * the first error seen. A session is created for each call to {@link MetadataStripper#strip} and
+ * is only touched by the thread running that job.
+ */
+final class StripSession {
+
+    private final Context context;
+    private final StripRequest request;
+
+    /**
+     * Essential EXIF values (like orientation) read from the source that are written back to the
+     * cleaned copy. They are important for proper display but don't contain identifying
+     * information.
+     */
+    final Map<String, String> preservedExifValues = new HashMap<>();
+
+    @Nullable
+    private Throwable error;
+
+    StripSession(@NonNull Context context, @NonNull StripRequest request) {
+        this.context = context;
+        this.request = request;
+    }
+
+    @NonNull
+    StripRequest request() {
+        return request;
+    }
+
+    /**
+     * Reports progress to the request's callback, if any.
+     *
+     * @param currentStep 1-based step index within the current file
+     * @param totalSteps  total steps for this file
+     * @param message     human-readable progress message
+     */
+    void updateProgress(int currentStep, int totalSteps, String message) {
+        MetadataStripper.ProgressCallback callback = request.progressCallback();
+        if (callback != null && totalSteps > 0) {
+            int percent = Math.min(100, Math.max(0, (currentStep * 100) / totalSteps));
+            callback.onProgress(percent, message);
+        }
+    }
+
+    /** Maps Media3 transcoding 0–100% into the middle of the current item’s progress (after “Transcoding…”). */
+    void reportTranscodeProgress(int transcoderPercent0To100) {
+        MetadataStripper.ProgressCallback callback = request.progressCallback();
+        if (callback != null) {
+            int p = Math.min(100, Math.max(0, transcoderPercent0To100));
+            int itemPercent = 50 + p / 2;
+            callback.onProgress(
+                    itemPercent,
+                    context.getString(R.string.progress_transcoding_percent, p));
+        }
+    }
+
+    /** Records the error that stopped the job; only the first one is kept. */
+    void fail(@NonNull Throwable throwable) {
+        if (error == null) {
+            error = throwable;
+        }
+    }
+
+    @Nullable
+    Throwable error() {
+        return error;
+    }
+}
@@ -0,0 +1,593 @@
+package com.doubleangels.redact.metadata;
+
+import android.Manifest;
+import android.content.ContentProvider;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.os.ProxyFileDescriptorCallback;
+import android.os.storage.StorageManager;
+import android.provider.MediaStore;
+import android.provider.OpenableColumns;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.core.content.ContextCompat;
+
+import com.doubleangels.redact.sentry.SentryManager;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves shared media cleaned on the fly, so the cleaned bytes never touch disk.
+ *
+ * {@link MetadataStripper} registers shared media here instead of writing a copy to the cache.
+ * For an image, every {@link #openFile} hands the recipient the read end of a pipe, and a writer
+ * thread streams the source through the container's segment-level stripper into the other end as
+ * the recipient reads. If the stripper fails part way, the pipe is closed with an error so the
+ * recipient does not mistake a truncated image for a complete one.
+ *
+ * A video whose container can be rewritten is registered with its {@link SplicePlan} and served
+ * through {@link StorageManager#openProxyFileDescriptor} as a seekable virtual file: reads map
+ * onto the rewritten header and byte ranges of the original sample data, so players can seek
+ * without a second copy of a large video ever existing. The plan's byte ranges only hold for the
+ * file it was built from, so the source's size and modification time are recorded with it and an
+ * open is refused once either has changed.
+ *
+ * A share target loses the sending app's grant to a URI when its activity finishes, which is
+ * usually before the recipient reads anything. Only sources this app can read with its own media
+ * permission are therefore served here ({@link #canServe}); others are cleaned into the cache
+ * up front. Entries only hold the source URI and what the stripper needs, and are kept in
+ * preferences as well as in memory, so shares still open after the process has been killed.
+ * Like the cache copies, which are deleted after a day, an entry is served for {@link #TTL_MS}
+ * after it is registered and then forgotten, so old shares stop reaching the user's media.
+ */
+public class StrippingProvider extends ContentProvider {
+
+    /** Registered shares kept; the oldest is forgotten beyond this. */
+    private static final int MAX_ENTRIES = 256;
+
+    /** How long a share is served after it is registered. */
+    @VisibleForTesting
+    static final long TTL_MS = 24 * 60 * 60 * 1000L;
+
+    private static final String PREFS_NAME = "redact_shares";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] DEFAULT_PROJECTION = {OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE};
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final AtomicInteger WRITER_COUNT = new AtomicInteger();
+
+    /** Registered shares by token, least recently used first. Guarded by itself. */
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Whether {@link #ENTRIES} holds what an earlier process stored. Guarded by {@link #ENTRIES}. */
+    private static boolean entriesLoaded;
+
+    /**
+     * One writer per open pipe. The pool is unbounded because a writer blocks until its reader
+     * drains the pipe, and recipients may open several files before reading any of them.
+     */
+    private static final ExecutorService WRITERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "redact-share-" + WRITER_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Looper for every virtual file's callbacks. */
+    @Nullable
+    private static Handler proxyHandler;
+
+    @Nullable
+    private volatile MetadataStripper stripper;
+
+    /**
+     * Whether {@code source} can be served here: a MediaStore item this app may read with its own
+     * media permission, which outlives the sender's grant. Photo picker URIs are grants as well.
+     *
+     * @param video Whether the source is a video rather than an image
+     */
+    static boolean canServe(@NonNull Context context, @NonNull Uri source, boolean video) {
+        if (!ContentResolver.SCHEME_CONTENT.equals(source.getScheme())
+                || !MediaStore.AUTHORITY.equals(source.getAuthority())) {
+            return false;
+        }
+        List<String> segments = source.getPathSegments();
+        if (!segments.isEmpty() && segments.get(0).startsWith("picker")) {
+            return false;
+        }
+        String permission;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            permission = video ? Manifest.permission.READ_MEDIA_VIDEO : Manifest.permission.READ_MEDIA_IMAGES;
+        } else {
+            permission = Manifest.permission.READ_EXTERNAL_STORAGE;
+        }
+        return ContextCompat.checkSelfPermission(context, permission) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * Registers an image to be cleaned as it is read. The source must pass {@link #canServe}.
+     *
+     * @param source      URI of the original image
+     * @param container   Its container, which must have a lossless stripper
+     * @param displayName Name the recipient sees
+     * @param orientation EXIF orientation to keep in JPEG output
+     * @param length      Cleaned size in bytes if already known, or -1
+     * @return content URI to share
+     */
+    @NonNull
+    static Uri register(@NonNull Context context, @NonNull Uri source, @NonNull ImageContainer container,
+            @NonNull String displayName, int orientation, long length) {
+        String mimeType = container.mimeType();
+        if (mimeType == null) {
+            throw new IllegalArgumentException("No lossless stripper for " + container);
+        }
+        return put(context, new Entry(source, mimeType, displayName, container, orientation, null, length));
+    }
+
+    /**
+     * Registers a video to be served as a seekable virtual file. The source must pass
+     * {@link #canServe}.
+     *
+     * @param source      URI of the original video; {@code plan} must have been built from it
+     * @param mimeType    MIME type of the rewritten container
+     * @param displayName Name the recipient sees
+     * @param plan        Container rewrite of {@code source}
+     * @param sourceSize  Size of the source the plan was built from
+     * @return content URI to share
+     * @throws IOException if the source no longer has {@code sourceSize} bytes
+     */
+    @NonNull
+    static Uri registerPlanned(@NonNull Context context, @NonNull Uri source, @NonNull String mimeType,
+            @NonNull String displayName, @NonNull SplicePlan plan, long sourceSize) throws IOException {
+        long[] stamp = sourceStamp(context, source);
+        if (stamp[0] != sourceSize) {
+            throw new IOException("Video changed while it was planned");
+        }
+        return put(context, new Entry(source, mimeType, displayName, null, 0, plan, plan.length(),
+                System.currentTimeMillis(), stamp[0], stamp[1]));
+    }
+
+    /**
+     * Size and modification time MediaStore reports for {@code source}; the time is -1 if it is
+     * not reported.
+     *
+     * @throws IOException if the source cannot be queried
+     */
+    @NonNull
+    private static long[] sourceStamp(@NonNull Context context, @NonNull Uri source) throws IOException {
+        String[] projection = {MediaStore.MediaColumns.SIZE, MediaStore.MediaColumns.DATE_MODIFIED};
+        try (Cursor cursor = context.getContentResolver().query(source, projection, null, null, null)) {
+            if (cursor == null || !cursor.moveToFirst() || cursor.isNull(0)) {
+                throw new IOException("Source unavailable: " + source);
+            }
+            return new long[] {cursor.getLong(0), cursor.isNull(1) ? -1 : cursor.getLong(1)};
+        } catch (RuntimeException e) {
+            throw new IOException("Source unavailable: " + source, e);
+        }
+    }
+
+    @NonNull
+    @VisibleForTesting
+    static Uri put(@NonNull Context context, @NonNull Entry entry) {
+        byte[] bytes = new byte[16];
+        RANDOM.nextBytes(bytes);
+        StringBuilder token = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        SharedPreferences prefs = prefs(context);
+        synchronized (ENTRIES) {
+            loadEntries(prefs);
+            ENTRIES.put(token.toString(), entry);
+            SharedPreferences.Editor editor = prefs.edit();
+            editor.putString(token.toString(), entry.encode());
+            removeExpired(editor, System.currentTimeMillis());
+            while (ENTRIES.size() > MAX_ENTRIES) {
+                String eldest = ENTRIES.keySet().iterator().next();
+                ENTRIES.remove(eldest);
+                editor.remove(eldest);
+            }
+            editor.apply();
+        }
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(authority(context))
+                .appendPath(token.toString())
+                .appendPath(entry.displayName)
+                .build();
+    }
+
+    /** Whether {@code uri} is served by this provider rather than backed by a file. */
+    public static boolean isStreamed(@NonNull Context context, @NonNull Uri uri) {
+        return authority(context).equals(uri.getAuthority());
+    }
+
+    @NonNull
+    private static SharedPreferences prefs(@NonNull Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /** Restores the entries an earlier process stored, oldest first. Holding {@link #ENTRIES}. */
+    private static void loadEntries(@NonNull SharedPreferences prefs) {
+        if (entriesLoaded) {
+            return;
+        }
+        entriesLoaded = true;
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Entry>> stored = new ArrayList<>();
+        SharedPreferences.Editor editor = prefs.edit();
+        for (Map.Entry<String, ?> value : prefs.getAll().entrySet()) {
+            Entry entry = value.getValue() instanceof String ? Entry.decode((String) value.getValue()) : null;
+            if (entry != null && !entry.isExpired(now)) {
+                stored.add(Map.entry(value.getKey(), entry));
+            } else {
+                editor.remove(value.getKey());
+            }
+        }
+        editor.apply();
+        stored.sort((a, b) -> Long.compare(a.getValue().created, b.getValue().created));
+        for (Map.Entry<String, Entry> entry : stored) {
+            if (!ENTRIES.containsKey(entry.getKey())) {
+                ENTRIES.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /** Forgets entries older than {@link #TTL_MS} here and through {@code editor}. Holding {@link #ENTRIES}. */
+    private static void removeExpired(@NonNull SharedPreferences.Editor editor, long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = ENTRIES.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (entry.getValue().isExpired(now)) {
+                iterator.remove();
+                editor.remove(entry.getKey());
+            }
+        }
+    }
+
+    @NonNull
+    private static String authority(@NonNull Context context) {
+        return context.getPackageName() + ".strip";
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        Entry entry = find(getContext(), uri);
+        return entry != null ? entry.mimeType : null;
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+            @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        Entry entry = find(getContext(), uri);
+        if (entry == null) {
+            return null;
+        }
+        String[] columns = projection != null ? projection : DEFAULT_PROJECTION;
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (OpenableColumns.DISPLAY_NAME.equals(columns[i])) {
+                row[i] = entry.displayName;
+            } else if (OpenableColumns.SIZE.equals(columns[i]) && entry.length >= 0) {
+                row[i] = entry.length;
+            }
+        }
+        cursor.addRow(row);
+        return cursor;
+    }
+
+    @Nullable
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Streamed shares are read-only: " + uri);
+        }
+        Entry entry = find(getContext(), uri);
+        if (entry == null) {
+            throw new FileNotFoundException("No such share: " + uri);
+        }
+        if (entry.container == null) {
+            return openVirtualFile(entry);
+        }
+        ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createReliablePipe();
+        } catch (IOException e) {
+            throw new FileNotFoundException("Could not open pipe: " + e.getMessage());
+        }
+        WRITERS.execute(() -> write(entry, pipe[1]));
+        return pipe[0];
+    }
+
+    /**
+     * Opens the rewrite of a planned video as a seekable descriptor backed by {@link PlanCallback}.
+     * A video restored from preferences is planned again, and must come out the same length.
+     *
+     * @throws FileNotFoundException if the source changed since it was registered
+     */
+    @NonNull
+    private ParcelFileDescriptor openVirtualFile(@NonNull Entry entry) throws FileNotFoundException {
+        Context context = getContext();
+        if (context == null) {
+            throw new FileNotFoundException("Provider not attached");
+        }
+        ParcelFileDescriptor source = context.getContentResolver().openFileDescriptor(entry.source, "r");
+        if (source == null) {
+            throw new FileNotFoundException("Source unavailable: " + entry.source);
+        }
+        try {
+            long[] stamp = sourceStamp(context, entry.source);
+            if (stamp[0] != entry.sourceSize || stamp[1] != entry.sourceModified
+                    || source.getStatSize() != entry.sourceSize) {
+                throw new IOException("Source changed since it was shared");
+            }
+            SplicePlan plan = entry.plan;
+            if (plan == null) {
+                plan = MetadataStripper.planVideoContainer(
+                        new FileInputStream(source.getFileDescriptor()).getChannel()).plan;
+                if (plan.length() != entry.length) {
+                    throw new IOException("Source changed since it was shared");
+                }
+            }
+            StorageManager storage = context.getSystemService(StorageManager.class);
+            return storage.openProxyFileDescriptor(ParcelFileDescriptor.MODE_READ_ONLY,
+                    new PlanCallback(plan, source), proxyHandler());
+        } catch (IOException | RuntimeException e) {
+            try {
+                source.close();
+            } catch (IOException closeEx) {
+                SentryManager.log("Could not close video source: " + closeEx.getMessage() + ".");
+            }
+            throw new FileNotFoundException("Could not open virtual file: " + e.getMessage());
+        }
+    }
+
+    @NonNull
+    private static synchronized Handler proxyHandler() {
+        if (proxyHandler == null) {
+            HandlerThread thread = new HandlerThread("redact-share-proxy", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            proxyHandler = new Handler(thread.getLooper());
+        }
+        return proxyHandler;
+    }
+
+    /** Streams the cleaned image into the pipe, then closes it with the outcome. */
+    private void write(@NonNull Entry entry, @NonNull ParcelFileDescriptor sink) {
+        try {
+            // The sink owns the descriptor; the stream over it is flushed, never closed
+            OutputTee tee = new OutputTee(new BufferedOutputStream(
+                    new FileOutputStream(sink.getFileDescriptor()), BUFFER_SIZE));
+            MetadataStripper stripper = stripper();
+            stripper.writeLosslessImage(entry.source, Objects.requireNonNull(entry.container),
+                    entry.orientation, tee);
+            tee.flush();
+            stripper.verifyOutput(tee);
+            sink.close();
+        } catch (IOException | RuntimeException e) {
+            // Also reached when the recipient stops reading
+            SentryManager.log("Streamed share ended early: " + e.getMessage() + ".");
+            try {
+                sink.closeWithError(e.getClass().getSimpleName());
+            } catch (IOException closeEx) {
+                SentryManager.log("Could not close share pipe: " + closeEx.getMessage() + ".");
+            }
+        }
+    }
+
+    @NonNull
+    private MetadataStripper stripper() {
+        MetadataStripper current = stripper;
+        if (current == null) {
+            current = new MetadataStripper(getContext());
+            stripper = current;
+        }
+        return current;
+    }
+
+    @Nullable
+    private static Entry find(@Nullable Context context, @NonNull Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() != 2) {
+            return null;
+        }
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.get(segments.get(0));
+            if (entry == null && !entriesLoaded && context != null) {
+                loadEntries(prefs(context));
+                entry = ENTRIES.get(segments.get(0));
+            }
+            if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+                ENTRIES.remove(segments.get(0));
+                if (context != null) {
+                    prefs(context).edit().remove(segments.get(0)).apply();
+                }
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        throw new UnsupportedOperationException("No external inserts");
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("No external deletes");
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+            @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("No external updates");
+    }
+
+    /**
+     * Serves reads of a virtual file from its {@link SplicePlan}. Callbacks run one at a time on
+     * the proxy looper.
+     */
+    private static final class PlanCallback extends ProxyFileDescriptorCallback {
+        private final SplicePlan plan;
+        private final ParcelFileDescriptor sourceDescriptor;
+        private final FileChannel source;
+
+        PlanCallback(@NonNull SplicePlan plan, @NonNull ParcelFileDescriptor sourceDescriptor) {
+            this.plan = plan;
+            this.sourceDescriptor = sourceDescriptor;
+            // Positional reads only; the descriptor is closed in onRelease
+            this.source = new FileInputStream(sourceDescriptor.getFileDescriptor()).getChannel();
+        }
+
+        @Override
+        public long onGetSize() {
+            return plan.length();
+        }
+
+        @Override
+        public int onRead(long offset, int size, byte[] data) throws ErrnoException {
+            try {
+                return plan.read(source, offset, ByteBuffer.wrap(data, 0, size));
+            } catch (IOException e) {
+                SentryManager.log("Virtual video read failed: " + e.getMessage() + ".");
+                throw new ErrnoException("onRead", OsConstants.EIO);
+            }
+        }
+
+        @Override
+        public void onRelease() {
+            try {
+                sourceDescriptor.close();
+            } catch (IOException e) {
+                SentryManager.log("Could not close video source: " + e.getMessage() + ".");
+            }
+        }
+    }
+
+    /** One registered share: an image streamed through its stripper, or a planned video. */
+    @VisibleForTesting
+    static final class Entry {
+        @NonNull
+        final Uri source;
+        @NonNull
+        final String mimeType;
+        @NonNull
+        final String displayName;
+        /** Container of a streamed image, or null for a planned video. */
+        @Nullable
+        final ImageContainer container;
+        final int orientation;
+        /** Rewrite of a planned video, or null for a streamed image. */
+        @Nullable
+        final SplicePlan plan;
+        final long length;
+        /** Registration time, which orders restored entries and ends each after {@link #TTL_MS}. */
+        final long created;
+        /** Size of a planned video's source when it was planned, or -1 for an image. */
+        final long sourceSize;
+        /** Modification time of a planned video's source when it was planned, or -1. */
+        final long sourceModified;
+
+        Entry(@NonNull Uri source, @NonNull String mimeType, @NonNull String displayName,
+                @Nullable ImageContainer container, int orientation, @Nullable SplicePlan plan, long length) {
+            this(source, mimeType, displayName, container, orientation, plan, length,
+                    System.currentTimeMillis(), -1, -1);
+        }
+
+        Entry(@NonNull Uri source, @NonNull String mimeType, @NonNull String displayName,
+                @Nullable ImageContainer container, int orientation, @Nullable SplicePlan plan, long length,
+                long created, long sourceSize, long sourceModified) {
+            this.source = source;
+            this.mimeType = mimeType;
+            this.displayName = displayName;
+            this.container = container;
+            this.orientation = orientation;
+            this.plan = plan;
+            this.length = length;
+            this.created = created;
+            this.sourceSize = sourceSize;
+            this.sourceModified = sourceModified;
+        }
+
+        /** Whether the entry was registered more than {@link #TTL_MS} before {@code now}. */
+        boolean isExpired(long now) {
+            return now - created > TTL_MS;
+        }
+
+        /**
+         * One field per line. A planned video is stored without its plan, which is built again
+         * from the source when it is next opened.
+         */
+        @NonNull
+        @VisibleForTesting
+        String encode() {
+            return source + "\n" + mimeType + "\n" + displayName + "\n"
+                    + (container != null ? container.name() : "") + "\n" + orientation + "\n" + length + "\n"
+                    + created + "\n" + sourceSize + "\n" + sourceModified;
+        }
+
+        /** Parses {@link #encode} output, or returns null if it is not readable. */
+        @Nullable
+        @VisibleForTesting
+        static Entry decode(@NonNull String encoded) {
+            String[] fields = encoded.split("\n", -1);
+            if (fields.length != 9) {
+                return null;
+            }
+            try {
+                return new Entry(Uri.parse(fields[0]), fields[1], fields[2],
+                        fields[3].isEmpty() ? null : ImageContainer.valueOf(fields[3]),
+                        Integer.parseInt(fields[4]), null, Long.parseLong(fields[5]), Long.parseLong(fields[6]),
+                        Long.parseLong(fields[7]), Long.parseLong(fields[8]));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
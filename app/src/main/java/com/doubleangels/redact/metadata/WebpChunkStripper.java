@@ -0,0 +1,133 @@
+package com.doubleangels.redact.metadata;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes metadata from a WebP file at the RIFF chunk level, without decoding any frames.
+ *
+ * <p>{@code EXIF} and {@code XMP } chunks are dropped and the matching flags in the {@code VP8X}
+ * header are cleared. Every other chunk ({@code VP8 }, {@code VP8L}, {@code ALPH}, {@code ICCP},
+ * {@code ANIM}, {@code ANMF}, …) is referenced by offset and copied untouched, so alpha and
+ * animation survive. The RIFF size is recomputed for the shortened file and anything after the
+ * RIFF payload is discarded.
+ */
+public final class WebpChunkStripper {
+
+    private static final int RIFF_HEADER_SIZE = 12;
+    private static final int CHUNK_HEADER_SIZE = 8;
+    private static final int VP8X_PAYLOAD_SIZE = 10;
+
+    private static final int FOURCC_RIFF = fourCc("RIFF");
+    private static final int FOURCC_WEBP = fourCc("WEBP");
+    private static final int FOURCC_VP8X = fourCc("VP8X");
+    private static final int FOURCC_EXIF = fourCc("EXIF");
+    private static final int FOURCC_XMP = fourCc("XMP ");
+
+    /** VP8X feature flags announcing EXIF and XMP chunks. */
+    private static final int VP8X_FLAG_EXIF = 0x08;
+    private static final int VP8X_FLAG_XMP = 0x04;
+
+    private WebpChunkStripper() {
+    }
+
+    /**
+     * Builds the plan for a metadata-free copy of the WebP file in {@code source}.
+     *
+     * @throws IOException if the file is not a WebP or a chunk runs past the end of the file
+     */
+    @NonNull
+    public static SplicePlan plan(@NonNull FileChannel source) throws IOException {
+        long fileSize = source.size();
+        if (fileSize < RIFF_HEADER_SIZE) {
+            throw new IOException("Not a WebP file");
+        }
+        byte[] riffHeader = new byte[RIFF_HEADER_SIZE];
+        SplicePlan.readFully(source, 0, ByteBuffer.wrap(riffHeader));
+        if (readFourCc(riffHeader, 0) != FOURCC_RIFF || readFourCc(riffHeader, 8) != FOURCC_WEBP) {
+            throw new IOException("Not a WebP file");
+        }
+        long riffEnd = Math.min(fileSize, 8 + readUInt32Le(riffHeader, 4));
+
+        SplicePlan plan = new SplicePlan();
+        List<long[]> keptChunks = new ArrayList<>();
+        byte[] vp8x = null;
+        long vp8xOffset = -1;
+        long keptBytes = 0;
+
+        byte[] chunkHeader = new byte[CHUNK_HEADER_SIZE];
+        long offset = RIFF_HEADER_SIZE;
+        while (offset + CHUNK_HEADER_SIZE <= riffEnd) {
+            SplicePlan.readFully(source, offset, ByteBuffer.wrap(chunkHeader));
+            int fourCc = readFourCc(chunkHeader, 0);
+            long payloadSize = readUInt32Le(chunkHeader, 4);
+            if (offset + CHUNK_HEADER_SIZE + payloadSize > fileSize) {
+                throw new IOException("WebP chunk runs past end of file");
+            }
+            // Chunks are padded to even length; tolerate a missing pad byte on the last one.
+            long chunkSize = Math.min(CHUNK_HEADER_SIZE + payloadSize + (payloadSize & 1), fileSize - offset);
+
+            if (fourCc == FOURCC_EXIF || fourCc == FOURCC_XMP) {
+                plan.markRemoved();
+            } else {
+                if (fourCc == FOURCC_VP8X && vp8x == null && payloadSize >= VP8X_PAYLOAD_SIZE) {
+                    vp8x = new byte[CHUNK_HEADER_SIZE + VP8X_PAYLOAD_SIZE];
+                    SplicePlan.readFully(source, offset, ByteBuffer.wrap(vp8x));
+                    vp8x[CHUNK_HEADER_SIZE] &= (byte) ~(VP8X_FLAG_EXIF | VP8X_FLAG_XMP);
+                    vp8xOffset = offset;
+                }
+                keptChunks.add(new long[] {offset, chunkSize});
+                keptBytes += chunkSize;
+            }
+            offset += chunkSize;
+        }
+
+        long riffSize = 4 + keptBytes;
+        if (riffSize > 0xFFFFFFFFL) {
+            throw new IOException("WebP file too large");
+        }
+        byte[] newHeader = riffHeader.clone();
+        writeUInt32Le(newHeader, 4, riffSize);
+        plan.addLiteral(newHeader);
+
+        for (long[] chunk : keptChunks) {
+            if (chunk[0] == vp8xOffset) {
+                plan.addLiteral(vp8x);
+                plan.addSourceRange(chunk[0] + vp8x.length, chunk[1] - vp8x.length);
+            } else {
+                plan.addSourceRange(chunk[0], chunk[1]);
+            }
+        }
+        return plan;
+    }
+
+    private static int fourCc(String name) {
+        return (name.charAt(0) << 24) | (name.charAt(1) << 16) | (name.charAt(2) << 8) | name.charAt(3);
+    }
+
+    private static int readFourCc(byte[] b, int offset) {
+        return ((b[offset] & 0xFF) << 24)
+                | ((b[offset + 1] & 0xFF) << 16)
+                | ((b[offset + 2] & 0xFF) << 8)
+                | (b[offset + 3] & 0xFF);
+    }
+
+    private static long readUInt32Le(byte[] b, int offset) {
+        return (b[offset] & 0xFF)
+                | ((b[offset + 1] & 0xFF) << 8)
+                | ((b[offset + 2] & 0xFF) << 16)
+                | ((long) (b[offset + 3] & 0xFF) << 24);
+    }
+
+    private static void writeUInt32Le(byte[] b, int offset, long value) {
+        b[offset] = (byte) value;
+        b[offset + 1] = (byte) (value >>> 8);
+        b[offset + 2] = (byte) (value >>> 16);
+        b[offset + 3] = (byte) (value >>> 24);
+    }
+}
@@ -1,5 +1,6 @@
 package com.doubleangels.redact.notifications;
 
+import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
@@ -87,18 +88,7 @@ public final class LocalNotifications {
         }
         Context app = context.getApplicationContext();
         NotificationCompat.Builder builder =
-                new NotificationCompat.Builder(app, CHANNEL_ID_TASKS)
-                        .setSmallIcon(R.drawable.ic_notification)
-                        .setContentTitle(app.getString(R.string.notification_convert_progress_title))
-                        .setContentText(message)
-                        .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
-                        .setProgress(100, clampPercent(percent), false)
-                        .setOngoing(true)
-                        .setOnlyAlertOnce(true)
-                        .setSilent(true)
-                        .setPriority(NotificationCompat.PRIORITY_LOW)
-                        .setCategory(NotificationCompat.CATEGORY_PROGRESS)
-                        .setContentIntent(contentIntent(app, MainActivity.class));
+                progressBuilder(app, R.string.notification_convert_progress_title, percent, message);
 
         try {
             NotificationManagerCompat.from(app).notify(NOTIFICATION_ID_CONVERT, builder.build());
@@ -120,18 +110,7 @@ public final class LocalNotifications {
         }
         Context app = context.getApplicationContext();
         NotificationCompat.Builder builder =
-                new NotificationCompat.Builder(app, CHANNEL_ID_TASKS)
-                        .setSmallIcon(R.drawable.ic_notification)
-                        .setContentTitle(app.getString(R.string.notification_clean_progress_title))
-                        .setContentText(message)
-                        .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
-                        .setProgress(100, clampPercent(percent), false)
-                        .setOngoing(true)
-                        .setOnlyAlertOnce(true)
-                        .setSilent(true)
-                        .setPriority(NotificationCompat.PRIORITY_LOW)
-                        .setCategory(NotificationCompat.CATEGORY_PROGRESS)
-                        .setContentIntent(contentIntent(app, MainActivity.class));
+                progressBuilder(app, R.string.notification_clean_progress_title, percent, message);
 
         try {
             NotificationManagerCompat.from(app).notify(NOTIFICATION_ID_CLEAN, builder.build());
@@ -140,6 +119,25 @@ public final class LocalNotifications {
         }
     }
 
+    /**
+     * Notification for {@code startForeground} while journaled clean or convert work runs. It is
+     * posted under the same ID as that work's progress and completion notifications, which then
+     * replace it.
+     */
+    @NonNull
+    public static Notification jobNotification(@NonNull Context context, boolean convert) {
+        Context app = context.getApplicationContext();
+        int title = convert
+                ? R.string.notification_convert_progress_title
+                : R.string.notification_clean_progress_title;
+        return progressBuilder(app, title, 0, "").setProgress(0, 0, true).build();
+    }
+
+    /** ID of the progress and completion notification for convert or clean work. */
+    public static int jobNotificationId(boolean convert) {
+        return convert ? NOTIFICATION_ID_CONVERT : NOTIFICATION_ID_CLEAN;
+    }
+
     /**
      * Shown when a batch conversion finishes (any outcome).
      */
@@ -204,6 +202,23 @@ public final class LocalNotifications {
         }
     }
 
+    @NonNull
+    private static NotificationCompat.Builder progressBuilder(
+            @NonNull Context app, int titleRes, int percent, @NonNull String message) {
+        return new NotificationCompat.Builder(app, CHANNEL_ID_TASKS)
+                .setSmallIcon(R.drawable.ic_notification)
+                .setContentTitle(app.getString(titleRes))
+                .setContentText(message)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
+                .setProgress(100, clampPercent(percent), false)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setSilent(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setCategory(NotificationCompat.CATEGORY_PROGRESS)
+                .setContentIntent(contentIntent(app, MainActivity.class));
+    }
+
     private static boolean shouldThrottleProgress(@NonNull AtomicLong lastNotifyMs) {
         long now = SystemClock.elapsedRealtime();
         long prev = lastNotifyMs.get();
@@ -0,0 +1,121 @@
+package com.doubleangels.redact.jobs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.doubleangels.redact.media.MediaItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class JobJournalTest {
+
+    private JobJournal journal;
+
+    @Before
+    public void setUp() {
+        journal = new JobJournal(ApplicationProvider.getApplicationContext(), null);
+    }
+
+    @After
+    public void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    public void testNextBatchReturnsQueuedItemsInOrder() {
+        MediaItem photo = new MediaItem(Uri.parse("content://media/1"), false, "a.jpg");
+        MediaItem video = new MediaItem(Uri.parse("content://media/2"), true, "b.mp4");
+        long batch = journal.enqueue(JobJournal.KIND_CONVERT, Arrays.asList(photo, video), 2);
+
+        JobJournal.Batch next = journal.nextBatch();
+        assertNotNull(next);
+        assertEquals(batch, next.id);
+        assertEquals(JobJournal.KIND_CONVERT, next.kind);
+        assertEquals(2, next.entries.size());
+        assertEquals(photo.uri(), next.entries.get(0).item.uri());
+        assertFalse(next.entries.get(0).item.isVideo());
+        assertEquals("b.mp4", next.entries.get(1).item.fileName());
+        assertTrue(next.entries.get(1).item.isVideo());
+        assertEquals(2, next.entries.get(1).formatIndex);
+    }
+
+    @Test
+    public void testNextBatchSkipsFinishedItems() {
+        long batch = journal.enqueue(JobJournal.KIND_CLEAN, Arrays.asList(
+                new MediaItem(Uri.parse("content://media/1"), false, "a.jpg"),
+                new MediaItem(Uri.parse("content://media/2"), false, "b.jpg")), 0);
+        JobJournal.Batch first = journal.nextBatch();
+        journal.markDone(first.entries.get(0).id);
+
+        JobJournal.Batch next = journal.nextBatch();
+        assertEquals(1, next.entries.size());
+        assertEquals("b.jpg", next.entries.get(0).item.fileName());
+        assertEquals(1, journal.count(batch, JobJournal.STATE_DONE));
+    }
+
+    @Test
+    public void testRequeueInterruptedRunsInterruptedItemAgain() {
+        journal.enqueue(JobJournal.KIND_CLEAN, Collections.singletonList(
+                new MediaItem(Uri.parse("content://media/1"), false, "a.jpg")), 0);
+        journal.markRunning(journal.nextBatch().entries.get(0).id);
+        assertNull(journal.nextBatch());
+        assertTrue(journal.hasUnfinished());
+
+        assertEquals(1, journal.requeueInterrupted(Collections.emptySet()));
+        assertNotNull(journal.nextBatch());
+    }
+
+    @Test
+    public void testRequeueInterruptedLeavesLiveItemsRunning() {
+        journal.enqueue(JobJournal.KIND_CLEAN, Arrays.asList(
+                new MediaItem(Uri.parse("content://media/1"), false, "a.jpg"),
+                new MediaItem(Uri.parse("content://media/2"), false, "b.jpg")), 0);
+        JobJournal.Batch batch = journal.nextBatch();
+        long live = batch.entries.get(0).id;
+        journal.markRunning(live);
+        journal.markRunning(batch.entries.get(1).id);
+
+        assertEquals(1, journal.requeueInterrupted(Collections.singleton(live)));
+        JobJournal.Batch next = journal.nextBatch();
+        assertEquals(1, next.entries.size());
+        assertEquals("b.jpg", next.entries.get(0).item.fileName());
+    }
+
+    @Test
+    public void testDeleteForgetsFinishedBatch() {
+        long batch = journal.enqueue(JobJournal.KIND_CLEAN, Collections.singletonList(
+                new MediaItem(Uri.parse("content://media/1"), false, "a.jpg")), 0);
+        journal.markFailed(journal.nextBatch().entries.get(0).id);
+        assertFalse(journal.hasUnfinished());
+        assertEquals(1, journal.count(batch, JobJournal.STATE_FAILED));
+
+        journal.delete(batch);
+        assertEquals(0, journal.count(batch, JobJournal.STATE_FAILED));
+    }
+
+    @Test
+    public void testEnqueueNumbersBatchesInOrder() {
+        long first = journal.enqueue(JobJournal.KIND_CLEAN, Collections.singletonList(
+                new MediaItem(Uri.parse("content://media/1"), false, "a.jpg")), 0);
+        long second = journal.enqueue(JobJournal.KIND_CONVERT, Collections.singletonList(
+                new MediaItem(Uri.parse("content://media/2"), false, "b.jpg")), 1);
+
+        assertTrue(second > first);
+        assertEquals(first, journal.nextBatch().id);
+    }
+}
@@ -0,0 +1,28 @@
+package com.doubleangels.redact.media;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class EncoderBudgetTest {
+
+    @Test
+    public void testSegmentsOnlyTakeFreeSessions() throws InterruptedException {
+        EncoderBudget budget = new EncoderBudget(4);
+
+        // Two videos of a batch each hold one session for their export
+        budget.acquire();
+        budget.acquire();
+        // A segmented export wanting four segments gets the two left
+        assertEquals(2, budget.tryAcquireUpTo(3));
+        assertEquals(0, budget.tryAcquireUpTo(3));
+
+        budget.release(3);
+        assertEquals(3, budget.tryAcquireUpTo(4));
+    }
+
+    @Test
+    public void testBudgetHasAtLeastOneSession() {
+        assertEquals(1, new EncoderBudget(0).sessions());
+    }
+}
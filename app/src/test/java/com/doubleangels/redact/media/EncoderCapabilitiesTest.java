@@ -0,0 +1,84 @@
+package com.doubleangels.redact.media;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class EncoderCapabilitiesTest {
+
+    private static final EncoderCapabilities DEVICE = new EncoderCapabilities(Arrays.asList(
+            new EncoderCapabilities.Encoder("video/avc", true, 4096, 2176, 120, 8,
+                    rates(120, 120, 60, 30, 30), rates(120, 120, 60, 30, 30)),
+            new EncoderCapabilities.Encoder("video/avc", false, 2048, 2048, 60, 32,
+                    rates(60, 30, 15, 15, 15), rates(60, 30, 15, 15, 15)),
+            new EncoderCapabilities.Encoder("video/hevc", true, 1920, 1088, 60, 4,
+                    rates(60, 60, 60, 60, 60), rates(60, 60, 60, 60, 60))));
+
+    @Test
+    public void testSizeIsCheckedInEitherOrientation() {
+        assertTrue(DEVICE.canEncode("video/avc", 3840, 2160, 30));
+        assertTrue(DEVICE.canEncode("video/hevc", 1080, 1920, 30));
+        assertFalse(DEVICE.canEncode("video/hevc", 3840, 2160, 30));
+        assertFalse(DEVICE.canEncode("video/av01", 1280, 720, 30));
+        // Unknown source size only needs an encoder
+        assertTrue(DEVICE.canEncode("video/hevc", 0, 0, 30));
+    }
+
+    @Test
+    public void testFrameRateLimitApplies() {
+        assertFalse(DEVICE.canEncode("video/hevc", 1280, 720, 120));
+        assertTrue(DEVICE.canEncode("video/avc", 1280, 720, 120));
+    }
+
+    @Test
+    public void testFrameRateDependsOnSize() {
+        // 4K tops out at 30 fps even though the encoder reaches 120 fps on smaller frames
+        assertFalse(DEVICE.canEncode("video/avc", 3840, 2160, 60));
+        assertTrue(DEVICE.canEncode("video/avc", 2560, 1440, 60));
+        assertTrue(DEVICE.canEncode("video/avc", 1440, 2560, 60));
+        // Between reference sizes the next larger one decides
+        assertFalse(DEVICE.canEncode("video/avc", 2880, 1620, 60));
+    }
+
+    @Test
+    public void testInstancesCountHardwareOnly() {
+        assertEquals(8, DEVICE.hardwareInstances("video/avc"));
+        assertEquals(4, DEVICE.hardwareInstances("video/hevc"));
+        assertEquals(1, DEVICE.hardwareInstances("video/av01"));
+    }
+
+    @Test
+    public void testStoredTableRoundTrips() {
+        EncoderCapabilities decoded = EncoderCapabilities.decode(DEVICE.encode());
+
+        assertEquals(3, decoded.encoders().size());
+        EncoderCapabilities.Encoder software = decoded.encoders().get(1);
+        assertEquals("video/avc", software.mimeType);
+        assertFalse(software.hardware);
+        assertEquals(2048, software.maxWidth);
+        assertEquals(60, software.maxFrameRate);
+        assertEquals(32, software.maxInstances);
+        assertEquals(30, software.frameRateFor(1920, 1080));
+        assertEquals(15, software.frameRateFor(2048, 1536));
+        assertEquals(0, EncoderCapabilities.decode("").encoders().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedTableIsRejected() {
+        EncoderCapabilities.decode("video/avc,1,4096\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTableWithoutFrameRatesIsRejected() {
+        // Tables stored before per-size rates were recorded are enumerated again
+        EncoderCapabilities.decode("video/avc,1,4096,2176,120,8\n");
+    }
+
+    private static int[] rates(int... rates) {
+        return rates;
+    }
+}
@@ -0,0 +1,77 @@
+package com.doubleangels.redact.media;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class MediaProbeTest {
+
+    @After
+    public void tearDown() {
+        MediaProbe.clearCache();
+    }
+
+    @Test
+    public void testTracksAreSplitByType() {
+        MediaProbe probe = new MediaProbe("video/mp4",
+                Arrays.asList("audio/mp4a-latm", "video/hevc", "video/avc"), 1920, 1080, 8, 90, 5_000_000L, 1_000_000L, -1);
+
+        assertEquals("video/hevc", probe.videoMime());
+        assertEquals("audio/mp4a-latm", probe.audioMime());
+        assertTrue(probe.hasVideo());
+        assertTrue(probe.hasAudio());
+        assertEquals(3, probe.trackMimes().size());
+    }
+
+    @Test
+    public void testVideoOnlySourceHasNoAudio() {
+        MediaProbe probe = new MediaProbe(null, Collections.singletonList("video/avc"), 0, 0, -1, 0, -1, -1, -1);
+
+        assertFalse(probe.hasAudio());
+        assertNull(probe.audioMime());
+    }
+
+    @Test
+    public void testCacheMissesWhenSourceChanges() {
+        MediaProbe probe = new MediaProbe(null, Collections.singletonList("video/avc"), 0, 0, -1, 0, -1, -1, -1);
+        MediaProbe.remember(new MediaProbe.Key("content://media/1", 100, 2000), probe);
+
+        assertSame(probe, MediaProbe.cached(new MediaProbe.Key("content://media/1", 100, 2000)));
+        assertNull(MediaProbe.cached(new MediaProbe.Key("content://media/1", 101, 2000)));
+        assertNull(MediaProbe.cached(new MediaProbe.Key("content://media/1", 100, 3000)));
+        assertNull(MediaProbe.cached(new MediaProbe.Key("content://media/2", 100, 2000)));
+    }
+
+    @Test
+    public void testCacheEvictsLeastRecentlyUsed() {
+        MediaProbe probe = new MediaProbe(null, Collections.singletonList("video/avc"), 0, 0, -1, 0, -1, -1, -1);
+        MediaProbe.Key first = new MediaProbe.Key("content://media/0", 1, 1);
+        MediaProbe.remember(first, probe);
+        for (int i = 1; i <= 40; i++) {
+            MediaProbe.remember(new MediaProbe.Key("content://media/" + i, 1, 1), probe);
+            // Keep the first entry in use
+            MediaProbe.cached(first);
+        }
+
+        assertSame(probe, MediaProbe.cached(first));
+        assertNull(MediaProbe.cached(new MediaProbe.Key("content://media/1", 1, 1)));
+        assertSame(probe, MediaProbe.cached(new MediaProbe.Key("content://media/40", 1, 1)));
+    }
+
+    @Test
+    public void testBitratePrefersTrackBitrates() {
+        assertEquals(4_000_000L, MediaProbe.bitrate(4_000_000L, 10_000_000L, 10_000_000L));
+        // 10 MB over 10 s
+        assertEquals(8_000_000L, MediaProbe.bitrate(-1, 10_000_000L, 10_000_000L));
+        assertEquals(-1, MediaProbe.bitrate(-1, -1, 10_000_000L));
+        assertEquals(-1, MediaProbe.bitrate(0, 10_000_000L, 0));
+    }
+}
@@ -1,6 +1,7 @@
 package com.doubleangels.redact.media;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 import android.app.Activity;
@@ -118,4 +119,52 @@ public class MediaProcessorTest {
         // yielding exactly 0 successful files, proving the orchestration looping is completely stable!
         assertEquals(0, finalCount[0]);
     }
+
+    @Test
+    public void testProcessMediaItemsCompletesOnceForMixedBatch() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        List<MediaItem> items = new ArrayList<>();
+        items.add(new MediaItem(mock(Uri.class), false, "a.jpg"));
+        items.add(new MediaItem(mock(Uri.class), true, "b.mp4"));
+        items.add(new MediaItem(mock(Uri.class), false, "c.png"));
+
+        java.util.concurrent.atomic.AtomicInteger completions = new java.util.concurrent.atomic.AtomicInteger();
+        CountDownLatch itemsFinished = new CountDownLatch(items.size());
+        final long[] unfinishedAtCompletion = new long[] {-1};
+
+        org.mockito.Mockito.doAnswer(invocation -> {
+            Runnable runnable = invocation.getArgument(0);
+            runnable.run();
+            return null;
+        }).when(mockActivity).runOnUiThread(org.mockito.ArgumentMatchers.any(Runnable.class));
+
+        org.mockito.Mockito.when(mockActivity.getString(org.mockito.ArgumentMatchers.anyInt(),
+                org.mockito.ArgumentMatchers.any(), org.mockito.ArgumentMatchers.any(),
+                org.mockito.ArgumentMatchers.any())).thenReturn("Processing dummy");
+
+        mediaProcessor.processMediaItems(items, new MediaProcessor.ProcessingCallback() {
+            @Override
+            public void onProgress(int overallPercent, String message) {
+            }
+
+            @Override
+            public void onItemFinished(int itemIndex, Uri outputUri) {
+                itemsFinished.countDown();
+            }
+
+            @Override
+            public void onComplete(int processedCount) {
+                unfinishedAtCompletion[0] = itemsFinished.getCount();
+                completions.incrementAndGet();
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        // Items run on separate image and video pools, but the batch completes exactly once, after
+        // every item has finished, so no worker is left that could report a second completion
+        assertEquals(0, unfinishedAtCompletion[0]);
+        assertEquals(1, completions.get());
+    }
 }
@@ -0,0 +1,78 @@
+package com.doubleangels.redact.media;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.media3.common.C;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SegmentedTranscodeTest {
+
+    private static final long MINUTE_US = 60_000_000L;
+
+    @Test
+    public void testSegmentCountFollowsEncoderInstances() {
+        assertEquals(2, SegmentedTranscode.segmentCount(10 * MINUTE_US, 2));
+        assertEquals(3, SegmentedTranscode.segmentCount(10 * MINUTE_US, 3));
+        // Capped however many instances the encoder claims
+        assertEquals(4, SegmentedTranscode.segmentCount(10 * MINUTE_US, 16));
+        // No segment shorter than a minute
+        assertEquals(3, SegmentedTranscode.segmentCount(3 * MINUTE_US, 4));
+    }
+
+    @Test
+    public void testShortOrSingleEncoderClipsAreNotSplit() {
+        assertEquals(0, SegmentedTranscode.segmentCount(10 * MINUTE_US, 1));
+        assertEquals(0, SegmentedTranscode.segmentCount(90_000_000L, 4));
+        assertEquals(0, SegmentedTranscode.segmentCount(-1, 4));
+    }
+
+    @Test
+    public void testSegmentsStartAtKeyframes() {
+        List<SegmentedTranscode.Segment> segments =
+                SegmentedTranscode.segmentsAt(10 * MINUTE_US, new long[] {299_500_000L});
+
+        assertEquals(2, segments.size());
+        assertEquals(0, segments.get(0).startUs);
+        assertEquals(299_500_000L, segments.get(0).endUs);
+        assertEquals(299_500_000L, segments.get(1).startUs);
+        assertEquals(C.TIME_END_OF_SOURCE, segments.get(1).endUs);
+        assertEquals(10 * MINUTE_US - 299_500_000L, segments.get(1).lengthUs(10 * MINUTE_US));
+    }
+
+    @Test
+    public void testSparseKeyframesCollapseSegments() {
+        // Seeks that all landed on the first keyframe, or on none
+        List<SegmentedTranscode.Segment> segments =
+                SegmentedTranscode.segmentsAt(10 * MINUTE_US, new long[] {0, 0, -1});
+
+        assertEquals(1, segments.size());
+
+        // A keyframe right at the end would leave a sliver
+        segments = SegmentedTranscode.segmentsAt(
+                10 * MINUTE_US, new long[] {5 * MINUTE_US, 10 * MINUTE_US - 1_000_000L});
+
+        assertEquals(2, segments.size());
+        assertEquals(5 * MINUTE_US, segments.get(1).startUs);
+    }
+
+    @Test
+    public void testProgressIsWeightedBySegmentLength() {
+        List<SegmentedTranscode.Segment> segments =
+                SegmentedTranscode.segmentsAt(4 * MINUTE_US, new long[] {MINUTE_US});
+        List<Integer> reported = new ArrayList<>();
+        SegmentedTranscode.SegmentProgress progress =
+                new SegmentedTranscode.SegmentProgress(4 * MINUTE_US, segments, reported::add);
+
+        progress.update(0, 100);
+        progress.update(1, 0);
+        progress.update(1, 50);
+        progress.update(1, 100);
+
+        // The first quarter, then each half of the rest; the repeated 25 is not passed on
+        assertEquals(List.of(25, 62, 100), reported);
+    }
+}
@@ -0,0 +1,46 @@
+package com.doubleangels.redact.media;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+@RunWith(RobolectricTestRunner.class)
+public class SourceVersionTest {
+
+    @Test
+    public void testFileVersionIsItsSizeAndModificationTime() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        File file = File.createTempFile("version", ".mp4");
+        try {
+            Files.write(file.toPath(), new byte[123]);
+            file.setLastModified(1_700_000_000_000L);
+
+            SourceVersion version = SourceVersion.of(context.getContentResolver(), Uri.fromFile(file));
+            assertNotNull(version);
+            assertEquals(123, version.size);
+            assertEquals(1_700_000_000_000L, version.modified);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testMissingFileHasNoVersion() {
+        Context context = ApplicationProvider.getApplicationContext();
+        assertNull(SourceVersion.of(context.getContentResolver(),
+                Uri.fromFile(new File("/nonexistent/version.mp4"))));
+    }
+}
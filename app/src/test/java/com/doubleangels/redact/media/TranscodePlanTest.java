@@ -0,0 +1,75 @@
+package com.doubleangels.redact.media;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TranscodePlanTest {
+
+    private static final String AVC = "video/avc";
+    private static final String HEVC = "video/hevc";
+    private static final String AAC = "audio/mp4a-latm";
+    private static final String OPUS = "audio/opus";
+    private static final int AVC_HIGH = 8;
+    private static final int AVC_HIGH_10 = 16;
+
+    @Test
+    public void testMatchingPhoneVideoIsCopied() {
+        MediaProbe source = probe(AVC_HIGH, AVC, AAC);
+
+        TranscodePlan plan = TranscodePlan.forTarget(source, AVC, AAC);
+
+        assertTrue(plan.transmuxVideo);
+        assertTrue(plan.transmuxAudio);
+        assertTrue(plan.isPassthrough());
+    }
+
+    @Test
+    public void testOnlyTheMismatchedStreamIsReencoded() {
+        TranscodePlan plan = TranscodePlan.forTarget(probe(-1, HEVC, OPUS), HEVC, AAC);
+
+        assertTrue(plan.transmuxVideo);
+        assertFalse(plan.transmuxAudio);
+        assertFalse(plan.isPassthrough());
+
+        plan = TranscodePlan.forTarget(probe(-1, HEVC, AAC), AVC, AAC);
+
+        assertFalse(plan.transmuxVideo);
+        assertTrue(plan.transmuxAudio);
+    }
+
+    @Test
+    public void testHighBitDepthAvcIsReencoded() {
+        TranscodePlan plan = TranscodePlan.forTarget(probe(AVC_HIGH_10, AVC, AAC), AVC, AAC);
+
+        assertFalse(plan.transmuxVideo);
+    }
+
+    @Test
+    public void testSilentVideoDropsAudio() {
+        MediaProbe source = new MediaProbe(null, Collections.singletonList(AVC), 1280, 720, AVC_HIGH, 0, -1, -1, -1);
+
+        TranscodePlan plan = TranscodePlan.forTarget(source, AVC, AAC);
+
+        assertTrue(plan.removeAudio);
+        assertFalse(plan.transmuxAudio);
+        assertTrue(plan.isPassthrough());
+    }
+
+    @Test
+    public void testUnknownSourceIsFullyReencoded() {
+        TranscodePlan plan = TranscodePlan.forTarget(null, AVC, AAC);
+
+        assertFalse(plan.transmuxVideo);
+        assertFalse(plan.transmuxAudio);
+        assertFalse(plan.removeAudio);
+    }
+
+    private static MediaProbe probe(int profile, String videoMime, String audioMime) {
+        return new MediaProbe("video/mp4", Arrays.asList(videoMime, audioMime), 1920, 1080, profile, 0, -1, -1, -1);
+    }
+}
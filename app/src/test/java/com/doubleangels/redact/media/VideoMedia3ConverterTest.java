@@ -1,11 +1,15 @@
 package com.doubleangels.redact.media;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 @RunWith(RobolectricTestRunner.class)
 public class VideoMedia3ConverterTest {
 
@@ -33,4 +37,26 @@ public class VideoMedia3ConverterTest {
         assertEquals("video/x-vnd.on2.vp9", VideoMedia3Converter.videoMimeTypeForFormatIndex(2));
         assertEquals("video/av01", VideoMedia3Converter.videoMimeTypeForFormatIndex(3));
     }
+
+    @Test
+    public void testFallbackSkipsFormatsTheDeviceCannotEncode() {
+        EncoderCapabilities encoders = new EncoderCapabilities(Arrays.asList(
+                new EncoderCapabilities.Encoder("video/avc", true, 4096, 2160, 60, 4,
+                        new int[] {60, 60, 60, 30, 30}, new int[] {60, 60, 60, 30, 30}),
+                new EncoderCapabilities.Encoder("video/hevc", true, 1920, 1088, 60, 4,
+                        new int[] {60, 60, 60, 60, 60}, new int[] {60, 60, 60, 60, 60})));
+        MediaProbe uhd = new MediaProbe("video/mp4", Arrays.asList("video/avc", "audio/mp4a-latm"),
+                3840, 2160, -1, 0, -1, -1, -1);
+
+        // No AV1 encoder, and HEVC tops out below the source size
+        assertArrayEquals(new int[] {0}, VideoMedia3Converter.usableFormats(new int[] {3, 1, 0}, encoders, uhd));
+        assertArrayEquals(new int[] {1, 0}, VideoMedia3Converter.usableFormats(new int[] {1, 0}, encoders, null));
+    }
+
+    @Test
+    public void testFallbackIsKeptWhenNothingFits() {
+        EncoderCapabilities none = new EncoderCapabilities(Collections.emptyList());
+
+        assertArrayEquals(new int[] {3, 1, 0}, VideoMedia3Converter.usableFormats(new int[] {3, 1, 0}, none, null));
+    }
 }
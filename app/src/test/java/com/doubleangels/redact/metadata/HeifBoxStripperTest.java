@@ -0,0 +1,139 @@
+package com.doubleangels.redact.metadata;
+
+import static com.doubleangels.redact.metadata.SplicePlanTestSupport.ascii;
+import static com.doubleangels.redact.metadata.SplicePlanTestSupport.box;
+import static com.doubleangels.redact.metadata.SplicePlanTestSupport.concat;
+import static com.doubleangels.redact.metadata.SplicePlanTestSupport.write;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class HeifBoxStripperTest {
+
+    private static final byte[] IMAGE_DATA = ascii("coded-hevc-image-data");
+    private static final byte[] EXIF_DATA = ascii("\0\0\0\0MM\0*gps-secret");
+    private static final byte[] XMP_DATA = ascii("<x:xmpmeta>secret</x:xmpmeta>");
+
+    @Test
+    public void testDropsExifAndXmpItemsAndRelocatesImage() throws IOException {
+        byte[] result = strip(heif(true));
+        String text = new String(result, StandardCharsets.ISO_8859_1);
+
+        assertFalse(text.contains("secret"));
+        assertFalse(text.contains("Exif"));
+        assertFalse(text.contains("rdf+xml"));
+        assertFalse(text.contains("cdsc"));
+        assertTrue(text.contains("hvc1"));
+
+        // The single remaining iloc entry must point at the image bytes in the new file.
+        int iloc = text.indexOf("iloc") - 4;
+        assertEquals(1, IsoBmff.readUInt(result, iloc + 14, 2));
+        assertEquals(1, IsoBmff.readUInt(result, iloc + 16, 2));
+        long offset = IsoBmff.readUInt(result, iloc + 24, 4);
+        long length = IsoBmff.readUInt(result, iloc + 28, 4);
+        assertEquals(IMAGE_DATA.length, length);
+        byte[] image = new byte[IMAGE_DATA.length];
+        System.arraycopy(result, (int) offset, image, 0, image.length);
+        assertArrayEquals(IMAGE_DATA, image);
+
+        // A second pass finds nothing left to remove.
+        assertArrayEquals(result, strip(result));
+    }
+
+    @Test
+    public void testFileWithoutMetadataItemsIsCopiedUnchanged() throws IOException {
+        byte[] original = heif(false);
+        assertArrayEquals(original, strip(original));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsFileWithoutMeta() throws IOException {
+        strip(box("ftyp", ascii("heic\0\0\0\0mif1heic")));
+    }
+
+    private static byte[] strip(byte[] input) throws IOException {
+        return SplicePlanTestSupport.run(HeifBoxStripper::plan, input);
+    }
+
+    /** Builds ftyp + meta + mdat with an image item and optionally Exif and XMP items. */
+    private static byte[] heif(boolean withMetadata) throws IOException {
+        byte[] ftyp = box("ftyp", ascii("heic\0\0\0\0mif1heic"));
+        // iloc offsets depend on the meta size, which does not depend on their values.
+        byte[] meta = meta(withMetadata, 0);
+        long mdatPayload = ftyp.length + meta.length + 8;
+        meta = meta(withMetadata, mdatPayload);
+
+        ByteArrayOutputStream mdat = new ByteArrayOutputStream();
+        write(mdat, IMAGE_DATA);
+        if (withMetadata) {
+            write(mdat, EXIF_DATA);
+            write(mdat, XMP_DATA);
+        }
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        write(file, ftyp);
+        write(file, meta);
+        write(file, box("mdat", mdat.toByteArray()));
+        return file.toByteArray();
+    }
+
+    private static byte[] meta(boolean withMetadata, long mdatPayload) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        write(payload, new byte[4]);
+        write(payload, box("hdlr", ascii("\0\0\0\0\0\0\0\0pict\0\0\0\0\0\0\0\0\0\0\0\0\0")));
+        write(payload, box("pitm", ascii("\0\0\0\0\0\1")));
+
+        ByteArrayOutputStream iloc = new ByteArrayOutputStream();
+        write(iloc, new byte[] {1, 0, 0, 0, 0x44, 0x00});
+        int items = withMetadata ? 3 : 1;
+        IsoBmff.writeUInt(iloc, items, 2);
+        long offset = mdatPayload;
+        offset = ilocEntry(iloc, 1, offset, IMAGE_DATA.length);
+        if (withMetadata) {
+            offset = ilocEntry(iloc, 2, offset, EXIF_DATA.length);
+            ilocEntry(iloc, 3, offset, XMP_DATA.length);
+        }
+        write(payload, box("iloc", iloc.toByteArray()));
+
+        ByteArrayOutputStream iinf = new ByteArrayOutputStream();
+        write(iinf, new byte[4]);
+        IsoBmff.writeUInt(iinf, items, 2);
+        write(iinf, box("infe", ascii("\2\0\0\0\0\1\0\0hvc1\0")));
+        if (withMetadata) {
+            write(iinf, box("infe", ascii("\2\0\0\0\0\2\0\0Exif\0")));
+            write(iinf, box("infe", ascii("\2\0\0\0\0\3\0\0mime\0application/rdf+xml\0")));
+        }
+        write(payload, box("iinf", iinf.toByteArray()));
+
+        if (withMetadata) {
+            write(payload, box("iref", concat(new byte[4], box("cdsc", ascii("\0\2\0\1\0\1")))));
+        }
+
+        ByteArrayOutputStream ipma = new ByteArrayOutputStream();
+        write(ipma, new byte[4]);
+        IsoBmff.writeUInt(ipma, withMetadata ? 2 : 1, 4);
+        write(ipma, ascii("\0\1\1\u0081"));
+        if (withMetadata) {
+            write(ipma, ascii("\0\2\1\1"));
+        }
+        byte[] ipco = box("ipco", box("ispe", ascii("\0\0\0\0\0\0\0\u0010\0\0\0\u0010")));
+        write(payload, box("iprp", concat(ipco, box("ipma", ipma.toByteArray()))));
+        return box("meta", payload.toByteArray());
+    }
+
+    private static long ilocEntry(ByteArrayOutputStream out, int id, long offset, int length) {
+        IsoBmff.writeUInt(out, id, 2);
+        IsoBmff.writeUInt(out, 0, 2);
+        IsoBmff.writeUInt(out, 0, 2);
+        IsoBmff.writeUInt(out, 1, 2);
+        IsoBmff.writeUInt(out, offset, 4);
+        IsoBmff.writeUInt(out, length, 4);
+        return offset + length;
+    }
+}
@@ -0,0 +1,134 @@
+package com.doubleangels.redact.metadata;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class JpegSegmentStripperTest {
+
+    private static final byte[] SCAN_DATA = {
+            0x12, (byte) 0xFF, 0x00, 0x34, (byte) 0xFF, (byte) 0xD0, 0x56, (byte) 0xFF, 0x00
+    };
+
+    @Test
+    public void testDropsMetadataSegmentsAndKeepsImageData() throws IOException {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        in.write(new byte[] {(byte) 0xFF, (byte) 0xD8});
+        writeSegment(in, 0xE0, "JFIF\0rest");
+        writeSegment(in, 0xE1, "Exif\0\0gps-and-camera");
+        writeSegment(in, 0xE1, "http://ns.adobe.com/xap/1.0/\0<x:xmpmeta/>");
+        writeSegment(in, 0xE2, "ICC_PROFILE\0profile");
+        writeSegment(in, 0xED, "Photoshop 3.0\0iptc");
+        writeSegment(in, 0xFE, "a comment");
+        writeSegment(in, 0xDB, "quant");
+        writeSegment(in, 0xC0, "frame");
+        writeSegment(in, 0xC4, "huff");
+        writeSegment(in, 0xDA, "scan");
+        in.write(SCAN_DATA);
+        in.write(new byte[] {(byte) 0xFF, (byte) 0xD9});
+        in.write("appended motion photo".getBytes(StandardCharsets.US_ASCII));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int removed = JpegSegmentStripper.strip(new ByteArrayInputStream(in.toByteArray()), out, 0);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(new byte[] {(byte) 0xFF, (byte) 0xD8});
+        writeSegment(expected, 0xE0, "JFIF\0rest");
+        writeSegment(expected, 0xE2, "ICC_PROFILE\0profile");
+        writeSegment(expected, 0xDB, "quant");
+        writeSegment(expected, 0xC0, "frame");
+        writeSegment(expected, 0xC4, "huff");
+        writeSegment(expected, 0xDA, "scan");
+        expected.write(SCAN_DATA);
+        expected.write(new byte[] {(byte) 0xFF, (byte) 0xD9});
+
+        assertEquals(4, removed);
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+
+    @Test
+    public void testWritesOrientationOnlyExifAfterSoi() throws IOException {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        in.write(new byte[] {(byte) 0xFF, (byte) 0xD8});
+        writeSegment(in, 0xE1, "Exif\0\0original");
+        writeSegment(in, 0xDA, "scan");
+        in.write(SCAN_DATA);
+        in.write(new byte[] {(byte) 0xFF, (byte) 0xD9});
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JpegSegmentStripper.strip(new ByteArrayInputStream(in.toByteArray()), out, 6);
+
+        byte[] result = out.toByteArray();
+        byte[] app1 = JpegSegmentStripper.orientationSegment(6);
+        byte[] head = new byte[app1.length];
+        System.arraycopy(result, 2, head, 0, app1.length);
+        assertArrayEquals(app1, head);
+        assertEquals(2 + 34, app1.length);
+        assertEquals(6, app1[app1.length - 7]);
+    }
+
+    @Test
+    public void testWritesOrientationAfterJfifHeader() throws IOException {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        in.write(new byte[] {(byte) 0xFF, (byte) 0xD8});
+        writeSegment(in, 0xE0, "JFIF\0rest");
+        writeSegment(in, 0xE1, "Exif\0\0original");
+        writeSegment(in, 0xDB, "quant");
+        writeSegment(in, 0xDA, "scan");
+        in.write(SCAN_DATA);
+        in.write(new byte[] {(byte) 0xFF, (byte) 0xD9});
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JpegSegmentStripper.strip(new ByteArrayInputStream(in.toByteArray()), out, 6);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(new byte[] {(byte) 0xFF, (byte) 0xD8});
+        writeSegment(expected, 0xE0, "JFIF\0rest");
+        expected.write(JpegSegmentStripper.orientationSegment(6));
+        writeSegment(expected, 0xDB, "quant");
+        writeSegment(expected, 0xDA, "scan");
+        expected.write(SCAN_DATA);
+        expected.write(new byte[] {(byte) 0xFF, (byte) 0xD9});
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+
+    @Test
+    public void testTruncatedScanIsTerminated() throws IOException {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        in.write(new byte[] {(byte) 0xFF, (byte) 0xD8});
+        writeSegment(in, 0xDA, "scan");
+        in.write(new byte[] {0x01, 0x02, (byte) 0xFF});
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JpegSegmentStripper.strip(new ByteArrayInputStream(in.toByteArray()), out, 0);
+
+        byte[] result = out.toByteArray();
+        assertEquals((byte) 0xFF, result[result.length - 2]);
+        assertEquals((byte) 0xD9, result[result.length - 1]);
+        assertEquals(0x02, result[result.length - 3]);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsNonJpeg() throws IOException {
+        JpegSegmentStripper.strip(
+                new ByteArrayInputStream(new byte[] {(byte) 0x89, 'P', 'N', 'G'}),
+                new ByteArrayOutputStream(),
+                0);
+    }
+
+    private static void writeSegment(ByteArrayOutputStream out, int marker, String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.ISO_8859_1);
+        int length = bytes.length + 2;
+        out.write(0xFF);
+        out.write(marker);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.write(bytes, 0, bytes.length);
+    }
+}
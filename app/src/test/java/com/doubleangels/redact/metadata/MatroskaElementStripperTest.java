@@ -0,0 +1,181 @@
+package com.doubleangels.redact.metadata;
+
+import static com.doubleangels.redact.metadata.SplicePlanTestSupport.ascii;
+import static com.doubleangels.redact.metadata.SplicePlanTestSupport.concat;
+import static com.doubleangels.redact.metadata.SplicePlanTestSupport.write;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class MatroskaElementStripperTest {
+
+    private static final int SEGMENT = 0x18538067;
+    private static final int SEEK_HEAD = 0x114D9B74;
+    private static final int INFO = 0x1549A966;
+    private static final int TRACKS = 0x1654AE6B;
+    private static final int CLUSTER = 0x1F43B675;
+    private static final int CUES = 0x1C53BB6B;
+    private static final int TAGS = 0x1254C367;
+
+    @Test
+    public void testDropsMetadataAndRewritesPositions() throws IOException {
+        byte[] original = webm();
+        byte[] result = strip(original);
+        String text = new String(result, StandardCharsets.ISO_8859_1);
+
+        assertFalse(text.contains("secret"));
+        assertFalse(text.contains("Lavf"));
+        assertTrue(text.contains("frame-data"));
+        assertTrue(result.length < original.length);
+
+        int segmentData = text.indexOf("\u0018S\u0080g") + 12;
+        assertEquals(result.length - segmentData, readUInt(result, segmentData - 8, 8) & 0x00FFFFFFFFFFFFFFL);
+
+        // SeekHead: Info, Tracks and Cues remain and point at their elements; Tags is gone.
+        assertEquals(INFO, readUInt(result, segmentData + seekPosition(result, INFO), 4));
+        assertEquals(TRACKS, readUInt(result, segmentData + seekPosition(result, TRACKS), 4));
+        assertEquals(CUES, readUInt(result, segmentData + seekPosition(result, CUES), 4));
+        assertEquals(-1, seekPosition(result, TAGS));
+
+        // Cue and cluster Position both point at the cluster.
+        int cluster = text.indexOf("\u001FC¶u") - segmentData;
+        assertEquals(cluster, readUInt(result, text.indexOf("ñ\u0082") + 2, 2));
+        assertEquals(cluster, readUInt(result, text.indexOf("§\u0082") + 2, 2));
+
+        // A second pass leaves the file unchanged.
+        assertArrayEquals(result, strip(result));
+    }
+
+    @Test
+    public void testReadsDocType() throws IOException {
+        assertEquals("webm", SplicePlanTestSupport.read(webm(), MatroskaElementStripper::docType));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsNonMatroska() throws IOException {
+        strip(ascii("\0\0\0\u0018ftypisom\0\0\0\0isomiso2"));
+    }
+
+    private static byte[] strip(byte[] input) throws IOException {
+        return SplicePlanTestSupport.run(MatroskaElementStripper::plan, input);
+    }
+
+    /**
+     * Builds EBML header + Segment { SeekHead, Void, Info, Tags, Tracks, Cluster, Cues } with
+     * positions that match the layout.
+     */
+    private static byte[] webm() throws IOException {
+        byte[] ebml = element(0x1A45DFA3, concat(
+                element(0x4286, new byte[] {1}),
+                element(0x4282, ascii("webm"))));
+
+        byte[] voidElement = element(0xEC, new byte[20]);
+        byte[] info = element(INFO, concat(
+                element(0xBF, new byte[4]),
+                element(0x2AD7B1, new byte[] {0x0F, 0x42, 0x40}),
+                element(0x4D80, ascii("Lavf60")),
+                element(0x5741, ascii("Lavf60")),
+                element(0x7BA9, ascii("secret title")),
+                element(0x4461, new byte[8])));
+        byte[] tags = element(TAGS, element(0x7373, element(0x67C8, concat(
+                element(0x45A3, ascii("LOCATION")),
+                element(0x4487, ascii("secret place"))))));
+        byte[] tracks = element(TRACKS, element(0xAE, element(0xD7, new byte[] {1})));
+
+        // Positions are two bytes wide, so element sizes do not depend on their values.
+        int seekHeadSize = seekHead(0, 0, 0, 0).length;
+        int infoPos = seekHeadSize + voidElement.length;
+        int tagsPos = infoPos + info.length;
+        int tracksPos = tagsPos + tags.length;
+        int clusterPos = tracksPos + tracks.length;
+        byte[] cluster = element(CLUSTER, concat(
+                element(0xE7, new byte[] {0}),
+                element(0xA7, u16(clusterPos)),
+                element(0xA3, ascii("\u0081\0\0\u0080frame-data"))));
+        int cuesPos = clusterPos + cluster.length;
+        byte[] cues = element(CUES, element(0xBB, concat(
+                element(0xB3, new byte[] {0}),
+                element(0xB7, concat(element(0xF7, new byte[] {1}), element(0xF1, u16(clusterPos)))))));
+
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        write(segment, seekHead(infoPos, tagsPos, tracksPos, cuesPos));
+        write(segment, voidElement);
+        write(segment, info);
+        write(segment, tags);
+        write(segment, tracks);
+        write(segment, cluster);
+        write(segment, cues);
+        byte[] segmentData = segment.toByteArray();
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        write(file, ebml);
+        write(file, u32(SEGMENT));
+        // Eight-byte size, as written by most muxers.
+        file.write(0x01);
+        write(file, new byte[] {0, 0, 0, 0, 0, (byte) (segmentData.length >>> 8), (byte) segmentData.length});
+        write(file, segmentData);
+        return file.toByteArray();
+    }
+
+    private static byte[] seekHead(int info, int tags, int tracks, int cues) throws IOException {
+        return element(SEEK_HEAD, concat(seek(INFO, info), seek(TAGS, tags), seek(TRACKS, tracks), seek(CUES, cues)));
+    }
+
+    private static byte[] seek(int id, int position) throws IOException {
+        return element(0x4DBB, concat(element(0x53AB, u32(id)), element(0x53AC, u16(position))));
+    }
+
+    /** Finds the SeekPosition for {@code id} in the file's SeekHead, or -1. */
+    private static int seekPosition(byte[] file, int id) throws IOException {
+        byte[] needle = concat(new byte[] {0x53, (byte) 0xAB, (byte) 0x84}, u32(id));
+        for (int i = 0; i + needle.length + 5 <= file.length; i++) {
+            boolean match = true;
+            for (int j = 0; j < needle.length && match; j++) {
+                match = file[i + j] == needle[j];
+            }
+            if (match) {
+                return (int) readUInt(file, i + needle.length + 3, 2);
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] element(int id, byte[] payload) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int idLength = id > 0xFFFFFF ? 4 : id > 0xFFFF ? 3 : id > 0xFF ? 2 : 1;
+        for (int i = idLength - 1; i >= 0; i--) {
+            out.write(id >>> (8 * i));
+        }
+        if (payload.length < 127) {
+            out.write(0x80 | payload.length);
+        } else {
+            out.write(0x40 | (payload.length >>> 8));
+            out.write(payload.length);
+        }
+        write(out, payload);
+        return out.toByteArray();
+    }
+
+    private static long readUInt(byte[] data, int offset, int size) {
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static byte[] u16(int value) {
+        return new byte[] {(byte) (value >>> 8), (byte) value};
+    }
+
+    private static byte[] u32(int value) {
+        return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+}
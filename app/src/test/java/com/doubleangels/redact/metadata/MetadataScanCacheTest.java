@@ -0,0 +1,177 @@
+package com.doubleangels.redact.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+public class MetadataScanCacheTest {
+
+    private File directory;
+    private SecretKey secretKey;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("scan-cache").toFile();
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        secretKey = new SecretKeySpec(bytes, "AES");
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        new MetadataScanCache(directory, 10, secretKey).clear();
+        awaitEmpty();
+        directory.delete();
+    }
+
+    @Test
+    public void testResultSurvivesOnDisk() {
+        MetadataScanCache.Key key = key("content://media/1", 100, 5, 42);
+        Map<String, String> sections = new HashMap<>();
+        // Longer than writeUTF allows, like a large XMP packet
+        sections.put(MetadataDisplayer.SECTION_BASIC_INFO, "x".repeat(70_000));
+        sections.put(MetadataDisplayer.SECTION_LOCATION, "GPS_LATITUDE\u001f1.5");
+        new MetadataScanCache(directory, 10, secretKey).put(key, new MetadataScanCache.Result(sections, true));
+
+        MetadataScanCache.Result result = new MetadataScanCache(directory, 10, secretKey)
+                .get(key("content://media/1", 100, 5, 42));
+        assertNotNull(result);
+        assertTrue(result.isVideo);
+        assertEquals(sections, result.sections);
+    }
+
+    @Test
+    public void testSlotsAreEncrypted() throws IOException {
+        new MetadataScanCache(directory, 10, secretKey).put(key("content://media/1", 100, 5, 42),
+                result("GPS_LATITUDE\u001f1.5"));
+
+        File[] slots = directory.listFiles();
+        assertEquals(1, slots.length);
+        String stored = new String(Files.readAllBytes(slots[0].toPath()), StandardCharsets.ISO_8859_1);
+        assertFalse(stored.contains("GPS_LATITUDE"));
+        assertFalse(stored.contains("content://media/1"));
+    }
+
+    @Test
+    public void testSlotUnderAnotherKeyIsErased() throws InterruptedException {
+        new MetadataScanCache(directory, 10, secretKey).put(key("content://media/1", 100, 5, 42), result("old"));
+
+        byte[] other = new byte[32];
+        new SecureRandom().nextBytes(other);
+        MetadataScanCache rekeyed = new MetadataScanCache(directory, 10, new SecretKeySpec(other, "AES"));
+        assertNull(rekeyed.get(key("content://media/1", 100, 5, 42)));
+        awaitEmpty();
+    }
+
+    @Test
+    public void testChangedContentMisses() throws InterruptedException {
+        MetadataScanCache cache = new MetadataScanCache(directory, 10, secretKey);
+        cache.put(key("content://media/1", 100, 5, 42), result("old"));
+        assertNull(new MetadataScanCache(directory, 10, secretKey).get(
+                new MetadataScanCache.Key("content://media/1", "nolocation:en-US", 100, 5, 42)));
+
+        // A newer version takes over the URI's slot and the old one is erased
+        cache.put(key("content://media/1", 100, 6, 42), result("new"));
+        awaitSlots(1);
+        assertNotNull(new MetadataScanCache(directory, 10, secretKey).get(key("content://media/1", 100, 6, 42)));
+
+        // Finding an older version than the file now has erases the slot
+        assertNull(new MetadataScanCache(directory, 10, secretKey).get(key("content://media/1", 100, 6, 43)));
+        assertNull(new MetadataScanCache(directory, 10, secretKey).get(key("content://media/1", 101, 6, 42)));
+        awaitEmpty();
+    }
+
+    @Test
+    public void testDiskSlotsAreTrimmed() throws InterruptedException {
+        MetadataScanCache cache = new MetadataScanCache(directory, 3, secretKey);
+        for (int i = 0; i < 6; i++) {
+            cache.put(key("content://media/" + i, 100, 5, 42), result("v" + i));
+        }
+        awaitSlots(3);
+    }
+
+    @Test
+    public void testWithoutKeyResultsStayInMemory() {
+        MetadataScanCache cache = new MetadataScanCache(directory, 10, null);
+        cache.put(key("content://media/1", 100, 5, 42), result("v"));
+
+        assertNotNull(cache.get(key("content://media/1", 100, 5, 42)));
+        assertEquals(0, fileCount());
+    }
+
+    @Test
+    public void testFingerprintCoversBothEnds() throws IOException {
+        byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        long original = fingerprint(data);
+        assertEquals(original, fingerprint(data));
+
+        byte[] headChanged = data.clone();
+        headChanged[10]++;
+        assertNotEquals(original, fingerprint(headChanged));
+
+        byte[] tailChanged = data.clone();
+        tailChanged[data.length - 10]++;
+        assertNotEquals(original, fingerprint(tailChanged));
+    }
+
+    /** Waits for queued erases to leave {@code count} files in the cache directory. */
+    private void awaitSlots(int count) throws InterruptedException {
+        for (int i = 0; i < 250 && fileCount() != count; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, fileCount());
+    }
+
+    private void awaitEmpty() throws InterruptedException {
+        awaitSlots(0);
+    }
+
+    private int fileCount() {
+        File[] files = directory.listFiles();
+        return files != null ? files.length : 0;
+    }
+
+    private static MetadataScanCache.Key key(String uri, long size, long modified, long fingerprint) {
+        return new MetadataScanCache.Key(uri, "location:en-US", size, modified, fingerprint);
+    }
+
+    private static MetadataScanCache.Result result(String basicInfo) {
+        Map<String, String> sections = new HashMap<>();
+        sections.put(MetadataDisplayer.SECTION_BASIC_INFO, basicInfo);
+        return new MetadataScanCache.Result(sections, false);
+    }
+
+    private static long fingerprint(byte[] data) throws IOException {
+        File file = File.createTempFile("fingerprint", ".bin");
+        try {
+            Files.write(file.toPath(), data);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                return MetadataScanCache.fingerprint(raf.getChannel());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
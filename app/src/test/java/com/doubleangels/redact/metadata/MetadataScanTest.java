@@ -0,0 +1,86 @@
+package com.doubleangels.redact.metadata;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class MetadataScanTest {
+
+    @Test
+    public void testCancelClosesTrackedStream() {
+        MetadataScan scan = new MetadataScan();
+        Stream stream = new Stream();
+        scan.track(stream);
+        assertFalse(stream.closed);
+
+        scan.cancel();
+        assertTrue(scan.isCancelled());
+        assertTrue(stream.closed);
+    }
+
+    @Test
+    public void testStreamTrackedAfterCancelIsClosed() {
+        MetadataScan scan = new MetadataScan();
+        scan.cancel();
+        Stream stream = new Stream();
+        scan.track(stream);
+        assertTrue(stream.closed);
+    }
+
+    @Test
+    public void testClearedStreamIsNotClosed() {
+        MetadataScan scan = new MetadataScan();
+        Stream stream = new Stream();
+        scan.track(stream);
+        scan.track(null);
+        scan.cancel();
+        assertFalse(stream.closed);
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testThrowIfCancelled() {
+        MetadataScan scan = new MetadataScan();
+        scan.throwIfCancelled();
+        scan.cancel();
+        scan.throwIfCancelled();
+    }
+
+    @Test
+    public void testCancelInterruptsBoundThread() throws InterruptedException {
+        MetadataScan scan = new MetadataScan();
+        CountDownLatch bound = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Thread worker = new Thread(() -> {
+            scan.bind(Thread.currentThread());
+            bound.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            } finally {
+                scan.unbind();
+            }
+        });
+        worker.start();
+        assertTrue(bound.await(5, TimeUnit.SECONDS));
+
+        scan.cancel();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        worker.join();
+    }
+
+    private static final class Stream implements Closeable {
+        boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
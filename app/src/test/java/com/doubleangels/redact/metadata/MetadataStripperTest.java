@@ -1,10 +1,16 @@
 package com.doubleangels.redact.metadata;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 
 import androidx.test.core.app.ApplicationProvider;
 
@@ -14,6 +20,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 
 @RunWith(RobolectricTestRunner.class)
 public class MetadataStripperTest {
@@ -88,4 +96,65 @@ public class MetadataStripperTest {
             org.mockito.Mockito.verify(spyStripper, org.mockito.Mockito.atLeastOnce()).generateShortRandomName();
         }
     }
+
+    @Test
+    public void testStripReportsFailureForUnreadableSource() {
+        Uri mockUri = mock(Uri.class);
+
+        StripResult result = stripper.strip(StripRequest.forSharing(mockUri, "photo.jpg", false));
+
+        assertFalse(result.isSuccess());
+        assertNull(result.outputUri());
+    }
+
+    @Test
+    public void testOverCapMp4IsRewrittenWithoutTranscoding() throws IOException {
+        byte[] input = Mp4BoxStripperTest.mp4();
+        File source = File.createTempFile("over_cap", ".mp4");
+        File output = File.createTempFile("over_cap_out", ".mp4");
+        try {
+            Files.write(source.toPath(), input);
+            String extension;
+            try (ParcelFileDescriptor destination = ParcelFileDescriptor.open(output,
+                    ParcelFileDescriptor.MODE_READ_WRITE)) {
+                extension = stripper.writeCleanVideo(session(source), Uri.fromFile(source), null, 0,
+                        destination, overCap());
+            }
+
+            assertEquals(".mp4", extension);
+            assertArrayEquals(SplicePlanTestSupport.run(Mp4BoxStripper::plan, input),
+                    Files.readAllBytes(output.toPath()));
+        } finally {
+            source.delete();
+            output.delete();
+        }
+    }
+
+    @Test
+    public void testOverCapVideoIsNotTranscoded() throws IOException {
+        File source = File.createTempFile("over_cap", ".mp4");
+        File output = File.createTempFile("over_cap_out", ".mp4");
+        try {
+            Files.write(source.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+            try (ParcelFileDescriptor destination = ParcelFileDescriptor.open(output,
+                    ParcelFileDescriptor.MODE_READ_WRITE)) {
+                stripper.writeCleanVideo(session(source), Uri.fromFile(source), null, 0, destination, overCap());
+                fail("Expected the size cap to stop the transcode");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("File too large"));
+            }
+        } finally {
+            source.delete();
+            output.delete();
+        }
+    }
+
+    private StripSession session(File source) {
+        return new StripSession(ApplicationProvider.getApplicationContext(),
+                StripRequest.forGallery(Uri.fromFile(source), source.getName(), true));
+    }
+
+    private long overCap() {
+        return stripper.getMaxFileSizeMB() * 1024 * 1024 + 1;
+    }
 }
@@ -0,0 +1,86 @@
+package com.doubleangels.redact.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.media.MediaMetadataRetriever;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class MetadataTagCatalogTest {
+
+    @Test
+    public void testDisplayNames() {
+        assertEquals("GPS_LATITUDE", MetadataTagCatalog.exifDisplayName("GPSLatitude"));
+        assertEquals("IMAGE_WIDTH", MetadataTagCatalog.exifDisplayName("ImageWidth"));
+        assertEquals("DATE_TIME_ORIGINAL", MetadataTagCatalog.exifDisplayName("DateTimeOriginal"));
+        assertEquals("F_NUMBER", MetadataTagCatalog.exifDisplayName("FNumber"));
+        assertEquals("MAKE", MetadataTagCatalog.exifDisplayName("Make"));
+    }
+
+    @Test
+    public void testArraysLineUp() {
+        int exif = MetadataTagCatalog.EXIF_TAGS.length;
+        assertEquals(exif, MetadataTagCatalog.EXIF_DISPLAY_NAMES.length);
+        assertEquals(exif, MetadataTagCatalog.EXIF_PRIVACY.length);
+        for (int i = 0; i < exif; i++) {
+            assertEquals(MetadataTagCatalog.exifDisplayName(MetadataTagCatalog.EXIF_TAGS[i]),
+                    MetadataTagCatalog.EXIF_DISPLAY_NAMES[i]);
+        }
+
+        int retriever = MetadataTagCatalog.RETRIEVER_KEYS.length;
+        assertEquals(retriever, MetadataTagCatalog.RETRIEVER_DISPLAY_NAMES.length);
+        assertEquals(retriever, MetadataTagCatalog.RETRIEVER_PRIVACY.length);
+        Set<Integer> keys = new HashSet<>();
+        for (int key : MetadataTagCatalog.RETRIEVER_KEYS) {
+            assertTrue("Duplicate retriever key " + key, keys.add(key));
+        }
+    }
+
+    @Test
+    public void testOnlyOrientationIsEssentialExif() {
+        for (int i = 0; i < MetadataTagCatalog.EXIF_TAGS.length; i++) {
+            boolean essential = MetadataTagCatalog.EXIF_PRIVACY[i] == MetadataTagCatalog.ESSENTIAL;
+            assertEquals(MetadataTagCatalog.EXIF_TAGS[i],
+                    ExifInterface.TAG_ORIENTATION.equals(MetadataTagCatalog.EXIF_TAGS[i]), essential);
+        }
+    }
+
+    @Test
+    public void testPrivacyClasses() {
+        assertEquals(MetadataTagCatalog.LOCATION, exifPrivacy(ExifInterface.TAG_GPS_LATITUDE));
+        assertEquals(MetadataTagCatalog.LOCATION, exifPrivacy(ExifInterface.TAG_GPS_TIMESTAMP));
+        assertEquals(MetadataTagCatalog.IDENTIFYING, exifPrivacy(ExifInterface.TAG_BODY_SERIAL_NUMBER));
+        assertEquals(MetadataTagCatalog.IDENTIFYING, exifPrivacy(ExifInterface.TAG_DATETIME_ORIGINAL));
+        assertEquals(MetadataTagCatalog.TECHNICAL, exifPrivacy(ExifInterface.TAG_F_NUMBER));
+
+        assertTrue(MetadataTagCatalog.isPrivate(MetadataTagCatalog.LOCATION));
+        assertTrue(MetadataTagCatalog.isPrivate(MetadataTagCatalog.IDENTIFYING));
+        assertFalse(MetadataTagCatalog.isPrivate(MetadataTagCatalog.TECHNICAL));
+        assertFalse(MetadataTagCatalog.isPrivate(MetadataTagCatalog.ESSENTIAL));
+
+        for (int i = 0; i < MetadataTagCatalog.RETRIEVER_KEYS.length; i++) {
+            if (MetadataTagCatalog.RETRIEVER_KEYS[i] == MediaMetadataRetriever.METADATA_KEY_LOCATION) {
+                assertEquals("LOCATION", MetadataTagCatalog.RETRIEVER_DISPLAY_NAMES[i]);
+                assertEquals(MetadataTagCatalog.LOCATION, MetadataTagCatalog.RETRIEVER_PRIVACY[i]);
+                return;
+            }
+        }
+        throw new AssertionError("Location key missing");
+    }
+
+    private static byte exifPrivacy(String tag) {
+        for (int i = 0; i < MetadataTagCatalog.EXIF_TAGS.length; i++) {
+            if (MetadataTagCatalog.EXIF_TAGS[i].equals(tag)) {
+                return MetadataTagCatalog.EXIF_PRIVACY[i];
+            }
+        }
+        throw new AssertionError("Not catalogued: " + tag);
+    }
+}
@@ -0,0 +1,169 @@
+package com.doubleangels.redact.metadata;
+
+import static com.doubleangels.redact.metadata.SplicePlanTestSupport.ascii;
+import static com.doubleangels.redact.metadata.SplicePlanTestSupport.box;
+import static com.doubleangels.redact.metadata.SplicePlanTestSupport.concat;
+import static com.doubleangels.redact.metadata.SplicePlanTestSupport.write;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class Mp4BoxStripperTest {
+
+    private static final byte[] VIDEO_DATA = ascii("video-sample-1video-sample-2");
+    private static final byte[] AUDIO_DATA = ascii("audio-sample");
+    private static final byte[] GPS_DATA = ascii("gps-secret-track");
+
+    @Test
+    public void testDropsMetadataBoxesAndRelocatesChunks() throws IOException {
+        byte[] original = mp4();
+        byte[] result = strip(original);
+        String text = new String(result, StandardCharsets.ISO_8859_1);
+
+        assertFalse(text.contains("secret"));
+        assertFalse(text.contains("udta"));
+        assertFalse(text.contains("©xyz"));
+        assertFalse(text.contains("uuid"));
+        assertFalse(text.contains("free"));
+        assertFalse(text.contains("camm"));
+        assertTrue(result.length < original.length);
+
+        // Video and audio tracks survive and their chunk offsets point at their samples.
+        assertChunk(result, text.indexOf("stco"), VIDEO_DATA);
+        assertChunk(result, text.indexOf("stco", text.indexOf("stco") + 4), AUDIO_DATA);
+
+        // mvhd creation and modification times are cleared.
+        int mvhd = text.indexOf("mvhd") + 4;
+        assertEquals(0, IsoBmff.readUInt(result, mvhd + 4, 4));
+        assertEquals(0, IsoBmff.readUInt(result, mvhd + 8, 4));
+
+        // A second pass leaves the file unchanged.
+        assertArrayEquals(result, strip(result));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsFragmentedFile() throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        write(file, box("ftyp", ascii("iso6\0\0\0\0iso6")));
+        write(file, box("moov", box("mvhd", new byte[100])));
+        write(file, box("moof", new byte[8]));
+        write(file, box("mdat", VIDEO_DATA));
+        strip(file.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsFileWithoutMoov() throws IOException {
+        strip(box("ftyp", ascii("isom\0\0\0\0isom")));
+    }
+
+    @Test
+    public void testDetectsQuickTimeBrand() throws IOException {
+        assertTrue(isQuickTime(concat(box("ftyp", ascii("qt  \0\0\2\0qt  ")), box("moov", new byte[0]))));
+        assertTrue(isQuickTime(concat(box("wide", new byte[0]), box("moov", new byte[0]))));
+        assertFalse(isQuickTime(mp4()));
+    }
+
+    private static byte[] strip(byte[] input) throws IOException {
+        return SplicePlanTestSupport.run(Mp4BoxStripper::plan, input);
+    }
+
+    private static boolean isQuickTime(byte[] input) throws IOException {
+        return SplicePlanTestSupport.read(input, Mp4BoxStripper::isQuickTime);
+    }
+
+    private static void assertChunk(byte[] file, int stcoType, byte[] expected) throws IOException {
+        // stco: type, version/flags, entry count, first entry
+        assertEquals(1, IsoBmff.readUInt(file, stcoType + 8, 4));
+        int offset = (int) IsoBmff.readUInt(file, stcoType + 12, 4);
+        byte[] chunk = new byte[expected.length];
+        System.arraycopy(file, offset, chunk, 0, chunk.length);
+        assertArrayEquals(expected, chunk);
+    }
+
+    /** Builds ftyp + moov + free + mdat with video, audio and a camera-motion metadata track. */
+    static byte[] mp4() throws IOException {
+        byte[] ftyp = box("ftyp", ascii("isom\0\0\2\0isomiso2mp41"));
+        byte[] free = box("free", new byte[16]);
+        // Chunk offsets do not change the moov size, so lay out with placeholders first.
+        long mdatPayload = ftyp.length + moov(0).length + free.length + 8;
+        byte[] moov = moov(mdatPayload);
+
+        ByteArrayOutputStream mdat = new ByteArrayOutputStream();
+        write(mdat, VIDEO_DATA);
+        write(mdat, AUDIO_DATA);
+        write(mdat, GPS_DATA);
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        write(file, ftyp);
+        write(file, moov);
+        write(file, free);
+        write(file, box("mdat", mdat.toByteArray()));
+        return file.toByteArray();
+    }
+
+    private static byte[] moov(long mdatPayload) throws IOException {
+        byte[] mvhd = new byte[100];
+        IsoBmff.putUInt(mvhd, 4, 0xDEADBEEFL, 4);
+        IsoBmff.putUInt(mvhd, 8, 0xDEADBEEFL, 4);
+        byte[] udta = box("udta", box("©xyz", ascii("+40.7-074.0/secret")));
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        write(payload, box("mvhd", mvhd));
+        write(payload, trak("vide", "avc1", mdatPayload, 2, 14));
+        write(payload, trak("soun", "mp4a", mdatPayload + VIDEO_DATA.length, 1, AUDIO_DATA.length));
+        write(payload, trak("meta", "camm", mdatPayload + VIDEO_DATA.length + AUDIO_DATA.length,
+                1, GPS_DATA.length));
+        write(payload, udta);
+        write(payload, box("uuid", ascii("0123456789abcdef<x:xmpmeta>secret</x:xmpmeta>")));
+        return box("moov", payload.toByteArray());
+    }
+
+    /** A track with one chunk of {@code sampleCount} samples of {@code sampleSize} bytes. */
+    private static byte[] trak(String handler, String sampleEntry, long chunkOffset, int sampleCount,
+            int sampleSize) throws IOException {
+        ByteArrayOutputStream hdlr = new ByteArrayOutputStream();
+        write(hdlr, new byte[8]);
+        write(hdlr, ascii(handler));
+        write(hdlr, new byte[13]);
+
+        ByteArrayOutputStream stsd = new ByteArrayOutputStream();
+        write(stsd, new byte[4]);
+        IsoBmff.writeUInt(stsd, 1, 4);
+        write(stsd, box(sampleEntry, new byte[8]));
+
+        ByteArrayOutputStream stsc = new ByteArrayOutputStream();
+        write(stsc, new byte[4]);
+        IsoBmff.writeUInt(stsc, 1, 4);
+        IsoBmff.writeUInt(stsc, 1, 4);
+        IsoBmff.writeUInt(stsc, sampleCount, 4);
+        IsoBmff.writeUInt(stsc, 1, 4);
+
+        ByteArrayOutputStream stsz = new ByteArrayOutputStream();
+        write(stsz, new byte[4]);
+        IsoBmff.writeUInt(stsz, sampleSize, 4);
+        IsoBmff.writeUInt(stsz, sampleCount, 4);
+
+        ByteArrayOutputStream stco = new ByteArrayOutputStream();
+        write(stco, new byte[4]);
+        IsoBmff.writeUInt(stco, 1, 4);
+        IsoBmff.writeUInt(stco, chunkOffset, 4);
+
+        ByteArrayOutputStream stbl = new ByteArrayOutputStream();
+        write(stbl, box("stsd", stsd.toByteArray()));
+        write(stbl, box("stsc", stsc.toByteArray()));
+        write(stbl, box("stsz", stsz.toByteArray()));
+        write(stbl, box("stco", stco.toByteArray()));
+
+        byte[] mdia = concat(box("mdhd", new byte[24]), box("hdlr", hdlr.toByteArray()));
+        mdia = concat(mdia, box("minf", box("stbl", stbl.toByteArray())));
+        byte[] trak = concat(box("tkhd", new byte[84]), box("mdia", mdia));
+        return box("trak", concat(trak, box("udta", box("name", ascii("secret")))));
+    }
+}
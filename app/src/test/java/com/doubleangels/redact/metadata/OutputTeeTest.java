@@ -0,0 +1,61 @@
+package com.doubleangels.redact.metadata;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class OutputTeeTest {
+
+    private static final byte[] ENCODED_JPEG = {
+            (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 4, 'J', 'F', (byte) 0xFF, (byte) 0xD9};
+
+    @Test
+    public void testInsertsOrientationAfterSoi() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputTee tee = OutputTee.withJpegOrientation(out, 6);
+        // Split writes so the SOI marker spans two calls.
+        tee.write(ENCODED_JPEG[0]);
+        tee.write(ENCODED_JPEG, 1, ENCODED_JPEG.length - 1);
+
+        byte[] segment = JpegSegmentStripper.orientationSegment(6);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(ENCODED_JPEG, 0, 2);
+        expected.write(segment, 0, segment.length);
+        expected.write(ENCODED_JPEG, 2, ENCODED_JPEG.length - 2);
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+        assertArrayEquals(out.toByteArray(), tee.head());
+    }
+
+    @Test
+    public void testPassesThroughWithoutOrientation() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputTee tee = OutputTee.withJpegOrientation(out, 1);
+        tee.write(ENCODED_JPEG);
+
+        assertArrayEquals(ENCODED_JPEG, out.toByteArray());
+    }
+
+    @Test
+    public void testHeadIsBounded() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputTee tee = new OutputTee(out);
+        byte[] data = new byte[OutputTee.HEAD_LIMIT + 1000];
+        data[0] = 42;
+        tee.write(data, 0, 500);
+        tee.write(data, 500, data.length - 500);
+
+        assertEquals(data.length, out.size());
+        assertEquals(OutputTee.HEAD_LIMIT, tee.head().length);
+        assertEquals(42, tee.head()[0]);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsNonJpegEncoderOutput() throws IOException {
+        OutputTee tee = OutputTee.withJpegOrientation(new ByteArrayOutputStream(), 6);
+        tee.write(new byte[] {(byte) 0x89, 'P', 'N', 'G'});
+    }
+}
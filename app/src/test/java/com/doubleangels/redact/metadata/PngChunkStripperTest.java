@@ -0,0 +1,90 @@
+package com.doubleangels.redact.metadata;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+public class PngChunkStripperTest {
+
+    private static final byte[] SIGNATURE = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+    };
+
+    @Test
+    public void testDropsTextAndExifChunksAndKeepsRenderingChunks() throws IOException {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        in.write(SIGNATURE);
+        writeChunk(in, "IHDR", "header-bytes!", true);
+        writeChunk(in, "iCCP", "profile", true);
+        writeChunk(in, "tEXt", "Author\0someone", true);
+        writeChunk(in, "eXIf", "MM\0*gps", true);
+        writeChunk(in, "tIME", "1234567", true);
+        writeChunk(in, "prVt", "vendor", true);
+        writeChunk(in, "tRNS", "alpha", true);
+        writeChunk(in, "IDAT", "compressed", true);
+        writeChunk(in, "iTXt", "XML:com.adobe.xmp", true);
+        writeChunk(in, "IEND", "", true);
+        in.write("trailing".getBytes(StandardCharsets.US_ASCII));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int removed = PngChunkStripper.strip(new ByteArrayInputStream(in.toByteArray()), out);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(SIGNATURE);
+        writeChunk(expected, "IHDR", "header-bytes!", true);
+        writeChunk(expected, "iCCP", "profile", true);
+        writeChunk(expected, "tRNS", "alpha", true);
+        writeChunk(expected, "IDAT", "compressed", true);
+        writeChunk(expected, "IEND", "", true);
+
+        assertEquals(5, removed);
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsCorruptKeptChunk() throws IOException {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        in.write(SIGNATURE);
+        writeChunk(in, "IHDR", "header-bytes!", false);
+        writeChunk(in, "IEND", "", true);
+
+        PngChunkStripper.strip(new ByteArrayInputStream(in.toByteArray()), new ByteArrayOutputStream());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsTruncatedStream() throws IOException {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        in.write(SIGNATURE);
+        writeChunk(in, "IHDR", "header-bytes!", true);
+
+        PngChunkStripper.strip(new ByteArrayInputStream(in.toByteArray()), new ByteArrayOutputStream());
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, String data, boolean validCrc)
+            throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] dataBytes = data.getBytes(StandardCharsets.ISO_8859_1);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(dataBytes);
+        long crcValue = validCrc ? crc.getValue() : crc.getValue() ^ 1;
+        writeInt(out, dataBytes.length);
+        out.write(typeBytes);
+        out.write(dataBytes);
+        writeInt(out, crcValue);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, long value) {
+        out.write((int) (value >>> 24) & 0xFF);
+        out.write((int) (value >>> 16) & 0xFF);
+        out.write((int) (value >>> 8) & 0xFF);
+        out.write((int) value & 0xFF);
+    }
+}
@@ -0,0 +1,63 @@
+package com.doubleangels.redact.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class SecureEraserTest {
+
+    @Test
+    public void testOverwriteReplacesContentsAndKeepsLength() throws IOException {
+        // Larger than one chunk so the last write is partial.
+        byte[] original = new byte[3 * 1024 * 1024 + 123];
+        byte[] marker = "vid_transmux secret frame ".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < original.length; i++) {
+            original[i] = marker[i % marker.length];
+        }
+        File file = File.createTempFile("vid_transmux_", ".mp4");
+        try {
+            Files.write(file.toPath(), original);
+
+            SecureEraser.overwrite(file);
+
+            byte[] overwritten = Files.readAllBytes(file.toPath());
+            assertEquals(original.length, overwritten.length);
+            assertFalse(new String(overwritten, StandardCharsets.ISO_8859_1).contains("secret"));
+            int zeros = 0;
+            for (byte b : overwritten) {
+                if (b == 0) {
+                    zeros++;
+                }
+            }
+            // Random data, not a zero fill.
+            assertTrue(zeros < overwritten.length / 100);
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testEraseDeletesFile() throws IOException {
+        File file = File.createTempFile("vid_transmux_", ".mp4");
+        Files.write(file.toPath(), new byte[] {1, 2, 3});
+
+        assertTrue(SecureEraser.erase(file));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testEraseHandlesEmptyAndMissingFiles() throws IOException {
+        File file = File.createTempFile("vid_transmux_", ".mp4");
+
+        assertTrue(SecureEraser.erase(file));
+        assertFalse(SecureEraser.erase(file));
+    }
+}
@@ -0,0 +1,90 @@
+package com.doubleangels.redact.metadata;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class ShreddedFileTest {
+
+    private static final File CACHE_DIR = new File(System.getProperty("java.io.tmpdir"));
+
+    @Test
+    public void testRoundTripsWithoutPlaintextOnDisk() throws IOException {
+        byte[] plaintext = new byte[200_000];
+        byte[] marker = "GPSLatitude=40.7128".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < plaintext.length; i++) {
+            plaintext[i] = marker[i % marker.length];
+        }
+
+        ShreddedFile file = ShreddedFile.create(CACHE_DIR, "temp_", ".jpg");
+        try {
+            try (OutputStream out = file.openOutputStream()) {
+                out.write(plaintext);
+            }
+            assertEquals(plaintext.length, file.length());
+
+            byte[] onDisk = Files.readAllBytes(new File(CACHE_DIR, file.toString()).toPath());
+            assertFalse(new String(onDisk, StandardCharsets.ISO_8859_1).contains("GPSLatitude"));
+
+            // Every stream starts over from the beginning of the file.
+            assertArrayEquals(plaintext, readAll(file));
+            assertArrayEquals(plaintext, readAll(file));
+        } finally {
+            file.shred();
+        }
+    }
+
+    @Test
+    public void testShredDeletesFileAndKey() throws IOException {
+        ShreddedFile file = ShreddedFile.create(CACHE_DIR, "verify_", ".jpg");
+        try (OutputStream out = file.openOutputStream()) {
+            out.write(1);
+        }
+        File onDisk = new File(CACHE_DIR, file.toString());
+        assertTrue(onDisk.exists());
+
+        assertTrue(file.shred());
+        assertFalse(onDisk.exists());
+        try {
+            file.openInputStream();
+            throw new AssertionError("Shredded file was readable");
+        } catch (IOException expected) {
+            // The key is gone, so nothing can be read back.
+        }
+    }
+
+    @Test
+    public void testFilesGetDistinctNames() throws IOException {
+        ShreddedFile first = ShreddedFile.create(CACHE_DIR, "temp_", ".jpg");
+        ShreddedFile second = ShreddedFile.create(CACHE_DIR, "temp_", ".jpg");
+        try {
+            assertFalse(first.toString().equals(second.toString()));
+        } finally {
+            first.shred();
+            second.shred();
+        }
+    }
+
+    private static byte[] readAll(ShreddedFile file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = file.openInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,62 @@
+package com.doubleangels.redact.metadata;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class SplicePlanTest {
+
+    @Test
+    public void testReadAtAnyOffsetMatchesWrittenFile() throws IOException {
+        byte[] source = new byte[1000];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = (byte) (i * 7);
+        }
+        SplicePlan plan = new SplicePlan();
+        plan.addLiteral(new byte[] {1, 2, 3, 4, 5});
+        plan.addSourceRange(100, 300);
+        plan.addZeros(17);
+        plan.addSourceRange(600, 250);
+        plan.addLiteral(new byte[] {9, 8, 7});
+
+        File file = File.createTempFile("splice", ".bin");
+        try {
+            Files.write(file.toPath(), source);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                FileChannel channel = raf.getChannel();
+                ByteArrayOutputStream written = new ByteArrayOutputStream();
+                plan.writeTo(channel, Channels.newChannel(written));
+                byte[] expected = written.toByteArray();
+                assertEquals(plan.length(), expected.length);
+
+                // Windows of several sizes, crossing every piece boundary
+                for (int size : new int[] {1, 4, 64, 333, expected.length}) {
+                    for (int offset = 0; offset < expected.length; offset += 3) {
+                        byte[] window = new byte[size];
+                        int read = plan.read(channel, offset, ByteBuffer.wrap(window));
+                        int wanted = Math.min(size, expected.length - offset);
+                        assertEquals(wanted, read);
+                        assertArrayEquals(Arrays.copyOfRange(expected, offset, offset + wanted),
+                                Arrays.copyOf(window, read));
+                    }
+                }
+
+                assertEquals(0, plan.read(channel, expected.length, ByteBuffer.allocate(16)));
+                assertEquals(0, plan.read(channel, expected.length + 100, ByteBuffer.allocate(16)));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.doubleangels.redact.metadata;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/** Runs container planners over in-memory fixtures and builds the bytes those fixtures are made of. */
+final class SplicePlanTestSupport {
+
+    /** Something that reads a file channel, such as a stripper's {@code plan}. */
+    interface ChannelReader<T> {
+        T read(FileChannel channel) throws IOException;
+    }
+
+    private SplicePlanTestSupport() {
+    }
+
+    /**
+     * Plans {@code input} with {@code planner} and writes the plan out, checking that the output has
+     * the length the plan promised.
+     *
+     * @return the rewritten file
+     */
+    static byte[] run(ChannelReader<SplicePlan> planner, byte[] input) throws IOException {
+        return read(input, channel -> {
+            SplicePlan plan = planner.read(channel);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            plan.writeTo(channel, Channels.newChannel(out));
+            assertEquals(plan.length(), out.size());
+            return out.toByteArray();
+        });
+    }
+
+    /** Writes {@code input} to a temporary file and hands {@code reader} a channel over it. */
+    static <T> T read(byte[] input, ChannelReader<T> reader) throws IOException {
+        File file = File.createTempFile("splice", ".bin");
+        try {
+            Files.write(file.toPath(), input);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                return reader.read(raf.getChannel());
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    /** An ISO-BMFF box with a 32-bit size. */
+    static byte[] box(String type, byte[] payload) throws IOException {
+        return IsoBmff.box(IsoBmff.fourCc(type), payload);
+    }
+
+    static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            write(out, part);
+        }
+        return out.toByteArray();
+    }
+
+    static void write(ByteArrayOutputStream out, byte[] bytes) {
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
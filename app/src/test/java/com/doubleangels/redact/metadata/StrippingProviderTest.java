@@ -0,0 +1,125 @@
+package com.doubleangels.redact.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.FileNotFoundException;
+
+@RunWith(RobolectricTestRunner.class)
+public class StrippingProviderTest {
+
+    private Context context;
+    private StrippingProvider provider;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        provider = new StrippingProvider();
+    }
+
+    @Test
+    public void testRegisterServesNameSizeAndType() {
+        Uri uri = StrippingProvider.register(context, Uri.parse("content://media/1"),
+                ImageContainer.WEBP, "abc.webp", 0, 1234);
+
+        assertTrue(StrippingProvider.isStreamed(context, uri));
+        assertEquals("image/webp", provider.getType(uri));
+        try (Cursor cursor = provider.query(uri, null, null, null, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("abc.webp", cursor.getString(cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME)));
+            assertEquals(1234, cursor.getLong(cursor.getColumnIndex(OpenableColumns.SIZE)));
+        }
+    }
+
+    @Test
+    public void testQueryReportsUnknownSizeAsNull() {
+        Uri uri = StrippingProvider.register(context, Uri.parse("content://media/2"),
+                ImageContainer.JPEG, "abc.jpg", 6, -1);
+
+        try (Cursor cursor = provider.query(uri, new String[] {OpenableColumns.SIZE}, null, null, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertTrue(cursor.isNull(0));
+        }
+    }
+
+    @Test
+    public void testUnknownTokenIsNotServed() {
+        Uri uri = Uri.parse("content://" + context.getPackageName() + ".strip/0000/abc.jpg");
+
+        assertNull(provider.getType(uri));
+        assertNull(provider.query(uri, null, null, null, null));
+        assertFalse(StrippingProvider.isStreamed(context, Uri.parse("content://media/1")));
+    }
+
+    @Test
+    public void testExpiredShareIsForgotten() {
+        long created = System.currentTimeMillis() - StrippingProvider.TTL_MS - 1;
+        Uri uri = StrippingProvider.put(context, new StrippingProvider.Entry(Uri.parse("content://media/4"),
+                "image/png", "old.png", ImageContainer.PNG, 0, null, -1, created, -1, -1));
+        String token = uri.getPathSegments().get(0);
+
+        assertNull(provider.getType(uri));
+        assertNull(provider.query(uri, null, null, null, null));
+        assertFalse(context.getSharedPreferences("redact_shares", Context.MODE_PRIVATE).contains(token));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testOpenFileRejectsWrites() throws FileNotFoundException {
+        Uri uri = StrippingProvider.register(context, Uri.parse("content://media/3"),
+                ImageContainer.PNG, "abc.png", 0, -1);
+        provider.openFile(uri, "w");
+    }
+
+    @Test
+    public void testOnlyOwnMediaStoreSourcesAreServed() {
+        // Readable only through the sender's grant, which ends before the recipient reads
+        assertFalse(StrippingProvider.canServe(context,
+                Uri.parse("content://com.example.files/document/1"), false));
+        assertFalse(StrippingProvider.canServe(context,
+                Uri.parse("content://media/picker/0/com.android.providers.media.photopicker/media/1"), false));
+        assertFalse(StrippingProvider.canServe(context, Uri.parse("file:///sdcard/a.jpg"), false));
+    }
+
+    @Test
+    public void testStoredEntryRoundTrips() {
+        Uri uri = StrippingProvider.register(context, Uri.parse("content://media/external/images/media/4"),
+                ImageContainer.JPEG, "abc.jpg", 6, 99);
+        String token = uri.getPathSegments().get(0);
+        String stored = context.getSharedPreferences("redact_shares", Context.MODE_PRIVATE).getString(token, null);
+
+        StrippingProvider.Entry entry = StrippingProvider.Entry.decode(stored);
+        assertEquals(Uri.parse("content://media/external/images/media/4"), entry.source);
+        assertEquals(ImageContainer.JPEG, entry.container);
+        assertEquals(6, entry.orientation);
+        assertEquals(99, entry.length);
+        assertNull(StrippingProvider.Entry.decode("not an entry"));
+    }
+
+    @Test
+    public void testStoredVideoEntryKeepsSourceStamp() {
+        StrippingProvider.Entry entry = new StrippingProvider.Entry(
+                Uri.parse("content://media/external/video/media/5"), "video/mp4", "abc.mp4",
+                null, 0, null, 4096, 10, 5000, 1700000000);
+
+        StrippingProvider.Entry restored = StrippingProvider.Entry.decode(entry.encode());
+        assertNull(restored.container);
+        assertNull(restored.plan);
+        assertEquals(4096, restored.length);
+        assertEquals(5000, restored.sourceSize);
+        assertEquals(1700000000, restored.sourceModified);
+    }
+}
@@ -0,0 +1,87 @@
+package com.doubleangels.redact.metadata;
+
+import static com.doubleangels.redact.metadata.SplicePlanTestSupport.ascii;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class WebpChunkStripperTest {
+
+    @Test
+    public void testDropsExifAndXmpAndPatchesHeaders() throws IOException {
+        byte[] vp8xPayload = {0x3E, 0, 0, 0, 9, 0, 0, 9, 0, 0}; // ICC|alpha|EXIF|XMP|animation
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        writeChunk(chunks, "VP8X", vp8xPayload);
+        writeChunk(chunks, "ICCP", ascii("profile"));
+        writeChunk(chunks, "ANIM", ascii("loop!"));
+        writeChunk(chunks, "ANMF", ascii("frame-data"));
+        writeChunk(chunks, "EXIF", ascii("MM\0*gps"));
+        writeChunk(chunks, "XMP ", ascii("<x:xmpmeta/>"));
+
+        byte[] result = strip(riff(chunks.toByteArray()));
+
+        byte[] expectedVp8x = vp8xPayload.clone();
+        expectedVp8x[0] = 0x32;
+        ByteArrayOutputStream expectedChunks = new ByteArrayOutputStream();
+        writeChunk(expectedChunks, "VP8X", expectedVp8x);
+        writeChunk(expectedChunks, "ICCP", ascii("profile"));
+        writeChunk(expectedChunks, "ANIM", ascii("loop!"));
+        writeChunk(expectedChunks, "ANMF", ascii("frame-data"));
+
+        assertArrayEquals(riff(expectedChunks.toByteArray()), result);
+    }
+
+    @Test
+    public void testSimpleLossyFileIsCopiedUnchanged() throws IOException {
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        writeChunk(chunks, "VP8 ", ascii("bitstream"));
+        byte[] original = riff(chunks.toByteArray());
+
+        assertArrayEquals(original, strip(original));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsNonWebp() throws IOException {
+        strip(ascii("RIFF\4\0\0\0WAVEfmt "));
+    }
+
+    private static byte[] strip(byte[] input) throws IOException {
+        return SplicePlanTestSupport.run(WebpChunkStripper::plan, input);
+    }
+
+    private static byte[] riff(byte[] chunks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('R');
+        out.write('I');
+        out.write('F');
+        out.write('F');
+        writeLe(out, chunks.length + 4);
+        out.write('W');
+        out.write('E');
+        out.write('B');
+        out.write('P');
+        out.write(chunks, 0, chunks.length);
+        return out.toByteArray();
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String fourCc, byte[] payload) {
+        byte[] id = ascii(fourCc);
+        out.write(id, 0, id.length);
+        writeLe(out, payload.length);
+        out.write(payload, 0, payload.length);
+        if ((payload.length & 1) != 0) {
+            out.write(0);
+        }
+    }
+
+    private static void writeLe(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+        out.write((value >>> 16) & 0xFF);
+        out.write((value >>> 24) & 0xFF);
+    }
+}